@@ -0,0 +1,76 @@
+/**
+ * The AccountImportBenchmark class measures how many rows per second AccountImporter
+ * imports from CSV and binary account files, by default one million accounts.
+ *
+ * The benchmark writes a CSV file in which one row in a hundred fails validation, imports
+ * it into an empty bank with one thread and then with one thread per core, and exports
+ * the imported bank to a binary file and imports that into another empty bank. Each run
+ * starts from a new Bank, and the rate covers reading, validating and adding every row.
+ *
+ * Usage Example:
+ * java -Xmx2g benchmark_classes.AccountImportBenchmark [accounts]
+ *
+ * Responsibilities:
+ * - Generate a CSV account file with some invalid rows.
+ * - Time single-threaded and parallel CSV imports and a binary import.
+ * - Print rows imported and rejected and rows per second.
+ */
+
+package benchmark_classes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import data_classes.AccountImporter;
+import data_classes.Bank;
+import data_classes.TransactionJournal;
+
+public class AccountImportBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1_000_000;
+
+	public static void main(String[] args) throws IOException {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		Path csv = Files.createTempFile("accounts", ".csv");
+		Path binary = Files.createTempFile("accounts", ".dat");
+		TransactionJournal.getInstance().setEnabled(false);
+		try {
+			writeCsv(csv, accounts);
+			run("csv, 1 thread", () -> new AccountImporter(new Bank(), 1, 4096).importCsv(csv, null));
+			Bank imported = new Bank();
+			run("csv, parallel x" + cores, () -> new AccountImporter(imported, cores, 4096).importCsv(csv, null));
+			AccountImporter.exportBinary(binary, imported);
+			run("binary, parallel x" + cores, () -> new AccountImporter(new Bank(), cores, 4096).importBinary(binary, null));
+		}
+		finally {
+			Files.deleteIfExists(csv);
+			Files.deleteIfExists(binary);
+		}
+	}
+
+	private interface Import {
+		AccountImporter.Result run() throws IOException;
+	}
+
+	private static void run(String scenario, Import task) throws IOException {
+		System.gc();
+		AccountImporter.Result result = task.run();
+		System.out.printf("%-20s %,10d imported  %,8d rejected  %,10.1f ms  %,12.0f rows/s%n",
+				scenario, result.getImported(), result.getRejected(), result.getMillis(), result.getRowsPerSecond());
+	}
+
+	// every hundredth row has an underage holder and is rejected
+	private static void writeCsv(Path file, int accounts) throws IOException {
+		try(BufferedWriter out = Files.newBufferedWriter(file)) {
+			out.write("accNumber,accType,firstName,lastName,age,address,balance\n");
+			for(int i = 0; i < accounts; i++) {
+				int age = i % 100 == 99 ? 12 : 18 + i % 70;
+				out.write((FIRST_ACCOUNT + i) + ",Checking,Bench,Mark" + (i % 1000) + "," + age
+						+ ",\"" + i + " Bench Street, Springfield\"," + (100 + i % 5000) + ".25\n");
+			}
+		}
+	}
+}
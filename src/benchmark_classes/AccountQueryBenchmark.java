@@ -0,0 +1,110 @@
+/**
+ * The AccountQueryBenchmark class measures how long Bank.findAccounts takes to answer
+ * queries by last name prefix, age range and account type over a large bank, against the
+ * same queries answered by walking every account.
+ *
+ * Last names are made of random syllables, so a one-syllable prefix matches a few
+ * percent of the accounts and a two-syllable prefix well under one percent.
+ *
+ * Usage Example:
+ * java benchmark_classes.AccountQueryBenchmark [accounts] [queries]
+ *
+ * Responsibilities:
+ * - Time building the indexes.
+ * - Time limited, unlimited and counting queries with the indexes and by a full scan.
+ */
+
+package benchmark_classes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionJournal;
+
+public class AccountQueryBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1_000_000;
+	private static final String[] SYLLABLES = { "Ba", "Ko", "Li", "Mar", "Sen", "Tor", "Vel", "Wu", "Ri", "Da", "Fen", "Ho", "Ja", "Nu", "Pe", "Sto" };
+	private static final int SCANS = 5;
+
+	public static void main(String[] args) {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+		TransactionJournal.getInstance().setEnabled(false);
+		Bank bank = new Bank();
+		Random random = new Random(42);
+		for(int i = 0; i < accounts; i++) {
+			String lastName = SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)].toLowerCase()
+					+ SYLLABLES[random.nextInt(SYLLABLES.length)].toLowerCase();
+			BankAccount.restore(FIRST_ACCOUNT + i, random.nextInt(4) == 0 ? "Savings" : "Checking", "Bench", lastName, 18 + random.nextInt(73), "1 Bench Street", 100_00L, bank);
+		}
+
+		long start = System.nanoTime();
+		bank.findAccounts().limit(1).list();
+		System.out.printf("building the indexes of %,d accounts: %.0f ms%n%n", accounts, (System.nanoTime() - start) / 1e6);
+
+		System.out.printf("%-44s %12s %12s %10s%n", "query", "indexed", "full scan", "results");
+		compare(bank, queries, "last name starts with Mar, first 50",
+				() -> bank.findAccounts().lastNameStartsWith("Mar").limit(50).list(),
+				a -> a.getLastName().startsWith("Mar"), 50);
+		compare(bank, queries, "last name starts with Marko, all",
+				() -> bank.findAccounts().lastNameStartsWith("Marko").list(),
+				a -> a.getLastName().startsWith("Marko"), Integer.MAX_VALUE);
+		compare(bank, queries, "age 30 to 34, savings, first 50",
+				() -> bank.findAccounts().ageBetween(30, 34).accType("Savings").limit(50).list(),
+				a -> a.getAge() >= 30 && a.getAge() <= 34 && a.getAccType().equals("Savings"), 50);
+		compare(bank, queries, "last name Sen, age 60 to 70, checking, all",
+				() -> bank.findAccounts().lastNameStartsWith("Sen").ageBetween(60, 70).accType("Checking").list(),
+				a -> a.getLastName().startsWith("Sen") && a.getAge() >= 60 && a.getAge() <= 70 && a.getAccType().equals("Checking"), Integer.MAX_VALUE);
+		compare(bank, queries, "savings, first 50",
+				() -> bank.findAccounts().accType("Savings").limit(50).list(),
+				a -> a.getAccType().equals("Savings"), 50);
+
+		long sink = 0L;
+		for(int i = 0; i < queries; i++) {
+			sink += bank.findAccounts().accType("Savings").count();
+		}
+		start = System.nanoTime();
+		for(int i = 0; i < queries; i++) {
+			sink += bank.findAccounts().accType("Savings").count();
+		}
+		double indexed = (System.nanoTime() - start) / 1e3 / queries;
+		System.out.printf("%-44s %9.1f us %12s %10d%n", "count of savings", indexed, "", sink / (2L * queries));
+	}
+
+	// prints the mean time of a query with the indexes and by walking every account
+	private static void compare(Bank bank, int queries, String name, Supplier<List<BankAccount>> query, Predicate<BankAccount> filter, int limit) {
+		long sink = 0L;
+		for(int i = 0; i < queries; i++) {
+			sink += query.get().size();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < queries; i++) {
+			sink += query.get().size();
+		}
+		double indexed = (System.nanoTime() - start) / 1e3 / queries;
+
+		start = System.nanoTime();
+		int results = 0;
+		for(int i = 0; i < SCANS; i++) {
+			results = scan(bank, filter, limit).size();
+		}
+		double scanned = (System.nanoTime() - start) / 1e3 / SCANS;
+		System.out.printf("%-44s %9.1f us %9.1f us %10d%n", name, indexed, scanned, sink / (2L * queries) == results ? results : -1);
+	}
+
+	private static List<BankAccount> scan(Bank bank, Predicate<BankAccount> filter, int limit) {
+		List<BankAccount> found = new ArrayList<>();
+		bank.forEachAccount(account -> {
+			if(found.size() < limit && filter.test(account)) {
+				found.add(account);
+			}
+		});
+		return found;
+	}
+}
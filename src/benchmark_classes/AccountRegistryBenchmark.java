@@ -0,0 +1,67 @@
+/**
+ * The AccountRegistryBenchmark class compares the AccountRegistry used by Bank against the
+ * boxed HashMap<Integer, BankAccount> it replaced.
+ *
+ * Both structures are filled with the same set of accounts across the whole 4-digit
+ * account number range. Lookups use a precomputed random sequence of account numbers,
+ * about nine in ten of which exist, so both hits and misses are measured. Add/remove
+ * measures removing and re-adding the same account, which is what opening and closing
+ * accounts costs.
+ *
+ * Usage Example:
+ * java benchmark_classes.AccountRegistryBenchmark
+ *
+ * Responsibilities:
+ * - Measure lookup, contains and add/remove throughput for both structures.
+ * - Print the results side by side.
+ */
+
+package benchmark_classes;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import data_classes.AccountRegistry;
+import data_classes.Bank;
+import data_classes.BankAccount;
+
+public class AccountRegistryBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1000;
+	private static final int LAST_ACCOUNT = 9999;
+	private static final int KEY_MASK = (1 << 16) - 1;
+
+	public static void main(String[] args) {
+		Bank bank = new Bank();
+		Map<Integer, BankAccount> map = new HashMap<>();
+		AccountRegistry registry = new AccountRegistry();
+		for(int num = FIRST_ACCOUNT; num <= LAST_ACCOUNT; num += 1) {
+			BankAccount account = new BankAccount(num, "Checking", "Bench", "Mark", 30, "1 Bench Street", 100.0, bank);
+			map.put(num, account);
+			registry.add(account);
+		}
+
+		// random lookup keys, roughly 10% fall outside the populated range
+		int[] keys = new int[KEY_MASK + 1];
+		Random random = new Random(42);
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt(11000);
+		}
+		BankAccount churn = registry.get(5000);
+
+		BenchmarkRunner runner = new BenchmarkRunner();
+		runner.run("HashMap.get", i -> map.get(keys[i & KEY_MASK]) == null ? 0 : 1).print();
+		runner.run("AccountRegistry.get", i -> registry.get(keys[i & KEY_MASK]) == null ? 0 : 1).print();
+		runner.run("HashMap.containsKey", i -> map.containsKey(keys[i & KEY_MASK]) ? 1 : 0).print();
+		runner.run("AccountRegistry.contains", i -> registry.contains(keys[i & KEY_MASK]) ? 1 : 0).print();
+		runner.run("HashMap.remove+put", i -> {
+			map.remove(churn.getAccNumber());
+			return map.put(churn.getAccNumber(), churn) == null ? 1 : 0;
+		}).print();
+		runner.run("AccountRegistry.remove+add", i -> {
+			registry.remove(churn.getAccNumber());
+			return registry.add(churn) ? 1 : 0;
+		}).print();
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * The AccountStoreBenchmark class measures how long AccountStore takes to rebuild a bank
+ * at startup, by default for one million accounts.
+ *
+ * The benchmark opens a store in a scratch directory, opens the accounts and closes the
+ * store, then times recovery from the write-ahead log alone. It then takes a snapshot,
+ * applies one deposit to every tenth account, closes the store again and times recovery
+ * from the snapshot plus the short log written after it. Each recovery starts from a new,
+ * empty Bank, and the time reported covers reading the files and rebuilding every
+ * BankAccount.
+ *
+ * Finally it writes the same accounts to a MappedAccountSnapshot and times how long a new
+ * Bank takes to come online from it, and how long the first lookups of accounts take.
+ *
+ * Usage Example:
+ * java -Xmx2g benchmark_classes.AccountStoreBenchmark [accounts]
+ *
+ * Responsibilities:
+ * - Populate a store with the requested number of accounts.
+ * - Time recovery from the log alone and from a snapshot plus log.
+ * - Time bringing a bank online from a mapped snapshot and its first lookups.
+ * - Print recovery time, accounts rebuilt per second and the size of the store files.
+ */
+
+package benchmark_classes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import data_classes.AccountStore;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.MappedAccountSnapshot;
+import data_classes.TransactionJournal;
+
+public class AccountStoreBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1_000_000;
+	private static final long OPENING_BALANCE = 100_000L;
+
+	public static void main(String[] args) throws IOException {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		Path dir = Files.createTempDirectory("account-store-bench");
+		TransactionJournal.getInstance().setEnabled(false);
+		try {
+			Bank bank = new Bank();
+			try(AccountStore store = AccountStore.open(dir, bank)) {
+				for(int i = 0; i < accounts; i++) {
+					BankAccount.restore(FIRST_ACCOUNT + i, "Checking", "Bench", "Mark", 30, "1 Bench Street", OPENING_BALANCE, bank);
+				}
+				System.out.printf("logged %,d account openings%n", store.flush());
+			}
+			bank = null;
+			report("log only", dir, accounts, recover(dir, accounts, false));
+
+			System.gc();
+			bank = new Bank();
+			try(AccountStore store = AccountStore.open(dir, bank)) {
+				store.snapshot();
+				for(int i = 0; i < accounts; i += 10) {
+					bank.getAccount(FIRST_ACCOUNT + i).depositCents(1L);
+				}
+			}
+			report("snapshot + log", dir, accounts, recover(dir, accounts, true));
+
+			Path mapped = dir.resolve("mapped.dat");
+			MappedAccountSnapshot.write(mapped, bank);
+			bank = null;
+			mapped(mapped, accounts);
+		}
+		finally {
+			try(Stream<Path> files = Files.list(dir)) {
+				for(Path file : (Iterable<Path>) files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(dir);
+		}
+	}
+
+	// opens the store on an empty bank and returns the recovery time in milliseconds
+	private static double recover(Path dir, int expected, boolean deposited) throws IOException {
+		System.gc();
+		Bank bank = new Bank();
+		try(AccountStore store = AccountStore.open(dir, bank)) {
+			if(bank.getAccountCount() != expected) {
+				throw new IllegalStateException("Recovered " + bank.getAccountCount() + " accounts, expected " + expected);
+			}
+			long balance = bank.getAccount(FIRST_ACCOUNT).getBalanceCents();
+			if(balance != OPENING_BALANCE + (deposited ? 1L : 0L)) {
+				throw new IllegalStateException("Recovered balance " + balance + " is wrong");
+			}
+			return store.getRecoveryMillis();
+		}
+	}
+
+	// brings a bank online from the mapped snapshot and times it and its first lookups
+	private static void mapped(Path file, int accounts) throws IOException {
+		System.gc();
+		long start = System.nanoTime();
+		Bank bank = new Bank();
+		bank.loadSnapshot(MappedAccountSnapshot.open(file));
+		double openMillis = (System.nanoTime() - start) / 1e6;
+		if(bank.getAccountCount() != accounts) {
+			throw new IllegalStateException("Mapped " + bank.getAccountCount() + " accounts, expected " + accounts);
+		}
+
+		int lookups = Math.min(accounts, 10_000);
+		SplittableRandom random = new SplittableRandom(42);
+		start = System.nanoTime();
+		for(int i = 0; i < lookups; i++) {
+			if(bank.getAccount(FIRST_ACCOUNT + random.nextInt(accounts)) == null) {
+				throw new IllegalStateException("Mapped account missing");
+			}
+		}
+		double lookupMicros = (System.nanoTime() - start) / 1e3 / lookups;
+		System.out.printf("%-16s %,10d accounts  %,10.1f ms to open  %,8.2f us per first lookup  %,8.1f MB%n",
+				"mapped snapshot", accounts, openMillis, lookupMicros, Files.size(file) / 1e6);
+	}
+
+	private static void report(String scenario, Path dir, int accounts, double millis) throws IOException {
+		long bytes = 0;
+		int count = 0;
+		try(Stream<Path> files = Files.list(dir)) {
+			for(Path file : (Iterable<Path>) files::iterator) {
+				bytes += Files.size(file);
+				count++;
+			}
+		}
+		System.out.printf("%-16s %,10d accounts  %,10.1f ms  %,12.0f accounts/s  %,8.1f MB in %d files%n",
+				scenario, accounts, millis, accounts / (millis / 1000.0), bytes / 1e6, count);
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * The BalanceSnapshotBenchmark class measures what point-in-time balance snapshots cost:
+ * how long Bank.snapshotBalances takes for a large bank, and how much a report thread
+ * taking snapshots back to back slows down deposits and withdrawals running at the same
+ * time.
+ *
+ * The journal is switched off so that only the balance updates are measured.
+ *
+ * Usage Example:
+ * java benchmark_classes.BalanceSnapshotBenchmark [accounts] [threads] [iterationMillis]
+ *
+ * Responsibilities:
+ * - Time snapshots and a total, per-type and top-10 report over them.
+ * - Time deposits and withdrawals with and without a report thread running.
+ */
+
+package benchmark_classes;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import data_classes.BalanceSnapshot;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionJournal;
+
+public class BalanceSnapshotBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1_000_000;
+	private static final long OPENING_BALANCE = 1_000_000_000_000L;
+	private static final int TIMED_SNAPSHOTS = 20;
+
+	public static void main(String[] args) throws InterruptedException {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long iterationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000L;
+		TransactionJournal.getInstance().setEnabled(false);
+		Bank bank = new Bank();
+		BankAccount[] pool = new BankAccount[accounts];
+		for(int i = 0; i < accounts; i++) {
+			pool[i] = BankAccount.restore(FIRST_ACCOUNT + i, i % 2 == 0 ? "Checking" : "Savings", "Bench", "Mark", 30, "1 Bench Street", OPENING_BALANCE, bank);
+		}
+
+		for(int i = 0; i < TIMED_SNAPSHOTS; i++) {
+			report(bank);
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < TIMED_SNAPSHOTS; i++) {
+			report(bank);
+		}
+		System.out.printf("snapshot + report of %,d accounts: %.2f ms%n%n", accounts, (System.nanoTime() - start) / 1e6 / TIMED_SNAPSHOTS);
+
+		BenchmarkRunner runner = new BenchmarkRunner(3, 5, iterationMillis);
+		System.out.println(BenchmarkRunner.Result.header());
+		runner.run("deposit+withdraw", threads, t -> i -> depositWithdraw(pool, i)).print();
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicLong snapshots = new AtomicLong();
+		Thread reporter = new Thread(() -> {
+			while(running.get()) {
+				report(bank);
+				snapshots.incrementAndGet();
+			}
+		}, "reporter");
+		reporter.setDaemon(true);
+		reporter.start();
+		long before = System.nanoTime();
+		runner.run("deposit+withdraw, reporting", threads, t -> i -> depositWithdraw(pool, i)).print();
+		double seconds = (System.nanoTime() - before) / 1e9;
+		running.set(false);
+		reporter.join();
+		System.out.printf("%nreport thread took %,.1f snapshots/s alongside%n", snapshots.get() / seconds);
+	}
+
+	private static long depositWithdraw(BankAccount[] pool, int i) {
+		BankAccount account = pool[ThreadLocalRandom.current().nextInt(pool.length)];
+		if((i & 1) == 0) {
+			account.depositCents(1L);
+		}
+		else {
+			account.withdrawCents(1L);
+		}
+		return 1;
+	}
+
+	private static long report(Bank bank) {
+		BalanceSnapshot snapshot = bank.snapshotBalances();
+		return snapshot.getTotalCents() + snapshot.getTotalsByType().size() + snapshot.getTopAccounts(10).size();
+	}
+}
@@ -0,0 +1,302 @@
+/**
+ * The BenchmarkRunner class is a small self-contained micro-benchmark harness used by the
+ * benchmark classes in this package. It follows the same shape as a JMH run: a number of
+ * warm-up iterations to let the JIT compile the code under test, followed by timed
+ * measurement iterations.
+ *
+ * Each benchmark is measured in three ways, on one or more threads at once:
+ * - Throughput: operations run back to back, reported in operations per second.
+ * - Latency: a separate pass times every operation individually and reports percentiles.
+ * - Allocation: bytes allocated per operation during the throughput pass, read from the
+ *   JVM's per-thread allocation counters (the same source as JMH's gc profiler).
+ *
+ * Every operation returns a long which the runner folds into a volatile sink, so the JIT
+ * cannot eliminate the work being measured as dead code.
+ *
+ * Usage Example:
+ * BenchmarkRunner runner = new BenchmarkRunner();
+ * runner.run("lookup", i -> registry.get(keys[i & mask]) == null ? 0 : 1).print();
+ * runner.run("deposit x4", 4, thread -> i -> { accounts[thread].depositCents(1); return 0; }).print();
+ *
+ * Responsibilities:
+ * - Warm up and time a benchmarked operation on one or more threads.
+ * - Report throughput, latency percentiles and allocation per operation.
+ */
+
+package benchmark_classes;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.IntFunction;
+
+public class BenchmarkRunner {
+
+	// default run shape
+	private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+	private static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+	private static final long DEFAULT_ITERATION_MILLIS = 1000L;
+
+	// the check interval keeps System.nanoTime calls out of the measured loop
+	private static final int BATCH = 1024;
+
+	// latency samples kept per thread
+	private static final int MAX_LATENCY_SAMPLES = 1 << 20;
+
+	/**
+	 * The operation being benchmarked. The iteration counter can be used to pick inputs.
+	 */
+	@FunctionalInterface
+	public interface Operation {
+		long run(int iteration);
+	}
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+
+	// sink for operation results, prevents dead-code elimination
+	private volatile long sink;
+
+
+	// constructors
+
+	/**
+	 * Creates a runner with the given run shape.
+	 *
+	 * @param warmupIterations the number of untimed warm-up iterations.
+	 * @param measurementIterations the number of timed iterations.
+	 * @param iterationMillis the length of each iteration in milliseconds.
+	 */
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1_000_000L;
+	}
+
+	public BenchmarkRunner() {
+		this(DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASUREMENT_ITERATIONS, DEFAULT_ITERATION_MILLIS);
+	}
+
+
+	// run methods
+
+	/**
+	 * Runs a benchmark on the calling thread.
+	 *
+	 * @param name the name reported for the benchmark.
+	 * @param operation the operation to measure.
+	 * @return the measured result.
+	 */
+	public Result run(String name, Operation operation) {
+		return run(name, 1, thread -> operation);
+	}
+
+	/**
+	 * Runs a benchmark on several threads at once. Each thread gets its own operation
+	 * from the factory, so per-thread state (e.g. an account owned by that thread) can be
+	 * captured without sharing.
+	 *
+	 * @param name the name reported for the benchmark.
+	 * @param threads the number of threads to run concurrently.
+	 * @param factory creates the operation for each thread index.
+	 * @return the measured result, aggregated across threads.
+	 */
+	public Result run(String name, int threads, IntFunction<Operation> factory) {
+		ThreadResult[] results = new ThreadResult[threads];
+		CyclicBarrier barrier = new CyclicBarrier(threads);
+		Thread[] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++) {
+			final int index = t;
+			final Operation operation = factory.apply(t);
+			workers[t] = new Thread(() -> results[index] = measure(operation, barrier), name + "-" + t);
+			workers[t].start();
+		}
+		for(Thread worker : workers) {
+			try {
+				worker.join();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Benchmark interrupted: " + name, e);
+			}
+		}
+		return new Result(name, threads, results);
+	}
+
+	private ThreadResult measure(Operation operation, CyclicBarrier barrier) {
+		ThreadResult result = new ThreadResult();
+		await(barrier);
+		for(int i = 0; i < warmupIterations; i++) {
+			iterate(operation);
+		}
+
+		await(barrier);
+		long allocatedBefore = allocatedBytes();
+		for(int i = 0; i < measurementIterations; i++) {
+			long start = System.nanoTime();
+			result.operations += iterate(operation);
+			result.nanos += System.nanoTime() - start;
+		}
+		result.allocatedBytes = allocatedBytes() - allocatedBefore;
+
+		await(barrier);
+		result.latencies = sampleLatencies(operation);
+		return result;
+	}
+
+	private long iterate(Operation operation) {
+		long deadline = System.nanoTime() + iterationNanos;
+		long acc = 0;
+		int count = 0;
+		do {
+			for(int i = 0; i < BATCH; i++) {
+				acc += operation.run(count++);
+			}
+		} while(System.nanoTime() < deadline);
+		sink += acc;
+		return count;
+	}
+
+	// times operations one at a time for a single iteration
+	private long[] sampleLatencies(Operation operation) {
+		long[] samples = new long[MAX_LATENCY_SAMPLES];
+		long deadline = System.nanoTime() + iterationNanos;
+		long acc = 0;
+		int count = 0;
+		long now = System.nanoTime();
+		while(count < samples.length && now < deadline) {
+			acc += operation.run(count);
+			long end = System.nanoTime();
+			samples[count++] = end - now;
+			now = end;
+		}
+		sink += acc;
+		return Arrays.copyOf(samples, count);
+	}
+
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		}
+		catch(Exception e) {
+			throw new IllegalStateException("Benchmark threads failed to start together.", e);
+		}
+	}
+
+	// bytes allocated by the current thread, or -1 if the JVM does not report it
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1L;
+	}
+
+
+	// measurements taken by one thread
+	private static class ThreadResult {
+		long operations;
+		long nanos;
+		long allocatedBytes;
+		long[] latencies;
+	}
+
+
+	/**
+	 * The outcome of one benchmark run.
+	 */
+	public static class Result {
+
+		private final String name;
+		private final int threads;
+		private final double opsPerSecond;
+		private final double bytesPerOp;
+		private final long[] latencies;
+
+		Result(String name, int threads, ThreadResult[] results) {
+			this.name = name;
+			this.threads = threads;
+			double throughput = 0.0;
+			long operations = 0;
+			long allocated = 0;
+			int samples = 0;
+			for(ThreadResult r : results) {
+				throughput += r.operations * 1e9 / r.nanos;
+				operations += r.operations;
+				allocated = (allocated < 0 || r.allocatedBytes < 0) ? -1 : allocated + r.allocatedBytes;
+				samples += r.latencies.length;
+			}
+			this.opsPerSecond = throughput;
+			this.bytesPerOp = allocated < 0 ? Double.NaN : (double) allocated / operations;
+			this.latencies = new long[samples];
+			int offset = 0;
+			for(ThreadResult r : results) {
+				System.arraycopy(r.latencies, 0, latencies, offset, r.latencies.length);
+				offset += r.latencies.length;
+			}
+			Arrays.sort(latencies);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		/**
+		 * Gets the measured throughput.
+		 *
+		 * @return operations per second, summed across all threads.
+		 */
+		public double getOpsPerSecond() {
+			return opsPerSecond;
+		}
+
+		/**
+		 * Gets the bytes allocated per operation during the throughput pass.
+		 *
+		 * @return the allocation per operation, or NaN if the JVM does not report it.
+		 */
+		public double getBytesPerOp() {
+			return bytesPerOp;
+		}
+
+		/**
+		 * Gets a latency percentile from the latency pass.
+		 *
+		 * @param percentile the percentile, between 0 and 100.
+		 * @return the latency in nanoseconds, or 0 if no samples were taken.
+		 */
+		public long getLatencyPercentile(double percentile) {
+			if(latencies.length == 0) {
+				return 0L;
+			}
+			int index = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+		}
+
+		public void print() {
+			System.out.println(this);
+		}
+
+		/**
+		 * Gets the header line matching the columns of toString.
+		 *
+		 * @return the column header.
+		 */
+		public static String header() {
+			return String.format("%-48s %3s %16s %8s %8s %8s %9s %10s",
+					"Benchmark", "thr", "ops/s", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "B/op");
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-48s %3d %,16.0f %8d %8d %8d %9d %10.1f",
+					name, threads, opsPerSecond, getLatencyPercentile(50), getLatencyPercentile(99),
+					getLatencyPercentile(99.9), getLatencyPercentile(100), bytesPerOp);
+		}
+	}
+}
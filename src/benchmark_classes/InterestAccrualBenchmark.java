@@ -0,0 +1,97 @@
+/**
+ * The InterestAccrualBenchmark class measures InterestAccrual on a large bank: how long
+ * one run takes to credit every savings account, with the journal off and on, and how
+ * deposits fare while runs are being made back to back, again with the journal off and
+ * on: with it on, deposits and interest compete for the journal's ring as well as for
+ * the accounts.
+ *
+ * Half the accounts are savings accounts. The runs are timed on the common fork-join
+ * pool, so they use every available processor.
+ *
+ * Usage Example:
+ * java -Xmx4g benchmark_classes.InterestAccrualBenchmark [accounts] [threads] [iterationMillis]
+ *
+ * Responsibilities:
+ * - Time accrual runs over every savings account, with and without journaling.
+ * - Time deposits, and their latency, with and without accrual running alongside, with
+ *   and without journaling.
+ */
+
+package benchmark_classes;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.InterestAccrual;
+import data_classes.TransactionJournal;
+
+public class InterestAccrualBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1_000_000;
+	private static final long OPENING_BALANCE = 1_000_000_00L;
+	private static final int TIMED_RUNS = 5;
+
+	public static void main(String[] args) throws InterruptedException {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long iterationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000L;
+		TransactionJournal journal = TransactionJournal.getInstance();
+		journal.setEnabled(false);
+		Bank bank = new Bank();
+		BankAccount[] pool = new BankAccount[accounts];
+		for(int i = 0; i < accounts; i++) {
+			pool[i] = BankAccount.restore(FIRST_ACCOUNT + i, i % 2 == 0 ? "Checking" : "Savings", "Bench", "Mark", 30, "1 Bench Street", OPENING_BALANCE, bank);
+		}
+		InterestAccrual interest = new InterestAccrual(bank, 250, 365);
+
+		for(boolean logging : new boolean[] { false, true }) {
+			journal.setEnabled(logging);
+			interest.accrue();
+			long start = System.nanoTime();
+			long credited = 0L;
+			for(int i = 0; i < TIMED_RUNS; i++) {
+				credited += interest.accrue().getAccountsCredited();
+			}
+			journal.flush();
+			double millis = (System.nanoTime() - start) / 1e6 / TIMED_RUNS;
+			System.out.printf("accrue over %,d accounts [%s]: %,.1f ms a run, %,d savings accounts credited, %,.0f accounts/s%n",
+					accounts, logging ? "journal" : "no journal", millis, credited / TIMED_RUNS, credited / TIMED_RUNS / millis * 1000.0);
+		}
+		System.out.println();
+
+		BenchmarkRunner runner = new BenchmarkRunner(3, 5, iterationMillis);
+		System.out.println(BenchmarkRunner.Result.header());
+		for(boolean logging : new boolean[] { false, true }) {
+			journal.setEnabled(logging);
+			String suffix = logging ? " [journal]" : "";
+			runner.run("deposit" + suffix, threads, t -> i -> deposit(pool)).print();
+
+			AtomicBoolean running = new AtomicBoolean(true);
+			AtomicLong runs = new AtomicLong();
+			Thread accruer = new Thread(() -> {
+				while(running.get()) {
+					interest.accrue();
+					runs.incrementAndGet();
+				}
+			}, "accruer");
+			accruer.setDaemon(true);
+			accruer.start();
+			long before = System.nanoTime();
+			runner.run("deposit, accruing" + suffix, threads, t -> i -> deposit(pool)).print();
+			double seconds = (System.nanoTime() - before) / 1e9;
+			running.set(false);
+			accruer.join();
+			journal.flush();
+			System.out.printf("  accrual thread made %,.2f runs/s alongside%n", runs.get() / seconds);
+		}
+		journal.setEnabled(false);
+	}
+
+	private static long deposit(BankAccount[] pool) {
+		pool[ThreadLocalRandom.current().nextInt(pool.length)].depositCents(1L);
+		return 1;
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * The LoadGenerator class drives a BankServer with many concurrent HTTP clients and reports
+ * the request rate, latency percentiles and responses by status code.
+ *
+ * Without a URL it starts a server in-process on a free localhost port. It then opens a set
+ * of accounts through the server and runs the clients for the given number of seconds.
+ * Each client sends one request at a time, picking balance queries, deposits,
+ * withdrawals and transfers between random accounts. Clients run on virtual threads
+ * when the JVM provides them and on platform threads otherwise.
+ *
+ * Usage Example:
+ * java benchmark_classes.LoadGenerator [url|-] [clients] [seconds]
+ * java benchmark_classes.LoadGenerator http://localhost:8080 2000 30
+ *
+ * Responsibilities:
+ * - Open accounts and generate a mixed request load from many clients.
+ * - Report requests per second, latency percentiles and status code counts.
+ */
+
+package benchmark_classes;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import data_classes.Bank;
+import data_classes.TransactionJournal;
+import driver_classes.BankServer;
+
+public class LoadGenerator {
+
+	private static final int FIRST_ACCOUNT = 1000;
+	private static final int ACCOUNTS = 1000;
+	private static final int MAX_SAMPLES_PER_CLIENT = 1 << 16;
+
+	private final HttpClient client;
+	private final String base;
+
+	private LoadGenerator(String base) {
+		this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+		this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+	}
+
+	// results of one client
+	private static final class ClientResult {
+		final long[] latencies = new long[MAX_SAMPLES_PER_CLIENT];
+		final Map<Integer, Long> statuses = new TreeMap<>();
+		int samples;
+		long requests;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : "-";
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		BankServer server = null;
+		if(url.equals("-")) {
+			TransactionJournal.getInstance().setEnabled(false);
+			server = BankServer.start(new Bank(), new InetSocketAddress("localhost", 0));
+			url = "http://localhost:" + server.getAddress().getPort();
+			System.out.println("Started in-process server on " + url + (server.isUsingVirtualThreads() ? " (virtual threads)" : " (thread pool)"));
+		}
+		try {
+			new LoadGenerator(url).run(clients, seconds);
+		}
+		finally {
+			if(server != null) {
+				server.close();
+			}
+		}
+	}
+
+	private void run(int clients, int seconds) throws Exception {
+		for(int i = 0; i < ACCOUNTS; i++) {
+			int status = post("/accounts", "accNumber=" + (FIRST_ACCOUNT + i) + "&accType=Checking&firstName=Load"
+					+ "&lastName=Client&age=30&address=1+Load+Street&balance=1000000.00");
+			if(status != 201 && status != 400) {
+				throw new IllegalStateException("Opening account " + (FIRST_ACCOUNT + i) + " failed with status " + status);
+			}
+		}
+
+		ClientResult[] results = new ClientResult[clients];
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ExecutorService executor = newExecutor();
+		long start = System.nanoTime();
+		for(int c = 0; c < clients; c++) {
+			int index = c;
+			results[c] = new ClientResult();
+			executor.execute(() -> runClient(results[index], index, deadline));
+		}
+		executor.shutdown();
+		executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		report(clients, elapsed, results);
+	}
+
+	private void runClient(ClientResult result, int seed, long deadline) {
+		SplittableRandom random = new SplittableRandom(seed);
+		while(System.nanoTime() < deadline) {
+			int account = FIRST_ACCOUNT + random.nextInt(ACCOUNTS);
+			int pick = random.nextInt(100);
+			long begin = System.nanoTime();
+			int status;
+			try {
+				if(pick < 40) {
+					status = get("/accounts/" + account);
+				}
+				else if(pick < 65) {
+					status = post("/accounts/" + account + "/deposit", "amount=1.00");
+				}
+				else if(pick < 85) {
+					status = post("/accounts/" + account + "/withdraw", "amount=1.00");
+				}
+				else {
+					int other = FIRST_ACCOUNT + (account - FIRST_ACCOUNT + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+					status = post("/transfers", "from=" + account + "&to=" + other + "&amount=1.00");
+				}
+			}
+			catch(IOException e) {
+				status = -1;
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			long latency = System.nanoTime() - begin;
+			if(result.samples < MAX_SAMPLES_PER_CLIENT) {
+				result.latencies[result.samples++] = latency;
+			}
+			result.requests++;
+			result.statuses.merge(status, 1L, Long::sum);
+		}
+	}
+
+	private int get(String path) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+		return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private int post(String path, String form) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+				.header("Content-Type", "application/x-www-form-urlencoded")
+				.POST(HttpRequest.BodyPublishers.ofString(form))
+				.build();
+		return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	// virtual threads where available, so thousands of clients cost little
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	private static void report(int clients, double seconds, ClientResult[] results) {
+		long requests = 0;
+		int samples = 0;
+		Map<Integer, Long> statuses = new TreeMap<>();
+		for(ClientResult result : results) {
+			requests += result.requests;
+			samples += result.samples;
+			result.statuses.forEach((status, count) -> statuses.merge(status, count, Long::sum));
+		}
+		long[] all = new long[samples];
+		int next = 0;
+		for(ClientResult result : results) {
+			System.arraycopy(result.latencies, 0, all, next, result.samples);
+			next += result.samples;
+		}
+		Arrays.sort(all);
+		System.out.printf("%,d clients  %,d requests in %.1f s  %,.0f requests/s%n", clients, requests, seconds, requests / seconds);
+		System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+				percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 1.0));
+		System.out.println("responses by status " + statuses + " (-1 = connection error)");
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		if(sorted.length == 0) {
+			return 0.0;
+		}
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * The MoneyBenchmark class compares the balance arithmetic BankAccount used to do, with
+ * boxed Double parameters and return values, against the primitive long cents arithmetic
+ * it does now.
+ *
+ * The legacy path is reproduced here exactly as it was: amounts are validated through a
+ * Double parameter, added to a double balance and read back through a Double getter. The
+ * cents path validates, adds and reads primitive longs. After the throughput figures the
+ * benchmark prints the drift each representation accumulates over ten million ten-cent
+ * deposits.
+ *
+ * Usage Example:
+ * java benchmark_classes.MoneyBenchmark
+ *
+ * Responsibilities:
+ * - Measure deposit arithmetic throughput for both representations.
+ * - Show the rounding drift of repeated double arithmetic.
+ */
+
+package benchmark_classes;
+
+import data_classes.Money;
+
+public class MoneyBenchmark {
+
+	private static final int DRIFT_DEPOSITS = 10_000_000;
+
+	// legacy representation, as BankAccount held it before switching to cents
+	private static class DoubleBalance {
+		private double balance;
+
+		private static void validateAmount(Double amount) {
+			if(amount < 0.0) {
+				throw new IllegalArgumentException("Invalid amount: " + amount);
+			}
+		}
+
+		void deposit(double amount) {
+			validateAmount(amount);
+			balance += amount;
+		}
+
+		Double getBalance() {
+			return balance;
+		}
+	}
+
+	// current representation
+	private static class CentsBalance {
+		private long balance;
+
+		private static void validateAmount(long amountCents) {
+			if(amountCents < 0L) {
+				throw new IllegalArgumentException("Invalid amount: " + amountCents);
+			}
+		}
+
+		void deposit(long amountCents) {
+			validateAmount(amountCents);
+			balance += amountCents;
+		}
+
+		long getBalance() {
+			return balance;
+		}
+	}
+
+	public static void main(String[] args) {
+		BenchmarkRunner runner = new BenchmarkRunner();
+
+		DoubleBalance legacy = new DoubleBalance();
+		runner.run("double deposit + Double getBalance", i -> {
+			legacy.deposit(0.10 + (i & 7));
+			return legacy.getBalance().longValue();
+		}).print();
+
+		CentsBalance cents = new CentsBalance();
+		runner.run("long cents deposit + getBalance", i -> {
+			cents.deposit(10L + (i & 7) * Money.CENTS_PER_DOLLAR);
+			return cents.getBalance();
+		}).print();
+
+		DoubleBalance doubleDrift = new DoubleBalance();
+		CentsBalance centsDrift = new CentsBalance();
+		for(int i = 0; i < DRIFT_DEPOSITS; i++) {
+			doubleDrift.deposit(0.10);
+			centsDrift.deposit(10L);
+		}
+		System.out.printf("%nAfter %,d deposits of $0.10:%n", DRIFT_DEPOSITS);
+		System.out.printf("  double balance: %.6f%n", doubleDrift.getBalance());
+		System.out.printf("  cents balance:  %s%n", Money.format(centsDrift.getBalance()));
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * The OptimisticBenchmark class compares the two ways a Bank can make transfers safe:
+ * locking the accounts' stripes, and optimistic compare-and-set on each account's version
+ * stamp with retry on conflict.
+ *
+ * Transfers run between random pairs of a large pool of accounts (low contention, where
+ * optimistic transfers should rarely retry) and between random pairs of a handful of hot
+ * accounts (high contention, where retries pile up). For optimistic runs the conflicts and
+ * retries counted by the bank during the run are printed next to the throughput. The
+ * journal is switched off so that only the commit protocol is measured.
+ *
+ * Usage Example:
+ * java benchmark_classes.OptimisticBenchmark [threads] [iterationMillis]
+ *
+ * Responsibilities:
+ * - Open a locking and an optimistic bank with the same accounts.
+ * - Time transfers under low and high contention in both banks.
+ * - Print throughput, latency and the optimistic conflict and retry counts.
+ */
+
+package benchmark_classes;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionJournal;
+
+public class OptimisticBenchmark {
+
+	private static final int POOL_FIRST = 1000;
+	private static final int POOL_SIZE = 10_000;
+	private static final int HOT_SIZE = 4;
+
+	// large enough that no transfer is ever declined
+	private static final long OPENING_BALANCE = 1_000_000_000_000L;
+
+	private final BenchmarkRunner runner;
+
+	private OptimisticBenchmark(BenchmarkRunner runner) {
+		this.runner = runner;
+	}
+
+	private void run(boolean optimistic, int threads) {
+		Bank bank = new Bank();
+		bank.setOptimistic(optimistic);
+		BankAccount[] pool = new BankAccount[POOL_SIZE];
+		for(int i = 0; i < POOL_SIZE; i++) {
+			pool[i] = BankAccount.restore(POOL_FIRST + i, "Checking", "Bench", "Mark", 30, "1 Bench Street", OPENING_BALANCE, bank);
+		}
+		String mode = optimistic ? "optimistic" : "locking";
+		for(int size : new int[] { POOL_SIZE, HOT_SIZE }) {
+			String name = mode + " transfers, " + size + " accounts";
+			for(int n : threads == 1 ? new int[] { 1 } : new int[] { 1, threads }) {
+				long conflicts = bank.getOptimisticConflicts();
+				long retries = bank.getOptimisticRetries();
+				runner.run(name, n, t -> i -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					pool[random.nextInt(size)].transferCents(1L, pool[random.nextInt(size)]);
+					return 1;
+				}).print();
+				if(optimistic) {
+					System.out.printf("    conflicts %,d  retries %,d%n",
+							bank.getOptimisticConflicts() - conflicts, bank.getOptimisticRetries() - retries);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs every scenario and prints the results table.
+	 *
+	 * @param args optional thread count for the multi-threaded runs (defaults to the number
+	 * 		  of available processors, at least 4) and iteration length in milliseconds.
+	 */
+	public static void main(String[] args) {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+		long iterationMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000L;
+
+		TransactionJournal.getInstance().setEnabled(false);
+		OptimisticBenchmark benchmark = new OptimisticBenchmark(new BenchmarkRunner(3, 5, iterationMillis));
+		System.out.println(BenchmarkRunner.Result.header());
+		benchmark.run(false, threads);
+		benchmark.run(true, threads);
+	}
+}
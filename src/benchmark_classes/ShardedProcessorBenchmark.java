@@ -0,0 +1,110 @@
+/**
+ * The ShardedProcessorBenchmark class measures deposit and withdraw throughput of the
+ * ShardedTransactionProcessor for a growing number of shards, next to the lock-based
+ * BankAccount methods on the same number of threads.
+ *
+ * Each producer thread submits deposits and withdrawals on random accounts and keeps a
+ * window of transactions in flight, waiting on the oldest before submitting more. The
+ * journal is switched off so that its single writer thread does not cap the result.
+ * Scaling with shards is only visible on a machine with at least as many cores as shards.
+ *
+ * Usage Example:
+ * java benchmark_classes.ShardedProcessorBenchmark [accounts]
+ *
+ * Responsibilities:
+ * - Time lock-based deposits and withdrawals on one thread per core.
+ * - Time the sharded processor with one, two and one-per-core shards.
+ * - Print transactions per second for each run.
+ */
+
+package benchmark_classes;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.ShardedTransactionProcessor;
+import data_classes.TransactionJournal;
+
+public class ShardedProcessorBenchmark {
+
+	private static final int FIRST_ACCOUNT = 1_000_000;
+	private static final long OPENING_BALANCE = 1_000_000_000L;
+	private static final int OPERATIONS_PER_THREAD = 2_000_000;
+	private static final int WINDOW = 1024;
+
+	public static void main(String[] args) throws InterruptedException {
+		int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		TransactionJournal.getInstance().setEnabled(false);
+		Bank bank = new Bank();
+		for(int i = 0; i < accounts; i++) {
+			BankAccount.restore(FIRST_ACCOUNT + i, "Checking", "Bench", "Mark", 30, "1 Bench Street", OPENING_BALANCE, bank);
+		}
+
+		report("locks", cores, run(cores, seed -> {
+			SplittableRandom random = new SplittableRandom(seed);
+			for(int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+				BankAccount account = bank.getAccount(FIRST_ACCOUNT + random.nextInt(accounts));
+				try {
+					if((i & 1) == 0) {
+						account.depositCents(1L);
+					}
+					else {
+						account.withdrawCents(1L);
+					}
+				}
+				catch(IllegalWithdrawException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}));
+		for(int shards : cores > 2 ? new int[] { 1, 2, cores } : new int[] { 1, 2 }) {
+			try(ShardedTransactionProcessor processor = new ShardedTransactionProcessor(bank, shards)) {
+				report("sharded x" + shards, cores, run(cores, seed -> {
+					SplittableRandom random = new SplittableRandom(seed);
+					ArrayDeque<CompletableFuture<Long>> window = new ArrayDeque<>(WINDOW);
+					for(int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+						if(window.size() == WINDOW) {
+							window.poll().join();
+						}
+						int account = FIRST_ACCOUNT + random.nextInt(accounts);
+						window.add((i & 1) == 0 ? processor.deposit(account, 1L) : processor.withdraw(account, 1L));
+					}
+					window.forEach(CompletableFuture::join);
+				}));
+			}
+		}
+	}
+
+	private interface Producer {
+		void run(long seed);
+	}
+
+	// runs the producer on the given number of threads and returns the elapsed seconds
+	private static double run(int threads, Producer producer) throws InterruptedException {
+		for(int warmup = 0; warmup < 2; warmup++) {
+			producer.run(warmup);
+		}
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for(int t = 0; t < threads; t++) {
+			long seed = 100 + t;
+			workers[t] = new Thread(() -> producer.run(seed), "producer-" + t);
+			workers[t].start();
+		}
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+	private static void report(String scenario, int threads, double seconds) {
+		long operations = (long) threads * OPERATIONS_PER_THREAD;
+		System.out.printf("%-14s %2d producers  %,12d transactions  %,10.1f ms  %,14.0f transactions/s%n",
+				scenario, threads, operations, seconds * 1000, operations / seconds);
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * The TransactionBenchmark class measures the account transaction hot path: deposits,
+ * withdrawals and transfers on BankAccount, declined withdrawals and transfers through
+ * both the throwing and the result-code methods, deposits with a new or retried
+ * transaction id, adding and looking up accounts in a Bank, and recording entries
+ * through DataLogger, reading the bank's total balance, and producing account
+ * statements from memory and from the journal.
+ *
+ * Every scenario runs single-threaded and on several threads, once with the transaction
+ * journal recording and once with it switched off, then both again with TransactionMetrics
+ * enabled to show what the instrumentation costs, and reports throughput, latency
+ * percentiles and bytes allocated per operation. Multi-threaded deposits and withdrawals
+ * run against one account per thread (no contention on the account) and transfers move
+ * money between random pairs drawn from a shared pool of accounts.
+ *
+ * Usage Example:
+ * java benchmark_classes.TransactionBenchmark [threads] [iterationMillis]
+ *
+ * Responsibilities:
+ * - Open the accounts used by each scenario.
+ * - Run each scenario with and without journaling and metrics, single and multi-threaded.
+ * - Print a results table so hot-path regressions are visible.
+ */
+
+package benchmark_classes;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.DataLogger;
+import data_classes.TransactionJournal;
+import data_classes.TransactionMetrics;
+import data_classes.TransactionType;
+
+public class TransactionBenchmark {
+
+	// account number ranges used by the scenarios
+	private static final int POOL_FIRST = 1000;
+	private static final int POOL_SIZE = 1000;
+	private static final int OWN_FIRST = 3000;
+	private static final int CHURN_FIRST = 4000;
+	private static final int LOGGER_FIRST = 5000;
+
+	// large enough that no scenario ever runs an account dry
+	private static final long OPENING_BALANCE = 1_000_000_000_000L;
+	// more than any account ever holds, so every attempt is declined
+	private static final long DECLINED_AMOUNT = 1_000_000_000_000_000L;
+
+	private final Bank bank = new Bank();
+	private final BankAccount[] pool = new BankAccount[POOL_SIZE];
+	private final BankAccount[] own;
+	private final BankAccount[] churn;
+	private final BenchmarkRunner runner;
+
+
+	// constructor
+	private TransactionBenchmark(int threads, BenchmarkRunner runner) {
+		this.runner = runner;
+		for(int i = 0; i < POOL_SIZE; i++) {
+			pool[i] = open(POOL_FIRST + i);
+		}
+		own = new BankAccount[threads];
+		churn = new BankAccount[threads];
+		for(int t = 0; t < threads; t++) {
+			own[t] = open(OWN_FIRST + t);
+			churn[t] = open(CHURN_FIRST + t);
+		}
+	}
+
+	private BankAccount open(int accNumber) {
+		return BankAccount.ofCents(accNumber, "Checking", "Bench", "Mark", 30, "1 Bench Street", OPENING_BALANCE, bank);
+	}
+
+
+	// scenarios
+
+	private void runAll(int threads, boolean logging, boolean metrics) {
+		TransactionJournal.getInstance().setEnabled(logging);
+		TransactionMetrics.getInstance().setEnabled(metrics);
+		String suffix = (logging ? " [journal" : " [no journal") + (metrics ? ", metrics]" : "]");
+		for(int n : threads == 1 ? new int[] { 1 } : new int[] { 1, threads }) {
+			report(runner.run("depositAmount" + suffix, n, t -> i -> {
+				own[t].depositCents(1L);
+				return 1;
+			}));
+			report(runner.run("withdrawAmount" + suffix, n, t -> i -> {
+				own[t].withdrawCents(1L);
+				return 1;
+			}));
+			report(runner.run("transferAmount" + suffix, n, t -> i -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				pool[random.nextInt(POOL_SIZE)].transferCents(1L, pool[random.nextInt(POOL_SIZE)]);
+				return 1;
+			}));
+			report(runner.run("withdrawCents, declined" + suffix, n, t -> i -> {
+				try {
+					own[t].withdrawCents(DECLINED_AMOUNT);
+					return 1;
+				}
+				catch(IllegalWithdrawException e) {
+					return 0;
+				}
+			}));
+			report(runner.run("tryWithdraw, declined" + suffix, n, t -> i -> own[t].tryWithdraw(DECLINED_AMOUNT)));
+			report(runner.run("transferCents, declined" + suffix, n, t -> i -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				try {
+					pool[random.nextInt(POOL_SIZE)].transferCents(DECLINED_AMOUNT, pool[random.nextInt(POOL_SIZE)]);
+					return 1;
+				}
+				catch(IllegalWithdrawException e) {
+					return 0;
+				}
+			}));
+			report(runner.run("tryTransfer, declined" + suffix, n, t -> i -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				return pool[random.nextInt(POOL_SIZE)].tryTransfer(DECLINED_AMOUNT, pool[random.nextInt(POOL_SIZE)]);
+			}));
+			report(runner.run("depositOnce, new id" + suffix, n, t -> {
+				long[] txId = { ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE / 2) };
+				return i -> own[t].depositOnce(++txId[0], 1L);
+			}));
+			report(runner.run("depositOnce, retried id" + suffix, n, t -> {
+				long txId = ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE);
+				return i -> own[t].depositOnce(txId, 1L);
+			}));
+			if(logging) {
+				report(runner.run("DataLogger.logTransaction" + suffix, n, t -> {
+					DataLogger logger = new DataLogger(LOGGER_FIRST + t);
+					return i -> {
+						logger.logTransaction(TransactionType.DEPOSIT, 1L, i);
+						return 1;
+					};
+				}));
+				report(runner.run("getStatement, last 10" + suffix, n, t -> i -> own[t].getStatement(10).size()));
+				report(runner.run("getStatement, last 100" + suffix, n, t -> i -> own[t].getStatement(100).size()));
+			}
+		}
+	}
+
+	private void runBankScenarios(int threads) {
+		for(int n : threads == 1 ? new int[] { 1 } : new int[] { 1, threads }) {
+			report(runner.run("Bank.removeAccount+addAccount", n, t -> i -> {
+				bank.removeAccount(churn[t]);
+				bank.addAccount(churn[t]);
+				return 1;
+			}));
+			report(runner.run("Bank.getAccount", n, t -> i -> {
+				BankAccount found = bank.getAccount(POOL_FIRST + (i & 1023));
+				return found == null ? 0 : 1;
+			}));
+			report(runner.run("Bank.getTotalBalanceCents", n, t -> i -> bank.getTotalBalanceCents()));
+			report(runner.run("total by scanning accounts", n, t -> i -> {
+				long[] total = new long[1];
+				bank.forEachAccount(account -> total[0] += account.getBalanceCents());
+				return total[0];
+			}));
+		}
+	}
+
+	private void report(BenchmarkRunner.Result result) {
+		result.print();
+	}
+
+
+	/**
+	 * Runs every scenario and prints the results table.
+	 *
+	 * @param args optional thread count for the multi-threaded runs (defaults to the number
+	 * 		  of available processors) and iteration length in milliseconds.
+	 */
+	public static void main(String[] args) {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		long iterationMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000L;
+
+		TransactionBenchmark benchmark = new TransactionBenchmark(threads, new BenchmarkRunner(3, 5, iterationMillis));
+		System.out.println(BenchmarkRunner.Result.header());
+		benchmark.runAll(threads, false, false);
+		benchmark.runAll(threads, true, false);
+		benchmark.runAll(threads, false, true);
+		benchmark.runAll(threads, true, true);
+		TransactionMetrics.getInstance().setEnabled(false);
+		benchmark.runBankScenarios(threads);
+		System.out.println();
+		System.out.println(TransactionMetrics.getInstance());
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * The TransferBatchBenchmark class compares paying many transfers one
+ * BankAccount.transferCents call at a time against applying them as a TransferBatch, by
+ * default for a payroll of ten thousand employees.
+ *
+ * Three payroll runs are timed, each paying every employee, listed by account number,
+ * from one employer account: a loop that looks up each employee and calls transferCents,
+ * a batch with one group per employee (each payment succeeds or fails on its own) and a
+ * batch that is a single all-or-nothing group. A fourth run applies the same number of
+ * random transfers among a hundred accounts as one batch, to show netting of transfers
+ * that flow both ways. Each run is repeated after a warm-up and the journal is enabled,
+ * so the cost of journaling one record per account rather than two per transfer is
+ * included.
+ *
+ * Usage Example:
+ * java benchmark_classes.TransferBatchBenchmark [employees]
+ *
+ * Responsibilities:
+ * - Time payroll fan-out as single transfers and as batches.
+ * - Time netting of random transfers among a small set of accounts.
+ * - Print runs per second and transfers per second for each approach.
+ */
+
+package benchmark_classes;
+
+import java.util.SplittableRandom;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionJournal;
+import data_classes.TransferBatch;
+
+public class TransferBatchBenchmark {
+
+	private static final int EMPLOYER = 1000;
+	private static final int FIRST_EMPLOYEE = 100_000;
+	private static final int TRADERS = 100;
+	private static final long SALARY = 250_000L;
+	private static final long OPENING_BALANCE = 1_000_000_000_000_000L;
+
+	private static final int WARMUP_RUNS = 200;
+	private static final int MEASURED_RUNS = 100;
+
+	private interface Run {
+		void run() throws IllegalWithdrawException;
+	}
+
+	public static void main(String[] args) throws IllegalWithdrawException {
+		int employees = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		TransactionJournal.getInstance().setEnabled(true);
+		Bank bank = new Bank();
+		BankAccount.ofCents(EMPLOYER, "Checking", "Bench", "Corp", 30, "1 Bench Street", OPENING_BALANCE, bank);
+		for(int i = 0; i < employees; i++) {
+			BankAccount.restore(FIRST_EMPLOYEE + i, "Checking", "Bench", "Mark", 30, "1 Bench Street", 0L, bank);
+		}
+		for(int i = 0; i < TRADERS; i++) {
+			BankAccount.restore(EMPLOYER + 1 + i, "Checking", "Bench", "Trader", 30, "1 Bench Street", OPENING_BALANCE, bank);
+		}
+
+		time("transferCents loop", employees, () -> {
+			BankAccount payer = bank.getAccount(EMPLOYER);
+			for(int i = 0; i < employees; i++) {
+				payer.transferCents(SALARY, bank.getAccount(FIRST_EMPLOYEE + i));
+			}
+		});
+		time("batch, group each", employees, () -> {
+			TransferBatch payroll = new TransferBatch();
+			for(int i = 0; i < employees; i++) {
+				payroll.add(EMPLOYER, FIRST_EMPLOYEE + i, SALARY).newGroup();
+			}
+			bank.applyTransfers(payroll);
+		});
+		time("batch, one group", employees, () -> {
+			TransferBatch payroll = new TransferBatch();
+			for(int i = 0; i < employees; i++) {
+				payroll.add(EMPLOYER, FIRST_EMPLOYEE + i, SALARY);
+			}
+			bank.applyTransfers(payroll);
+		});
+		SplittableRandom random = new SplittableRandom(42);
+		time("batch, netting", employees, () -> {
+			TransferBatch trades = new TransferBatch();
+			for(int i = 0; i < employees; i++) {
+				int from = EMPLOYER + 1 + random.nextInt(TRADERS);
+				int to = EMPLOYER + 1 + (from - EMPLOYER + random.nextInt(TRADERS - 1)) % TRADERS;
+				trades.add(from, to, 1 + random.nextInt(10_000)).newGroup();
+			}
+			bank.applyTransfers(trades);
+		});
+		TransactionJournal.getInstance().close();
+	}
+
+	private static void time(String scenario, int transfers, Run run) throws IllegalWithdrawException {
+		for(int i = 0; i < WARMUP_RUNS; i++) {
+			run.run();
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < MEASURED_RUNS; i++) {
+			run.run();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-20s %,8d transfers  %,10.2f ms per run  %,14.0f transfers/s%n",
+				scenario, transfers, seconds * 1000 / MEASURED_RUNS, transfers * (double) MEASURED_RUNS / seconds);
+	}
+}
@@ -0,0 +1,537 @@
+/**
+ * The AccountImporter class opens accounts in bulk from a CSV or binary account file,
+ * as an alternative to opening them one at a time through Bank.openNewAccount.
+ *
+ * The file is read on the calling thread in chunks of rows. Each chunk is parsed and
+ * validated on a pool of worker threads with the same checks a new account goes through,
+ * so validation runs on every core while the next chunk is being read. Finished chunks are
+ * taken back in file order and their accounts are added to the bank one batch at a time,
+ * which also catches account numbers that are already taken. Only a bounded number of
+ * chunks is in flight at once, so files of any size are imported in constant memory.
+ *
+ * Rows that fail are not imported. Each one is counted and, if an error report file is
+ * given, written to it as "line,reason" (the record number for binary files).
+ *
+ * CSV layout, one account per line; fields may be double-quoted, and a first line that
+ * starts with "accNumber" is skipped as a header:
+ * accNumber,accType,firstName,lastName,age,address,balance
+ * where balance is in dollars, e.g. 1250.00.
+ *
+ * Binary layout (big-endian): magic int "BBI1", then per account accNumber int, accType,
+ * firstName, lastName as modified UTF-8 strings, age int, address as a modified UTF-8
+ * string and balanceCents long. exportBinary writes this format.
+ *
+ * Account numbers only have to be positive, as for accounts restored from storage; the
+ * other fields, including the minimum opening balance, are checked as for a new account.
+ *
+ * Usage Example:
+ * AccountImporter.Result result = new AccountImporter(bank).importCsv(file, errors);
+ * java data_classes.AccountImporter accounts.csv [errors.csv]
+ *
+ * Responsibilities:
+ * - Stream CSV and binary account files in chunks.
+ * - Validate rows in parallel and add the valid accounts to the bank in batches.
+ * - Report rejected rows and the import throughput.
+ */
+
+package data_classes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AccountImporter {
+
+	static final int BINARY_MAGIC = 0x42424931;	// "BBI1"
+
+	private static final int DEFAULT_BATCH_SIZE = 4096;
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+
+	private final Bank bank;
+	private final int parallelism;
+	private final int batchSize;
+
+
+	// constructors
+
+	/**
+	 * Creates an importer that adds accounts to the given bank.
+	 *
+	 * @param bank the bank to import into.
+	 * @param parallelism the number of threads validating rows.
+	 * @param batchSize the number of rows validated and added together.
+	 */
+	public AccountImporter(Bank bank, int parallelism, int batchSize) {
+		if(parallelism <= 0) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism + ". Parallelism must be greater than 0.");
+		}
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize + ". Batch size must be greater than 0.");
+		}
+		this.bank = bank;
+		this.parallelism = parallelism;
+		this.batchSize = batchSize;
+	}
+
+	public AccountImporter(Bank bank) {
+		this(bank, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+	}
+
+
+	/**
+	 * The outcome of an import.
+	 */
+	public static final class Result {
+
+		private final long rows;
+		private final long imported;
+		private final long rejected;
+		private final long nanos;
+
+		Result(long rows, long imported, long rejected, long nanos) {
+			this.rows = rows;
+			this.imported = imported;
+			this.rejected = rejected;
+			this.nanos = nanos;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long getImported() {
+			return imported;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		public double getMillis() {
+			return nanos / 1e6;
+		}
+
+		public double getRowsPerSecond() {
+			return nanos == 0 ? 0.0 : rows * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%,d rows, %,d imported, %,d rejected in %,.1f ms (%,.0f rows/s)",
+					rows, imported, rejected, getMillis(), getRowsPerSecond());
+		}
+	}
+
+
+	// importing
+
+	/**
+	 * Imports the accounts in a CSV file.
+	 *
+	 * @param file the CSV file.
+	 * @param errorReport the file rejected rows are written to, or null to only count them.
+	 * @return the outcome of the import.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public Result importCsv(Path file, Path errorReport) throws IOException {
+		try(BufferedReader reader = Files.newBufferedReader(file);
+			Pipeline pipeline = new Pipeline(errorReport)) {
+			List<String> lines = new ArrayList<>(batchSize);
+			long firstLine = 1;
+			long lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null) {
+				lineNumber++;
+				if(line.isBlank() || (lineNumber == 1 && line.startsWith("accNumber"))) {
+					continue;
+				}
+				if(lines.isEmpty()) {
+					firstLine = lineNumber;
+				}
+				lines.add(line);
+				if(lines.size() == batchSize) {
+					pipeline.submit(csvChunk(lines, firstLine));
+					lines = new ArrayList<>(batchSize);
+				}
+			}
+			if(!lines.isEmpty()) {
+				pipeline.submit(csvChunk(lines, firstLine));
+			}
+			return pipeline.finish();
+		}
+	}
+
+	/**
+	 * Imports the accounts in a binary account file.
+	 *
+	 * @param file the binary file.
+	 * @param errorReport the file rejected rows are written to, or null to only count them.
+	 * @return the outcome of the import.
+	 * @throws IOException if a file cannot be read or written, or the binary file is not
+	 *         an account file.
+	 */
+	public Result importBinary(Path file, Path errorReport) throws IOException {
+		try(InputStream stream = Files.newInputStream(file);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream, IO_BUFFER_SIZE));
+			Pipeline pipeline = new Pipeline(errorReport)) {
+			if(in.readInt() != BINARY_MAGIC) {
+				throw new IOException("Not a binary account file: " + file);
+			}
+			List<Row> rows = new ArrayList<>(batchSize);
+			long record = 0;
+			while(true) {
+				int accNumber;
+				try {
+					accNumber = in.readInt();
+				}
+				catch(EOFException e) {
+					break;
+				}
+				try {
+					rows.add(new Row(++record, accNumber, in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), in.readLong()));
+				}
+				catch(EOFException e) {
+					throw new IOException("Binary account file ends part way through record " + record + ": " + file, e);
+				}
+				if(rows.size() == batchSize) {
+					pipeline.submit(rowChunk(rows));
+					rows = new ArrayList<>(batchSize);
+				}
+			}
+			if(!rows.isEmpty()) {
+				pipeline.submit(rowChunk(rows));
+			}
+			return pipeline.finish();
+		}
+	}
+
+	/**
+	 * Writes every account of a bank to a binary account file that importBinary can read.
+	 *
+	 * @param file the file to write; an existing file is replaced.
+	 * @param bank the bank to export.
+	 * @return the number of accounts written.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static long exportBinary(Path file, Bank bank) throws IOException {
+		long[] count = new long[1];
+		try(OutputStream stream = Files.newOutputStream(file);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, IO_BUFFER_SIZE))) {
+			out.writeInt(BINARY_MAGIC);
+			IOException[] failure = new IOException[1];
+			bank.forEachAccount(account -> {
+				if(failure[0] != null || account.getAccNumber() <= 0) {
+					return;
+				}
+				try {
+					out.writeInt(account.getAccNumber());
+					out.writeUTF(account.getAccType());
+					out.writeUTF(account.getFirstName());
+					out.writeUTF(account.getLastName());
+					out.writeInt(account.getAge());
+					out.writeUTF(account.getAddress());
+					out.writeLong(account.getBalanceCents());
+					count[0]++;
+				}
+				catch(IOException e) {
+					failure[0] = e;
+				}
+			});
+			if(failure[0] != null) {
+				throw failure[0];
+			}
+		}
+		return count[0];
+	}
+
+
+	// parsing and validation, run on the worker threads
+
+	// one parsed row, numbered by its line or record in the file
+	private static final class Row {
+		final long line;
+		final int accNumber;
+		final String accType;
+		final String firstName;
+		final String lastName;
+		final int age;
+		final String address;
+		final long balanceCents;
+
+		Row(long line, int accNumber, String accType, String firstName, String lastName, int age, String address, long balanceCents) {
+			this.line = line;
+			this.accNumber = accNumber;
+			this.accType = accType;
+			this.firstName = firstName;
+			this.lastName = lastName;
+			this.age = age;
+			this.address = address;
+			this.balanceCents = balanceCents;
+		}
+	}
+
+	// a validated chunk: accounts ready to add, and report lines for rows that failed
+	private static final class Chunk {
+		final long rows;
+		final List<BankAccount> accounts;
+		final long[] lines;
+		final List<String> rejects = new ArrayList<>();
+		final long[] rejectLines;
+
+		Chunk(int rows) {
+			this.rows = rows;
+			this.accounts = new ArrayList<>(rows);
+			this.lines = new long[rows];
+			this.rejectLines = new long[rows];
+		}
+
+		void reject(long line, String reason) {
+			rejectLines[rejects.size()] = line;
+			rejects.add(line + "," + quote(reason));
+		}
+	}
+
+	private Callable<Chunk> csvChunk(List<String> lines, long firstLine) {
+		return () -> {
+			Chunk chunk = new Chunk(lines.size());
+			long lineNumber = firstLine - 1;
+			for(String line : lines) {
+				lineNumber++;
+				Row row;
+				try {
+					row = parseCsv(line, lineNumber);
+				}
+				catch(IllegalArgumentException e) {
+					chunk.reject(lineNumber, e.getMessage());
+					continue;
+				}
+				validate(row, chunk);
+			}
+			return chunk;
+		};
+	}
+
+	private Callable<Chunk> rowChunk(List<Row> rows) {
+		return () -> {
+			Chunk chunk = new Chunk(rows.size());
+			for(Row row : rows) {
+				validate(row, chunk);
+			}
+			return chunk;
+		};
+	}
+
+	// parses one CSV line into a row
+	static Row parseCsv(String line, long lineNumber) {
+		List<String> fields = splitCsv(line);
+		if(fields.size() != 7) {
+			throw new IllegalArgumentException("Expected 7 fields but found " + fields.size() + ".");
+		}
+		try {
+			return new Row(lineNumber, Integer.parseInt(fields.get(0).trim()), fields.get(1).trim(), fields.get(2).trim(),
+					fields.get(3).trim(), Integer.parseInt(fields.get(4).trim()), fields.get(5).trim(), Money.parse(fields.get(6)));
+		}
+		catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: " + e.getMessage(), e);
+		}
+	}
+
+	// splits one CSV line; a quoted field may contain commas and doubled quotes
+	static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>(7);
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(quoted) {
+				if(c == '"') {
+					if(i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					}
+					else {
+						quoted = false;
+					}
+				}
+				else {
+					field.append(c);
+				}
+			}
+			else if(c == '"') {
+				quoted = true;
+			}
+			else if(c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else {
+				field.append(c);
+			}
+		}
+		if(quoted) {
+			throw new IllegalArgumentException("Unterminated quoted field.");
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	// runs the checks a new account goes through and builds the account without adding it
+	private void validate(Row row, Chunk chunk) {
+		try {
+			BankAccount.validateAccountType(row.accType);
+			BankAccount.validateName(row.firstName);
+			BankAccount.validateName(row.lastName);
+			BankAccount.validateAge(row.age);
+			BankAccount.validateAddress(row.address);
+			BankAccount.validateBalance(row.balanceCents);
+			BankAccount account = BankAccount.materialize(row.accNumber, row.accType, row.firstName, row.lastName,
+					row.age, row.address, row.balanceCents, bank);
+			chunk.lines[chunk.accounts.size()] = row.line;
+			chunk.accounts.add(account);
+		}
+		catch(IllegalArgumentException e) {
+			chunk.reject(row.line, e.getMessage());
+		}
+	}
+
+	private static String quote(String text) {
+		String single = String.valueOf(text).replace('\n', ' ').trim();
+		return "\"" + single.replace("\"", "\"\"") + "\"";
+	}
+
+
+	// pipeline, run on the calling thread
+
+	// submits chunks to the workers and adds finished chunks to the bank in file order
+	private final class Pipeline implements AutoCloseable {
+
+		private final ExecutorService executor;
+		private final ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+		private final Writer errors;
+		private final long start = System.nanoTime();
+		private long rows;
+		private long imported;
+		private long rejected;
+
+		Pipeline(Path errorReport) throws IOException {
+			this.errors = errorReport == null ? null : Files.newBufferedWriter(errorReport);
+			this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+				Thread thread = new Thread(r, "account-importer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		void submit(Callable<Chunk> chunk) throws IOException {
+			// bound the chunks in flight so memory does not grow with the file
+			if(pending.size() >= 2 * parallelism) {
+				add(pending.poll());
+			}
+			pending.add(executor.submit(chunk));
+		}
+
+		Result finish() throws IOException {
+			while(!pending.isEmpty()) {
+				add(pending.poll());
+			}
+			if(errors != null) {
+				errors.flush();
+			}
+			return new Result(rows, imported, rejected, System.nanoTime() - start);
+		}
+
+		private void add(Future<Chunk> future) throws IOException {
+			Chunk chunk = await(future);
+			rows += chunk.rows;
+			int nextReject = 0;
+			for(int i = 0; i < chunk.accounts.size(); i++) {
+				// keep the report in file order
+				while(nextReject < chunk.rejects.size() && chunk.rejectLines[nextReject] < chunk.lines[i]) {
+					report(chunk.rejects.get(nextReject++));
+				}
+				try {
+					bank.addAccount(chunk.accounts.get(i));
+					imported++;
+				}
+				catch(IllegalArgumentException e) {
+					report(chunk.lines[i] + "," + quote(e.getMessage()));
+				}
+			}
+			while(nextReject < chunk.rejects.size()) {
+				report(chunk.rejects.get(nextReject++));
+			}
+		}
+
+		private void report(String line) throws IOException {
+			rejected++;
+			if(errors != null) {
+				errors.write(line);
+				errors.write(System.lineSeparator());
+			}
+		}
+
+		private Chunk await(Future<Chunk> future) throws IOException {
+			try {
+				return future.get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while importing accounts.", e);
+			}
+			catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IOException("Failed to import accounts.", cause);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			executor.shutdownNow();
+			if(errors != null) {
+				errors.close();
+			}
+		}
+	}
+
+
+	/**
+	 * Imports a CSV or binary account file into a new bank and prints the outcome. Files
+	 * ending in ".csv" are read as CSV, anything else as binary.
+	 *
+	 * @param args the account file, and optionally the error report file.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.err.println("Usage: java data_classes.AccountImporter <accounts.csv|accounts.dat> [errors.csv]");
+			System.exit(1);
+		}
+		Path file = Paths.get(args[0]);
+		Path errors = args.length > 1 ? Paths.get(args[1]) : null;
+		AccountImporter importer = new AccountImporter(new Bank());
+		Result result = file.toString().endsWith(".csv") ? importer.importCsv(file, errors) : importer.importBinary(file, errors);
+		System.out.println(result);
+	}
+}
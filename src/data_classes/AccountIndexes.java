@@ -0,0 +1,263 @@
+/**
+ * The AccountIndexes class holds the secondary indexes of one Bank, so that accounts can be
+ * found by their holder's last name, age or account type without walking every account.
+ *
+ * - Last name: a sorted map from each lower-cased last name to the accounts that have it,
+ *   so every account whose last name starts with a prefix is in one contiguous range of
+ *   names. Keying by name rather than by account keeps the sorted map as small as the
+ *   number of distinct names; the accounts of one name are kept in a hash map.
+ * - Age: a sorted map from each age to a bitmap of the accounts of that age, so an age
+ *   range is one contiguous range of bitmaps.
+ * - Account type: one bitmap per type.
+ *
+ * A bitmap has a bit per account number, split into chunks of 65,536 account numbers
+ * that are only allocated once an account falls in them, so sparse or very large account
+ * numbers cost nothing for the empty ranges. Bitmaps combine a word of 64 accounts at a
+ * time, so for instance the accounts of an age range that are savings accounts are found
+ * and counted without looking at any account.
+ *
+ * All the indexes are safe to read while they are being updated. An index may briefly
+ * hold an entry that no longer matches its account, while a setter is moving it, so the
+ * walks below skip entries that disagree with the account, and AccountQuery checks every
+ * account it is given against the account's current fields. Emptied last names are left
+ * in the map, and skipped when walked.
+ *
+ * Responsibilities:
+ * - Add, remove and move the index entries of an account.
+ * - Walk the accounts of a last name prefix, an age range or an account type.
+ */
+
+package data_classes;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class AccountIndexes {
+
+	// lower-cased last name -> account -> the last name as the account held it when indexed
+	private final ConcurrentSkipListMap<String, ConcurrentHashMap<BankAccount, String>> byLastName = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<Integer, AccountBitmap> byAge = new ConcurrentSkipListMap<>();
+	private final AccountBitmap[] byType = new AccountBitmap[BankTotals.TYPES];
+	private volatile boolean ready;		// every account of the bank has been added
+
+
+	// constructor
+	AccountIndexes() {
+		for(int type = 0; type < byType.length; type++) {
+			byType[type] = new AccountBitmap();
+		}
+	}
+
+	boolean isReady() {
+		return ready;
+	}
+
+	void markReady() {
+		ready = true;
+	}
+
+
+	// update methods
+
+	// the account's lock orders this against its setters, which update under the same lock
+	void add(BankAccount account) {
+		synchronized(account) {
+			String lastName = account.getLastName();
+			if(lastName != null) {
+				addLastName(account, lastName);
+			}
+			byAge.computeIfAbsent(account.getAge(), age -> new AccountBitmap()).set(account.getAccNumber());
+			byType[BankTotals.typeOf(account.getAccType())].set(account.getAccNumber());
+		}
+	}
+
+	void remove(BankAccount account) {
+		synchronized(account) {
+			String lastName = account.getLastName();
+			if(lastName != null) {
+				removeLastName(account, lastName);
+			}
+			clearAge(account.getAge(), account.getAccNumber());
+			byType[BankTotals.typeOf(account.getAccType())].clear(account.getAccNumber());
+		}
+	}
+
+	/**
+	 * Moves an account's entries after one of its indexed fields changed. The account
+	 * already holds the new values; the old ones are passed in. Called by the setters
+	 * while they hold the account's lock.
+	 */
+	void update(BankAccount account, String oldLastName, int oldAge, String oldAccType) {
+		int accNumber = account.getAccNumber();
+		String lastName = account.getLastName();
+		if(lastName != null && !lastName.equals(oldLastName)) {
+			addLastName(account, lastName);
+		}
+		if(oldLastName != null && !oldLastName.equals(lastName)) {
+			removeLastName(account, oldLastName);
+		}
+		if(account.getAge() != oldAge) {
+			byAge.computeIfAbsent(account.getAge(), age -> new AccountBitmap()).set(accNumber);
+			clearAge(oldAge, accNumber);
+		}
+		int type = BankTotals.typeOf(account.getAccType());
+		int oldType = BankTotals.typeOf(oldAccType);
+		if(type != oldType) {
+			byType[type].set(accNumber);
+			byType[oldType].clear(accNumber);
+		}
+	}
+
+	private void addLastName(BankAccount account, String lastName) {
+		byLastName.computeIfAbsent(normalize(lastName), name -> new ConcurrentHashMap<>()).put(account, lastName);
+	}
+
+	// only if it was not already replaced by the entry for a name that differs just in case
+	private void removeLastName(BankAccount account, String lastName) {
+		Map<BankAccount, String> accounts = byLastName.get(normalize(lastName));
+		if(accounts != null) {
+			accounts.remove(account, lastName);
+		}
+	}
+
+	private void clearAge(int age, int accNumber) {
+		AccountBitmap accounts = byAge.get(age);
+		if(accounts != null) {
+			accounts.clear(accNumber);
+		}
+	}
+
+
+	// lookup methods
+
+	/**
+	 * Visits, in last name order, the accounts whose lower-cased last name starts with the
+	 * lower-cased prefix, until the visitor returns false. Entries left behind by a last
+	 * name change in progress are skipped, so each account is visited at most once.
+	 */
+	void forEachLastNameStartingWith(String prefix, AccountVisitor visitor) {
+		String from = normalize(prefix);
+		Map<String, ConcurrentHashMap<BankAccount, String>> range = byLastName.subMap(from, true, from + Character.MAX_VALUE, false);
+		for(ConcurrentHashMap<BankAccount, String> accounts : range.values()) {
+			for(Map.Entry<BankAccount, String> entry : accounts.entrySet()) {
+				BankAccount account = entry.getKey();
+				if(entry.getValue().equals(account.getLastName()) && !visitor.visit(account)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits, in age order and then account number order, the account numbers with an age
+	 * from min to max inclusive that are also in the given bitmap, or in any if it is null,
+	 * until the visitor returns false.
+	 */
+	void forEachAgeBetween(int min, int max, AccountBitmap and, AccNumberVisitor visitor) {
+		for(AccountBitmap accounts : byAge.subMap(min, true, max, true).values()) {
+			if(!accounts.forEach(and, visitor)) {
+				return;
+			}
+		}
+	}
+
+	// counts the account numbers with an age from min to max that are also in the given bitmap, or in any
+	long countAgeBetween(int min, int max, AccountBitmap and) {
+		long count = 0L;
+		for(AccountBitmap accounts : byAge.subMap(min, true, max, true).values()) {
+			count += accounts.cardinality(and);
+		}
+		return count;
+	}
+
+	AccountBitmap ofType(int type) {
+		return byType[type];
+	}
+
+	static String normalize(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+
+	/**
+	 * A set of account numbers as a bitmap, allocated in chunks of 65,536 account numbers.
+	 */
+	static final class AccountBitmap {
+
+		private static final int CHUNK_BITS = 16;
+		private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / 64;
+
+		private final ConcurrentSkipListMap<Integer, AtomicLongArray> chunks = new ConcurrentSkipListMap<>();
+
+		void set(int accNumber) {
+			AtomicLongArray chunk = chunks.computeIfAbsent(accNumber >>> CHUNK_BITS, high -> new AtomicLongArray(WORDS_PER_CHUNK));
+			chunk.accumulateAndGet((accNumber & 0xFFFF) >>> 6, 1L << accNumber, (word, bit) -> word | bit);
+		}
+
+		void clear(int accNumber) {
+			AtomicLongArray chunk = chunks.get(accNumber >>> CHUNK_BITS);
+			if(chunk != null) {
+				chunk.accumulateAndGet((accNumber & 0xFFFF) >>> 6, 1L << accNumber, (word, bit) -> word & ~bit);
+			}
+		}
+
+		/**
+		 * Counts the account numbers in this bitmap that are also in the given one, or all
+		 * of them if it is null.
+		 */
+		long cardinality(AccountBitmap and) {
+			long count = 0L;
+			for(Map.Entry<Integer, AtomicLongArray> entry : chunks.entrySet()) {
+				AtomicLongArray mask = and == null ? null : and.chunks.get(entry.getKey());
+				if(and != null && mask == null) {
+					continue;
+				}
+				AtomicLongArray chunk = entry.getValue();
+				for(int w = 0; w < WORDS_PER_CHUNK; w++) {
+					count += Long.bitCount(mask == null ? chunk.get(w) : chunk.get(w) & mask.get(w));
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Visits, in ascending order, the account numbers in this bitmap that are also in
+		 * the given one, or all of them if it is null, until the visitor returns false.
+		 *
+		 * @return false if the visitor stopped the walk.
+		 */
+		boolean forEach(AccountBitmap and, AccNumberVisitor visitor) {
+			for(Map.Entry<Integer, AtomicLongArray> entry : chunks.entrySet()) {
+				AtomicLongArray mask = and == null ? null : and.chunks.get(entry.getKey());
+				if(and != null && mask == null) {
+					continue;
+				}
+				int base = entry.getKey() << CHUNK_BITS;
+				AtomicLongArray chunk = entry.getValue();
+				for(int w = 0; w < WORDS_PER_CHUNK; w++) {
+					long word = mask == null ? chunk.get(w) : chunk.get(w) & mask.get(w);
+					while(word != 0L) {
+						if(!visitor.visit(base | (w << 6) | Long.numberOfTrailingZeros(word))) {
+							return false;
+						}
+						word &= word - 1;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	@FunctionalInterface
+	interface AccountVisitor {
+		boolean visit(BankAccount account);
+	}
+
+	@FunctionalInterface
+	interface AccNumberVisitor {
+		boolean visit(int accNumber);
+	}
+}
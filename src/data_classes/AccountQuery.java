@@ -0,0 +1,186 @@
+/**
+ * The AccountQuery class finds the accounts of a Bank by their holder's last name, age and
+ * account type, using the indexes the bank keeps on each of them. Queries are started with
+ * Bank.findAccounts, narrowed with any of the filter methods and run with list or count.
+ *
+ * A query with a last name prefix walks the last name index and checks the age and type
+ * of each account it finds there. Any other query walks the age bitmaps in its range, or
+ * the type's bitmap alone, combining the two 64 accounts at a time, so it only looks at
+ * accounts that match both. Results come in the order of the index walked: by last name
+ * (the accounts of one name in no particular order), by age and then account number, or
+ * by account number. With a limit, the walk stops as soon as enough accounts are found,
+ * so a limited query takes about the same time however many accounts the bank holds.
+ *
+ * Queries run while accounts keep changing. Every account returned matched all filters
+ * when it was checked, and an account that matched throughout the query is returned.
+ *
+ * Usage Example:
+ * List<BankAccount> smiths = bank.findAccounts().lastNameStartsWith("Smi").ageBetween(30, 39).limit(50).list();
+ * long savings = bank.findAccounts().accType("Savings").count();
+ *
+ * Responsibilities:
+ * - Collect the filters of a query.
+ * - Pick the index to walk and check the other filters on each account found.
+ * - Return the matching accounts, or count them.
+ */
+
+package data_classes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class AccountQuery {
+
+	private final Bank bank;
+	private String lastNamePrefix;			// lower-cased, or null for any last name
+	private int minAge = 0;
+	private int maxAge = Integer.MAX_VALUE;
+	private int type = -1;					// BankTotals bucket, or -1 for any type
+	private int limit = Integer.MAX_VALUE;
+
+
+	// constructor
+	AccountQuery(Bank bank) {
+		this.bank = bank;
+	}
+
+
+	// filter methods
+
+	/**
+	 * Keeps only accounts whose holder's last name starts with the given prefix, ignoring case.
+	 *
+	 * @param prefix the start of the last name.
+	 * @return this query.
+	 * @throws IllegalArgumentException if the prefix is null.
+	 */
+	public AccountQuery lastNameStartsWith(String prefix) {
+		if(prefix == null) {
+			throw new IllegalArgumentException("Last name prefix cannot be null.");
+		}
+		this.lastNamePrefix = AccountIndexes.normalize(prefix);
+		return this;
+	}
+
+	/**
+	 * Keeps only accounts whose holder's age is from min to max, both included.
+	 *
+	 * @param min the lowest age.
+	 * @param max the highest age.
+	 * @return this query.
+	 * @throws IllegalArgumentException if min is negative or greater than max.
+	 */
+	public AccountQuery ageBetween(int min, int max) {
+		if(min < 0 || min > max) {
+			throw new IllegalArgumentException("Invalid age range: " + min + " to " + max + ".");
+		}
+		this.minAge = min;
+		this.maxAge = max;
+		return this;
+	}
+
+	/**
+	 * Keeps only accounts of the given type.
+	 *
+	 * @param accType the account type, checking or savings in any case.
+	 * @return this query.
+	 * @throws IllegalArgumentException if the account type is invalid.
+	 */
+	public AccountQuery accType(String accType) {
+		BankAccount.validateAccountType(accType);
+		this.type = BankTotals.typeOf(accType);
+		return this;
+	}
+
+	/**
+	 * Limits how many accounts list returns. Without a limit every matching account is returned.
+	 *
+	 * @param limit the most accounts to return.
+	 * @return this query.
+	 * @throws IllegalArgumentException if the limit is negative.
+	 */
+	public AccountQuery limit(int limit) {
+		if(limit < 0) {
+			throw new IllegalArgumentException("Limit cannot be negative: " + limit + ".");
+		}
+		this.limit = limit;
+		return this;
+	}
+
+
+	// run methods
+
+	/**
+	 * Runs the query.
+	 *
+	 * @return the matching accounts, up to the limit, in the order of the index walked.
+	 */
+	public List<BankAccount> list() {
+		List<BankAccount> found = new ArrayList<>(Math.min(limit, 1024));
+		if(limit > 0) {
+			run(bank.indexes(), account -> {
+				found.add(account);
+				return found.size() < limit;
+			});
+		}
+		return found;
+	}
+
+	/**
+	 * Counts the accounts matching the query, ignoring the limit. Without a last name
+	 * prefix, the count is made from the age and type bitmaps alone, without looking at
+	 * any account; an account whose age or type is being changed meanwhile may be counted
+	 * under both its old and its new value.
+	 *
+	 * @return the number of matching accounts.
+	 */
+	public long count() {
+		AccountIndexes indexes = bank.indexes();
+		if(lastNamePrefix == null) {
+			AccountIndexes.AccountBitmap ofType = type >= 0 ? indexes.ofType(type) : null;
+			if(ofType != null && !hasAgeRange()) {
+				return ofType.cardinality(null);
+			}
+			return indexes.countAgeBetween(minAge, maxAge, ofType);
+		}
+		long[] count = new long[1];
+		run(indexes, account -> {
+			count[0]++;
+			return true;
+		});
+		return count[0];
+	}
+
+	private void run(AccountIndexes indexes, AccountIndexes.AccountVisitor visitor) {
+		if(lastNamePrefix != null) {
+			// the walk only gives accounts whose current last name has the prefix
+			indexes.forEachLastNameStartingWith(lastNamePrefix, account ->
+					!matches(account) || bank.getAccount(account.getAccNumber()) != account || visitor.visit(account));
+			return;
+		}
+		AccountIndexes.AccNumberVisitor byNumber = accNumber -> {
+			BankAccount account = bank.getAccount(accNumber);
+			return account == null || !matches(account) || visitor.visit(account);
+		};
+		AccountIndexes.AccountBitmap ofType = type >= 0 ? indexes.ofType(type) : null;
+		if(ofType != null && !hasAgeRange()) {
+			ofType.forEach(null, byNumber);
+		}
+		else {
+			indexes.forEachAgeBetween(minAge, maxAge, ofType, byNumber);
+		}
+	}
+
+	// checks the age and type filters against the account's current fields
+	private boolean matches(BankAccount account) {
+		int age = account.getAge();
+		if(age < minAge || age > maxAge) {
+			return false;
+		}
+		return type < 0 || BankTotals.typeOf(account.getAccType()) == type;
+	}
+
+	private boolean hasAgeRange() {
+		return minAge != 0 || maxAge != Integer.MAX_VALUE;
+	}
+}
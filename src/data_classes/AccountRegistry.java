@@ -0,0 +1,155 @@
+/**
+ * The AccountRegistry class stores the accounts of a Bank, keyed by account number.
+ *
+ * Account numbers are validated to four digits, so the whole valid range fits in a small
+ * table indexed directly by the account number: looking an account up is a single array
+ * read with no hashing, no Integer boxing and no entry objects. Account numbers outside
+ * the directly indexed range (for example if the number range is widened) spill into a
+ * primitive int-keyed open-addressing map, so the registry keeps working without ever
+ * falling back to a boxed HashMap.
+ *
+ * Lookups never lock. Additions and removals in the directly indexed range are single
+ * compare-and-set operations; those in the overflow map are serialised on the registry.
+ *
+ * Usage Example:
+ * AccountRegistry registry = new AccountRegistry();
+ * registry.add(account);
+ * BankAccount found = registry.get(1234);
+ *
+ * Responsibilities:
+ * - Add, find and remove accounts by account number.
+ * - Reject duplicate account numbers.
+ * - Iterate the registered accounts.
+ */
+
+package data_classes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+public final class AccountRegistry {
+
+	// directly indexed range, covers every valid 4-digit account number
+	private static final int DENSE_BITS = 14;
+	private static final int DENSE_SIZE = 1 << DENSE_BITS;
+	private static final int DENSE_MASK = DENSE_SIZE - 1;
+
+	private final AtomicReferenceArray<BankAccount> dense = new AtomicReferenceArray<>(DENSE_SIZE);
+	private final IntAccountMap sparse = new IntAccountMap();
+	private final AtomicInteger denseCount = new AtomicInteger();
+
+
+	// lookup methods
+
+	/**
+	 * Gets the account with the given number.
+	 *
+	 * @param accNumber the account number.
+	 * @return the account, or null if no account with that number is registered.
+	 */
+	public BankAccount get(int accNumber) {
+		if((accNumber & ~DENSE_MASK) == 0) {
+			return dense.get(accNumber);
+		}
+		return sparse.get(accNumber);
+	}
+
+	/**
+	 * Checks whether an account with the given number is registered.
+	 *
+	 * @param accNumber the account number.
+	 * @return true if the account is registered.
+	 */
+	public boolean contains(int accNumber) {
+		return get(accNumber) != null;
+	}
+
+	/**
+	 * Gets the number of registered accounts.
+	 *
+	 * @return the account count.
+	 */
+	public int size() {
+		int sparseCount;
+		synchronized(this) {
+			sparseCount = sparse.size();
+		}
+		return denseCount.get() + sparseCount;
+	}
+
+
+	// update methods
+
+	/**
+	 * Registers an account under its account number.
+	 *
+	 * @param account the account to register.
+	 * @return true if the account was added, false if the number is already taken.
+	 */
+	public boolean add(BankAccount account) {
+		int accNumber = account.getAccNumber();
+		if((accNumber & ~DENSE_MASK) == 0) {
+			if(!dense.compareAndSet(accNumber, null, account)) {
+				return false;
+			}
+			denseCount.incrementAndGet();
+			return true;
+		}
+		synchronized(this) {
+			return sparse.putIfAbsent(accNumber, account) == null;
+		}
+	}
+
+	/**
+	 * Removes the account registered under the given number.
+	 *
+	 * @param accNumber the account number.
+	 * @return the removed account, or null if no account was registered under the number.
+	 */
+	public BankAccount remove(int accNumber) {
+		if((accNumber & ~DENSE_MASK) == 0) {
+			BankAccount removed = dense.getAndSet(accNumber, null);
+			if(removed != null) {
+				denseCount.decrementAndGet();
+			}
+			return removed;
+		}
+		synchronized(this) {
+			return sparse.remove(accNumber);
+		}
+	}
+
+
+	// iteration methods
+
+	/**
+	 * Performs an action for every registered account, in ascending account number order
+	 * for the directly indexed range. Accounts added or removed during the walk may or may
+	 * not be visited.
+	 *
+	 * @param action the action to perform.
+	 */
+	public void forEach(Consumer<? super BankAccount> action) {
+		for(int i = 0; i < DENSE_SIZE; i++) {
+			BankAccount account = dense.get(i);
+			if(account != null) {
+				action.accept(account);
+			}
+		}
+		sparse.forEach(action);
+	}
+
+	/**
+	 * Gets a list of the registered accounts at the time of the call.
+	 *
+	 * @return a new list of the registered accounts.
+	 */
+	public List<BankAccount> values() {
+		List<BankAccount> values = new ArrayList<>();
+		forEach(values::add);
+		return values;
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * The AccountStatement class lists transactions of one account, oldest first, as returned
+ * by BankAccount.getStatement: either the account's latest transactions, or those made
+ * within a period of time.
+ *
+ * A statement is put together from the account's TransactionHistory first, which holds
+ * its most recent transactions in memory, and only reads the journal for transactions
+ * older than those. The journal is scanned backwards from the oldest transaction in
+ * memory and the scan stops as soon as the statement is complete, so a statement of
+ * recent activity never touches the disk, and an older one reads only as much of the
+ * journal as lies between now and the oldest transaction it lists. The scan never goes
+ * back past the record the account's history starts at, the journal's end when the
+ * account was opened or loaded, nor more than MAX_SCANNED_RECORDS records, so a
+ * statement of an account that has been idle for a long time lists what those records
+ * hold rather than reading the whole journal.
+ *
+ * The transactions are held in primitive arrays and read by index.
+ *
+ * Usage Example:
+ * AccountStatement statement = account.getStatement(10);
+ * for (int i = 0; i < statement.size(); i++) {
+ *     System.out.println(statement.format(i));
+ * }
+ *
+ * Responsibilities:
+ * - Collect an account's latest transactions, or those of a period, from memory and the journal.
+ * - Hold them, oldest first, and give access to each one's fields.
+ */
+
+package data_classes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+
+public final class AccountStatement {
+
+	// how far out of timestamp order concurrent transactions can reach the journal
+	private static final long CLOCK_SLACK_MILLIS = 1000L;
+	// the most journal records one statement reads
+	static final long MAX_SCANNED_RECORDS = 1L << 20;
+
+	private final int accNumber;
+	private final long[] timestamps;
+	private final int[] types;
+	private final long[] amounts;
+	private final long[] balances;
+	private final int[] counterparties;
+
+
+	// constructor
+	private AccountStatement(int accNumber, Collector found) {
+		int size = found.size;
+		this.accNumber = accNumber;
+		this.timestamps = new long[size];
+		this.types = new int[size];
+		this.amounts = new long[size];
+		this.balances = new long[size];
+		this.counterparties = new int[size];
+		// collected newest first
+		for(int i = 0; i < size; i++) {
+			int from = size - 1 - i;
+			timestamps[i] = found.timestamps[from];
+			types[i] = found.types[from];
+			amounts[i] = found.amounts[from];
+			balances[i] = found.balances[from];
+			counterparties[i] = found.counterparties[from];
+		}
+	}
+
+
+	// statement methods
+
+	// the account's latest transactions, up to count of them
+	static AccountStatement latest(int accNumber, TransactionHistory history, TransactionJournal journal, int count) {
+		if(count < 0) {
+			throw new IllegalArgumentException("Invalid count: " + count + ". Count cannot be negative.");
+		}
+		Collector found = new Collector();
+		if(count == 0) {
+			return new AccountStatement(accNumber, found);
+		}
+		long[] oldestRecord = { Long.MAX_VALUE };
+		boolean complete = history.forEachNewestFirst((timestamp, type, amountCents, balanceCents, counterparty, record) -> {
+			found.add(timestamp, type, amountCents, balanceCents, counterparty);
+			oldestRecord[0] = Math.min(oldestRecord[0], record);
+			return found.size < count;
+		});
+		if(!complete && found.size < count) {
+			scanJournal(accNumber, history, journal, oldestRecord[0], (record, timestamp, acc, type, amountCents, balanceCents, counterparty) -> {
+				if(acc == accNumber && !TransactionType.isTransactionId(type)) {
+					found.add(timestamp, type, amountCents, balanceCents, counterparty);
+				}
+				return found.size < count;
+			});
+		}
+		return new AccountStatement(accNumber, found);
+	}
+
+	// the account's transactions timestamped from fromMillis up to but excluding toMillis
+	static AccountStatement between(int accNumber, TransactionHistory history, TransactionJournal journal, long fromMillis, long toMillis) {
+		if(fromMillis > toMillis) {
+			throw new IllegalArgumentException("Invalid period: " + fromMillis + " to " + toMillis + ". The period cannot end before it starts.");
+		}
+		Collector found = new Collector();
+		long[] oldest = { Long.MAX_VALUE, Long.MAX_VALUE };		// record, timestamp
+		boolean complete = history.forEachNewestFirst((timestamp, type, amountCents, balanceCents, counterparty, record) -> {
+			if(timestamp >= fromMillis && timestamp < toMillis) {
+				found.add(timestamp, type, amountCents, balanceCents, counterparty);
+			}
+			oldest[0] = Math.min(oldest[0], record);
+			oldest[1] = Math.min(oldest[1], timestamp);
+			return true;
+		});
+		if(!complete && oldest[1] >= fromMillis - CLOCK_SLACK_MILLIS) {
+			scanJournal(accNumber, history, journal, oldest[0], (record, timestamp, acc, type, amountCents, balanceCents, counterparty) -> {
+				if(acc == accNumber && !TransactionType.isTransactionId(type) && timestamp >= fromMillis && timestamp < toMillis) {
+					found.add(timestamp, type, amountCents, balanceCents, counterparty);
+				}
+				return timestamp >= fromMillis - CLOCK_SLACK_MILLIS;
+			});
+		}
+		return new AccountStatement(accNumber, found);
+	}
+
+	// Scans the journal backwards from the record before beforeRecord, or from its end if the
+	// history held nothing, down to the first record the account's history can start at or
+	// MAX_SCANNED_RECORDS records back, whichever comes first
+	private static void scanJournal(int accNumber, TransactionHistory history, TransactionJournal journal, long beforeRecord, JournalReader.RecordScanner scanner) {
+		if(beforeRecord < 0L) {
+			// recorded while the journal was off, so the journal has nothing to continue from
+			return;
+		}
+		long before = beforeRecord == Long.MAX_VALUE ? journal.getNextRecordNumber() : beforeRecord;
+		long from = Math.max(history.getFirstRecord(), before - MAX_SCANNED_RECORDS);
+		if(before <= from) {
+			return;
+		}
+		if(journal.getDurableRecordCount() < before) {
+			journal.flush();
+		}
+		try(JournalReader reader = new JournalReader(journal.getPath())) {
+			reader.scanBackward(before, from, scanner);
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException("Failed to read the history of account " + accNumber + " from " + journal.getPath(), e);
+		}
+	}
+
+
+	// getter methods
+
+	public int getAccNumber() {
+		return accNumber;
+	}
+
+	public int size() {
+		return timestamps.length;
+	}
+
+	public long getTimestamp(int i) {
+		return timestamps[i];
+	}
+
+	/**
+	 * Gets the type of a transaction.
+	 *
+	 * @param i the index of the transaction, 0 for the oldest.
+	 * @return one of the TransactionType codes.
+	 */
+	public int getType(int i) {
+		return types[i];
+	}
+
+	public long getAmountCents(int i) {
+		return amounts[i];
+	}
+
+	/**
+	 * Gets the balance a transaction left the account with.
+	 *
+	 * @param i the index of the transaction, 0 for the oldest.
+	 * @return the balance, in cents.
+	 */
+	public long getBalanceCents(int i) {
+		return balances[i];
+	}
+
+	public int getCounterparty(int i) {
+		return counterparties[i];
+	}
+
+	/**
+	 * Formats a transaction as one statement line, for example
+	 * "2024-05-01T09:30:00Z Transfer to 1002: $25.00, balance $175.00".
+	 *
+	 * @param i the index of the transaction, 0 for the oldest.
+	 * @return the line.
+	 */
+	public String format(int i) {
+		StringBuilder line = new StringBuilder(80);
+		line.append(Instant.ofEpochMilli(timestamps[i])).append(' ').append(TransactionType.label(types[i]));
+		if(TransactionType.hasCounterparty(types[i])) {
+			line.append(' ').append(counterparties[i]);
+		}
+		Money.appendTo(line.append(": $"), amounts[i]);
+		return Money.appendTo(line.append(", balance $"), balances[i]).toString();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("Statement of account ").append(accNumber).append(':');
+		for(int i = 0; i < size(); i++) {
+			text.append(System.lineSeparator()).append(format(i));
+		}
+		return text.toString();
+	}
+
+
+	// grows as transactions are found, newest first
+	private static final class Collector {
+		long[] timestamps = new long[TransactionHistory.CAPACITY];
+		int[] types = new int[TransactionHistory.CAPACITY];
+		long[] amounts = new long[TransactionHistory.CAPACITY];
+		long[] balances = new long[TransactionHistory.CAPACITY];
+		int[] counterparties = new int[TransactionHistory.CAPACITY];
+		int size;
+
+		void add(long timestamp, int type, long amountCents, long balanceCents, int counterparty) {
+			if(size == timestamps.length) {
+				int length = size * 2;
+				timestamps = Arrays.copyOf(timestamps, length);
+				types = Arrays.copyOf(types, length);
+				amounts = Arrays.copyOf(amounts, length);
+				balances = Arrays.copyOf(balances, length);
+				counterparties = Arrays.copyOf(counterparties, length);
+			}
+			timestamps[size] = timestamp;
+			types[size] = type;
+			amounts[size] = amountCents;
+			balances[size] = balanceCents;
+			counterparties[size] = counterparty;
+			size++;
+		}
+	}
+}
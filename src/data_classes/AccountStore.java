@@ -0,0 +1,738 @@
+/**
+ * The AccountStore class keeps a bank's accounts on local disk without any external
+ * database: periodic compact binary snapshots of every account, plus a write-ahead log
+ * (WAL) of the changes made since the last snapshot. When the store is opened it rebuilds
+ * the bank from the latest snapshot and replays the log on top of it.
+ *
+ * The store is registered as a TransactionListener on its bank. A transaction only marks
+ * its account dirty; a background writer thread periodically appends a batch of records to
+ * the log and forces it to disk once per batch (group commit). Balance records carry the
+ * balance read when the batch is written, so any number of transactions on one account
+ * between two batches cost a single record, and replaying records in log order always
+ * ends on the latest balance. Opening and closing an account appends a record with the
+ * whole account, so the log alone can rebuild accounts opened since the last snapshot.
+ * Changes reach the disk within the flush interval, and a crash loses at most that window.
+ *
+ * Every snapshot starts a new log generation. The writer switches to the new log file
+ * first, then the snapshot is written beside it to a temporary file, forced and renamed
+ * into place, and only then are the older snapshot and log files deleted. Because balance
+ * records hold absolute balances rather than deltas, it does not matter that transactions
+ * keep running while the snapshot is taken: replaying the new log over the snapshot gives
+ * the right result either way. A crash part way through leaves the previous snapshot and
+ * its logs in place.
+ *
+ * Files in the store directory:
+ * snapshot-<generation>.dat   header, one OPEN record per account, end marker, count, CRC32
+ * wal-<generation>.dat        header, then frames of [length][CRC32][records]
+ *
+ * Records:
+ * OPEN    'O' accNumber balanceCents age accType firstName lastName address
+ * CLOSE   'C' accNumber
+ * BALANCE 'B' accNumber balanceCents
+ *
+ * A frame torn by a crash fails its length or CRC check; replay stops at it and ignores
+ * the rest of that log file. A batch that fails to be written or forced is cut off the
+ * log again, back to the end of the last good frame, and its records are written first
+ * in the next batch, so nothing is ever logged after a bad frame and account events keep
+ * their order. If the log cannot be cut back, the writer moves on to a new log file.
+ *
+ * Usage Example:
+ * Bank bank = new Bank();
+ * AccountStore store = AccountStore.open(Paths.get("data"), bank);   // recovers the bank
+ * ...
+ * store.snapshot();
+ * store.close();
+ *
+ * Responsibilities:
+ * - Recover a bank's accounts from the latest snapshot and the write-ahead log.
+ * - Log balance changes and account openings and closings in group-committed batches.
+ * - Take compact binary snapshots and discard the files they replace.
+ */
+
+package data_classes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+public final class AccountStore implements TransactionListener, AutoCloseable {
+
+	static final int SNAPSHOT_MAGIC = 0x42425331;	// "BBS1"
+	static final int WAL_MAGIC 		= 0x42425731;	// "BBW1"
+	static final int VERSION 		= 1;
+
+	// record kinds
+	static final byte OPEN 		= 'O';
+	static final byte CLOSE 	= 'C';
+	static final byte BALANCE 	= 'B';
+	static final byte END 		= 'E';
+
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String WAL_PREFIX = "wal-";
+	private static final String SUFFIX = ".dat";
+	private static final int WAL_HEADER_SIZE = 16;
+	private static final int BATCH_TRIGGER = 4096;
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200L;
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+
+	private static final Logger LOG = Logger.getLogger(AccountStore.class.getName());
+
+	// an account opened or closed, waiting to be logged
+	private static final class AccountEvent {
+		final byte kind;
+		final BankAccount account;
+
+		AccountEvent(byte kind, BankAccount account) {
+			this.kind = kind;
+			this.account = account;
+		}
+	}
+
+	private final Path directory;
+	private final Bank bank;
+	private final long flushIntervalNanos;
+
+	private final DirtyAccountSet dirty = new DirtyAccountSet();
+	private final ConcurrentLinkedQueue<AccountEvent> events = new ConcurrentLinkedQueue<>();
+	private final List<AccountEvent> unwritten = new ArrayList<>();	// from a failed batch, logged before events
+	// guards the log file and generation; held while a batch is written or the log is switched
+	private final ReentrantLock walLock = new ReentrantLock();
+	private final ReentrantLock snapshotLock = new ReentrantLock();
+	private final ByteArrayOutputStream frame = new ByteArrayOutputStream(IO_BUFFER_SIZE);
+	private final DataOutputStream frameOut = new DataOutputStream(frame);
+	private FileChannel wal;
+	private long walEnd;				// end of the last frame known to be on disk
+	private long generation;
+
+	private final Thread writer;
+	private final ScheduledExecutorService snapshotter;
+	private volatile boolean running = true;
+
+	// recovery statistics
+	private long recoveredAccounts;
+	private long replayedRecords;
+	private long recoveryNanos;
+
+
+	// constructor and factory methods
+
+	private AccountStore(Path directory, Bank bank, long flushIntervalMillis, long snapshotIntervalMillis) throws IOException {
+		if(flushIntervalMillis <= 0 || snapshotIntervalMillis < 0) {
+			throw new IllegalArgumentException("Flush interval must be greater than 0 and snapshot interval must not be negative.");
+		}
+		this.directory = directory;
+		this.bank = bank;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+		Files.createDirectories(directory);
+		long start = System.nanoTime();
+		generation = recover() + 1;
+		recoveryNanos = System.nanoTime() - start;
+		wal = openWal(generation);
+
+		bank.addTransactionListener(this);
+		writer = new Thread(this::writeLoop, "account-store-writer");
+		writer.setDaemon(true);
+		writer.start();
+
+		if(snapshotIntervalMillis > 0) {
+			snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "account-store-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			snapshotter.scheduleWithFixedDelay(this::periodicSnapshot, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+		else {
+			snapshotter = null;
+		}
+	}
+
+	/**
+	 * Opens the store in the given directory, rebuilds the bank's accounts from it and
+	 * starts logging the bank's changes.
+	 *
+	 * @param directory the store directory, created if it does not exist.
+	 * @param bank the bank to recover into; it should hold no accounts yet.
+	 * @param flushIntervalMillis the longest time a change waits before it is logged.
+	 * @param snapshotIntervalMillis the time between automatic snapshots, or 0 for none.
+	 * @return the open store.
+	 * @throws IOException if the store files cannot be read or the log cannot be created.
+	 */
+	public static AccountStore open(Path directory, Bank bank, long flushIntervalMillis, long snapshotIntervalMillis) throws IOException {
+		return new AccountStore(directory, bank, flushIntervalMillis, snapshotIntervalMillis);
+	}
+
+	/**
+	 * Opens the store with the default flush interval and no automatic snapshots.
+	 *
+	 * @param directory the store directory, created if it does not exist.
+	 * @param bank the bank to recover into; it should hold no accounts yet.
+	 * @return the open store.
+	 * @throws IOException if the store files cannot be read or the log cannot be created.
+	 */
+	public static AccountStore open(Path directory, Bank bank) throws IOException {
+		return open(directory, bank, DEFAULT_FLUSH_INTERVAL_MILLIS, 0L);
+	}
+
+
+	// listener methods
+
+	@Override
+	public void onTransaction(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		if(type != TransactionType.TRANSFER_DECLINED && accNumber > 0 && dirty.add(accNumber) && dirty.size() == BATCH_TRIGGER) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	@Override
+	public void onAccountAdded(BankAccount account) {
+		if(account.getAccNumber() > 0) {
+			events.add(new AccountEvent(OPEN, account));
+		}
+	}
+
+	@Override
+	public void onAccountRemoved(BankAccount account) {
+		if(account.getAccNumber() > 0) {
+			events.add(new AccountEvent(CLOSE, account));
+		}
+	}
+
+
+	// write-ahead log
+
+	private void writeLoop() {
+		while(running) {
+			if(dirty.size() < BATCH_TRIGGER) {
+				LockSupport.parkNanos(this, flushIntervalNanos);
+			}
+			if(running) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Logs every change made so far and forces the log to disk.
+	 *
+	 * @return the number of records written.
+	 */
+	public int flush() {
+		walLock.lock();
+		try {
+			return writeBatch();
+		}
+		finally {
+			walLock.unlock();
+		}
+	}
+
+	// caller holds walLock
+	private int writeBatch() {
+		List<AccountEvent> taken = new ArrayList<>(unwritten);
+		unwritten.clear();
+		AccountEvent event;
+		while((event = events.poll()) != null) {
+			taken.add(event);
+		}
+		int[] accNumbers = dirty.drain();
+		if(taken.isEmpty() && accNumbers.length == 0) {
+			return 0;
+		}
+
+		int records = 0;
+		try {
+			frame.reset();
+			for(AccountEvent e : taken) {
+				if(e.kind == OPEN) {
+					writeAccount(frameOut, e.account);
+				}
+				else {
+					frameOut.writeByte(CLOSE);
+					frameOut.writeInt(e.account.getAccNumber());
+				}
+				records++;
+			}
+			for(int accNumber : accNumbers) {
+				BankAccount account = bank.getAccount(accNumber);
+				if(account != null) {
+					frameOut.writeByte(BALANCE);
+					frameOut.writeInt(accNumber);
+					frameOut.writeLong(account.getBalanceCents());
+					records++;
+				}
+			}
+			frameOut.flush();
+			writeFrame(frame.toByteArray());
+			wal.force(false);
+			walEnd = wal.position();
+			return records;
+		}
+		catch(IOException e) {
+			LOG.log(Level.SEVERE, "Failed to write account store log, will retry.", e);
+			// the failed events go ahead of any queued since, so a CLOSE is never logged before its OPEN
+			unwritten.addAll(taken);
+			for(int accNumber : accNumbers) {
+				dirty.add(accNumber);
+			}
+			discardFailedFrame();
+			return 0;
+		}
+	}
+
+	// cuts a frame that failed to be written or forced off the log, since replay stops at
+	// the first bad frame and would ignore every frame after it; caller holds walLock
+	private void discardFailedFrame() {
+		try {
+			wal.truncate(walEnd);
+			wal.position(walEnd);
+			wal.force(false);
+			return;
+		}
+		catch(IOException e) {
+			LOG.log(Level.SEVERE, "Failed to cut back account store log " + walPath(generation) + ", starting a new one.", e);
+		}
+		try {
+			FileChannel next = openWal(generation + 1);
+			try {
+				wal.close();
+			}
+			catch(IOException e) {
+				LOG.log(Level.WARNING, "Failed to close account store log.", e);
+			}
+			wal = next;
+			generation++;
+		}
+		catch(IOException e) {
+			// the next batch tries again from the same offset
+			LOG.log(Level.SEVERE, "Failed to start a new account store log.", e);
+		}
+	}
+
+	private void writeFrame(byte[] payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer header = ByteBuffer.allocate(8).putInt(payload.length).putInt((int) crc.getValue());
+		header.flip();
+		ByteBuffer body = ByteBuffer.wrap(payload);
+		while(header.hasRemaining() || body.hasRemaining()) {
+			wal.write(new ByteBuffer[] { header, body });
+		}
+	}
+
+	private FileChannel openWal(long gen) throws IOException {
+		FileChannel channel = FileChannel.open(walPath(gen), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(WAL_HEADER_SIZE).putInt(WAL_MAGIC).putInt(VERSION).putLong(gen);
+		header.flip();
+		while(header.hasRemaining()) {
+			channel.write(header);
+		}
+		channel.force(true);
+		walEnd = WAL_HEADER_SIZE;
+		return channel;
+	}
+
+
+	// snapshots
+
+	/**
+	 * Writes a snapshot of every account and deletes the snapshot and log files it
+	 * replaces. Transactions keep running while the snapshot is written.
+	 *
+	 * @throws IOException if the snapshot cannot be written; the previous snapshot and
+	 *         logs are left in place.
+	 */
+	public void snapshot() throws IOException {
+		snapshotLock.lock();
+		try {
+			long gen;
+			walLock.lock();
+			try {
+				writeBatch();
+				FileChannel next = openWal(generation + 1);
+				wal.close();
+				wal = next;
+				gen = ++generation;
+			}
+			finally {
+				walLock.unlock();
+			}
+
+			Path temp = directory.resolve(SNAPSHOT_PREFIX + gen + ".tmp");
+			writeSnapshot(temp, gen);
+			Files.move(temp, snapshotPath(gen), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			for(long old : generations(SNAPSHOT_PREFIX)) {
+				if(old < gen) {
+					Files.deleteIfExists(snapshotPath(old));
+				}
+			}
+			for(long old : generations(WAL_PREFIX)) {
+				if(old < gen) {
+					Files.deleteIfExists(walPath(old));
+				}
+			}
+		}
+		finally {
+			snapshotLock.unlock();
+		}
+	}
+
+	private void writeSnapshot(Path file, long gen) throws IOException {
+		CRC32 crc = new CRC32();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE);
+			DataOutputStream out = new DataOutputStream(new CheckedOutputStream(stream, crc));
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(gen);
+			long[] count = new long[1];
+			try {
+				bank.forEachAccount(account -> {
+					if(account.getAccNumber() > 0) {
+						try {
+							writeAccount(out, account);
+						}
+						catch(IOException e) {
+							throw new UncheckedIOException(e);
+						}
+						count[0]++;
+					}
+				});
+			}
+			catch(UncheckedIOException e) {
+				throw e.getCause();
+			}
+			out.writeByte(END);
+			out.writeLong(count[0]);
+			out.flush();
+			new DataOutputStream(stream).writeInt((int) crc.getValue());
+			stream.flush();
+			channel.force(true);
+		}
+	}
+
+	private void periodicSnapshot() {
+		try {
+			snapshot();
+		}
+		catch(IOException | RuntimeException e) {
+			LOG.log(Level.WARNING, "Failed to write account store snapshot.", e);
+		}
+	}
+
+
+	// recovery
+
+	// rebuilds the bank and returns the highest generation found, or 0 for an empty store
+	private long recover() throws IOException {
+		List<Long> snapshots = generations(SNAPSHOT_PREFIX);
+		long base = -1;
+		for(int i = snapshots.size() - 1; i >= 0 && base < 0; i--) {
+			long gen = snapshots.get(i);
+			if(isValidSnapshot(snapshotPath(gen))) {
+				loadSnapshot(snapshotPath(gen));
+				base = gen;
+			}
+			else {
+				LOG.warning("Ignoring damaged account store snapshot " + snapshotPath(gen));
+			}
+		}
+
+		long highest = Math.max(base, 0);
+		for(long gen : generations(WAL_PREFIX)) {
+			if(gen >= base) {
+				replayWal(walPath(gen));
+			}
+			highest = Math.max(highest, gen);
+		}
+		return highest;
+	}
+
+	private boolean isValidSnapshot(Path file) throws IOException {
+		long size = Files.size(file);
+		if(size < 4) {
+			return false;
+		}
+		CRC32 crc = new CRC32();
+		try(InputStream in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE), crc);
+			DataInputStream trailer = new DataInputStream(Files.newInputStream(file))) {
+			byte[] buffer = new byte[IO_BUFFER_SIZE];
+			long remaining = size - 4;
+			while(remaining > 0) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if(read < 0) {
+					return false;
+				}
+				remaining -= read;
+			}
+			trailer.skipNBytes(size - 4);
+			return trailer.readInt() == (int) crc.getValue();
+		}
+	}
+
+	private void loadSnapshot(Path file) throws IOException {
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE))) {
+			if(in.readInt() != SNAPSHOT_MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not an account store snapshot: " + file);
+			}
+			in.readLong();
+			byte kind;
+			while((kind = in.readByte()) == OPEN) {
+				readAccount(in);
+				recoveredAccounts++;
+			}
+			if(kind != END) {
+				throw new IOException("Unexpected record in account store snapshot " + file + ": " + kind);
+			}
+		}
+	}
+
+	private void replayWal(Path file) throws IOException {
+		long remaining = Files.size(file) - WAL_HEADER_SIZE;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE))) {
+			if(in.readInt() != WAL_MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not an account store log: " + file);
+			}
+			in.readLong();
+			while(true) {
+				int length;
+				int checksum;
+				byte[] payload;
+				try {
+					length = in.readInt();
+					checksum = in.readInt();
+					remaining -= 8;
+					if(length < 0 || length > remaining) {
+						LOG.warning("Ignoring torn frame at the end of account store log " + file);
+						break;
+					}
+					payload = in.readNBytes(length);
+					remaining -= length;
+				}
+				catch(EOFException e) {
+					break;
+				}
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if(payload.length != length || (int) crc.getValue() != checksum) {
+					LOG.warning("Ignoring torn frame at the end of account store log " + file);
+					break;
+				}
+				replayFrame(new DataInputStream(new ByteArrayInputStream(payload)), file);
+			}
+		}
+		catch(EOFException e) {
+			LOG.warning("Ignoring account store log with a torn header: " + file);
+		}
+	}
+
+	private void replayFrame(DataInputStream in, Path file) throws IOException {
+		while(in.available() > 0) {
+			byte kind = in.readByte();
+			switch(kind) {
+				case OPEN:
+					readAccount(in);
+					break;
+				case CLOSE: {
+					BankAccount account = bank.getAccount(in.readInt());
+					if(account != null) {
+						bank.removeAccount(account);
+					}
+					break;
+				}
+				case BALANCE: {
+					BankAccount account = bank.getAccount(in.readInt());
+					long balance = in.readLong();
+					if(account != null) {
+						account.restoreBalanceCents(balance);
+					}
+					break;
+				}
+				default:
+					throw new IOException("Unexpected record in account store log " + file + ": " + kind);
+			}
+			replayedRecords++;
+		}
+	}
+
+
+	// account records
+
+	private static void writeAccount(DataOutputStream out, BankAccount account) throws IOException {
+		out.writeByte(OPEN);
+		out.writeInt(account.getAccNumber());
+		out.writeLong(account.getBalanceCents());
+		out.writeInt(account.getAge());
+		out.writeUTF(account.getAccType());
+		out.writeUTF(account.getFirstName());
+		out.writeUTF(account.getLastName());
+		out.writeUTF(account.getAddress());
+	}
+
+	// reads one OPEN record and restores it into the bank, replacing any account with the same number
+	private void readAccount(DataInputStream in) throws IOException {
+		int accNumber = in.readInt();
+		long balance = in.readLong();
+		int age = in.readInt();
+		String accType = in.readUTF().intern();
+		String firstName = in.readUTF();
+		String lastName = in.readUTF();
+		String address = in.readUTF();
+		BankAccount existing = bank.getAccount(accNumber);
+		if(existing != null) {
+			bank.removeAccount(existing);
+		}
+		try {
+			BankAccount.restore(accNumber, accType, firstName, lastName, age, address, balance, bank);
+		}
+		catch(IllegalArgumentException e) {
+			throw new IOException("Invalid account " + accNumber + " in account store: " + e.getMessage(), e);
+		}
+	}
+
+
+	// file names
+
+	private Path snapshotPath(long gen) {
+		return directory.resolve(SNAPSHOT_PREFIX + gen + SUFFIX);
+	}
+
+	private Path walPath(long gen) {
+		return directory.resolve(WAL_PREFIX + gen + SUFFIX);
+	}
+
+	// generations of the files with the given prefix, in ascending order
+	private List<Long> generations(String prefix) throws IOException {
+		List<Long> found = new ArrayList<>();
+		try(Stream<Path> files = Files.list(directory)) {
+			files.forEach(path -> {
+				String name = path.getFileName().toString();
+				if(name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+					try {
+						found.add(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())));
+					}
+					catch(NumberFormatException e) {
+						// not one of ours
+					}
+				}
+			});
+		}
+		Collections.sort(found);
+		return found;
+	}
+
+
+	// getter methods
+
+	public long getGeneration() {
+		walLock.lock();
+		try {
+			return generation;
+		}
+		finally {
+			walLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of accounts loaded from the snapshot when the store was opened.
+	 *
+	 * @return the recovered account count.
+	 */
+	public long getRecoveredAccounts() {
+		return recoveredAccounts;
+	}
+
+	/**
+	 * Gets the number of log records replayed when the store was opened.
+	 *
+	 * @return the replayed record count.
+	 */
+	public long getReplayedRecords() {
+		return replayedRecords;
+	}
+
+	/**
+	 * Gets the time it took to rebuild the bank when the store was opened.
+	 *
+	 * @return the recovery time, in milliseconds.
+	 */
+	public double getRecoveryMillis() {
+		return recoveryNanos / 1e6;
+	}
+
+
+	// close method
+
+	/**
+	 * Stops logging the bank's changes, writes any still waiting and closes the log.
+	 */
+	@Override
+	public void close() {
+		bank.removeTransactionListener(this);
+		if(snapshotter != null) {
+			// let a snapshot in progress finish: interrupting it could close the live log
+			// channel under the writer
+			snapshotter.shutdown();
+			try {
+				while(!snapshotter.awaitTermination(1, TimeUnit.MINUTES)) {
+					LOG.warning("Waiting for an account store snapshot to finish.");
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		walLock.lock();
+		try {
+			writeBatch();
+			wal.close();
+		}
+		catch(IOException e) {
+			LOG.log(Level.WARNING, "Failed to close account store log.", e);
+		}
+		finally {
+			walLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * The BalanceSnapshot class holds the balances of every account of a Bank as they were at
+ * a single point in time, taken with Bank.snapshotBalances.
+ *
+ * The snapshot is a copy, so reports over it are consistent however long they take and
+ * never hold up the transactions running against the live accounts. Every transaction,
+ * transfer and batch is either wholly included or wholly left out, so for instance the
+ * total of a snapshot only ever changes between snapshots by deposits and withdrawals,
+ * never by a transfer caught halfway. That includes transfers between the shards of a
+ * ShardedTransactionProcessor, whose two halves are applied by different threads. Account
+ * types are captured with the balances, so per-type totals are unaffected by later
+ * calls to setAccType.
+ *
+ * Usage Example:
+ * BalanceSnapshot snapshot = bank.snapshotBalances();
+ * long total = snapshot.getTotalCents();
+ * Map<String, Long> byType = snapshot.getTotalsByType();
+ * List<BankAccount> richest = snapshot.getTopAccounts(10);
+ *
+ * Responsibilities:
+ * - Hold the accounts of a bank and their balances at one point in time.
+ * - Answer balance lookups, totals, per-type totals and top-N queries against it.
+ */
+
+package data_classes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+public final class BalanceSnapshot {
+
+	private final long epoch;
+	private final BankAccount[] accounts;	// in ascending account number order
+	private final int[] accNumbers;
+	private final long[] balances;
+	private final String[] types;
+
+
+	// constructor
+	BalanceSnapshot(long epoch, BankAccount[] accounts, long[] balances) {
+		this.epoch = epoch;
+		this.accounts = accounts;
+		this.balances = balances;
+		this.accNumbers = new int[accounts.length];
+		this.types = new String[accounts.length];
+		for(int i = 0; i < accounts.length; i++) {
+			accNumbers[i] = accounts[i].getAccNumber();
+			types[i] = accounts[i].getAccType();
+		}
+	}
+
+
+	// getter methods
+
+	/**
+	 * Gets the write epoch the snapshot was taken at. Snapshots of the same bank taken
+	 * later have larger epochs.
+	 *
+	 * @return the epoch.
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public int getAccountCount() {
+		return accounts.length;
+	}
+
+	public boolean containsAccount(int accNumber) {
+		return Arrays.binarySearch(accNumbers, accNumber) >= 0;
+	}
+
+	/**
+	 * Gets an account's balance at the time of the snapshot.
+	 *
+	 * @param accNumber the account number.
+	 * @return the balance, in cents.
+	 * @throws IllegalArgumentException if the account is not in the snapshot.
+	 */
+	public long getBalanceCents(int accNumber) {
+		int index = Arrays.binarySearch(accNumbers, accNumber);
+		if(index < 0) {
+			throw new IllegalArgumentException("Account number: " + accNumber + " is not in the snapshot.");
+		}
+		return balances[index];
+	}
+
+
+	// report methods
+
+	/**
+	 * Gets the total of every balance in the snapshot.
+	 *
+	 * @return the total, in cents.
+	 */
+	public long getTotalCents() {
+		long total = 0L;
+		for(long balance : balances) {
+			total += balance;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the total balance of each account type in the snapshot, by the type each
+	 * account had when the snapshot was taken.
+	 *
+	 * @return an unmodifiable map of account type to total in cents, sorted by type.
+	 */
+	public Map<String, Long> getTotalsByType() {
+		Map<String, Long> totals = new HashMap<>();
+		for(int i = 0; i < accounts.length; i++) {
+			totals.merge(types[i], balances[i], Long::sum);
+		}
+		return Collections.unmodifiableMap(new TreeMap<>(totals));
+	}
+
+	/**
+	 * Gets the accounts with the largest balances in the snapshot, largest first. Accounts
+	 * with equal balances are ordered by account number. Use getBalanceCents for the
+	 * balance each one had in the snapshot.
+	 *
+	 * @param n the number of accounts to return.
+	 * @return up to n accounts.
+	 * @throws IllegalArgumentException if n is negative.
+	 */
+	public List<BankAccount> getTopAccounts(int n) {
+		if(n < 0) {
+			throw new IllegalArgumentException("Invalid count: " + n + ". Count cannot be negative.");
+		}
+		int keep = Math.min(n, accounts.length);
+		// smallest kept index at the head, so each candidate is compared with the weakest one
+		PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, keep), (a, b) -> compareRank(b, a));
+		for(int i = 0; i < accounts.length && keep > 0; i++) {
+			if(top.size() < keep) {
+				top.add(i);
+			}
+			else if(compareRank(i, top.peek()) < 0) {
+				top.poll();
+				top.add(i);
+			}
+		}
+		List<BankAccount> result = new ArrayList<>(top.size());
+		while(!top.isEmpty()) {
+			result.add(accounts[top.poll()]);
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	// negative if index a ranks above index b
+	private int compareRank(int a, int b) {
+		int byBalance = Long.compare(balances[b], balances[a]);
+		return byBalance != 0 ? byBalance : Integer.compare(accNumbers[a], accNumbers[b]);
+	}
+}
@@ -5,8 +5,37 @@
  * 
  * This class also interacts with the Keyboard class to gather user input and validate 
  * that accounts conform to specified business rules before they are added to the bank's 
- * records. The Bank class uses a HashMap to store and manage the accounts, where each 
- * account is uniquely identified by its account number.
+ * records. The Bank class uses an AccountRegistry to store and manage the accounts, where 
+ * each account is uniquely identified by its account number and can be found with a 
+ * single array read.
+ * 
+ * A bank can also be brought online from a MappedAccountSnapshot with loadSnapshot. The 
+ * accounts in the snapshot count as part of the bank straight away, but each BankAccount 
+ * is only built, and moved into the registry, the first time it is looked up.
+ * 
+ * Transactions on the bank's accounts lock the accounts they change by default. With 
+ * setOptimistic(true) they instead commit by compare-and-set on a version stamp kept by 
+ * each account and retry when another transaction committed first; the conflicts and 
+ * retries are counted so the two modes can be compared on a real workload.
+ * 
+ * Reports that need every balance at one point in time, such as totals or the largest 
+ * balances, should run on a BalanceSnapshot from snapshotBalances. Taking one locks no 
+ * account for longer than a moment, and the report then runs on a copy of the balances.
+ * 
+ * The total balance and the number of accounts, overall and per account type, are kept 
+ * up to date on every transaction and every account added or removed, so reading them 
+ * takes the same time however many accounts the bank holds.
+ * 
+ * Accounts can be looked up by last name prefix, age range and account type through 
+ * findAccounts, which answers from indexes kept up to date as the accounts change.
+ * 
+ * Transactions made with a client-supplied id (BankAccount.depositOnce, withdrawOnce and 
+ * transferOnce) are remembered by the bank's TransactionIdCache, so a retried transaction 
+ * is not applied twice. After a restart, the cache is rebuilt from the journal with 
+ * getTransactionIdCache().restore(journal).
+ * 
+ * Savings accounts earn interest through an InterestAccrual, which credits them all in 
+ * parallel, once or on a schedule, without holding up other transactions.
  * 
  * Usage Example:
  * Bank bank = new Bank("MyBank");
@@ -17,6 +46,12 @@
  * - Add, delete, and retrieve bank accounts.
  * - Ensure account numbers are unique within the bank.
  * - Validate account objects before operations.
+ * - Apply netted batches of transfers between its accounts.
+ * - Take point-in-time consistent snapshots of every balance.
+ * - Keep bank-wide balance totals and account counts up to date.
+ * - Find accounts by last name prefix, age range and account type.
+ * - Remember the ids of transactions made with one, so retries are not applied twice.
+ * - Notify registered TransactionListeners of transactions on the bank's accounts.
  * 
  * The Bank class is crucial for managing the higher-level operations that involve 
  * multiple bank accounts and for maintaining the overall integrity of the system's 
@@ -25,19 +60,45 @@
 
 package data_classes;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
 import keyboard_class.Keyboard;
 
 
 public class Bank {
 	
 	// bank fields
-	private Map<Integer, BankAccount> accounts;
+	private final AccountRegistry accounts;
+	private volatile TransactionListener[] listeners = NO_LISTENERS;
+	private volatile MappedAccountSnapshot snapshot;
+	private AtomicLongArray removedFromSnapshot;					// one bit per snapshot index
+	private final AtomicInteger materialized = new AtomicInteger();	// snapshot accounts moved into the registry
+	private volatile boolean optimistic;
+	private final LongAdder optimisticConflicts = new LongAdder();	// optimistic transactions that had to retry
+	private final LongAdder optimisticRetries = new LongAdder();	// extra attempts made by those transactions
+	private final WriteEpochs epochs = new WriteEpochs();
+	private final Object balanceSnapshotLock = new Object();
+	private final BankTotals totals = new BankTotals();
+	private volatile long[] snapshotTotals;		// balance and count per type of every account in the snapshot file
+	private volatile AccountIndexes indexes;	// built on the first query, see findAccounts
+	private final Object indexLock = new Object();
+	private volatile TransactionIdCache transactionIds = new TransactionIdCache();
 	private int ID;
 	private String name;
 	private static Keyboard kb;
 	
+	private static final TransactionListener[] NO_LISTENERS = new TransactionListener[0];
+	
 	
 	// constructor
 	
@@ -46,12 +107,12 @@ public class Bank {
 		this.ID = id;
 		validateBankName(name);
 		this.name = name;
-		accounts = new HashMap<>();
+		accounts = new AccountRegistry();
 		kb 		 = new Keyboard();
 	}
 	
 	public Bank() {
-		accounts = new HashMap<>();
+		accounts = new AccountRegistry();
 		kb 		 = new Keyboard();
 	}
 
@@ -88,8 +149,70 @@ public class Bank {
 	
 	
 	// getter methods
+	
+	/**
+	 * Gets a copy of the bank's accounts keyed by account number.
+	 * 
+	 * The map is built on every call; use getAccount, containsAccount or forEachAccount 
+	 * for lookups and iteration.
+	 *
+	 * @return an unmodifiable map of account number to account.
+	 */
 	public Map<Integer, BankAccount> getAccounts() {
-		return accounts;
+		Map<Integer, BankAccount> copy = new LinkedHashMap<>();
+		forEachAccount(account -> copy.put(account.getAccNumber(), account));
+		return Collections.unmodifiableMap(copy);
+	}
+	
+	/**
+	 * Gets the account with the given account number.
+	 *
+	 * @param accNumber the account number to look up.
+	 * @return the account, or null if the bank has no account with that number.
+	 */
+	public BankAccount getAccount(int accNumber) {
+		BankAccount account = accounts.get(accNumber);
+		if(account == null && snapshot != null) {
+			account = materialize(accNumber);
+		}
+		return account;
+	}
+	
+	/**
+	 * Checks whether the bank holds an account with the given account number.
+	 *
+	 * @param accNumber the account number to look up.
+	 * @return true if the account exists in this bank.
+	 */
+	public boolean containsAccount(int accNumber) {
+		return accounts.contains(accNumber) || snapshotIndexOf(accNumber) >= 0;
+	}
+	
+	public int getAccountCount() {
+		MappedAccountSnapshot current = snapshot;
+		if(current == null) {
+			return accounts.size();
+		}
+		// only built accounts can be removed, so the rest of the snapshot is still in the bank
+		return accounts.size() + current.getAccountCount() - materialized.get();
+	}
+	
+	/**
+	 * Performs the given action for every account in the bank.
+	 * 
+	 * If the bank was loaded from a snapshot, every account still in the snapshot is 
+	 * built first, so the first call can take as long as a full load.
+	 *
+	 * @param action the action to perform.
+	 */
+	public void forEachAccount(Consumer<? super BankAccount> action) {
+		MappedAccountSnapshot current = snapshot;
+		if(current != null) {
+			for(int i = 0; i < current.getAccountCount(); i++) {
+				getAccount(current.accNumberAt(i));
+			}
+		}
+		accounts.forEach(action);
 	}
 	
 	/**
@@ -106,6 +229,84 @@ public class Bank {
 	public int getID() {
 		return ID;
 	}
+	
+	/**
+	 * Gets the total balance of every account in the bank. The total is kept up to date as 
+	 * transactions run, so this does not look at the accounts.
+	 *
+	 * @return the total, in cents.
+	 */
+	public long getTotalBalanceCents() {
+		long total = 0L;
+		for(int type = 0; type < BankTotals.TYPES; type++) {
+			total += totalBalance(type);
+		}
+		return total;
+	}
+	
+	/**
+	 * Gets the total balance of the bank's accounts of one type.
+	 *
+	 * @param accType the account type, checking or savings in any case.
+	 * @return the total, in cents.
+	 * @throws IllegalArgumentException if the account type is invalid.
+	 */
+	public long getTotalBalanceCents(String accType) {
+		BankAccount.validateAccountType(accType);
+		return totalBalance(BankTotals.typeOf(accType));
+	}
+	
+	/**
+	 * Gets the number of the bank's accounts of one type.
+	 *
+	 * @param accType the account type, checking or savings in any case.
+	 * @return the number of accounts.
+	 * @throws IllegalArgumentException if the account type is invalid.
+	 */
+	public long getAccountCount(String accType) {
+		BankAccount.validateAccountType(accType);
+		int type = BankTotals.typeOf(accType);
+		long[] base = snapshotTotals();
+		return totals.count(type) + (base == null ? 0L : base[BankTotals.TYPES + type]);
+	}
+	
+	private long totalBalance(int type) {
+		long[] base = snapshotTotals();
+		return totals.balance(type) + (base == null ? 0L : base[type]);
+	}
+	
+	public boolean isOptimistic() {
+		return optimistic;
+	}
+	
+	/**
+	 * Gets the number of optimistic transactions that found an account changed under them 
+	 * and had to start again at least once.
+	 *
+	 * @return the conflict count since the bank was created.
+	 */
+	public long getOptimisticConflicts() {
+		return optimisticConflicts.sum();
+	}
+	
+	/**
+	 * Gets the total number of extra attempts made by optimistic transactions.
+	 *
+	 * @return the retry count since the bank was created.
+	 */
+	public long getOptimisticRetries() {
+		return optimisticRetries.sum();
+	}
+	
+	/**
+	 * Gets the cache of transaction ids used by the accounts' depositOnce, withdrawOnce 
+	 * and transferOnce.
+	 *
+	 * @return the transaction id cache.
+	 */
+	public TransactionIdCache getTransactionIdCache() {
+		return transactionIds;
+	}
 
 	
 	// setter methods
@@ -127,6 +328,33 @@ public class Bank {
 		this.ID = id;
 	}
 	
+	/**
+	 * Chooses how transactions on this bank's accounts are made safe: by locking the 
+	 * accounts they change (the default), or optimistically, by validating and committing 
+	 * with compare-and-set on each account's version stamp and retrying on conflict.
+	 * 
+	 * Only switch modes while no transactions are running on the bank's accounts.
+	 *
+	 * @param optimistic true for optimistic transactions, false for locking.
+	 */
+	public void setOptimistic(boolean optimistic) {
+		this.optimistic = optimistic;
+	}
+	
+	/**
+	 * Replaces the cache of transaction ids, for instance with one of a different window 
+	 * or size. Ids held by the previous cache are forgotten, so only replace it before 
+	 * transactions with ids are taken.
+	 *
+	 * @param transactionIds the new cache.
+	 */
+	public void setTransactionIdCache(TransactionIdCache transactionIds) {
+		if(transactionIds == null) {
+			throw new IllegalArgumentException("Transaction id cache cannot be null.");
+		}
+		this.transactionIds = transactionIds;
+	}
+	
 
 	// TODO method to open new account
 	public void openNewAccount() {
@@ -158,10 +386,10 @@ public class Bank {
 		address = kb.readAddress(addressPromptMsg);
 		account.setAddress(address);
 		
-		Double balance;
+		long balance;
 		String balancePromptMsg = "Enter balance: \n";
 		balance = kb.readBalance(balancePromptMsg);
-		account.setBalance(balance);
+		account.setBalanceCents(balance);
 		
 //		try {
 //			
@@ -189,12 +417,17 @@ public class Bank {
 	 */
 	public void addAccount(BankAccount account) {
 		validateBankAccount(account);
-		if(!this.accounts.containsKey(account.getAccNumber())) {
-			this.accounts.put(account.getAccNumber(), account);
-		}
-		else {
+		if(snapshotIndexOf(account.getAccNumber()) >= 0 || !this.accounts.add(account)) {
 			throw new IllegalArgumentException("Account number: " + account.getAccNumber() + " already exsists in the system.\nPlease try a different account nummber.");
 		}
+		account.setCounted(true);
+		AccountIndexes built = indexes;
+		if(built != null) {
+			built.add(account);
+		}
+		for(TransactionListener listener : listeners) {
+			listener.onAccountAdded(account);
+		}
 	}
 	
 	
@@ -211,14 +444,290 @@ public class Bank {
 	 */
 	public void removeAccount(BankAccount account) {
 		validateBankAccount(account);
-		if(!this.accounts.containsKey(account.getAccNumber())) {
-			this.accounts.remove(account.getAccNumber());
+		// mark a snapshot account removed before it leaves the registry, so a concurrent 
+		// lookup cannot build it again from the file
+		MappedAccountSnapshot current = snapshot;
+		if(current != null && accounts.get(account.getAccNumber()) == account) {
+			int index = current.indexOf(account.getAccNumber());
+			if(index >= 0) {
+				markRemovedFromSnapshot(index);
+			}
 		}
-		else {
+		if(this.accounts.remove(account.getAccNumber()) == null) {
 			throw new IllegalArgumentException("Account number: " + account.getAccNumber() + " does not exsist in the system.\nPlease try a different account nummber.");
 		}
+		account.setCounted(false);
+		AccountIndexes built = indexes;
+		if(built != null) {
+			built.remove(account);
+		}
+		for(TransactionListener listener : listeners) {
+			listener.onAccountRemoved(account);
+		}
+	}
+	
+	
+	
+	// batch transfer methods
+	
+	/**
+	 * Applies a batch of transfers between this bank's accounts. Each account's transfers 
+	 * are netted and its balance is changed, journaled and reported to listeners once; 
+	 * each group of the batch is applied in full or not at all. See TransferBatch.
+	 *
+	 * @param batch the transfers to apply.
+	 * @return which groups were applied, and why any others were not.
+	 */
+	public TransferBatch.Result applyTransfers(TransferBatch batch) {
+		return batch.apply(this);
+	}
+	
+	
+	// balance snapshot methods
+	
+	/**
+	 * Takes a consistent snapshot of every account's balance: the balances as they were 
+	 * at a single point in time, with every transaction, transfer and batch either wholly 
+	 * in it or wholly after it. Transactions keep running while the snapshot is taken; it 
+	 * only waits for the ones already in progress to finish. Accounts opened or closed 
+	 * while the snapshot is taken may or may not be in it.
+	 *
+	 * @return the snapshot.
+	 */
+	public BalanceSnapshot snapshotBalances() {
+		List<BankAccount> list = new ArrayList<>(getAccountCount());
+		forEachAccount(list::add);
+		BankAccount[] all = list.toArray(new BankAccount[0]);
+		Arrays.sort(all, Comparator.comparingInt(BankAccount::getAccNumber));
+		long[] balances = new long[all.length];
+		synchronized(balanceSnapshotLock) {
+			// balances must be read before the next snapshot closes the epoch after this one
+			long epoch = epochs.advance();
+			for(int i = 0; i < all.length; i++) {
+				balances[i] = all[i].balanceAsOf(epoch);
+			}
+			return new BalanceSnapshot(epoch, all, balances);
+		}
+	}
+	
+	// the current write epoch, for balance changes made while holding the accounts' lock stripes
+	long currentEpoch() {
+		return epochs.current();
+	}
+	
+	// enters the current write epoch, for balance changes made without the lock stripes
+	long enterWrite() {
+		return epochs.enter();
 	}
 	
+	void exitWrite(long epoch) {
+		epochs.exit(epoch);
+	}
+	
+	
+	// query methods
+	
+	/**
+	 * Starts a query for accounts by last name prefix, age range and account type, see 
+	 * AccountQuery. The bank keeps an index on each of the three, updated by addAccount, 
+	 * removeAccount and the account's setters, so a query only looks at the accounts one 
+	 * of the indexes points it to instead of at every account.
+	 * 
+	 * The indexes are built by the first query, which walks every account once (building 
+	 * any still only in a mapped snapshot), and kept up to date from then on.
+	 *
+	 * @return a new query that matches every account.
+	 */
+	public AccountQuery findAccounts() {
+		return new AccountQuery(this);
+	}
+	
+	// the bank's indexes, built on first use; queries wait here until they are complete
+	AccountIndexes indexes() {
+		AccountIndexes current = indexes;
+		if(current != null && current.isReady()) {
+			return current;
+		}
+		synchronized(indexLock) {
+			current = indexes;
+			if(current == null) {
+				// published before the walk, so accounts added or changed meanwhile are indexed too
+				current = new AccountIndexes();
+				indexes = current;
+				AccountIndexes building = current;
+				forEachAccount(account -> {
+					building.add(account);
+					if(accounts.get(account.getAccNumber()) != account) {
+						// removed while being indexed
+						building.remove(account);
+					}
+				});
+				current.markReady();
+			}
+			return current;
+		}
+	}
+	
+	// moves an account's index entries after a setter changed its last name, age or type
+	void reindex(BankAccount account, String oldLastName, int oldAge, String oldAccType) {
+		AccountIndexes current = indexes;
+		if(current != null && accounts.get(account.getAccNumber()) == account) {
+			current.update(account, oldLastName, oldAge, oldAccType);
+		}
+	}
+	
+	
+	// snapshot methods
+	
+	/**
+	 * Brings the bank online from a mapped snapshot. The snapshot's accounts belong to the 
+	 * bank at once, but each one is only built when it is first looked up.
+	 * 
+	 * Listeners are not told about snapshot accounts as they are built, since they were 
+	 * already part of the bank.
+	 *
+	 * @param snapshot the snapshot to load.
+	 * @throws IllegalStateException if the bank already has accounts or a snapshot.
+	 */
+	public synchronized void loadSnapshot(MappedAccountSnapshot snapshot) {
+		if(this.snapshot != null || accounts.size() > 0) {
+			throw new IllegalStateException("A snapshot can only be loaded into an empty bank.");
+		}
+		removedFromSnapshot = new AtomicLongArray((snapshot.getAccountCount() + 63) >>> 6);
+		this.snapshot = snapshot;
+	}
+	
+	// builds a snapshot account that is not in the registry yet, or returns null
+	private BankAccount materialize(int accNumber) {
+		MappedAccountSnapshot current = snapshot;
+		int index = current.indexOf(accNumber);
+		if(index < 0 || isRemovedFromSnapshot(index)) {
+			return null;
+		}
+		BankAccount account = current.materialize(index, this);
+		// its balance in the file is already in snapshotTotals
+		account.markCounted();
+		if(accounts.add(account)) {
+			if(isRemovedFromSnapshot(index)) {
+				// built and removed by other threads while this copy was being read
+				accounts.remove(accNumber);
+				return null;
+			}
+			materialized.incrementAndGet();
+			AccountIndexes built = indexes;
+			if(built != null) {
+				built.add(account);
+			}
+			return account;
+		}
+		// another thread built it first, or it was removed meanwhile
+		return accounts.get(accNumber);
+	}
+	
+	// Totals of every account in the snapshot file as it was written, read once on first use: 
+	// balances by type, then counts by type. Built accounts only add their changes since, and 
+	// removed ones take out their whole balance, so the file's figures never need adjusting.
+	private long[] snapshotTotals() {
+		long[] base = snapshotTotals;
+		MappedAccountSnapshot current = snapshot;
+		if(base == null && current != null) {
+			synchronized(this) {
+				base = snapshotTotals;
+				if(base == null) {
+					base = new long[BankTotals.TYPES * 2];
+					for(int i = 0; i < current.getAccountCount(); i++) {
+						int type = BankTotals.typeOf(current.accTypeAt(i));
+						base[type] += current.balanceAt(i);
+						base[BankTotals.TYPES + type]++;
+					}
+					snapshotTotals = base;
+				}
+			}
+		}
+		return base;
+	}
+	
+	// index of an account that is still only in the snapshot, or -1
+	private int snapshotIndexOf(int accNumber) {
+		MappedAccountSnapshot current = snapshot;
+		if(current == null || accounts.contains(accNumber)) {
+			return -1;
+		}
+		int index = current.indexOf(accNumber);
+		return index >= 0 && !isRemovedFromSnapshot(index) ? index : -1;
+	}
+	
+	private boolean isRemovedFromSnapshot(int index) {
+		return (removedFromSnapshot.get(index >>> 6) & (1L << index)) != 0;
+	}
+	
+	private void markRemovedFromSnapshot(int index) {
+		long bit = 1L << index;
+		removedFromSnapshot.getAndAccumulate(index >>> 6, bit, (word, mask) -> word | mask);
+	}
+	
+	
+	// transaction listener methods
+	
+	/**
+	 * Registers a listener to be told about every transaction on this bank's accounts.
+	 * 
+	 * Listeners are kept in a copy-on-write array, so registering is relatively expensive 
+	 * but notifying them on every transaction never locks or allocates.
+	 *
+	 * @param listener the listener to add.
+	 */
+	public synchronized void addTransactionListener(TransactionListener listener) {
+		TransactionListener[] current = listeners;
+		TransactionListener[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = listener;
+		listeners = updated;
+	}
+	
+	/**
+	 * Unregisters a listener added with addTransactionListener.
+	 *
+	 * @param listener the listener to remove.
+	 * @return true if the listener was registered.
+	 */
+	public synchronized boolean removeTransactionListener(TransactionListener listener) {
+		TransactionListener[] current = listeners;
+		for(int i = 0; i < current.length; i++) {
+			if(current[i] == listener) {
+				TransactionListener[] updated = new TransactionListener[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				listeners = updated;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// adds a balance change of an account of the given type to the bank's totals
+	void addToTotals(int type, long deltaCents) {
+		totals.addBalance(type, deltaCents);
+	}
+	
+	// adds accounts joining (count 1) or leaving (count -1) the bank to its totals
+	void addToTotals(int type, long balanceCents, int count) {
+		totals.addAccount(type, balanceCents, count);
+	}
+	
+	// counts one finished optimistic transaction and the retries it needed
+	void recordOptimistic(int retries) {
+		if(retries > 0) {
+			optimisticConflicts.increment();
+			optimisticRetries.add(retries);
+		}
+	}
+	
+	// tells every registered listener about a transaction applied to one of this bank's accounts
+	void fireTransaction(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		for(TransactionListener listener : listeners) {
+			listener.onTransaction(accNumber, type, amountCents, balanceCents, counterparty);
+		}
+	}
 	
 	
 	// TODO method to display account information
@@ -242,7 +751,7 @@ public class Bank {
 	 */
 	@Override
 	public String toString() {
-		return "Bank [accounts=" + accounts + "]";
+		return "Bank [accounts=" + getAccounts() + "]";
 	}
 
 }
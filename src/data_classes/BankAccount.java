@@ -1,16 +1,48 @@
 package data_classes;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.LongSupplier;
+
 import Exception_classes.IllegalWithdrawException;
 
 /**
  * The BankAccount class represents an individual bank account in the system.
  * Each account has associated fields such as account number, account type, 
  * balance, and owner information (e.g., first name, last name, age, address).
+ * Balances and amounts are held as whole cents in primitive longs, so balance arithmetic 
+ * is exact and never allocates; the double-based methods convert dollars to cents and 
+ * delegate to their cent-based counterparts.
  * 
  * The class handles transactions like deposits, withdrawals, and transfers, 
  * while also ensuring that all data conforms to specified business rules through 
  * the use of validation methods. It also maintains a log of transactions using 
- * the DataLogger class.
+ * the DataLogger class, and reports each transaction to the TransactionListeners 
+ * registered on its Bank.
+ * 
+ * Balances are guarded in one of two ways, chosen by the account's Bank. By default a 
+ * transaction holds the lock stripes of the accounts it changes. In optimistic mode 
+ * (Bank.setOptimistic) nothing is locked: each account carries a version stamp, a 
+ * transaction reads the versions and balances it needs, checks them, and commits by 
+ * moving each version from the value it read to an odd "committing" value with a 
+ * compare-and-set. If another transaction got there first the compare-and-set fails and 
+ * the transaction starts again from fresh reads. Conflicts and retries are counted on 
+ * the Bank.
+ * 
+ * setLastName, setAge and setAccType keep the Bank's account indexes (see 
+ * Bank.findAccounts) up to date; they hold the account's own lock while they do, so 
+ * concurrent changes to one account reach the indexes in the order they were made.
+ * 
+ * Deposits, withdrawals and transfers are counted and timed by TransactionMetrics while 
+ * it is enabled.
+ * 
+ * withdrawCents and transferCents throw IllegalWithdrawException when funds are 
+ * insufficient. tryWithdraw and tryTransfer do the same work but return the outcome as 
+ * a primitive result, read with isDeclined and balanceOf, for callers where declines 
+ * are routine and an exception per decline would dominate the cost.
+ * 
+ * Once the transaction journal has failed to write, every transaction is declined with 
+ * an UncheckedIOException before it changes any balance (see 
+ * TransactionJournal.checkHealthy), so a transaction that throws never moved money.
  * 
  * Usage Example:
  * BankAccount account = new BankAccount(12345, "Checking", "John", "Doe", 30, "123 Elm St", 100.0, bank);
@@ -28,7 +60,12 @@ public class BankAccount {
     // BankAccount fields
     private int accNumber;
     private String accType;
-    private double accBalance;
+    private volatile long accBalance;		// in cents
+    private volatile long version;			// optimistic mode: even when stable, odd while a commit is in progress
+    private volatile long writeEpoch;		// epoch of the last balance change, see WriteEpochs
+    private volatile long priorBalance;		// balance before the first change in writeEpoch
+    private int totalsType = BankTotals.UNTYPED;	// bucket of accType in the bank's totals
+    private volatile boolean counted;		// balance is included in the bank's totals
     private String firstName;
     private String lastName;
     private int age;
@@ -41,15 +78,13 @@ public class BankAccount {
     private DataLogger logger;
 
     // Symbolic constants
-    private static Integer MINIMUM_AGE;
-    private static Double DEFAULT_BALANCE;
+    private static final int MINIMUM_AGE = 16;
+    private static final long DEFAULT_BALANCE = 0L;
+    private static final long MINIMUM_OPENING_BALANCE = 100L * Money.CENTS_PER_DOLLAR;
 
-    
-    // Initialization block
-    {
-        MINIMUM_AGE = 16;
-        DEFAULT_BALANCE = 0.0;
-    }
+    private static final int SPINS_BEFORE_YIELD = 16;	// a power of two
+    private static final AtomicLongFieldUpdater<BankAccount> VERSION =
+            AtomicLongFieldUpdater.newUpdater(BankAccount.class, "version");
 
     
     // Constructors
@@ -63,30 +98,30 @@ public class BankAccount {
      * @param lastName The last name of the account holder.
      * @param age The age of the account holder.
      * @param address The address of the account holder.
-     * @param balance The initial balance of the account.
+     * @param balance The initial balance of the account, in dollars.
      * @param bank The bank to which the account belongs.
      */
     public BankAccount(final int accNum, final String accType, final String firstName, final String lastName, final int age, String address, double balance, Bank bank) {
-        super();
-        validateAccountNumber(accNum);
-        this.accNumber = accNum;
-        validateAccountType(accType);
-        this.accType = accType;
-        validateName(firstName);
-        this.firstName = firstName;
-        validateName(lastName);
-        this.lastName = lastName;
-        validateAge(age);
-        this.age = age;
-        validateAddress(address);
-        this.address = address;
-        validateBalance(balance);
-        this.accBalance = balance;
-        validateBank(bank);
-        this.bank = bank;
-        bank.addAccount(this);
+        this(accNum, accType, firstName, lastName, age, address, Money.toCents(balance), bank, true, true);
+    }
 
-        this.logger = new DataLogger(accNumber); // Initialize a DataLogger for this specific account
+    /**
+     * Creates a new BankAccount with the specified details and an initial balance in cents.
+     * This is a factory rather than a constructor overload so that a whole number of
+     * cents can never be mistaken for dollars, or dollars for cents.
+     * 
+     * @param accNum The account number.
+     * @param accType The type of the account (e.g., Checking, Savings).
+     * @param firstName The first name of the account holder.
+     * @param lastName The last name of the account holder.
+     * @param age The age of the account holder.
+     * @param address The address of the account holder.
+     * @param balanceCents The initial balance of the account, in cents.
+     * @param bank The bank to which the account belongs.
+     * @return the new account.
+     */
+    public static BankAccount ofCents(final int accNum, final String accType, final String firstName, final String lastName, final int age, String address, long balanceCents, Bank bank) {
+        return new BankAccount(accNum, accType, firstName, lastName, age, address, balanceCents, bank, true, true);
     }
 
     /**
@@ -101,7 +136,7 @@ public class BankAccount {
      * @param bank The bank to which the account belongs.
      */
     public BankAccount(final int accNum, final String accType, final String firstName, final String lastName, final int age, String address, Bank bank) {
-        this(accNum, accType, firstName, lastName, age, address, DEFAULT_BALANCE, bank);
+        this(accNum, accType, firstName, lastName, age, address, DEFAULT_BALANCE, bank, true, true);
     }
 
     /**
@@ -119,6 +154,77 @@ public class BankAccount {
         // Use in bank . open new account, once account with accNumber has been retrieved from database, assign logger with accNumber
     }
 
+    // Validates and sets up every account built from its details. An account being opened
+    // must meet the opening rules for its number and balance, while one restored from storage
+    // only needs a positive number and a non-negative balance; see restore() and materialize().
+    // Unless register is false, the account is added to its bank.
+    private BankAccount(final int accNum, final String accType, final String firstName, final String lastName, final int age, String address, long balanceCents, Bank bank, boolean opening, boolean register) {
+        super();
+        if (opening) {
+            validateAccountNumber(accNum);
+        }
+        else if (accNum <= 0) {
+            throw new IllegalArgumentException("Invalid account number: " + accNum + ". Account numbers must be positive.");
+        }
+        this.accNumber = accNum;
+        validateAccountType(accType);
+        this.accType = accType;
+        this.totalsType = BankTotals.typeOf(accType);
+        validateName(firstName);
+        this.firstName = firstName;
+        validateName(lastName);
+        this.lastName = lastName;
+        validateAge(age);
+        this.age = age;
+        validateAddress(address);
+        this.address = address;
+        if (opening) {
+            validateBalance(balanceCents);
+        }
+        else if (balanceCents < 0L) {
+            throw new IllegalArgumentException("Invalid balance: " + Money.format(balanceCents) + ". Balance cannot be negative.");
+        }
+        this.accBalance = balanceCents;
+        validateBank(bank);
+        this.bank = bank;
+        if (register) {
+            bank.addAccount(this);
+        }
+
+        // a new account's statements never look at older journal records
+        this.logger = opening ? DataLogger.forNewAccount(accNumber) : new DataLogger(accNumber);
+    }
+
+    /**
+     * Re-creates an existing account from stored data, such as a database row, and adds it
+     * to its bank.
+     *
+     * The account holder's details are validated as usual, but the rules that only apply
+     * when an account is first opened are not: the balance may be below the minimum
+     * opening balance (it only has to be non-negative), and the account number only has
+     * to be positive, since stored accounts may use a wider numbering range than new ones.
+     *
+     * @param accNum The account number.
+     * @param accType The type of the account (e.g., Checking, Savings).
+     * @param firstName The first name of the account holder.
+     * @param lastName The last name of the account holder.
+     * @param age The age of the account holder.
+     * @param address The address of the account holder.
+     * @param balanceCents The stored balance of the account, in cents.
+     * @param bank The bank to which the account belongs.
+     * @return the restored account.
+     * @throws IllegalArgumentException if any of the stored values is invalid or the
+     *         account number already exists in the bank.
+     */
+    public static BankAccount restore(final int accNum, final String accType, final String firstName, final String lastName, final int age, String address, long balanceCents, Bank bank) {
+        return new BankAccount(accNum, accType, firstName, lastName, age, address, balanceCents, bank, false, true);
+    }
+
+    // Builds an account without adding it to its bank; the caller registers it itself
+    static BankAccount materialize(final int accNum, final String accType, final String firstName, final String lastName, final int age, String address, long balanceCents, Bank bank) {
+        return new BankAccount(accNum, accType, firstName, lastName, age, address, balanceCents, bank, false, false);
+    }
+
     
     
     // BankAccount validation methods
@@ -140,7 +246,7 @@ public class BankAccount {
             return false;
         }
         // Check if the account number exists in the bank's accounts
-        return bank.getAccounts().containsKey(num);
+        return bank.containsAccount(num);
     }
     
     /**
@@ -194,12 +300,12 @@ public class BankAccount {
     /**
      * Validates the initial balance to ensure it meets the minimum required balance.
      * 
-     * @param balance The initial balance to validate.
+     * @param balanceCents The initial balance to validate, in cents.
      * @throws IllegalArgumentException if the balance is less than the minimum required.
      */
-    public static void validateBalance(Double balance) {
-        if (balance < 100.00) {
-            throw new IllegalArgumentException("Invalid amount: " + balance + ". Minimum balance of $100.00 needed to register account.");
+    public static void validateBalance(long balanceCents) {
+        if (balanceCents < MINIMUM_OPENING_BALANCE) {
+            throw new IllegalArgumentException("Invalid amount: " + Money.format(balanceCents) + ". Minimum balance of $100.00 needed to register account.");
         }
     }
 
@@ -218,12 +324,12 @@ public class BankAccount {
     /**
      * Validates an amount to ensure it is greater than zero.
      * 
-     * @param amount The amount to validate.
+     * @param amountCents The amount to validate, in cents.
      * @throws IllegalArgumentException if the amount is not valid.
      */
-    private static void validateAmount(Double amount) {
-        if (amount < 0.0) {
-            throw new IllegalArgumentException("Invalid amount: " + amount + ". Amount must be more than 0");
+    private static void validateAmount(long amountCents) {
+        if (amountCents < 0L) {
+            throw new IllegalArgumentException("Invalid amount: " + Money.format(amountCents) + ". Amount must be more than 0");
         }
     }
     
@@ -288,9 +394,18 @@ public class BankAccount {
     /**
      * Gets the current balance of the account.
      *
-     * @return the current balance of this BankAccount.
+     * @return the current balance of this BankAccount, in dollars.
      */
-    public Double getBalance() {
+    public double getBalance() {
+        return Money.toDollars(this.accBalance);
+    }
+
+    /**
+     * Gets the current balance of the account in cents.
+     *
+     * @return the current balance of this BankAccount, in cents.
+     */
+    public long getBalanceCents() {
         return this.accBalance;
     }
     
@@ -301,6 +416,31 @@ public class BankAccount {
     public Bank getBank() {
     	return bank;
     }
+
+    /**
+     * Gets a statement of the account's latest transactions. Recent transactions are kept
+     * in memory, so a short statement does not read the journal.
+     * 
+     * @param count The most transactions to list.
+     * @return The statement, oldest transaction first.
+     * @throws IllegalArgumentException if count is negative.
+     */
+    public AccountStatement getStatement(int count) {
+        return logger.getStatement(count);
+    }
+
+    /**
+     * Gets a statement of the account's transactions made from fromMillis up to but
+     * excluding toMillis.
+     * 
+     * @param fromMillis The start of the period, in epoch milliseconds.
+     * @param toMillis The end of the period, in epoch milliseconds.
+     * @return The statement, oldest transaction first.
+     * @throws IllegalArgumentException if the period ends before it starts.
+     */
+    public AccountStatement getStatement(long fromMillis, long toMillis) {
+        return logger.getStatement(fromMillis, toMillis);
+    }
     
     
 
@@ -325,7 +465,23 @@ public class BankAccount {
      */
     public void setAccType(String accType) {
         validateAccountType(accType);
-        this.accType = accType;
+        int type = BankTotals.typeOf(accType);
+        synchronized (this) {
+            String oldAccType = this.accType;
+            long claimed = hold();
+            try {
+                if (this.counted && type != this.totalsType) {
+                    bank.addToTotals(this.totalsType, -this.accBalance, -1);
+                    bank.addToTotals(type, this.accBalance, 1);
+                }
+                this.accType = accType;
+                this.totalsType = type;
+            }
+            finally {
+                unhold(claimed);
+            }
+            bank.reindex(this, this.lastName, this.age, oldAccType);
+        }
     }
 
     /**
@@ -347,7 +503,11 @@ public class BankAccount {
      */
     public void setLastName(String lastName) {
         validateName(lastName);
-        this.lastName = lastName;
+        synchronized (this) {
+            String oldLastName = this.lastName;
+            this.lastName = lastName;
+            bank.reindex(this, oldLastName, this.age, this.accType);
+        }
     }
 
     /**
@@ -358,7 +518,11 @@ public class BankAccount {
      */
     public void setAge(int age) {
         validateAge(age);
-        this.age = age;
+        synchronized (this) {
+            int oldAge = this.age;
+            this.age = age;
+            bank.reindex(this, this.lastName, oldAge, this.accType);
+        }
     }
 
     /**
@@ -375,14 +539,228 @@ public class BankAccount {
     /**
      * Sets the balance of the account.
      * 
-     * @param balance The new balance.
+     * @param balance The new balance, in dollars.
      * @throws IllegalArgumentException if the balance is invalid.
      */
     public void setBalance(double balance) {
-        validateBalance(balance);
-        this.accBalance = balance;
+        setBalanceCents(Money.toCents(balance));
     }
-    
+
+    /**
+     * Sets the balance of the account in cents.
+     * 
+     * @param balanceCents The new balance, in cents.
+     * @throws IllegalArgumentException if the balance is invalid.
+     */
+    public void setBalanceCents(long balanceCents) {
+        validateBalance(balanceCents);
+        restoreBalanceCents(balanceCents);
+    }
+
+    // Sets a balance recovered from storage, which may be below the minimum opening
+    // balance. Holds the account, so the write cannot interleave with setCounted or
+    // setAccType moving the balance between the bank's totals.
+    void restoreBalanceCents(long balanceCents) {
+        long claimed = hold();
+        try {
+            long epoch = bank.enterWrite();
+            writeBalance(epoch, balanceCents);
+            bank.exitWrite(epoch);
+        }
+        finally {
+            unhold(claimed);
+        }
+    }
+
+    // Adds an amount to the balance, holding the account as the bank's own transactions
+    // do, as a write of an epoch the caller entered (see WriteEpochs). The epoch may have
+    // been entered before the account was held, so the account may already have been
+    // written in the epoch after it; the change then also moves the balance that epoch
+    // ended with. Returns the new balance, or -(balance + 1), changing nothing, if the
+    // balance would go below zero or past the largest balance an account can hold. For
+    // single-writer shards, see ShardedTransactionProcessor.
+    long addBalanceHeld(long epoch, long deltaCents) {
+        long claimed = hold();
+        try {
+            long balance = this.accBalance;
+            if (balance + deltaCents < 0L || !fits(balance, deltaCents)) {
+                return -balance - 1L;
+            }
+            balance += deltaCents;
+            if (this.writeEpoch > epoch) {
+                this.priorBalance += deltaCents;
+                this.accBalance = balance;
+            }
+            else {
+                storeBalance(epoch, balance);
+            }
+            countChange(deltaCents);
+            return balance;
+        }
+        finally {
+            unhold(claimed);
+        }
+    }
+
+    // Changes the balance as a write of the given epoch (see WriteEpochs) and adds the
+    // difference to the bank's totals. Callers hold the account's lock stripe or claim,
+    // and got the epoch while holding it, so the epochs of an account's writes never go
+    // backwards.
+    void writeBalance(long epoch, long balanceCents) {
+        long previous = this.accBalance;
+        storeBalance(epoch, balanceCents);
+        countChange(balanceCents - previous);
+    }
+
+    // The first write in a new epoch keeps the balance the previous epoch ended with, for snapshots
+    private void storeBalance(long epoch, long balanceCents) {
+        if (this.writeEpoch != epoch) {
+            this.priorBalance = this.accBalance;
+            this.writeEpoch = epoch;
+        }
+        this.accBalance = balanceCents;
+    }
+
+    private void countChange(long deltaCents) {
+        if (this.counted) {
+            bank.addToTotals(this.totalsType, deltaCents);
+        }
+    }
+
+    // Writes both sides of a transfer. Money moving between two counted accounts of the
+    // same type and bank leaves the totals as they are, so they are not touched at all.
+    private void writeTransfer(long epoch, long balance, BankAccount recipient, long recipientEpoch, long recipientBalance) {
+        long amount = this.accBalance - balance;
+        storeBalance(epoch, balance);
+        recipient.storeBalance(recipientEpoch, recipientBalance);
+        if (recipient.bank != bank || recipient.totalsType != totalsType || recipient.counted != counted) {
+            countChange(-amount);
+            recipient.countChange(amount);
+        }
+    }
+
+    // Writes both sides of an optimistic transfer as one write of each bank's epoch
+    private void writeTransferClaimed(long balance, BankAccount recipient, long recipientBalance) {
+        long epoch = bank.enterWrite();
+        long recipientEpoch = recipient.bank == bank ? epoch : recipient.bank.enterWrite();
+        writeTransfer(epoch, balance, recipient, recipientEpoch, recipientBalance);
+        if (recipient.bank != bank) {
+            recipient.bank.exitWrite(recipientEpoch);
+        }
+        bank.exitWrite(epoch);
+    }
+
+    // Adds the account's balance to its bank's totals when it joins the bank, or takes it
+    // out when it leaves, while no transaction can change the balance
+    void setCounted(boolean counted) {
+        long claimed = hold();
+        try {
+            if (this.counted != counted) {
+                this.counted = counted;
+                bank.addToTotals(this.totalsType, counted ? this.accBalance : -this.accBalance, counted ? 1 : -1);
+            }
+        }
+        finally {
+            unhold(claimed);
+        }
+    }
+
+    // Marks an account built from a bank's mapped snapshot as counted; the bank counted
+    // the snapshot's balances itself
+    void markCounted() {
+        this.counted = true;
+    }
+
+    // Holds the account against the transactions of its bank's mode: claims it in optimistic
+    // mode, otherwise locks its stripe. Returns the claimed version, or -1 for the lock.
+    private long hold() {
+        if (bank.isOptimistic()) {
+            return claim();
+        }
+        TransactionLocks.SHARED.lock(this.accNumber);
+        return -1L;
+    }
+
+    private void unhold(long claimed) {
+        if (claimed >= 0L) {
+            release(claimed);
+        }
+        else {
+            TransactionLocks.SHARED.unlock(this.accNumber);
+        }
+    }
+
+    // Gets the balance the account had when the given epoch ended. Only valid once every
+    // write of that epoch has finished and before the epoch after it is closed.
+    long balanceAsOf(long epoch) {
+        long written = this.writeEpoch;
+        if (written <= epoch) {
+            long balance = this.accBalance;
+            if (this.writeEpoch == written) {
+                return balance;
+            }
+        }
+        // written in the next epoch, so priorBalance holds the balance this one ended with
+        return this.priorBalance;
+    }
+
+    // Journals and reports the net change a TransferBatch applied to this account
+    void recordBatch(long netCents, long balanceCents) {
+        int type = netCents > 0L ? TransactionType.BATCH_CREDIT : TransactionType.BATCH_DEBIT;
+        recordTransaction(type, Math.abs(netCents), balanceCents, 0);
+    }
+
+    // Credits one period of interest at the given rate, holding the account only while its
+    // balance is read and written. Returns the balance the interest was worked out on, or
+    // -(balance + 1), crediting nothing, if the balance cannot hold the interest.
+    long postInterest(long rateBasisPoints, long periodsPerYear) {
+        long claimed = hold();
+        try {
+            long balance = this.accBalance;
+            long interest = InterestAccrual.interestOn(balance, rateBasisPoints, periodsPerYear);
+            if (!fits(balance, interest)) {
+                return -balance - 1L;
+            }
+            if (interest > 0L) {
+                long epoch = claimed >= 0L ? bank.enterWrite() : bank.currentEpoch();
+                writeBalance(epoch, balance + interest);
+                if (claimed >= 0L) {
+                    bank.exitWrite(epoch);
+                }
+            }
+            return balance;
+        }
+        finally {
+            unhold(claimed);
+        }
+    }
+
+    // Keeps and reports interest posted by InterestAccrual, whose journal record was
+    // written with those of the rest of its chunk; record is -1 while journaling is off
+    void recordInterest(long timestamp, long interestCents, long balanceCents, long record) {
+        if (record >= 0L) {
+            logger.logJournaled(timestamp, TransactionType.INTEREST, interestCents, balanceCents, record);
+        }
+        bank.fireTransaction(this.accNumber, TransactionType.INTEREST, interestCents, balanceCents, 0);
+    }
+
+    boolean isSavings() {
+        return this.totalsType == BankTotals.SAVINGS;
+    }
+
+    // Declines a transaction before it changes the balance if the journal can no longer
+    // record it; the records themselves are written once the balance has changed, when
+    // nothing may throw any more
+    void checkJournal() {
+        logger.checkJournal();
+    }
+
+    // Journals and reports a transaction applied to this account outside the methods below
+    void recordTransaction(int type, long amountCents, long balanceCents, int counterparty) {
+        logger.logTransaction(type, amountCents, balanceCents, counterparty);
+        bank.fireTransaction(this.accNumber, type, amountCents, balanceCents, counterparty);
+    }
+
 	public void setBank(Bank bank) {
 		validateBank(bank);
 		this.bank = bank;
@@ -395,67 +773,529 @@ public class BankAccount {
     /**
      * Deposits the specified amount into this BankAccount.
      * 
-     * @param amount The amount to deposit.
-     * @throws IllegalArgumentException if the amount is invalid.
+     * @param amount The amount to deposit, in dollars.
+     * @throws IllegalArgumentException if the amount is invalid, or too large for the balance to hold.
      */
-	public void depositAmount(double amount) {	
-		validateAmount(amount);
-		this.accBalance += amount;
-		String message = String.format("Account No: %d - Deposit: $%.2f. New Balance: $%.2f",
-				this.accNumber, amount, this.getBalance());
-		System.out.println(message + "\n");
-		logger.logTransaction(this, "Deposit", amount);
+	public void depositAmount(double amount) {
+		depositCents(Money.toCents(amount));
+	}
+
+    /**
+     * Deposits the specified amount, in cents, into this BankAccount.
+     * The balance is updated while holding this account's lock stripe, so concurrent
+     * deposits, withdrawals and transfers on the same account never lose an update.
+     * 
+     * @param amountCents The amount to deposit, in cents.
+     * @throws IllegalArgumentException if the amount is invalid, or too large for the balance to hold.
+     */
+	public void depositCents(long amountCents) {
+		validateAmount(amountCents);
+		deposit(amountCents);
+	}
+
+    /**
+     * Deposits the specified amount, in cents, unless a transaction with the same id has
+     * already been made, in which case nothing is changed and that transaction's result
+     * is returned. Clients that retry after a timeout pass the id of the first attempt,
+     * so the deposit is applied once however many times it is sent. Ids are remembered
+     * by the Bank's TransactionIdCache, for an hour by default.
+     * 
+     * @param txId A client-supplied id, unique to this transaction, not 0.
+     * @param amountCents The amount to deposit, in cents.
+     * @return The balance the deposit left the account with.
+     * @throws IllegalArgumentException if the amount or id is invalid, or the id was used
+     *         for a different transaction.
+     */
+	public long depositOnce(long txId, long amountCents) {
+		validateAmount(amountCents);
+		TransactionIdCache ids = bank.getTransactionIdCache();
+		long fingerprint = TransactionIdCache.fingerprint(this.accNumber, TransactionType.DEPOSIT, amountCents, 0);
+		return applyOnce(ids, txId, fingerprint, () -> deposit(amountCents, ids, txId));
+	}
+
+	// Applies a validated deposit and returns the new balance
+	private long deposit(long amountCents) {
+		return deposit(amountCents, null, 0L);
+	}
+
+	// Applies a validated deposit, completes the id it was claimed under, if any, as soon
+	// as the balance is written, and returns the new balance
+	private long deposit(long amountCents, TransactionIdCache ids, long txId) {
+		checkJournal();
+		TransactionMetrics.Recorder metrics = TransactionMetrics.recorder();
+		long started = metrics != null ? metrics.start(TransactionMetrics.DEPOSIT) : 0L;
+		long newBalance;
+		if(bank.isOptimistic()) {
+			newBalance = depositOptimistic(amountCents);
+		}
+		else {
+			TransactionLocks.SHARED.lock(this.accNumber);
+			try {
+				newBalance = credit(this.accBalance, amountCents);
+				writeBalance(bank.currentEpoch(), newBalance);
+			}
+			finally {
+				TransactionLocks.SHARED.unlock(this.accNumber);
+			}
+		}
+		if(ids != null) {
+			ids.complete(txId, newBalance);
+		}
+		logger.logTransaction(TransactionType.DEPOSIT, amountCents, newBalance);
+		bank.fireTransaction(this.accNumber, TransactionType.DEPOSIT, amountCents, newBalance, 0);
+		if(metrics != null) {
+			metrics.record(TransactionMetrics.DEPOSIT, started);
+		}
+		return newBalance;
 	}
 
     /**
      * Withdraws the specified amount from this BankAccount.
      * 
-     * @param amount The amount to withdraw.
+     * @param amount The amount to withdraw, in dollars.
      * @throws IllegalWithdrawException if there are insufficient funds.
      * @throws IllegalArgumentException if the amount is invalid.
      */
     public void withdrawAmount(double amount) throws IllegalWithdrawException {
-        validateAmount(amount);
-        if (this.accBalance < amount) {
-            throw new IllegalWithdrawException("Transaction failed: Insufficient funds. Current balance: $" + this.accBalance);
+        withdrawCents(Money.toCents(amount));
+    }
+
+    /**
+     * Withdraws the specified amount, in cents, from this BankAccount.
+     * The funds check and the debit happen atomically under this account's lock stripe.
+     * 
+     * @param amountCents The amount to withdraw, in cents.
+     * @throws IllegalWithdrawException if there are insufficient funds.
+     * @throws IllegalArgumentException if the amount is invalid.
+     */
+    public void withdrawCents(long amountCents) throws IllegalWithdrawException {
+        long result = tryWithdraw(amountCents);
+        if (isDeclined(result)) {
+            throw insufficientFunds(balanceOf(result));
         }
-        this.accBalance -= amount;
-        String message = String.format("Account No: %d - Withdraw: $%.2f. New Balance: $%.2f",
-                this.accNumber, amount, this.getBalance());
-        System.out.println(message + "\n");
-        logger.logTransaction(this, "Withdraw", amount);
+    }
+
+    /**
+     * Withdraws the specified amount, in cents, from this BankAccount, reporting
+     * insufficient funds in the result instead of throwing. A declined withdrawal costs
+     * no more than a successful one and allocates nothing, which suits callers that
+     * expect many declines; withdrawCents throws for the same outcome.
+     * 
+     * @param amountCents The amount to withdraw, in cents.
+     * @return The new balance, or, if the funds were insufficient, a negative result that
+     *         isDeclined recognises and balanceOf turns back into the unchanged balance.
+     * @throws IllegalArgumentException if the amount is invalid.
+     */
+    public long tryWithdraw(long amountCents) {
+        validateAmount(amountCents);
+        return withdraw(amountCents);
+    }
+
+    /**
+     * Withdraws the specified amount, in cents, unless a transaction with the same id has
+     * already been made, in which case nothing is changed and that transaction's result
+     * is returned, or its IllegalWithdrawException thrown again. See depositOnce.
+     * 
+     * @param txId A client-supplied id, unique to this transaction, not 0.
+     * @param amountCents The amount to withdraw, in cents.
+     * @return The balance the withdrawal left the account with.
+     * @throws IllegalWithdrawException if there were insufficient funds.
+     * @throws IllegalArgumentException if the amount or id is invalid, or the id was used
+     *         for a different transaction.
+     */
+    public long withdrawOnce(long txId, long amountCents) throws IllegalWithdrawException {
+        validateAmount(amountCents);
+        TransactionIdCache ids = bank.getTransactionIdCache();
+        long fingerprint = TransactionIdCache.fingerprint(this.accNumber, TransactionType.WITHDRAW, amountCents, 0);
+        long result = applyOnce(ids, txId, fingerprint, () -> withdraw(amountCents, ids, txId));
+        if (isDeclined(result)) {
+            throw insufficientFunds(balanceOf(result));
+        }
+        return result;
+    }
+
+    // Applies a validated withdrawal; returns the new balance, or -(balance + 1) if the
+    // funds were insufficient
+    private long withdraw(long amountCents) {
+        return withdraw(amountCents, null, 0L);
+    }
+
+    // As withdraw, completing the id the withdrawal was claimed under, if any, as soon as
+    // the outcome is settled
+    private long withdraw(long amountCents, TransactionIdCache ids, long txId) {
+        checkJournal();
+        TransactionMetrics.Recorder metrics = TransactionMetrics.recorder();
+        long started = metrics != null ? metrics.start(TransactionMetrics.WITHDRAW) : 0L;
+        long balance;
+        boolean declined;
+        if (bank.isOptimistic()) {
+            balance = withdrawOptimistic(amountCents);
+            declined = balance < 0L;
+            if (declined) {
+                balance = -balance - 1L;
+            }
+        }
+        else {
+            TransactionLocks.SHARED.lock(this.accNumber);
+            try {
+                balance = this.accBalance;
+                declined = balance < amountCents;
+                if (!declined) {
+                    balance -= amountCents;
+                    writeBalance(bank.currentEpoch(), balance);
+                }
+            }
+            finally {
+                TransactionLocks.SHARED.unlock(this.accNumber);
+            }
+        }
+        if (ids != null) {
+            ids.complete(txId, declined ? -balance - 1L : balance);
+        }
+        if (declined) {
+            if (metrics != null) {
+                metrics.recordDeclined(TransactionMetrics.WITHDRAW, started);
+            }
+            return -balance - 1L;
+        }
+        logger.logTransaction(TransactionType.WITHDRAW, amountCents, balance);
+        bank.fireTransaction(this.accNumber, TransactionType.WITHDRAW, amountCents, balance, 0);
+        if (metrics != null) {
+            metrics.record(TransactionMetrics.WITHDRAW, started);
+        }
+        return balance;
+    }
+
+    // Tells whether adding amountCents to a balance leaves one an account can hold
+    private static boolean fits(long balanceCents, long amountCents) {
+        return amountCents <= Long.MAX_VALUE - balanceCents;
+    }
+
+    // Adds a credit to a balance, rejecting one that would take it past the largest
+    // balance an account can hold rather than letting the long wrap negative
+    private static long credit(long balanceCents, long amountCents) {
+        if (!fits(balanceCents, amountCents)) {
+            throw balanceOverflow(balanceCents, amountCents);
+        }
+        return balanceCents + amountCents;
+    }
+
+    // also reported by ShardedTransactionProcessor, whose shards add to balances themselves
+    static IllegalArgumentException balanceOverflow(long balanceCents, long amountCents) {
+        return new IllegalArgumentException("Invalid amount: " + Money.format(amountCents) + ". The balance of $"
+                + Money.format(balanceCents) + " cannot hold it.");
+    }
+
+    private static IllegalWithdrawException insufficientFunds(long balanceCents) {
+        return new IllegalWithdrawException("Transaction failed: Insufficient funds. Current balance: $" + Money.format(balanceCents));
     }
 
     /**
      * Transfers the specified amount to another BankAccount.
      * 
-     * @param target The target account to transfer funds to.
-     * @param amount The amount to transfer.
+     * @param amount The amount to transfer, in dollars.
+     * @param recipient The target account to transfer funds to.
      * @throws IllegalWithdrawException if there are insufficient funds.
-     * @throws IllegalArgumentException if the amount is invalid.
+     * @throws IllegalArgumentException if the amount is invalid, or too large for the recipient's balance to hold.
      */
 	public void transferAmount(double amount, BankAccount recipient) throws IllegalWithdrawException{
-		validateAmount(amount);
-		Bank.validateBankAccount(recipient);	
-		if(this.accBalance >= amount) {
-			this.accBalance -= amount;
-			recipient.depositAmount(amount);
-			String message = String.format("Account No: %d - Transfer: $%.2f to Account No: %d. New Balance $%.2f",
-					this.accNumber, amount, recipient.getAccNumber(), this.getBalance());
-			System.out.println(message + "\n");
-			logger.logTransaction(this, String.format("Transfer to %d", recipient.getAccNumber()), amount);
+		transferCents(Money.toCents(amount), recipient);
+	}
+
+    /**
+     * Transfers the specified amount, in cents, to another BankAccount.
+     * Both accounts' lock stripes are held (in ascending stripe order) while the funds
+     * are checked and moved, so no other thread can observe the money in flight.
+     * In optimistic mode both accounts' versions are claimed instead, in ascending account
+     * number order, and the transfer starts again if either account changed since it was read.
+     * 
+     * @param amountCents The amount to transfer, in cents.
+     * @param recipient The target account to transfer funds to.
+     * @throws IllegalWithdrawException if there are insufficient funds.
+     * @throws IllegalArgumentException if the amount is invalid, or too large for the recipient's balance to hold.
+     */
+	public void transferCents(long amountCents, BankAccount recipient) throws IllegalWithdrawException{
+		long result = tryTransfer(amountCents, recipient);
+		if(isDeclined(result)) {
+			throw insufficientFundsForTransfer(recipient, balanceOf(result));
+		}
+	}
+
+    /**
+     * Transfers the specified amount, in cents, to another BankAccount, reporting
+     * insufficient funds in the result instead of throwing. A declined transfer is still
+     * journaled and reported to the Bank's listeners, but builds no exception or message.
+     * See tryWithdraw.
+     * 
+     * @param amountCents The amount to transfer, in cents.
+     * @param recipient The target account to transfer funds to.
+     * @return This account's new balance, or, if the funds were insufficient, a negative
+     *         result that isDeclined recognises and balanceOf turns back into the balance.
+     * @throws IllegalArgumentException if the amount or recipient is invalid, or the amount is
+     *         too large for the recipient's balance to hold.
+     */
+	public long tryTransfer(long amountCents, BankAccount recipient) {
+		validateAmount(amountCents);
+		Bank.validateBankAccount(recipient);
+		return transfer(amountCents, recipient);
+	}
 
+    /**
+     * Tells whether a result returned by tryWithdraw or tryTransfer is a decline.
+     * 
+     * @param result The result of tryWithdraw or tryTransfer.
+     * @return true if the funds were insufficient and nothing was changed.
+     */
+	public static boolean isDeclined(long result) {
+		return result < 0L;
+	}
+
+    /**
+     * Returns the balance carried by a result of tryWithdraw or tryTransfer: the new
+     * balance, or the unchanged one if the transaction was declined.
+     * 
+     * @param result The result of tryWithdraw or tryTransfer.
+     * @return The account's balance after the transaction, in cents.
+     */
+	public static long balanceOf(long result) {
+		return result < 0L ? -result - 1L : result;
+	}
+
+    /**
+     * Transfers the specified amount, in cents, to another BankAccount unless a
+     * transaction with the same id has already been made, in which case nothing is
+     * changed and that transaction's result is returned, or its IllegalWithdrawException
+     * thrown again. See depositOnce.
+     * 
+     * @param txId A client-supplied id, unique to this transaction, not 0.
+     * @param amountCents The amount to transfer, in cents.
+     * @param recipient The target account to transfer funds to.
+     * @return The balance the transfer left this account with.
+     * @throws IllegalWithdrawException if there were insufficient funds.
+     * @throws IllegalArgumentException if the amount or id is invalid, or the id was used
+     *         for a different transaction.
+     */
+	public long transferOnce(long txId, long amountCents, BankAccount recipient) throws IllegalWithdrawException {
+		validateAmount(amountCents);
+		Bank.validateBankAccount(recipient);
+		TransactionIdCache ids = bank.getTransactionIdCache();
+		long fingerprint = TransactionIdCache.fingerprint(this.accNumber, TransactionType.TRANSFER_OUT, amountCents, recipient.accNumber);
+		long result = applyOnce(ids, txId, fingerprint, () -> transfer(amountCents, recipient, ids, txId));
+		if(isDeclined(result)) {
+			throw insufficientFundsForTransfer(recipient, balanceOf(result));
+		}
+		return result;
+	}
+
+	// Applies a validated transfer; returns this account's new balance, or -(balance + 1)
+	// if the funds were insufficient
+	private long transfer(long amountCents, BankAccount recipient) {
+		return transfer(amountCents, recipient, null, 0L);
+	}
+
+	// As transfer, completing the id the transfer was claimed under, if any, as soon as
+	// the outcome is settled
+	private long transfer(long amountCents, BankAccount recipient, TransactionIdCache ids, long txId) {
+		checkJournal();
+		recipient.checkJournal();
+		TransactionMetrics.Recorder metrics = TransactionMetrics.recorder();
+		long started = metrics != null ? metrics.start(TransactionMetrics.TRANSFER) : 0L;
+		long balance;
+		long recipientBalance = 0L;
+		boolean declined;
+		if(bank.isOptimistic()) {
+			// claim in account number order so two opposing transfers cannot keep failing each other
+			BankAccount first = this.accNumber <= recipient.accNumber ? this : recipient;
+			BankAccount second = first == this ? recipient : this;
+			int retries = 0;
+			while(true) {
+				long seenFirst = first.version;
+				long seenSecond = second.version;
+				balance = this.accBalance;
+				recipientBalance = recipient.accBalance;
+				declined = balance < amountCents;
+				if(declined || recipient == this) {
+					// nothing to write, but the balances must have been read from one stable state
+					if(((seenFirst | seenSecond) & 1L) == 0L && first.version == seenFirst && second.version == seenSecond) {
+						break;
+					}
+				}
+				else if(first.tryClaim(seenFirst)) {
+					if(second.tryClaim(seenSecond)) {
+						if(!fits(recipientBalance, amountCents)) {
+							// nothing was written, so both claims are undone without new versions
+							second.version = seenSecond;
+							first.version = seenFirst;
+							throw balanceOverflow(recipientBalance, amountCents);
+						}
+						balance -= amountCents;
+						recipientBalance += amountCents;
+						writeTransferClaimed(balance, recipient, recipientBalance);
+						second.release(seenSecond);
+						first.release(seenFirst);
+						break;
+					}
+					// nothing was written, so the first claim is undone without a new version
+					first.version = seenFirst;
+				}
+				retries = backOff(retries);
+			}
+			bank.recordOptimistic(retries);
 		}
 		else {
-			String errorMsg = String.format("Insufficient funds for transfer to recipient: %d Current balance: $%.2f. Transfer amount", recipient.getAccNumber(), this.accBalance);
-			logger.logTransaction(this, errorMsg, amount);
-			System.out.println("Transaction failed: Insufficient funds.\n");
-			throw new IllegalWithdrawException(errorMsg);
+			TransactionLocks.SHARED.lockPair(this.accNumber, recipient.accNumber);
+			try {
+				balance = this.accBalance;
+				declined = balance < amountCents;
+				if(!declined) {
+					balance -= amountCents;
+					recipientBalance = credit(recipient == this ? balance : recipient.accBalance, amountCents);
+					// one epoch for both sides, so a snapshot cannot split the transfer
+					long epoch = bank.currentEpoch();
+					writeTransfer(epoch, balance, recipient, recipient.bank == bank ? epoch : recipient.bank.currentEpoch(), recipientBalance);
+				}
+			}
+			finally {
+				TransactionLocks.SHARED.unlockPair(this.accNumber, recipient.accNumber);
+			}
+		}
+		if(ids != null) {
+			ids.complete(txId, declined ? -balance - 1L : balance);
+		}
+		if(!declined) {
+			recipient.logger.logTransaction(TransactionType.TRANSFER_IN, amountCents, recipientBalance, this.accNumber);
+			recipient.bank.fireTransaction(recipient.accNumber, TransactionType.TRANSFER_IN, amountCents, recipientBalance, this.accNumber);
+			logger.logTransaction(TransactionType.TRANSFER_OUT, amountCents, balance, recipient.accNumber);
+			bank.fireTransaction(this.accNumber, TransactionType.TRANSFER_OUT, amountCents, balance, recipient.accNumber);
+			if(metrics != null) {
+				metrics.record(TransactionMetrics.TRANSFER, started);
+			}
+			return balance;
+		}
+		logger.logTransaction(TransactionType.TRANSFER_DECLINED, amountCents, balance, recipient.accNumber);
+		bank.fireTransaction(this.accNumber, TransactionType.TRANSFER_DECLINED, amountCents, balance, recipient.accNumber);
+		if(metrics != null) {
+			metrics.recordDeclined(TransactionMetrics.TRANSFER, started);
+		}
+		return -balance - 1L;
+	}
+
+	private static IllegalWithdrawException insufficientFundsForTransfer(BankAccount recipient, long balanceCents) {
+		return new IllegalWithdrawException(String.format("Insufficient funds for transfer to recipient: %d Current balance: $%s. Transfer amount",
+				recipient.getAccNumber(), Money.format(balanceCents)));
+	}
+
+	// Applies a transaction under a client-supplied id, or returns the result the id's
+	// transaction had if it was already made. The transaction completes the id itself as
+	// soon as its balances are written, so a failure journaling or reporting it cannot
+	// free the id for a second attempt; abandon only frees an id still pending, and hands
+	// back the result of one that was completed. The id and the result are journaled after
+	// the transaction's own records, even if reporting it failed, so the cache can be
+	// restored from the journal.
+	private long applyOnce(TransactionIdCache ids, long txId, long fingerprint, LongSupplier transaction) {
+		long result = ids.claim(txId, fingerprint);
+		if(result != TransactionIdCache.CLAIMED) {
+			return result;
+		}
+		try {
+			result = transaction.getAsLong();
+			return result;
+		}
+		catch(RuntimeException | Error e) {
+			result = ids.abandon(txId);
+			throw e;
+		}
+		finally {
+			if(result != TransactionIdCache.CLAIMED) {
+				logger.logTransactionId(txId, result, TransactionIdCache.digestOf(fingerprint));
+			}
 		}
 	}
 
 	
 	
+    // optimistic commit methods
+
+    // Claims the account for a commit if its version is still the stable one that was read
+    private boolean tryClaim(long expected) {
+        return (expected & 1L) == 0L && VERSION.compareAndSet(this, expected, expected + 1L);
+    }
+
+    // Claims the account for a commit, waiting for any commit in progress to finish
+    long claim() {
+        int spins = 0;
+        while (true) {
+            long current = this.version;
+            if (tryClaim(current)) {
+                return current;
+            }
+            spins = backOff(spins);
+        }
+    }
+
+    // Counts a failed attempt; yields now and then so a committer that lost its CPU can finish
+    private static int backOff(int retries) {
+        retries++;
+        if ((retries & (SPINS_BEFORE_YIELD - 1)) == 0) {
+            Thread.yield();
+        }
+        else {
+            Thread.onSpinWait();
+        }
+        return retries;
+    }
+
+    // Ends a commit started by claim or tryClaim, publishing the new balance with the version
+    void release(long claimed) {
+        this.version = claimed + 2L;
+    }
+
+    private long depositOptimistic(long amountCents) {
+        int retries = 0;
+        while (true) {
+            long seen = this.version;
+            if (tryClaim(seen)) {
+                long balance = this.accBalance;
+                if (!fits(balance, amountCents)) {
+                    // nothing was written, so the claim is undone without a new version
+                    this.version = seen;
+                    throw balanceOverflow(balance, amountCents);
+                }
+                long epoch = bank.enterWrite();
+                long newBalance = balance + amountCents;
+                writeBalance(epoch, newBalance);
+                bank.exitWrite(epoch);
+                release(seen);
+                bank.recordOptimistic(retries);
+                return newBalance;
+            }
+            retries = backOff(retries);
+        }
+    }
+
+    // returns the new balance, or -(balance + 1) if the funds were insufficient
+    private long withdrawOptimistic(long amountCents) {
+        int retries = 0;
+        while (true) {
+            long seen = this.version;
+            long balance = this.accBalance;
+            if ((seen & 1L) == 0L && balance < amountCents && this.version == seen) {
+                bank.recordOptimistic(retries);
+                return -balance - 1L;
+            }
+            if (balance >= amountCents && tryClaim(seen)) {
+                long epoch = bank.enterWrite();
+                long newBalance = balance - amountCents;
+                writeBalance(epoch, newBalance);
+                bank.exitWrite(epoch);
+                release(seen);
+                bank.recordOptimistic(retries);
+                return newBalance;
+            }
+            retries = backOff(retries);
+        }
+    }
+
     // toString method
 
     /**
@@ -474,7 +1314,7 @@ public class BankAccount {
 				+ "\nFirst Name:      			" + firstName
 				+ "\nAge:             			" + age 
 				+ "\nAddress:         			" + address
-				+ "\nBalance:         			" + accBalance + "\n"
+				+ "\nBalance:         			" + Money.format(accBalance) + "\n"
 				+ "----------------------------------------------------------------------\n\n";
 	}
 
@@ -0,0 +1,81 @@
+/**
+ * The BankTotals class keeps the bank-wide figures of one Bank up to date as its accounts
+ * change, so that reading them never means walking every account: the total balance and
+ * the number of accounts of each account type.
+ *
+ * Each figure is a LongAdder, which spreads concurrent updates over several cells instead
+ * of making every transaction in the bank contend on one counter, and sums its cells when
+ * read. Reading a figure therefore costs the same for ten accounts as for ten million.
+ *
+ * The totals are kept in step by the accounts themselves: every balance change adds its
+ * difference, and an account's whole balance is added when it joins the bank and taken
+ * out when it leaves.
+ *
+ * Responsibilities:
+ * - Map account types onto a fixed set of buckets.
+ * - Add balance changes and account count changes to a bucket.
+ * - Sum the buckets.
+ */
+
+package data_classes;
+
+import java.util.concurrent.atomic.LongAdder;
+
+final class BankTotals {
+
+	// buckets; an account made with BankAccount(Bank) has no type until setAccType
+	static final int CHECKING 	= 0;
+	static final int SAVINGS 	= 1;
+	static final int UNTYPED 	= 2;
+	static final int TYPES 		= 3;
+
+	private final LongAdder[] balances = new LongAdder[TYPES];
+	private final LongAdder[] counts = new LongAdder[TYPES];
+
+
+	// constructor
+	BankTotals() {
+		for(int type = 0; type < TYPES; type++) {
+			balances[type] = new LongAdder();
+			counts[type] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Gets the bucket of an account type.
+	 *
+	 * @param accType the account type, in any case, or null.
+	 * @return the bucket index.
+	 */
+	static int typeOf(String accType) {
+		if(accType == null) {
+			return UNTYPED;
+		}
+		return accType.equalsIgnoreCase("savings") ? SAVINGS : CHECKING;
+	}
+
+
+	// update methods
+
+	void addBalance(int type, long deltaCents) {
+		if(deltaCents != 0L) {
+			balances[type].add(deltaCents);
+		}
+	}
+
+	void addAccount(int type, long balanceCents, int count) {
+		balances[type].add(balanceCents);
+		counts[type].add(count);
+	}
+
+
+	// read methods
+
+	long balance(int type) {
+		return balances[type].sum();
+	}
+
+	long count(int type) {
+		return counts[type].sum();
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * The ConsoleTransactionListener class prints a line to the console for every transaction,
+ * in the same wording the transaction methods used to print directly.
+ *
+ * Printing happens on a dedicated daemon thread. The transaction thread only places the
+ * event's fields on a bounded queue, so transactions never wait on the synchronized
+ * System.out stream and never pay for formatting. If the console cannot keep up and the
+ * queue fills, further events are dropped and counted rather than slowing transactions
+ * down.
+ *
+ * Responsibilities:
+ * - Queue transaction events without blocking the transaction thread.
+ * - Format and print queued events on a background thread.
+ * - Count events dropped because the queue was full.
+ */
+
+package data_classes;
+
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConsoleTransactionListener implements TransactionListener, AutoCloseable {
+
+	private static final int DEFAULT_QUEUE_SIZE = 8192;
+
+	// fields of one queued event
+	private static final class Event {
+		final int accNumber;
+		final int type;
+		final long amountCents;
+		final long balanceCents;
+		final int counterparty;
+
+		Event(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+			this.accNumber = accNumber;
+			this.type = type;
+			this.amountCents = amountCents;
+			this.balanceCents = balanceCents;
+			this.counterparty = counterparty;
+		}
+	}
+
+	private final BlockingQueue<Event> queue;
+	private final PrintStream out;
+	private final LongAdder dropped = new LongAdder();
+	private final Thread printer;
+	private volatile boolean running = true;
+
+
+	// constructors
+
+	/**
+	 * Creates a listener printing to the given stream through a queue of the given size.
+	 *
+	 * @param out the stream to print to.
+	 * @param queueSize the maximum number of events waiting to be printed.
+	 */
+	public ConsoleTransactionListener(PrintStream out, int queueSize) {
+		this.out = out;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		this.printer = new Thread(this::printLoop, "console-transaction-listener");
+		this.printer.setDaemon(true);
+		this.printer.start();
+	}
+
+	public ConsoleTransactionListener() {
+		this(System.out, DEFAULT_QUEUE_SIZE);
+	}
+
+
+	@Override
+	public void onTransaction(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		if(!queue.offer(new Event(accNumber, type, amountCents, balanceCents, counterparty))) {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Gets the number of events dropped because the print queue was full.
+	 *
+	 * @return the dropped event count.
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+
+	// printer thread
+
+	private void printLoop() {
+		while(running || !queue.isEmpty()) {
+			try {
+				Event event = queue.take();
+				out.println(format(event) + "\n");
+			}
+			catch(InterruptedException e) {
+				// woken by close, drain whatever is left
+			}
+		}
+	}
+
+	// produces the same text the transaction methods used to print
+	static String format(Event e) {
+		String amount = Money.format(e.amountCents);
+		String balance = Money.format(e.balanceCents);
+		switch(e.type) {
+			case TransactionType.DEPOSIT:
+			case TransactionType.TRANSFER_IN:
+				return String.format("Account No: %d - Deposit: $%s. New Balance: $%s", e.accNumber, amount, balance);
+			case TransactionType.WITHDRAW:
+				return String.format("Account No: %d - Withdraw: $%s. New Balance: $%s", e.accNumber, amount, balance);
+			case TransactionType.TRANSFER_OUT:
+				return String.format("Account No: %d - Transfer: $%s to Account No: %d. New Balance $%s",
+						e.accNumber, amount, e.counterparty, balance);
+			case TransactionType.TRANSFER_DECLINED:
+				return "Transaction failed: Insufficient funds.";
+			default:
+				return String.format("Account No: %d - %s: $%s. New Balance: $%s",
+						e.accNumber, TransactionType.label(e.type), amount, balance);
+		}
+	}
+
+
+	// close method
+
+	/**
+	 * Prints any events still queued and stops the printer thread.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		printer.interrupt();
+		try {
+			printer.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -1,108 +1,200 @@
 /**
- * The DataLogger class is responsible for logging transactions and other account-related 
- * activities to a file. Each instance of DataLogger is associated with a specific bank 
- * account and creates a log file named after the account number. The logs are stored in 
- * the "logs" directory, which is automatically created if it does not exist.
- * 
+ * The DataLogger class is responsible for logging transactions and other account-related
+ * activities. Each instance of DataLogger is associated with a specific bank account and
+ * records that account's transactions to the shared TransactionJournal. Opening a
+ * DataLogger no longer opens a file of its own, so creating tens of thousands of accounts
+ * does not exhaust file descriptors. The journal is written to the "logs" directory, which
+ * is automatically created if it does not exist.
+ *
+ * Each DataLogger also keeps its account's most recent transactions in memory, in a
+ * TransactionHistory, from which AccountStatements are put together without reading the
+ * journal for recent activity.
+ *
  * Responsibilities:
- * - Create and manage log files for bank accounts.
+ * - Record transactions for a bank account in the shared journal.
  * - Log transactions including the action performed, the amount involved, and the new balance.
- * - Ensure proper closure of log file handlers after logging is complete.
- * 
+ * - Hand each record off in constant time without formatting or allocating on the caller's thread.
+ * - Keep the account's recent transactions in memory and produce statements from them.
+ *
  * Constructor:
- * - DataLogger(int accountNumber): Constructs a DataLogger object for the specified account 
- *   number. This initializes the logger, creates the necessary log file, and sets up the 
- *   logging format.
- * 
+ * - DataLogger(int accountNumber): Constructs a DataLogger object for the specified account
+ *   number, attached to the shared journal.
+ *
  * Methods:
- * - logTransaction(BankAccount account, String action, double amount): Logs a transaction 
- *   for the given bank account. The log entry includes details such as the account number, 
- *   the type of action (e.g., deposit, withdrawal), the transaction amount, and the new balance 
- *   after the transaction.
- * 
- * - close(): Closes the file handler associated with this logger. This method should be called 
- *   when logging is finished to ensure that the log file is properly closed and resources are 
- *   released.
+ * - logTransaction(int type, long amountCents, long newBalanceCents, int counterparty): Logs a
+ *   transaction for the account. The journal entry includes the account number, the type
+ *   of action (see TransactionType), the transaction amount and the new balance after the
+ *   transaction in cents and, for transfers, the other account involved.
+ *
+ * - getStatement(int count) and getStatement(long fromMillis, long toMillis): Lists the
+ *   account's latest transactions, or those of a period, from memory and the journal.
+ *
+ * - close(): Detaches this logger from the account. The shared journal itself stays open
+ *   and is flushed and closed when the application shuts down.
  */
 
 package data_classes;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.logging.FileHandler;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
-
 public class DataLogger {
-	
-	private final Logger logger;
-	private FileHandler fileHandler;
-	
-	
-	// Constructor
-	
+
+	private final int accountNumber;
+	private final TransactionJournal journal;
+	private final TransactionHistory history;
+
+
+	// Constructors
+
     /**
-     * Constructs a DataLogger object for the specified account number. 
-     * This initializes the logger and creates a log file in the "logs" directory.
-     * 
-     * @param accountNumber the unique account number for which the log file is created.
+     * Constructs a DataLogger object for the specified account number, recording to the
+     * shared journal.
+     *
+     * @param accountNumber the unique account number whose transactions are logged.
      */
-	@SuppressWarnings("unused")
 	public DataLogger(int accountNumber) {
-	    logger = Logger.getLogger("BankAccountLogger_" + accountNumber);
-	    String logFileName = "logs/Account_" + accountNumber + ".log";
-	    FileHandler tempFileHandler = null;
-
-	    try {
-	        // Create logs directory if it does not exist
-	        Files.createDirectories(Paths.get("logs"));
-
-	        // Specify path to logs directory
-	        tempFileHandler = new FileHandler(logFileName, true);
-	        tempFileHandler.setFormatter(new SimpleFormatter());
-
-	        // Add handler and configure logger
-	        logger.addHandler(tempFileHandler);
-	        logger.setLevel(Level.INFO);
-	        logger.setUseParentHandlers(false); // Disable console logging
-
-	    } catch (IOException e) {
-	        // Ensure that tempFileHandler is closed if it was created
-	        if (tempFileHandler != null) {
-	            tempFileHandler.close();
-	        }
-	        logger.log(Level.SEVERE, "Failed to initialize logger handler.", e);
-	    }
-
-	    // Assign the initialized fileHandler to the field
-	    this.fileHandler = tempFileHandler;
+		this(accountNumber, TransactionJournal.getInstance());
+	}
+
+    /**
+     * Constructs a DataLogger object for the specified account number, recording to the
+     * given journal. The account's statements list what it records from now on, and
+     * never look at journal records written before the logger was created.
+     *
+     * @param accountNumber the unique account number whose transactions are logged.
+     * @param journal the journal to record transactions to.
+     */
+	public DataLogger(int accountNumber, TransactionJournal journal) {
+		this(accountNumber, journal, new TransactionHistory(false, journal.getNextRecordNumber()));
+	}
+
+	private DataLogger(int accountNumber, TransactionJournal journal, TransactionHistory history) {
+		this.accountNumber = accountNumber;
+		this.journal = journal;
+		this.history = history;
+	}
+
+	// a logger for an account opened now, whose statements never look at older journal records
+	static DataLogger forNewAccount(int accountNumber) {
+		TransactionJournal journal = TransactionJournal.getInstance();
+		return new DataLogger(accountNumber, journal, new TransactionHistory(true, journal.getNextRecordNumber()));
 	}
 
 
     /**
-     * Logs a transaction for the specified bank account.
-     * 
-     * The log entry includes the account number, the action performed (e.g., Deposit, Withdrawal),
-     * the amount involved, and the new balance after the transaction.
-     * 
-     * @param account the BankAccount object associated with the transaction.
-     * @param action the action performed (e.g., "Deposit", "Withdrawal").
-     * @param amount the amount involved in the transaction.
+     * Logs a transaction for this logger's account.
+     *
+     * The entry is handed to the journal and written asynchronously, and kept in the
+     * account's in-memory history; nothing is formatted on the calling thread. Nothing is
+     * recorded while the journal is disabled. While TransactionMetrics is enabled, calls
+     * are counted and a sample of them is timed.
+     *
+     * @param type the action performed, one of the TransactionType codes.
+     * @param amountCents the amount involved in the transaction, in cents.
+     * @param newBalanceCents the balance produced by the transaction in cents, captured while it was applied.
+     * @param counterparty the other account involved in a transfer, or 0 if none.
      */
-	public void logTransaction(BankAccount account, String action, double amount) { 
-		String message = String.format("Account No: %d - %s: $%.2f, New Balance: $%.2f",
-				account.getAccNumber(), action, amount, account.getBalance());
-		logger.log(Level.INFO, message);
+	public void logTransaction(int type, long amountCents, long newBalanceCents, int counterparty) {
+		if(!journal.isEnabled()) {
+			// recording is off, for the history as much as for the journal
+			return;
+		}
+		TransactionMetrics.Recorder metrics = TransactionMetrics.recorder();
+		long started = metrics != null ? metrics.start(TransactionMetrics.LOG) : 0L;
+		long timestamp = System.currentTimeMillis();
+		long record = journal.append(timestamp, accountNumber, type, amountCents, newBalanceCents, counterparty);
+		history.append(timestamp, type, amountCents, newBalanceCents, counterparty, record);
+		if(metrics != null) {
+			metrics.record(TransactionMetrics.LOG, started);
+		}
 	}
-	
-	
-	// close the logger 
-	public void close() {
-		if(fileHandler != null) {
-			fileHandler.close();
+
+    /**
+     * Checks that the journal can still record this account's transactions, before one
+     * changes the balance. See TransactionJournal.checkHealthy.
+     *
+     * @throws java.io.UncheckedIOException if the journal has failed to write.
+     */
+	public void checkJournal() {
+		journal.checkHealthy();
+	}
+
+    /**
+     * Logs a transaction that does not involve another account.
+     *
+     * @param type the action performed, one of the TransactionType codes.
+     * @param amountCents the amount involved in the transaction, in cents.
+     * @param newBalanceCents the balance produced by the transaction, in cents.
+     */
+	public void logTransaction(int type, long amountCents, long newBalanceCents) {
+		logTransaction(type, amountCents, newBalanceCents, 0);
+	}
+
+    /**
+     * Notes in the journal the client-supplied id of a transaction just logged, and its
+     * result, for TransactionIdCache.restore. The note is not part of the account's
+     * history. The digest of the transaction's fingerprint goes in the counterparty field.
+     *
+     * @param txId the transaction id.
+     * @param result the balance the transaction left the account with, or -(balance + 1)
+     * 		  if it was declined.
+     * @param digest the low half of the transaction's TransactionIdCache fingerprint.
+     */
+	void logTransactionId(long txId, long result, int digest) {
+		if(result >= 0L) {
+			journal.append(accountNumber, TransactionType.TRANSACTION_ID, txId, result, digest);
 		}
+		else {
+			journal.append(accountNumber, TransactionType.TRANSACTION_ID_DECLINED, txId, -result - 1L, digest);
+		}
+	}
+
+
+    /**
+     * Adds to the account's in-memory history a transaction its caller has already
+     * journaled, as one record of a TransactionJournal.appendBatch.
+     *
+     * @param timestamp the time of the transaction in epoch milliseconds.
+     * @param type the action performed, one of the TransactionType codes.
+     * @param amountCents the amount involved in the transaction, in cents.
+     * @param newBalanceCents the balance produced by the transaction, in cents.
+     * @param record the number of the transaction's record in the journal.
+     */
+	void logJournaled(long timestamp, int type, long amountCents, long newBalanceCents, long record) {
+		history.append(timestamp, type, amountCents, newBalanceCents, 0, record);
+	}
+
+
+	// statement methods
+
+    /**
+     * Lists the account's latest transactions, read from memory and, for transactions
+     * older than those kept in memory, from the journal.
+     *
+     * @param count the most transactions to list.
+     * @return the statement, oldest transaction first.
+     * @throws IllegalArgumentException if count is negative.
+     * @throws java.io.UncheckedIOException if the journal has to be read and cannot be.
+     */
+	public AccountStatement getStatement(int count) {
+		return AccountStatement.latest(accountNumber, history, journal, count);
+	}
+
+    /**
+     * Lists the account's transactions made from fromMillis up to but excluding toMillis.
+     *
+     * @param fromMillis the start of the period, in epoch milliseconds.
+     * @param toMillis the end of the period, in epoch milliseconds.
+     * @return the statement, oldest transaction first.
+     * @throws IllegalArgumentException if the period ends before it starts.
+     * @throws java.io.UncheckedIOException if the journal has to be read and cannot be.
+     */
+	public AccountStatement getStatement(long fromMillis, long toMillis) {
+		return AccountStatement.between(accountNumber, history, journal, fromMillis, toMillis);
+	}
+
+
+	// close the logger
+	public void close() {
+		// nothing to release per account, the shared journal is closed at shutdown
 	}
 
 }
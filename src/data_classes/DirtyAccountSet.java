@@ -0,0 +1,184 @@
+/**
+ * The DirtyAccountSet class is a concurrent set of account numbers, used by the
+ * write-behind components to remember which accounts have changed since they were last
+ * written.
+ *
+ * Account numbers are held in primitive int open-addressing tables split across lock
+ * stripes, so adding an account never allocates and threads marking different accounts
+ * rarely contend. Checking whether an account is already in the set takes no lock at all,
+ * which makes repeated changes to an account that is already waiting almost free.
+ * Draining hands every member to the single consumer and empties the set.
+ *
+ * Account numbers must be positive; 0 marks an empty slot.
+ *
+ * Responsibilities:
+ * - Add account numbers, ignoring ones already present.
+ * - Answer membership and size without locking.
+ * - Hand all members to a consumer and empty the set.
+ */
+
+package data_classes;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class DirtyAccountSet {
+
+	private static final int STRIPES = 16;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final AtomicInteger size = new AtomicInteger();
+
+
+	// constructor
+	public DirtyAccountSet() {
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+
+	/**
+	 * Adds an account number to the set.
+	 *
+	 * @param accNumber the account number, greater than 0.
+	 * @return true if the account was added, false if it was already in the set.
+	 */
+	public boolean add(int accNumber) {
+		Stripe stripe = stripes[stripeOf(accNumber)];
+		if(stripe.contains(accNumber)) {
+			return false;
+		}
+		stripe.lock.lock();
+		try {
+			if(!stripe.add(accNumber)) {
+				return false;
+			}
+		}
+		finally {
+			stripe.lock.unlock();
+		}
+		size.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Checks whether an account number is in the set. Takes no lock; an account being
+	 * added at the same moment may not be seen yet.
+	 *
+	 * @param accNumber the account number.
+	 * @return true if the account is in the set.
+	 */
+	public boolean contains(int accNumber) {
+		return stripes[stripeOf(accNumber)].contains(accNumber);
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Removes every account number from the set and returns them, in no particular order.
+	 * Accounts added while draining either end up in the returned array or stay in the set.
+	 *
+	 * @return the drained account numbers.
+	 */
+	public int[] drain() {
+		int[] out = new int[Math.max(16, size.get())];
+		int count = 0;
+		for(Stripe stripe : stripes) {
+			stripe.lock.lock();
+			try {
+				if(count + stripe.size > out.length) {
+					out = Arrays.copyOf(out, Math.max(out.length * 2, count + stripe.size));
+				}
+				count = stripe.drainTo(out, count);
+			}
+			finally {
+				stripe.lock.unlock();
+			}
+		}
+		size.addAndGet(-count);
+		return count == out.length ? out : Arrays.copyOf(out, count);
+	}
+
+	private static int stripeOf(int accNumber) {
+		return (accNumber * 0x9E3779B9) >>> 28;
+	}
+
+
+	// open-addressing table for one stripe; writes happen under the lock, reads need none
+	private static final class Stripe {
+		final ReentrantLock lock = new ReentrantLock();
+		// replaced rather than cleared, so a lock-free reader never sees a half-emptied table
+		volatile int[] keys = new int[INITIAL_CAPACITY];
+		int size;
+
+		boolean contains(int accNumber) {
+			int[] table = keys;
+			int mask = table.length - 1;
+			for(int i = slotOf(accNumber, mask); ; i = (i + 1) & mask) {
+				int key = table[i];
+				if(key == accNumber) {
+					return true;
+				}
+				if(key == 0) {
+					return false;
+				}
+			}
+		}
+
+		boolean add(int accNumber) {
+			int[] table = keys;
+			int mask = table.length - 1;
+			for(int i = slotOf(accNumber, mask); ; i = (i + 1) & mask) {
+				int key = table[i];
+				if(key == accNumber) {
+					return false;
+				}
+				if(key == 0) {
+					table[i] = accNumber;
+					if(++size * 2 > table.length) {
+						rehash(table.length * 2);
+					}
+					return true;
+				}
+			}
+		}
+
+		int drainTo(int[] out, int offset) {
+			if(size == 0) {
+				return offset;
+			}
+			for(int key : keys) {
+				if(key != 0) {
+					out[offset++] = key;
+				}
+			}
+			keys = new int[INITIAL_CAPACITY];
+			size = 0;
+			return offset;
+		}
+
+		private void rehash(int capacity) {
+			int[] table = new int[capacity];
+			int mask = capacity - 1;
+			for(int key : keys) {
+				if(key != 0) {
+					int i = slotOf(key, mask);
+					while(table[i] != 0) {
+						i = (i + 1) & mask;
+					}
+					table[i] = key;
+				}
+			}
+			keys = table;
+		}
+
+		private static int slotOf(int accNumber, int mask) {
+			return (accNumber * 0x85EBCA6B ^ accNumber >>> 16) & mask;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * The IntAccountMap class is an open-addressing hash map from primitive int account
+ * numbers to BankAccount objects. It is the overflow store used by AccountRegistry for
+ * account numbers outside the directly indexed range, and avoids the Integer boxing and
+ * entry objects of a HashMap.
+ *
+ * Writers must be serialised by the caller. Readers may run concurrently with a writer
+ * without locking: slots are published through atomic arrays, removed entries are left
+ * behind as tombstones rather than shifting other keys, and a resize builds a complete new
+ * table before publishing it.
+ *
+ * Responsibilities:
+ * - Store, find and remove accounts by primitive account number.
+ * - Grow the table as it fills and rebuild away accumulated tombstones.
+ */
+
+package data_classes;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+final class IntAccountMap {
+
+	// 0 marks an empty slot, account number 0 is always held by the dense table
+	private static final int EMPTY = 0;
+	private static final int INITIAL_CAPACITY = 64;
+
+	// keys and values of one generation of the table
+	private static final class Table {
+		final AtomicIntegerArray keys;
+		final AtomicReferenceArray<BankAccount> values;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new AtomicIntegerArray(capacity);
+			values = new AtomicReferenceArray<>(capacity);
+			mask = capacity - 1;
+		}
+	}
+
+	private volatile Table table = new Table(INITIAL_CAPACITY);
+	private int used;	// occupied slots including tombstones, guarded by the caller
+	private int size;
+
+
+	// lookup methods
+
+	/**
+	 * Gets the account stored under the given number.
+	 *
+	 * @param accNumber the account number, must not be 0.
+	 * @return the account, or null if there is none.
+	 */
+	BankAccount get(int accNumber) {
+		Table t = table;
+		int i = mix(accNumber) & t.mask;
+		int key;
+		while((key = t.keys.get(i)) != EMPTY) {
+			if(key == accNumber) {
+				return t.values.get(i);
+			}
+			i = (i + 1) & t.mask;
+		}
+		return null;
+	}
+
+	int size() {
+		return size;
+	}
+
+
+	// update methods, the caller must hold the registry's write lock
+
+	/**
+	 * Stores an account unless one is already stored under the same number.
+	 *
+	 * @param accNumber the account number, must not be 0.
+	 * @param account the account to store.
+	 * @return the account already stored under the number, or null if the account was added.
+	 */
+	BankAccount putIfAbsent(int accNumber, BankAccount account) {
+		if((used + 1) * 2 > table.keys.length()) {
+			rebuild();
+		}
+		Table t = table;
+		int i = mix(accNumber) & t.mask;
+		int key;
+		while((key = t.keys.get(i)) != EMPTY) {
+			if(key == accNumber) {
+				BankAccount existing = t.values.get(i);
+				if(existing == null) {
+					// reuse the tombstone left by an earlier removal
+					t.values.set(i, account);
+					size++;
+				}
+				return existing;
+			}
+			i = (i + 1) & t.mask;
+		}
+		t.values.set(i, account);
+		t.keys.set(i, accNumber);
+		used++;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Removes the account stored under the given number, leaving a tombstone.
+	 *
+	 * @param accNumber the account number.
+	 * @return the removed account, or null if there was none.
+	 */
+	BankAccount remove(int accNumber) {
+		Table t = table;
+		int i = mix(accNumber) & t.mask;
+		int key;
+		while((key = t.keys.get(i)) != EMPTY) {
+			if(key == accNumber) {
+				BankAccount existing = t.values.getAndSet(i, null);
+				if(existing != null) {
+					size--;
+				}
+				return existing;
+			}
+			i = (i + 1) & t.mask;
+		}
+		return null;
+	}
+
+	void forEach(Consumer<? super BankAccount> action) {
+		Table t = table;
+		for(int i = 0; i <= t.mask; i++) {
+			BankAccount account = t.values.get(i);
+			if(account != null) {
+				action.accept(account);
+			}
+		}
+	}
+
+	// copies live entries into a table sized for the current population
+	private void rebuild() {
+		Table old = table;
+		int capacity = INITIAL_CAPACITY;
+		while(capacity < (size + 1) * 4) {
+			capacity <<= 1;
+		}
+		Table fresh = new Table(capacity);
+		for(int i = 0; i <= old.mask; i++) {
+			BankAccount account = old.values.get(i);
+			if(account != null) {
+				int key = old.keys.get(i);
+				int j = mix(key) & fresh.mask;
+				while(fresh.keys.get(j) != EMPTY) {
+					j = (j + 1) & fresh.mask;
+				}
+				fresh.values.set(j, account);
+				fresh.keys.set(j, key);
+			}
+		}
+		used = size;
+		table = fresh;
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,346 @@
+/**
+ * The InterestAccrual class works out and posts interest to every savings account of a
+ * Bank, either once with accrue or on a schedule started with start.
+ *
+ * Interest is set as an annual rate in basis points (hundredths of a percent) paid over
+ * a number of periods a year: a run credits each savings account with its balance times
+ * the rate divided by the number of periods, rounded down to the cent. Checking accounts
+ * earn nothing.
+ *
+ * A run works over the accounts in parallel. The savings accounts are gathered into an
+ * array, which a fork-join task splits into chunks of CHUNK_SIZE accounts for the pool's
+ * threads. Each account is held only while its own balance is read and written, the same
+ * way a deposit holds it, so deposits and other transactions keep running throughout a
+ * run and wait at most for one account's update. As soon as a chunk has been credited,
+ * its interest records are handed to the journal with one appendBatch, which claims
+ * their slots a run at a time, and then added to each account's history and
+ * reported to the Bank's listeners. A transaction made on an account after its interest
+ * was posted can therefore only be recorded ahead of that interest while the rest of the
+ * chunk is being credited, not for the rest of the run.
+ *
+ * Runs of one InterestAccrual never overlap: a run started while another is in progress
+ * waits for it to finish.
+ *
+ * Usage Example:
+ * InterestAccrual interest = new InterestAccrual(bank, 250, 12);	// 2.5% a year, paid monthly
+ * InterestAccrual.Result result = interest.accrue();
+ * interest.start(30L * 24 * 60 * 60 * 1000);
+ *
+ * Responsibilities:
+ * - Work out one period's interest on a balance exactly, in whole cents.
+ * - Credit every savings account in parallel without blocking other transactions.
+ * - Journal each chunk's interest with one batched write as it is posted, and report
+ *   it to listeners.
+ * - Run on a schedule until stopped.
+ */
+
+package data_classes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class InterestAccrual {
+
+	public static final int BASIS_POINTS = 10_000;	// basis points in 100%
+	static final int CHUNK_SIZE = 1 << 13;			// accounts per fork-join task
+
+	private static final Logger LOG = Logger.getLogger(InterestAccrual.class.getName());
+
+	private final Bank bank;
+	private final ForkJoinPool pool;
+	private final int periodsPerYear;
+	private volatile int annualRateBasisPoints;
+	private volatile Result lastResult;
+	private Thread scheduler;
+
+
+	// constructors
+
+	/**
+	 * Creates an accrual for the savings accounts of a bank, run on the common fork-join pool.
+	 *
+	 * @param bank the bank whose savings accounts earn interest.
+	 * @param annualRateBasisPoints the annual rate in basis points, e.g. 250 for 2.5%.
+	 * @param periodsPerYear the number of runs a year the annual rate is spread over, e.g. 12.
+	 * @throws IllegalArgumentException if the bank is null, the rate is negative or the
+	 * 		   number of periods is not positive.
+	 */
+	public InterestAccrual(Bank bank, int annualRateBasisPoints, int periodsPerYear) {
+		this(bank, annualRateBasisPoints, periodsPerYear, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates an accrual for the savings accounts of a bank, run on the given pool.
+	 *
+	 * @param bank the bank whose savings accounts earn interest.
+	 * @param annualRateBasisPoints the annual rate in basis points.
+	 * @param periodsPerYear the number of runs a year the annual rate is spread over.
+	 * @param pool the pool the accounts are credited on.
+	 * @throws IllegalArgumentException if any argument is invalid.
+	 */
+	public InterestAccrual(Bank bank, int annualRateBasisPoints, int periodsPerYear, ForkJoinPool pool) {
+		if(bank == null || pool == null) {
+			throw new IllegalArgumentException("Bank and pool cannot be null.");
+		}
+		if(periodsPerYear <= 0) {
+			throw new IllegalArgumentException("Invalid number of periods: " + periodsPerYear + ". There must be at least 1 period a year.");
+		}
+		setAnnualRateBasisPoints(annualRateBasisPoints);
+		this.bank = bank;
+		this.periodsPerYear = periodsPerYear;
+		this.pool = pool;
+	}
+
+
+	// getter and setter methods
+
+	public int getAnnualRateBasisPoints() {
+		return annualRateBasisPoints;
+	}
+
+	public int getPeriodsPerYear() {
+		return periodsPerYear;
+	}
+
+	/**
+	 * Gets the outcome of the latest run, scheduled or not.
+	 *
+	 * @return the latest result, or null if nothing has run yet.
+	 */
+	public Result getLastResult() {
+		return lastResult;
+	}
+
+	/**
+	 * Changes the annual rate. A run in progress finishes at the rate it started with.
+	 *
+	 * @param annualRateBasisPoints the annual rate in basis points, 0 or more.
+	 * @throws IllegalArgumentException if the rate is negative.
+	 */
+	public void setAnnualRateBasisPoints(int annualRateBasisPoints) {
+		if(annualRateBasisPoints < 0) {
+			throw new IllegalArgumentException("Invalid interest rate: " + annualRateBasisPoints + " basis points. The rate cannot be negative.");
+		}
+		this.annualRateBasisPoints = annualRateBasisPoints;
+	}
+
+	/**
+	 * Works out one period's interest on a balance: balance * rate / (BASIS_POINTS *
+	 * periodsPerYear), rounded down to the cent, without overflowing for any balance
+	 * whose interest fits in a long.
+	 *
+	 * @param balanceCents the balance, in cents, 0 or more.
+	 * @param rateBasisPoints the annual rate in basis points.
+	 * @param periodsPerYear the number of periods a year.
+	 * @return the interest, in cents.
+	 */
+	static long interestOn(long balanceCents, long rateBasisPoints, long periodsPerYear) {
+		long divisor = BASIS_POINTS * periodsPerYear;
+		return Math.multiplyExact(balanceCents / divisor, rateBasisPoints) + (balanceCents % divisor) * rateBasisPoints / divisor;
+	}
+
+
+	/**
+	 * The outcome of one run.
+	 */
+	public static final class Result {
+
+		private final long timestamp;
+		private final int accountsCredited;
+		private final long interestCents;
+		private final long elapsedNanos;
+
+		Result(long timestamp, int accountsCredited, long interestCents, long elapsedNanos) {
+			this.timestamp = timestamp;
+			this.accountsCredited = accountsCredited;
+			this.interestCents = interestCents;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		// the time the run finished, in epoch milliseconds
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public int getAccountsCredited() {
+			return accountsCredited;
+		}
+
+		public long getInterestCents() {
+			return interestCents;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Interest: $%s to %d accounts in %.1f ms", Money.format(interestCents), accountsCredited, elapsedNanos / 1e6);
+		}
+	}
+
+
+	// accrual methods
+
+	/**
+	 * Posts one period's interest to every savings account of the bank. Accounts opened
+	 * or closed while the run is in progress may or may not be credited.
+	 *
+	 * @return the outcome of the run.
+	 * @throws java.io.UncheckedIOException if the journal has failed to write, in which
+	 * 		   case no account is credited.
+	 */
+	public synchronized Result accrue() {
+		// a run the journal could not record is not started
+		TransactionJournal.getInstance().checkHealthy();
+		long started = System.nanoTime();
+		int rate = annualRateBasisPoints;
+		List<BankAccount> found = new ArrayList<>(bank.getAccountCount());
+		bank.forEachAccount(account -> {
+			if(account.isSavings()) {
+				found.add(account);
+			}
+		});
+		BankAccount[] accounts = found.toArray(new BankAccount[0]);
+		int count = accounts.length;
+		Run run = new Run(accounts, rate, periodsPerYear);
+		pool.invoke(new Post(run, 0, count));
+
+		Result result = new Result(System.currentTimeMillis(), (int) run.credited.sum(), run.total.sum(), System.nanoTime() - started);
+		lastResult = result;
+		return result;
+	}
+
+	// the accounts of one run and what they were credited with, shared by its tasks
+	private static final class Run {
+		final BankAccount[] accounts;
+		final int[] accNumbers;
+		final long[] amounts;
+		final long[] balances;
+		final long[] records;
+		final int rate;
+		final int periods;
+		final LongAdder credited = new LongAdder();
+		final LongAdder total = new LongAdder();
+
+		Run(BankAccount[] accounts, int rate, int periods) {
+			this.accounts = accounts;
+			this.accNumbers = new int[accounts.length];
+			this.amounts = new long[accounts.length];
+			this.balances = new long[accounts.length];
+			this.records = new long[accounts.length];
+			this.rate = rate;
+			this.periods = periods;
+		}
+	}
+
+	// credits the accounts of a range, then journals, keeps and reports their interest
+	private static final class Post extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Run run;
+		private final int from;
+		private final int to;
+
+		Post(Run run, int from, int to) {
+			this.run = run;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > CHUNK_SIZE) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Post(run, from, mid), new Post(run, mid, to));
+				return;
+			}
+			// credit the chunk, keeping the accounts whose interest came to something at its front
+			BankAccount[] accounts = run.accounts;
+			int end = from;
+			long total = 0L;
+			for(int i = from; i < to; i++) {
+				long balance = accounts[i].postInterest(run.rate, run.periods);
+				// a balance too large to hold its interest is left as it is
+				long interest = balance < 0L ? 0L : interestOn(balance, run.rate, run.periods);
+				if(interest > 0L) {
+					accounts[end] = accounts[i];
+					run.accNumbers[end] = accounts[i].getAccNumber();
+					run.amounts[end] = interest;
+					run.balances[end] = balance + interest;
+					total += interest;
+					end++;
+				}
+			}
+			long timestamp = System.currentTimeMillis();
+			TransactionJournal.getInstance().appendBatch(timestamp, TransactionType.INTEREST,
+					run.accNumbers, run.amounts, run.balances, from, end, run.records);
+			for(int i = from; i < end; i++) {
+				accounts[i].recordInterest(timestamp, run.amounts[i], run.balances[i], run.records[i]);
+			}
+			run.credited.add(end - from);
+			run.total.add(total);
+		}
+	}
+
+
+	// schedule methods
+
+	/**
+	 * Runs accrue every periodMillis on a background thread, until stop is called. The
+	 * first run is one period from now. A run that fails is logged and the schedule
+	 * carries on.
+	 *
+	 * @param periodMillis the time between runs, in milliseconds.
+	 * @throws IllegalArgumentException if the period is not positive.
+	 */
+	public synchronized void start(long periodMillis) {
+		if(periodMillis <= 0L) {
+			throw new IllegalArgumentException("Invalid accrual period: " + periodMillis + ". The period must be greater than 0.");
+		}
+		stop();
+		scheduler = new Thread(() -> {
+			long next = System.nanoTime() + periodMillis * 1_000_000L;
+			try {
+				while(true) {
+					long wait = next - System.nanoTime();
+					if(wait > 0L) {
+						Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+					}
+					next += periodMillis * 1_000_000L;
+					try {
+						accrue();
+					}
+					catch(RuntimeException e) {
+						LOG.log(Level.SEVERE, "Interest accrual failed.", e);
+					}
+				}
+			}
+			catch(InterruptedException e) {
+				// stopped
+			}
+		}, "interest-accrual");
+		scheduler.setDaemon(true);
+		scheduler.start();
+	}
+
+	/**
+	 * Stops the schedule started by start, if any. A run already in progress still finishes.
+	 */
+	public void stop() {
+		Thread current;
+		synchronized(this) {
+			current = scheduler;
+			scheduler = null;
+		}
+		if(current != null) {
+			current.interrupt();
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * The JournalReader class reads binary transaction journals written by TransactionJournal.
+ * The journal file is memory-mapped in large windows and records are decoded in place with
+ * absolute reads, so a scan touches each page once, copies nothing onto the heap and
+ * allocates nothing per record. This makes replaying or auditing millions of records a
+ * matter of a fraction of a second.
+ *
+ * Usage Example:
+ * try (JournalReader reader = new JournalReader(TransactionJournal.DEFAULT_PATH)) {
+ *     reader.replay((timestamp, accNumber, type, amount, balance, counterparty) -> ...);
+ * }
+ *
+ * Responsibilities:
+ * - Validate the header of a journal file.
+ * - Map the journal in windows and visit every record in order.
+ * - Support replay starting from an arbitrary record number.
+ * - Scan backwards from a record number, for lookups that want the latest records first.
+ */
+
+package data_classes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public final class JournalReader implements AutoCloseable {
+
+	// largest window mapped at once, a whole number of records
+	private static final long WINDOW_SIZE = (256L << 20) / TransactionRecord.RECORD_SIZE * TransactionRecord.RECORD_SIZE;
+
+	/**
+	 * Receives the fields of each record visited by a replay. Fields are passed as
+	 * primitives so visiting a record never allocates.
+	 */
+	@FunctionalInterface
+	public interface RecordVisitor {
+		void visit(long timestamp, int accNumber, int type, long amountCents, long balanceCents, int counterparty);
+	}
+
+	/**
+	 * Receives the fields of each record visited by a backward scan, with its record
+	 * number, and returns false to end the scan.
+	 */
+	@FunctionalInterface
+	public interface RecordScanner {
+		boolean visit(long record, long timestamp, int accNumber, int type, long amountCents, long balanceCents, int counterparty);
+	}
+
+	private final FileChannel channel;
+	private final long recordCount;
+
+
+	// constructor
+
+	/**
+	 * Opens a journal for reading and validates its header. Only records that were
+	 * complete when the journal was opened are visible to this reader.
+	 *
+	 * @param path the journal file.
+	 * @throws IOException if the file cannot be read or is not a journal.
+	 */
+	public JournalReader(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(TransactionRecord.HEADER_SIZE);
+			while(header.hasRemaining() && channel.read(header, header.position()) > 0) {
+				// keep reading until the header is complete
+			}
+			header.flip();
+			TransactionRecord.validateHeader(header);
+			this.recordCount = (channel.size() - TransactionRecord.HEADER_SIZE) / TransactionRecord.RECORD_SIZE;
+		}
+		catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+
+	// getter methods
+
+	/**
+	 * Gets the number of complete records in the journal.
+	 *
+	 * @return the record count.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+
+	// replay methods
+
+	/**
+	 * Visits every record in the journal in the order it was written.
+	 *
+	 * @param visitor the visitor to call for each record.
+	 * @return the number of records visited.
+	 * @throws IOException if the journal cannot be mapped.
+	 */
+	public long replay(RecordVisitor visitor) throws IOException {
+		return replay(0L, visitor);
+	}
+
+	/**
+	 * Visits every record from the given record number to the end of the journal.
+	 *
+	 * @param fromRecord the number of the first record to visit, counting from 0.
+	 * @param visitor the visitor to call for each record.
+	 * @return the number of records visited.
+	 * @throws IOException if the journal cannot be mapped.
+	 */
+	public long replay(long fromRecord, RecordVisitor visitor) throws IOException {
+		if(fromRecord < 0) {
+			throw new IllegalArgumentException("Invalid record number: " + fromRecord);
+		}
+		long position = TransactionRecord.HEADER_SIZE + fromRecord * TransactionRecord.RECORD_SIZE;
+		long end = TransactionRecord.HEADER_SIZE + recordCount * TransactionRecord.RECORD_SIZE;
+		long visited = 0;
+		while(position < end) {
+			long length = Math.min(WINDOW_SIZE, end - position);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			int limit = (int) length;
+			for(int offset = 0; offset < limit; offset += TransactionRecord.RECORD_SIZE) {
+				visitor.visit(TransactionRecord.timestamp(window, offset),
+						TransactionRecord.accNumber(window, offset),
+						TransactionRecord.type(window, offset),
+						TransactionRecord.amountCents(window, offset),
+						TransactionRecord.balanceCents(window, offset),
+						TransactionRecord.counterparty(window, offset));
+			}
+			visited += limit / TransactionRecord.RECORD_SIZE;
+			position += length;
+		}
+		return visited;
+	}
+
+
+	/**
+	 * Visits the records from just before the given record number back to the given
+	 * lower bound, newest first, until the scanner returns false. Windows are mapped from
+	 * the end backwards, so a scan that stops early only touches the pages it read.
+	 *
+	 * @param beforeRecord the number of the record after the first one to visit; numbers
+	 * 		  past the end of the journal are treated as the end.
+	 * @param fromRecord the number of the last record to visit.
+	 * @param scanner the scanner to call for each record.
+	 * @return the number of records visited.
+	 * @throws IOException if the journal cannot be mapped.
+	 */
+	public long scanBackward(long beforeRecord, long fromRecord, RecordScanner scanner) throws IOException {
+		if(fromRecord < 0) {
+			throw new IllegalArgumentException("Invalid record number: " + fromRecord);
+		}
+		long record = Math.min(beforeRecord, recordCount);
+		long visited = 0;
+		while(record > fromRecord) {
+			long first = Math.max(fromRecord, record - WINDOW_SIZE / TransactionRecord.RECORD_SIZE);
+			long position = TransactionRecord.HEADER_SIZE + first * TransactionRecord.RECORD_SIZE;
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, (record - first) * TransactionRecord.RECORD_SIZE);
+			for(int offset = (int) (record - first - 1) * TransactionRecord.RECORD_SIZE; offset >= 0; offset -= TransactionRecord.RECORD_SIZE) {
+				record--;
+				visited++;
+				if(!scanner.visit(record,
+						TransactionRecord.timestamp(window, offset),
+						TransactionRecord.accNumber(window, offset),
+						TransactionRecord.type(window, offset),
+						TransactionRecord.amountCents(window, offset),
+						TransactionRecord.balanceCents(window, offset),
+						TransactionRecord.counterparty(window, offset))) {
+					return visited;
+				}
+			}
+		}
+		return visited;
+	}
+
+
+	// close method
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+
+	/**
+	 * Scans a journal and prints a short audit summary: record count, net flow through
+	 * the journal and scan rate.
+	 *
+	 * @param args optional path to the journal, defaults to the shared journal file.
+	 * @throws IOException if the journal cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		Path path = args.length > 0 ? Paths.get(args[0]) : TransactionJournal.DEFAULT_PATH;
+		long[] totals = new long[3];
+		try(JournalReader reader = new JournalReader(path)) {
+			long start = System.nanoTime();
+			long count = reader.replay((timestamp, accNumber, type, amount, balance, counterparty) -> {
+				if(type == TransactionType.DEPOSIT || type == TransactionType.TRANSFER_IN || type == TransactionType.BATCH_CREDIT
+						|| type == TransactionType.INTEREST) {
+					totals[0] += amount;
+				}
+				else if(type == TransactionType.WITHDRAW || type == TransactionType.TRANSFER_OUT || type == TransactionType.BATCH_DEBIT) {
+					totals[1] += amount;
+				}
+				else if(type == TransactionType.TRANSFER_DECLINED) {
+					totals[2]++;
+				}
+			});
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Records: %d%nCredited: $%.2f%nDebited: $%.2f%nDeclined: %d%nScan rate: %.0f records/s%n",
+					count, totals[0] / 100.0, totals[1] / 100.0, totals[2], count / Math.max(seconds, 1e-9));
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * The MappedAccountSnapshot class is a read-only, memory-mapped file of a bank's accounts
+ * that lets a bank come online without building any BankAccount objects up front.
+ *
+ * The file holds one fixed-width index record per account, sorted by account number,
+ * followed by the account holders' text fields. Opening a snapshot only maps the file and
+ * checks its header, so it takes the same few milliseconds for a thousand accounts as for
+ * millions. A Bank given the snapshot with Bank.loadSnapshot finds accounts in it by
+ * binary search over the mapped index and builds each BankAccount only when it is first
+ * looked up; accounts that are never used are never built.
+ *
+ * The balance stored in the file is the balance when the snapshot was written. Once an
+ * account has been built it lives in the bank's registry like any other account, and its
+ * balance changes there; the file is never written to. The mapping is released by the
+ * garbage collector once the snapshot is no longer referenced.
+ *
+ * File layout (big-endian):
+ * header   magic int, version int, account count int, record size int, text offset long, reserved long
+ * index    per account: accNumber int, age int, balanceCents long, text position long
+ * text     per account: accType, firstName, lastName, address as unsigned short length + UTF-8 bytes
+ *
+ * Usage Example:
+ * MappedAccountSnapshot.write(path, bank);
+ * Bank restored = new Bank();
+ * restored.loadSnapshot(MappedAccountSnapshot.open(path));
+ *
+ * Responsibilities:
+ * - Write a bank's accounts to the mapped snapshot format.
+ * - Map a snapshot and find accounts in it by account number.
+ * - Build a BankAccount from its record on demand.
+ */
+
+package data_classes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class MappedAccountSnapshot {
+
+	static final int MAGIC 			= 0x42424D31;	// "BBM1"
+	static final int VERSION 		= 1;
+	static final int HEADER_SIZE 	= 32;
+	static final int RECORD_SIZE 	= 24;
+
+	// field offsets within an index record
+	private static final int ACC_NUMBER = 0;
+	private static final int AGE 		= 4;
+	private static final int BALANCE 	= 8;
+	private static final int TEXT 		= 16;
+
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+
+	private final MappedByteBuffer buffer;
+	private final int count;
+
+
+	// constructor
+	private MappedAccountSnapshot(MappedByteBuffer buffer, int count) {
+		this.buffer = buffer;
+		this.count = count;
+	}
+
+
+	// writing
+
+	/**
+	 * Writes every account of the bank to a snapshot file. The file is written beside the
+	 * target and renamed into place, so a reader never sees a half-written snapshot.
+	 *
+	 * @param path the snapshot file.
+	 * @param bank the bank to write.
+	 * @return the number of accounts written.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static int write(Path path, Bank bank) throws IOException {
+		int[] numbers = new int[Math.max(16, bank.getAccountCount())];
+		int[] size = new int[1];
+		bank.forEachAccount(account -> {
+			if(account.getAccNumber() > 0) {
+				if(size[0] == numbers.length) {
+					throw new IllegalStateException("Accounts were added while the snapshot was written.");
+				}
+				numbers[size[0]++] = account.getAccNumber();
+			}
+		});
+		int n = size[0];
+		Arrays.sort(numbers, 0, n);
+
+		// encode the text fields first so every index record knows where its text starts
+		byte[][] text = new byte[n][];
+		BankAccount[] accounts = new BankAccount[n];
+		long textSize = 0;
+		for(int i = 0; i < n; i++) {
+			accounts[i] = bank.getAccount(numbers[i]);
+			text[i] = encodeText(accounts[i]);
+			textSize += text[i].length;
+		}
+		long textOffset = HEADER_SIZE + (long) n * RECORD_SIZE;
+		if(textOffset + textSize > Integer.MAX_VALUE) {
+			throw new IOException("Too many accounts for a single mapped snapshot: " + n);
+		}
+
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try(OutputStream file = Files.newOutputStream(temp);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, IO_BUFFER_SIZE))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(RECORD_SIZE);
+			out.writeLong(textOffset);
+			out.writeLong(0L);
+			long position = textOffset;
+			for(int i = 0; i < n; i++) {
+				out.writeInt(numbers[i]);
+				out.writeInt(accounts[i].getAge());
+				out.writeLong(accounts[i].getBalanceCents());
+				out.writeLong(position);
+				position += text[i].length;
+			}
+			for(int i = 0; i < n; i++) {
+				out.write(text[i]);
+			}
+		}
+		try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return n;
+	}
+
+	private static byte[] encodeText(BankAccount account) {
+		byte[][] fields = {
+			account.getAccType().getBytes(StandardCharsets.UTF_8),
+			account.getFirstName().getBytes(StandardCharsets.UTF_8),
+			account.getLastName().getBytes(StandardCharsets.UTF_8),
+			account.getAddress().getBytes(StandardCharsets.UTF_8)
+		};
+		int length = 0;
+		for(byte[] field : fields) {
+			length += 2 + field.length;
+		}
+		ByteBuffer out = ByteBuffer.allocate(length);
+		for(byte[] field : fields) {
+			out.putShort((short) field.length).put(field);
+		}
+		return out.array();
+	}
+
+
+	// opening
+
+	/**
+	 * Maps a snapshot file and validates its header.
+	 *
+	 * @param path the snapshot file.
+	 * @return the mapped snapshot.
+	 * @throws IOException if the file cannot be mapped or is not a valid snapshot.
+	 */
+	public static MappedAccountSnapshot open(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw new IOException("Not a mapped account snapshot: " + path);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int count = buffer.getInt(8);
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(12) != RECORD_SIZE
+					|| count < 0 || buffer.getLong(16) != HEADER_SIZE + (long) count * RECORD_SIZE || buffer.getLong(16) > size) {
+				throw new IOException("Not a mapped account snapshot, or an unsupported version: " + path);
+			}
+			return new MappedAccountSnapshot(buffer, count);
+		}
+	}
+
+
+	// lookup
+
+	public int getAccountCount() {
+		return count;
+	}
+
+	/**
+	 * Finds an account in the snapshot by binary search over the mapped index.
+	 *
+	 * @param accNumber the account number.
+	 * @return the account's index in the snapshot, or -1 if it is not in the snapshot.
+	 */
+	public int indexOf(int accNumber) {
+		int low = 0;
+		int high = count - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			int found = buffer.getInt(HEADER_SIZE + mid * RECORD_SIZE + ACC_NUMBER);
+			if(found < accNumber) {
+				low = mid + 1;
+			}
+			else if(found > accNumber) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the account number at an index of the snapshot.
+	 *
+	 * @param index the index, from 0 to getAccountCount() - 1.
+	 * @return the account number.
+	 */
+	public int accNumberAt(int index) {
+		return buffer.getInt(record(index) + ACC_NUMBER);
+	}
+
+	/**
+	 * Gets the balance stored for the account at an index of the snapshot, without
+	 * building the account.
+	 *
+	 * @param index the index, from 0 to getAccountCount() - 1.
+	 * @return the stored balance, in cents.
+	 */
+	public long balanceAt(int index) {
+		return buffer.getLong(record(index) + BALANCE);
+	}
+
+	/**
+	 * Gets the account type stored for the account at an index of the snapshot, without
+	 * building the account.
+	 *
+	 * @param index the index, from 0 to getAccountCount() - 1.
+	 * @return the account type.
+	 */
+	public String accTypeAt(int index) {
+		return readText((int) buffer.getLong(record(index) + TEXT));
+	}
+
+	/**
+	 * Builds the account at an index of the snapshot. The account belongs to the given bank
+	 * but is not added to it.
+	 *
+	 * @param index the index, from 0 to getAccountCount() - 1.
+	 * @param bank the bank the account belongs to.
+	 * @return the new account.
+	 */
+	BankAccount materialize(int index, Bank bank) {
+		int record = record(index);
+		int position = (int) buffer.getLong(record + TEXT);
+		String accType = readText(position).intern();
+		position += 2 + (buffer.getShort(position) & 0xFFFF);
+		String firstName = readText(position);
+		position += 2 + (buffer.getShort(position) & 0xFFFF);
+		String lastName = readText(position);
+		position += 2 + (buffer.getShort(position) & 0xFFFF);
+		String address = readText(position);
+		return BankAccount.materialize(buffer.getInt(record + ACC_NUMBER), accType, firstName, lastName,
+				buffer.getInt(record + AGE), address, buffer.getLong(record + BALANCE), bank);
+	}
+
+	private int record(int index) {
+		if(index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Snapshot index " + index + " out of range 0.." + (count - 1));
+		}
+		return HEADER_SIZE + index * RECORD_SIZE;
+	}
+
+	private String readText(int position) {
+		int length = buffer.getShort(position) & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(position + 2, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
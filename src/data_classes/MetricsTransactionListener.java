@@ -0,0 +1,90 @@
+/**
+ * The MetricsTransactionListener class keeps running totals of the transactions applied to
+ * a bank: how many transactions of each type there have been and the total amount moved
+ * by each type.
+ *
+ * Counters are LongAdders, so threads recording transactions at the same time update
+ * separate cells instead of contending on one counter, and recording an event never
+ * allocates or formats anything.
+ *
+ * Responsibilities:
+ * - Count transactions by type.
+ * - Sum transaction amounts by type, in cents.
+ * - Produce a readable summary of the totals on demand.
+ */
+
+package data_classes;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class MetricsTransactionListener implements TransactionListener {
+
+	// one slot per transaction type code, slot 0 collects unknown codes
+	private static final int TYPE_SLOTS = TransactionType.MAX_CODE + 1;
+
+	private final LongAdder[] counts = new LongAdder[TYPE_SLOTS];
+	private final LongAdder[] amounts = new LongAdder[TYPE_SLOTS];
+
+
+	// constructor
+	public MetricsTransactionListener() {
+		for(int i = 0; i < TYPE_SLOTS; i++) {
+			counts[i] = new LongAdder();
+			amounts[i] = new LongAdder();
+		}
+	}
+
+
+	@Override
+	public void onTransaction(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		int slot = type > 0 && type < TYPE_SLOTS ? type : 0;
+		counts[slot].increment();
+		amounts[slot].add(amountCents);
+	}
+
+
+	// getter methods
+
+	/**
+	 * Gets the number of transactions of the given type recorded so far.
+	 *
+	 * @param type the transaction type code.
+	 * @return the transaction count.
+	 */
+	public long getCount(int type) {
+		return type > 0 && type < TYPE_SLOTS ? counts[type].sum() : 0L;
+	}
+
+	/**
+	 * Gets the total amount moved by transactions of the given type.
+	 *
+	 * @param type the transaction type code.
+	 * @return the total amount, in cents.
+	 */
+	public long getTotalCents(int type) {
+		return type > 0 && type < TYPE_SLOTS ? amounts[type].sum() : 0L;
+	}
+
+	/**
+	 * Clears every counter.
+	 */
+	public void reset() {
+		for(int i = 0; i < TYPE_SLOTS; i++) {
+			counts[i].reset();
+			amounts[i].reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Transaction Metrics\n");
+		for(int type = 1; type < TYPE_SLOTS; type++) {
+			if(TransactionType.isTransactionId(type)) {
+				continue;	// journal notes, never reported to listeners
+			}
+			sb.append(String.format("%-22s %,12d  $", TransactionType.label(type), counts[type].sum()));
+			Money.appendTo(sb, amounts[type].sum()).append('\n');
+		}
+		return sb.toString();
+	}
+}
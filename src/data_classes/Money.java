@@ -0,0 +1,127 @@
+/**
+ * The Money class holds the conversions between the whole-cent long values used to store
+ * and calculate every balance and amount in the system, and the dollar values people type
+ * in and read.
+ *
+ * Keeping money in integer cents makes balance arithmetic exact and allocation-free: adding
+ * ten cents ten million times gives exactly one million dollars, which repeated double
+ * arithmetic does not.
+ *
+ * Usage Example:
+ * long cents = Money.parse("100.25");
+ * String text = Money.format(cents);   // "100.25"
+ *
+ * Responsibilities:
+ * - Convert dollar amounts to and from whole cents.
+ * - Parse decimal text into cents without rounding errors.
+ * - Format cents as a dollar amount with two decimal places.
+ */
+
+package data_classes;
+
+import java.math.BigDecimal;
+
+public final class Money {
+
+	public static final long CENTS_PER_DOLLAR = 100L;
+
+
+	// constructor
+	private Money() {
+		super();
+	}
+
+
+	/**
+	 * Converts a dollar amount to whole cents, rounding to the nearest cent.
+	 *
+	 * @param dollars the dollar amount.
+	 * @return the amount in cents.
+	 * @throws IllegalArgumentException if the amount is not a finite number or is too large.
+	 */
+	public static long toCents(double dollars) {
+		if(!Double.isFinite(dollars) || Math.abs(dollars) > Long.MAX_VALUE / CENTS_PER_DOLLAR) {
+			throw new IllegalArgumentException("Invalid amount: " + dollars);
+		}
+		return Math.round(dollars * CENTS_PER_DOLLAR);
+	}
+
+	/**
+	 * Converts an exact decimal dollar amount, such as a DECIMAL column read from the
+	 * database, to whole cents.
+	 *
+	 * @param dollars the dollar amount.
+	 * @return the amount in cents.
+	 * @throws IllegalArgumentException if the amount has more than two decimal places or is too large.
+	 */
+	public static long toCents(BigDecimal dollars) {
+		try {
+			return dollars.movePointRight(2).longValueExact();
+		}
+		catch(ArithmeticException e) {
+			throw new IllegalArgumentException("Invalid amount: " + dollars + ". Amounts must have at most two decimal places.");
+		}
+	}
+
+	/**
+	 * Converts whole cents to a dollar amount.
+	 *
+	 * @param cents the amount in cents.
+	 * @return the amount in dollars.
+	 */
+	public static double toDollars(long cents) {
+		return cents / (double) CENTS_PER_DOLLAR;
+	}
+
+	/**
+	 * Parses a decimal dollar amount such as "1,250.5" into whole cents.
+	 *
+	 * @param text the amount to parse; commas and a leading '$' are ignored.
+	 * @return the amount in cents.
+	 * @throws NumberFormatException if the text is not a number or has more than two decimal places.
+	 */
+	public static long parse(String text) {
+		String cleaned = text.trim().replace(",", "");
+		if(cleaned.startsWith("$")) {
+			cleaned = cleaned.substring(1);
+		}
+		try {
+			return new BigDecimal(cleaned).movePointRight(2).longValueExact();
+		}
+		catch(ArithmeticException e) {
+			throw new NumberFormatException("Invalid amount: " + text + ". Amounts must have at most two decimal places.");
+		}
+	}
+
+	/**
+	 * Formats whole cents as a dollar amount with two decimal places, e.g. "-12.05".
+	 *
+	 * @param cents the amount in cents.
+	 * @return the formatted amount, without a currency symbol.
+	 */
+	public static String format(long cents) {
+		StringBuilder sb = new StringBuilder(24);
+		appendTo(sb, cents);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends whole cents as a dollar amount with two decimal places.
+	 *
+	 * @param sb the builder to append to.
+	 * @param cents the amount in cents.
+	 * @return the builder.
+	 */
+	public static StringBuilder appendTo(StringBuilder sb, long cents) {
+		if(cents < 0) {
+			sb.append('-');
+		}
+		long abs = Math.abs(cents);
+		long fraction = abs % CENTS_PER_DOLLAR;
+		sb.append(abs / CENTS_PER_DOLLAR).append('.');
+		if(fraction < 10) {
+			sb.append('0');
+		}
+		return sb.append(fraction);
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * The OperationMetricsMXBean interface publishes the TransactionMetrics of one operation
+ * over JMX, as data_classes:type=TransactionMetrics,operation=<name>. Latencies are in
+ * nanoseconds and are taken from the operations timed, one in
+ * TransactionMetrics.getSampleInterval() of them.
+ */
+
+package data_classes;
+
+public interface OperationMetricsMXBean {
+
+	long getCount();
+
+	// operations declined for insufficient funds
+	long getDeclined();
+
+	// operations timed
+	long getTimed();
+
+	long getMeanNanos();
+
+	long getP50Nanos();
+
+	long getP90Nanos();
+
+	long getP99Nanos();
+
+	long getP999Nanos();
+
+	long getMaxNanos();
+}
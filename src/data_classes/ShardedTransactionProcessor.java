@@ -0,0 +1,569 @@
+/**
+ * The ShardedTransactionProcessor class is an optional way of running a bank's
+ * transactions without account locks. Accounts are partitioned by account number across
+ * a fixed number of shards, each served by a single worker thread that is the only thread
+ * ever to change the balances of the accounts it owns. Callers submit deposits,
+ * withdrawals and transfers, which are queued to the owning shard and completed through a
+ * CompletableFuture, so one caller can keep many transactions in flight.
+ *
+ * Because every account has exactly one writer, a shard never waits for another thread:
+ * it still holds each account for the moment of its write, as the bank's own transactions
+ * do, so changes to the account itself such as setCounted and setAccType see a settled
+ * balance, but no other writer contends for it. Throughput for deposit and withdraw heavy
+ * workloads grows with the number of shards until the cores run out.
+ *
+ * A transfer between accounts on the same shard is applied in one step. A transfer across
+ * shards is a two-phase handoff: the payer's shard checks the funds and debits the payer,
+ * then passes the credit to the payee's shard, which applies it and completes the future.
+ * Both phases write in the same write epoch (see WriteEpochs): the payer's shard enters
+ * it and the payee's shard leaves it, so Bank.snapshotBalances waits for a transfer in
+ * flight and takes it wholly or not at all, as it does the bank's own transfers. Between
+ * the two phases the money is in neither balance, so the live balances and the bank's
+ * running totals read at that moment are short by the amounts in flight. If the payee has
+ * been removed from the bank by the time the credit arrives, the money is returned to the
+ * payer on its own shard and the transfer fails.
+ *
+ * Each shard has two queues. Submitted transactions wait in a bounded queue, so callers
+ * that outrun the shards are held back. Credits and refunds passed from one shard to
+ * another go through an unbounded mailbox instead, which the shard empties first: a
+ * shard never waits for room on another shard, so two shards with full queues cannot
+ * wait on each other, and once a payer has been debited the transfer always reaches
+ * the payee or comes back.
+ *
+ * Transactions are journaled and reported to the bank's listeners exactly as the locking
+ * BankAccount methods do. While a processor is running, every balance change for the
+ * bank must go through it: the lock-based BankAccount transaction methods and batch
+ * transfers do not coordinate with the shard threads.
+ *
+ * Usage Example:
+ * try(ShardedTransactionProcessor processor = new ShardedTransactionProcessor(bank, 4)) {
+ *     processor.deposit(1234, 5000L);
+ *     long balance = processor.transfer(1234, 5678, 2500L).join();
+ * }
+ *
+ * Responsibilities:
+ * - Assign each account to one shard and run each shard on its own thread.
+ * - Route deposits, withdrawals and transfers to the owning shard through its queue.
+ * - Pass credits between shards without blocking.
+ * - Move money across shards with a two-phase debit and credit.
+ * - Drain every queued transaction on close.
+ */
+
+package data_classes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import Exception_classes.IllegalWithdrawException;
+
+public final class ShardedTransactionProcessor implements AutoCloseable {
+
+	private static final int DEFAULT_QUEUE_SIZE = 1 << 14;
+	private static final int DRAIN_BATCH = 256;
+
+	// operation codes
+	private static final int DEPOSIT = 1;
+	private static final int WITHDRAW = 2;
+	private static final int TRANSFER = 3;	// phase one, on the payer's shard
+	private static final int CREDIT = 4;	// phase two, on the payee's shard
+	private static final int REFUND = 5;	// payee was removed or cannot hold the amount, back on the payer's shard
+	private static final int IDLE = 6;		// completes once everything queued before it is done
+	private static final int STOP = 7;
+
+	private static final long NO_EPOCH = -1L;
+
+	private final Bank bank;
+	private final Shard[] shards;
+	private volatile boolean closed;
+	private final LongAdder submitting = new LongAdder();	// submits between their closed check and their enqueue
+	private final LongAdder crossShardTransfers = new LongAdder();
+
+
+	// a queued transaction; one object follows a transfer through both phases
+	private static final class Operation {
+		final int code;
+		final int accNumber;
+		final int counterparty;
+		final long amountCents;
+		final CompletableFuture<Long> result;
+		long payerBalance;
+		long epoch = NO_EPOCH;			// the write epoch a transfer in flight holds open
+
+		Operation(int code, int accNumber, int counterparty, long amountCents, CompletableFuture<Long> result) {
+			this.code = code;
+			this.accNumber = accNumber;
+			this.counterparty = counterparty;
+			this.amountCents = amountCents;
+			this.result = result;
+		}
+
+		Operation next(int nextCode, int nextAccount, int nextCounterparty) {
+			Operation next = new Operation(nextCode, nextAccount, nextCounterparty, amountCents, result);
+			next.payerBalance = payerBalance;
+			next.epoch = epoch;
+			return next;
+		}
+	}
+
+
+	// constructors
+
+	/**
+	 * Creates a processor for the given bank and starts its shard threads.
+	 *
+	 * @param bank the bank whose accounts are processed.
+	 * @param shardCount the number of shards, normally the number of cores.
+	 * @param queueSize the number of transactions each shard can have queued.
+	 */
+	public ShardedTransactionProcessor(Bank bank, int shardCount, int queueSize) {
+		if(shardCount <= 0) {
+			throw new IllegalArgumentException("Invalid shard count: " + shardCount + ". Shard count must be greater than 0.");
+		}
+		if(queueSize <= 0) {
+			throw new IllegalArgumentException("Invalid queue size: " + queueSize + ". Queue size must be greater than 0.");
+		}
+		this.bank = bank;
+		this.shards = new Shard[shardCount];
+		for(int i = 0; i < shardCount; i++) {
+			shards[i] = new Shard(i, queueSize);
+		}
+		for(Shard shard : shards) {
+			shard.thread.start();
+		}
+	}
+
+	public ShardedTransactionProcessor(Bank bank, int shardCount) {
+		this(bank, shardCount, DEFAULT_QUEUE_SIZE);
+	}
+
+	public ShardedTransactionProcessor(Bank bank) {
+		this(bank, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE);
+	}
+
+
+	// getter methods
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public long getCrossShardTransfers() {
+		return crossShardTransfers.sum();
+	}
+
+	/**
+	 * Gets the shard that owns an account. The account number is mixed first so that
+	 * consecutive account numbers are spread across the shards.
+	 *
+	 * @param accNumber the account number.
+	 * @return the shard index, from 0 to getShardCount() - 1.
+	 */
+	public int shardOf(int accNumber) {
+		int h = accNumber * 0x9E3779B9;
+		return Math.floorMod(h ^ (h >>> 16), shards.length);
+	}
+
+
+	// transaction methods
+
+	/**
+	 * Queues a deposit to the account's shard.
+	 *
+	 * @param accNumber the account to deposit into.
+	 * @param amountCents the amount to deposit, in cents.
+	 * @return completes with the new balance, or exceptionally with an
+	 *         IllegalArgumentException if the account does not exist.
+	 */
+	public CompletableFuture<Long> deposit(int accNumber, long amountCents) {
+		return submit(DEPOSIT, accNumber, 0, amountCents);
+	}
+
+	/**
+	 * Queues a withdrawal to the account's shard.
+	 *
+	 * @param accNumber the account to withdraw from.
+	 * @param amountCents the amount to withdraw, in cents.
+	 * @return completes with the new balance, or exceptionally with an
+	 *         IllegalWithdrawException if the funds are insufficient or an
+	 *         IllegalArgumentException if the account does not exist.
+	 */
+	public CompletableFuture<Long> withdraw(int accNumber, long amountCents) {
+		return submit(WITHDRAW, accNumber, 0, amountCents);
+	}
+
+	/**
+	 * Queues a transfer to the payer's shard.
+	 *
+	 * @param fromAccount the account paying.
+	 * @param toAccount the account paid.
+	 * @param amountCents the amount to transfer, in cents.
+	 * @return completes with the payer's balance after the transfer once the payee has been
+	 *         credited, or exceptionally with an IllegalWithdrawException if the funds are
+	 *         insufficient or an IllegalArgumentException if either account does not exist.
+	 */
+	public CompletableFuture<Long> transfer(int fromAccount, int toAccount, long amountCents) {
+		if(fromAccount == toAccount) {
+			throw new IllegalArgumentException("Cannot transfer from account " + fromAccount + " to itself.");
+		}
+		return submit(TRANSFER, fromAccount, toAccount, amountCents);
+	}
+
+	private CompletableFuture<Long> submit(int code, int accNumber, int counterparty, long amountCents) {
+		if(amountCents < 0L) {
+			throw new IllegalArgumentException("Invalid amount: " + Money.format(amountCents) + ". Amount must be more than 0");
+		}
+		CompletableFuture<Long> result = new CompletableFuture<>();
+		// close waits for every submit counted here, so none can queue behind its drain
+		submitting.increment();
+		try {
+			if(closed) {
+				throw new IllegalStateException("The transaction processor has been closed.");
+			}
+			submitExternal(shardOf(accNumber), new Operation(code, accNumber, counterparty, amountCents, result));
+		}
+		finally {
+			submitting.decrement();
+		}
+		return result;
+	}
+
+	// queues a caller's transaction, waiting while the shard's inbox is full
+	private void submitExternal(int shard, Operation op) {
+		try {
+			shards[shard].inbox.put(op);
+			shards[shard].wake();
+		}
+		catch(InterruptedException e) {
+			// nothing was applied, so the transaction can simply fail
+			Thread.currentThread().interrupt();
+			op.result.completeExceptionally(e);
+		}
+	}
+
+	// passes work from one shard to another; never blocks and never fails
+	private void forward(int shard, Operation op) {
+		shards[shard].mailbox.add(op);
+		shards[shard].wake();
+	}
+
+
+	// shard threads
+
+	private final class Shard {
+
+		final int index;
+		final BlockingQueue<Operation> inbox;	// submitted by callers, bounded
+		final ConcurrentLinkedQueue<Operation> mailbox = new ConcurrentLinkedQueue<>();	// from other shards
+		final Thread thread;
+		private volatile boolean sleeping;
+
+		Shard(int index, int queueSize) {
+			this.index = index;
+			this.inbox = new ArrayBlockingQueue<>(queueSize);
+			this.thread = new Thread(this::run, "transaction-shard-" + index);
+			this.thread.setDaemon(true);
+		}
+
+		// called after queueing; the worker sets sleeping before its last look at the queues
+		void wake() {
+			if(sleeping) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		private boolean hasWork() {
+			return !mailbox.isEmpty() || !inbox.isEmpty();
+		}
+
+		private void run() {
+			List<Operation> batch = new ArrayList<>(DRAIN_BATCH);
+			while(true) {
+				Operation forwarded;
+				while(batch.size() < DRAIN_BATCH && (forwarded = mailbox.poll()) != null) {
+					batch.add(forwarded);
+				}
+				inbox.drainTo(batch, DRAIN_BATCH - batch.size());
+				if(batch.isEmpty()) {
+					sleeping = true;
+					if(!hasWork()) {
+						LockSupport.park(this);
+					}
+					sleeping = false;
+					Thread.interrupted();
+					continue;
+				}
+				for(int i = 0; i < batch.size(); i++) {
+					Operation op = batch.get(i);
+					if(op.code == STOP) {
+						mailbox.addAll(batch.subList(i + 1, batch.size()));	// failed by close
+						return;
+					}
+					try {
+						apply(op);
+					}
+					catch(RuntimeException e) {
+						op.result.completeExceptionally(e);
+					}
+				}
+				batch.clear();
+			}
+		}
+
+		private void apply(Operation op) {
+			BankAccount account = op.code == IDLE ? null : bank.getAccount(op.accNumber);
+			switch(op.code) {
+				case DEPOSIT:
+					if(exists(account, op)) {
+						account.checkJournal();
+						long balance = add(account, op.amountCents);
+						if(BankAccount.isDeclined(balance)) {
+							op.result.completeExceptionally(BankAccount.balanceOverflow(BankAccount.balanceOf(balance), op.amountCents));
+							break;
+						}
+						account.recordTransaction(TransactionType.DEPOSIT, op.amountCents, balance, 0);
+						op.result.complete(balance);
+					}
+					break;
+				case WITHDRAW:
+					if(exists(account, op)) {
+						account.checkJournal();
+						long balance = add(account, -op.amountCents);
+						if(BankAccount.isDeclined(balance)) {
+							op.result.completeExceptionally(new IllegalWithdrawException(
+									"Transaction failed: Insufficient funds. Current balance: $" + Money.format(BankAccount.balanceOf(balance))));
+							break;
+						}
+						account.recordTransaction(TransactionType.WITHDRAW, op.amountCents, balance, 0);
+						op.result.complete(balance);
+					}
+					break;
+				case TRANSFER:
+					transfer(account, op);
+					break;
+				case CREDIT:
+					if(account == null) {
+						// the payee went away while the money was in flight; give it back
+						forward(shardOf(op.counterparty), op.next(REFUND, op.counterparty, op.accNumber));
+						break;
+					}
+					if(!credit(account, op)) {
+						// the payee cannot hold the amount; give it back
+						forward(shardOf(op.counterparty), op.next(REFUND, op.counterparty, op.accNumber));
+						break;
+					}
+					op.result.complete(op.payerBalance);
+					break;
+				case IDLE:
+					op.result.complete(0L);
+					break;
+				case REFUND:
+					if(account == null || !credit(account, op)) {
+						// the payer went away too, or, having paid the amount, cannot hold it again
+						bank.exitWrite(op.epoch);
+						op.result.completeExceptionally(new IllegalStateException(
+								"Transfer from account " + op.accNumber + " to " + op.counterparty + " could neither be completed nor returned."));
+						break;
+					}
+					op.result.completeExceptionally(new IllegalArgumentException(
+							"Account number: " + op.counterparty + " was removed during the transfer, or cannot hold the amount; the amount was returned."));
+					break;
+				default:
+					throw new IllegalStateException("Unknown operation: " + op.code);
+			}
+		}
+
+		private void transfer(BankAccount payer, Operation op) {
+			BankAccount payee = bank.getAccount(op.counterparty);
+			if(!exists(payer, op)) {
+				return;
+			}
+			if(payee == null) {
+				op.result.completeExceptionally(new IllegalArgumentException("Account number: " + op.counterparty + " does not exsist in the system."));
+				return;
+			}
+			payer.checkJournal();
+			payee.checkJournal();
+			// the epoch stays open until the payee is credited, so no snapshot falls between
+			long epoch = bank.enterWrite();
+			boolean handedOn = false;
+			try {
+				long balance = payer.addBalanceHeld(epoch, -op.amountCents);
+				if(BankAccount.isDeclined(balance)) {
+					balance = BankAccount.balanceOf(balance);
+					payer.recordTransaction(TransactionType.TRANSFER_DECLINED, op.amountCents, balance, op.counterparty);
+					op.result.completeExceptionally(new IllegalWithdrawException(String.format(
+							"Insufficient funds for transfer to recipient: %d Current balance: $%s. Transfer amount",
+							op.counterparty, Money.format(balance))));
+					return;
+				}
+				op.payerBalance = balance;
+				int payeeShard = shardOf(op.counterparty);
+				if(payeeShard == index) {
+					long payeeBalance = payee.addBalanceHeld(epoch, op.amountCents);
+					if(BankAccount.isDeclined(payeeBalance)) {
+						// the payee cannot hold the amount, so the payer gets it back in the same epoch
+						payer.addBalanceHeld(epoch, op.amountCents);
+						op.result.completeExceptionally(BankAccount.balanceOverflow(BankAccount.balanceOf(payeeBalance), op.amountCents));
+						return;
+					}
+					bank.exitWrite(epoch);
+					handedOn = true;
+					payer.recordTransaction(TransactionType.TRANSFER_OUT, op.amountCents, balance, op.counterparty);
+					payee.recordTransaction(TransactionType.TRANSFER_IN, op.amountCents, payeeBalance, op.accNumber);
+					op.result.complete(balance);
+					return;
+				}
+				Operation credit = op.next(CREDIT, op.counterparty, op.accNumber);
+				credit.epoch = epoch;
+				try {
+					payer.recordTransaction(TransactionType.TRANSFER_OUT, op.amountCents, balance, op.counterparty);
+				}
+				finally {
+					// the payer is debited, so the credit goes on whatever happens
+					crossShardTransfers.increment();
+					forward(payeeShard, credit);
+					handedOn = true;
+				}
+			}
+			finally {
+				if(!handedOn) {
+					bank.exitWrite(epoch);
+				}
+			}
+		}
+
+		// credits the payee of a transfer, or the payer of a refund, in the epoch the
+		// transfer started in, and closes it; returns false, changing nothing and leaving
+		// the epoch open, if the account cannot hold the amount
+		private boolean credit(BankAccount account, Operation op) {
+			long balance;
+			try {
+				balance = account.addBalanceHeld(op.epoch, op.amountCents);
+			}
+			catch(RuntimeException | Error e) {
+				bank.exitWrite(op.epoch);
+				throw e;
+			}
+			if(BankAccount.isDeclined(balance)) {
+				return false;
+			}
+			bank.exitWrite(op.epoch);
+			account.recordTransaction(TransactionType.TRANSFER_IN, op.amountCents, balance, op.counterparty);
+			return true;
+		}
+
+		// changes a balance as one write of the bank's current epoch; returns the new
+		// balance, or -(balance + 1) if it would go below zero
+		private long add(BankAccount account, long deltaCents) {
+			long epoch = bank.enterWrite();
+			try {
+				return account.addBalanceHeld(epoch, deltaCents);
+			}
+			finally {
+				bank.exitWrite(epoch);
+			}
+		}
+
+		private boolean exists(BankAccount account, Operation op) {
+			if(account == null) {
+				op.result.completeExceptionally(new IllegalArgumentException("Account number: " + op.accNumber + " does not exsist in the system."));
+				return false;
+			}
+			return true;
+		}
+	}
+
+
+	// close method
+
+	/**
+	 * Stops accepting transactions, completes every transaction already queued, including
+	 * the second phase of transfers in flight, and stops the shard threads. Every future
+	 * handed out by the processor is complete once close returns.
+	 */
+	@Override
+	public synchronized void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		// a submit that missed the flag is about to queue; let it, so the drain below sees it
+		while(submitting.sum() != 0L) {
+			Thread.onSpinWait();
+		}
+		// the first markers go behind every submitted transaction. A transfer can then hand
+		// work on twice, as a credit and then a refund, each passed ahead of the next
+		// round of markers through the mailboxes, so two more rounds leave nothing in flight
+		awaitIdle(true);
+		awaitIdle(false);
+		awaitIdle(false);
+		for(Shard shard : shards) {
+			forward(shard.index, new Operation(STOP, 0, 0, 0L, new CompletableFuture<>()));
+		}
+		boolean interrupted = false;
+		for(Shard shard : shards) {
+			while(shard.thread.isAlive()) {
+				try {
+					shard.thread.join();
+				}
+				catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		// nothing should be left, but never leave a future that cannot complete
+		List<Operation> rejected = new ArrayList<>();
+		for(Shard shard : shards) {
+			rejected.addAll(shard.mailbox);
+			shard.inbox.drainTo(rejected);
+		}
+		for(Operation op : rejected) {
+			if(op.epoch != NO_EPOCH) {
+				bank.exitWrite(op.epoch);
+			}
+			op.result.completeExceptionally(new IllegalStateException("The transaction processor has been closed."));
+		}
+	}
+
+	// waits until a marker queued on each shard has been reached, behind the submitted
+	// transactions or behind the work passed between shards
+	private void awaitIdle(boolean behindSubmitted) {
+		List<CompletableFuture<Long>> markers = new ArrayList<>(shards.length);
+		for(Shard shard : shards) {
+			CompletableFuture<Long> marker = new CompletableFuture<>();
+			markers.add(marker);
+			Operation idle = new Operation(IDLE, 0, 0, 0L, marker);
+			if(behindSubmitted) {
+				boolean interrupted = false;
+				while(true) {
+					try {
+						shard.inbox.put(idle);
+						break;
+					}
+					catch(InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				shard.wake();
+				if(interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			else {
+				forward(shard.index, idle);
+			}
+		}
+		for(CompletableFuture<Long> marker : markers) {
+			marker.handle((balance, error) -> null).join();
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * The TextLogConverter class converts the human-readable transaction logs written by
+ * earlier versions of DataLogger into the binary journal format read by JournalReader.
+ *
+ * Two text layouts are understood:
+ * - The java.util.logging SimpleFormatter output of the per-account log files, where a
+ *   timestamp line such as "Aug. 18, 2024 12:01:47 A.M. data_classes.DataLogger logTransaction"
+ *   is followed by "INFO: Account No: 12345 - Deposit: $100.00, New Balance: $1100.00".
+ * - Single-line entries prefixed with an ISO-8601 timestamp, such as
+ *   "2024-08-18T00:01:47Z Account No: 12345 - Transfer to 1111: $5.00, New Balance: $95.00".
+ *
+ * Lines that cannot be recognised are counted and skipped rather than failing the whole
+ * conversion.
+ *
+ * Usage Example:
+ * java data_classes.TextLogConverter logs logs/converted.dat
+ *
+ * Responsibilities:
+ * - Parse legacy text log entries into transaction type, amount, balance and counterparty.
+ * - Write the parsed entries as fixed-width binary records through a FileChannel.
+ * - Report how many entries were converted and skipped.
+ */
+
+package data_classes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TextLogConverter {
+
+	private static final Pattern ENTRY = Pattern.compile(
+			"Account No: (\\d+) - (.*): \\$(-?[\\d,]+\\.\\d{2}), New Balance: \\$(-?[\\d,]+\\.\\d{2})\\s*$");
+	private static final Pattern COUNTERPARTY = Pattern.compile("(\\d+)");
+	private static final DateTimeFormatter SIMPLE_FORMATTER_TIME =
+			DateTimeFormatter.ofPattern("MMM d, yyyy h:mm:ss a", Locale.ENGLISH);
+
+	private final ZoneId zone;
+	private long converted;
+	private long skipped;
+
+
+	// constructors
+
+	/**
+	 * Creates a converter that interprets SimpleFormatter timestamps in the given zone.
+	 *
+	 * @param zone the zone the text logs were written in.
+	 */
+	public TextLogConverter(ZoneId zone) {
+		this.zone = zone;
+	}
+
+	public TextLogConverter() {
+		this(ZoneId.systemDefault());
+	}
+
+
+	// getter methods
+	public long getConverted() {
+		return converted;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+
+	/**
+	 * Converts text log files into a new binary journal. A directory is expanded to every
+	 * ".log" file inside it.
+	 *
+	 * @param inputs the text log files or directories to convert.
+	 * @param output the binary journal to create; an existing file is replaced.
+	 * @throws IOException if an input cannot be read or the output cannot be written.
+	 */
+	public void convert(List<Path> inputs, Path output) throws IOException {
+		Path dir = output.toAbsolutePath().getParent();
+		if(dir != null) {
+			Files.createDirectories(dir);
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+		try(FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			TransactionRecord.writeHeader(buffer);
+			for(Path file : expand(inputs)) {
+				convertFile(file, channel, buffer);
+			}
+			drain(channel, buffer);
+			channel.force(true);
+		}
+	}
+
+	private void convertFile(Path file, FileChannel channel, ByteBuffer buffer) throws IOException {
+		long timestamp = 0L;
+		try(BufferedReader reader = Files.newBufferedReader(file)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.isBlank()) {
+					continue;
+				}
+				int entryStart = line.indexOf("Account No: ");
+				if(entryStart < 0) {
+					if(line.startsWith("INFO:")) {
+						skipped++;
+					}
+					else {
+						// SimpleFormatter header line carrying the timestamp of the next entry
+						timestamp = parseSimpleFormatterTime(line);
+					}
+					continue;
+				}
+				if(entryStart > 0 && !line.startsWith("INFO:")) {
+					timestamp = parseIsoTime(line.substring(0, entryStart).trim());
+				}
+				Matcher m = ENTRY.matcher(line.substring(entryStart));
+				int type = m.matches() ? parseType(m.group(2)) : 0;
+				if(type == 0) {
+					skipped++;
+					continue;
+				}
+				if(buffer.remaining() < TransactionRecord.RECORD_SIZE) {
+					drain(channel, buffer);
+				}
+				TransactionRecord.write(buffer, timestamp, Integer.parseInt(m.group(1)), type,
+						Money.parse(m.group(3)), Money.parse(m.group(4)), parseCounterparty(type, m.group(2)));
+				converted++;
+			}
+		}
+	}
+
+
+	// parsing methods
+
+	// maps the free-text action written by the old logger onto a transaction type
+	static int parseType(String action) {
+		if(action.startsWith("Deposit")) {
+			return TransactionType.DEPOSIT;
+		}
+		if(action.startsWith("Withdraw")) {
+			return TransactionType.WITHDRAW;
+		}
+		if(action.startsWith("Transfer to")) {
+			return TransactionType.TRANSFER_OUT;
+		}
+		if(action.startsWith("Transfer from")) {
+			return TransactionType.TRANSFER_IN;
+		}
+		if(action.startsWith("Insufficient funds for transfer") || action.startsWith("Declined transfer")) {
+			return TransactionType.TRANSFER_DECLINED;
+		}
+		return 0;
+	}
+
+	private static int parseCounterparty(int type, String action) {
+		if(!TransactionType.hasCounterparty(type)) {
+			return 0;
+		}
+		Matcher m = COUNTERPARTY.matcher(action);
+		return m.find() ? Integer.parseInt(m.group(1)) : 0;
+	}
+
+	// parses "Aug. 18, 2024 12:01:47 A.M. data_classes.DataLogger logTransaction"
+	private long parseSimpleFormatterTime(String line) {
+		String[] parts = line.replace(".", "").replace("Sept ", "Sep ").split(" ");
+		if(parts.length < 5) {
+			return 0L;
+		}
+		String text = String.join(" ", parts[0], parts[1], parts[2], parts[3], parts[4]);
+		try {
+			return LocalDateTime.parse(text, SIMPLE_FORMATTER_TIME).atZone(zone).toInstant().toEpochMilli();
+		}
+		catch(DateTimeParseException e) {
+			return 0L;
+		}
+	}
+
+	private static long parseIsoTime(String text) {
+		try {
+			return Instant.parse(text).toEpochMilli();
+		}
+		catch(DateTimeParseException e) {
+			return 0L;
+		}
+	}
+
+
+	// file helpers
+
+	private static List<Path> expand(List<Path> inputs) throws IOException {
+		List<Path> files = new ArrayList<>();
+		for(Path input : inputs) {
+			if(Files.isDirectory(input)) {
+				try(DirectoryStream<Path> dir = Files.newDirectoryStream(input, "*.log")) {
+					for(Path file : dir) {
+						files.add(file);
+					}
+				}
+			}
+			else {
+				files.add(input);
+			}
+		}
+		files.sort(null);
+		return files;
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+
+	/**
+	 * Converts text logs from the command line.
+	 *
+	 * @param args the text log files or directories to convert, followed by the output journal.
+	 * 		  With no arguments the "logs" directory is converted to "logs/converted.dat".
+	 * @throws IOException if the conversion fails.
+	 */
+	public static void main(String[] args) throws IOException {
+		List<Path> inputs = new ArrayList<>();
+		Path output;
+		if(args.length < 2) {
+			inputs.add(Paths.get("logs"));
+			output = Paths.get("logs", "converted.dat");
+		}
+		else {
+			for(int i = 0; i < args.length - 1; i++) {
+				inputs.add(Paths.get(args[i]));
+			}
+			output = Paths.get(args[args.length - 1]);
+		}
+		TextLogConverter converter = new TextLogConverter();
+		converter.convert(inputs, output);
+		System.out.println("Converted " + converter.getConverted() + " entries to " + output
+				+ " (" + converter.getSkipped() + " skipped)");
+	}
+}
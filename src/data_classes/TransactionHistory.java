@@ -0,0 +1,163 @@
+/**
+ * The TransactionHistory class keeps the most recent transactions of one account in
+ * memory, so that a statement of recent activity never has to read the journal.
+ *
+ * The history is a ring of CAPACITY entries held in a single array of longs, allocated
+ * on the account's first transaction: accounts that never transact cost nothing, and an
+ * active account costs one array. Each entry holds the transaction's timestamp, amount,
+ * resulting balance, type and counterparty, and the number of its record in the journal,
+ * which is where a statement continues once it has read past the oldest entry.
+ *
+ * Transactions of one account can be recorded from several threads at once. A writer
+ * claims the next sequence number with one atomic increment and waits, should it ever
+ * lap a slower writer, until the entry it replaces is complete. Each entry carries a
+ * stamp, the sequence number it holds, which is cleared while the entry is written and
+ * set once it is complete. A reader checks the stamp before and after reading an entry,
+ * so it never returns a half-written one; an entry replaced while it was being read is
+ * treated as gone.
+ *
+ * Responsibilities:
+ * - Record an account's transactions in a bounded ring without locking.
+ * - Walk the recorded transactions newest first.
+ * - Tell whether the ring still reaches back to the account's first transaction.
+ */
+
+package data_classes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+final class TransactionHistory {
+
+	// entries kept per account, a power of two
+	static final int CAPACITY = 16;
+
+	// entry layout, in longs
+	private static final int STAMP 		= 0;
+	private static final int TIMESTAMP 	= 1;
+	private static final int AMOUNT 	= 2;
+	private static final int BALANCE 	= 3;
+	private static final int RECORD 	= 4;
+	private static final int TYPE 		= 5;	// type in the high half, counterparty in the low half
+	private static final int STRIDE 	= 6;
+
+	private static final long WRITING = Long.MIN_VALUE;
+	private static final AtomicLongFieldUpdater<TransactionHistory> APPENDED =
+			AtomicLongFieldUpdater.newUpdater(TransactionHistory.class, "appended");
+	private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final boolean startsEmpty;		// the account had no transactions before this history began
+	private final long firstRecord;			// journal record number the account's records can start at
+	private volatile long appended;			// sequence number of the next entry
+	private volatile long[] entries;		// read and written through ENTRY
+
+
+	/**
+	 * Receives the fields of each entry visited, and returns false to end the walk.
+	 */
+	@FunctionalInterface
+	interface EntryVisitor {
+		boolean visit(long timestamp, int type, long amountCents, long balanceCents, int counterparty, long record);
+	}
+
+
+	// constructor
+
+	/**
+	 * @param startsEmpty true for a newly opened account, whose history starts here.
+	 * @param firstRecord the journal record number the account's records can start at.
+	 */
+	TransactionHistory(boolean startsEmpty, long firstRecord) {
+		this.startsEmpty = startsEmpty;
+		this.firstRecord = firstRecord;
+	}
+
+	long getFirstRecord() {
+		return firstRecord;
+	}
+
+
+	// write methods
+
+	void append(long timestamp, int type, long amountCents, long balanceCents, int counterparty, long record) {
+		long seq = APPENDED.getAndIncrement(this);
+		long[] ring = entries;
+		if(ring == null) {
+			ring = allocate();
+		}
+		int base = (int) (seq & (CAPACITY - 1)) * STRIDE;
+		for(int spins = 1; (long) ENTRY.getAcquire(ring, base + STAMP) != seq - CAPACITY; spins++) {
+			// a writer CAPACITY entries behind has not finished the entry this one replaces
+			if((spins & 15) == 0) {
+				Thread.yield();
+			}
+			else {
+				Thread.onSpinWait();
+			}
+		}
+		ring[base + STAMP] = WRITING;
+		VarHandle.storeStoreFence();
+		ring[base + TIMESTAMP] = timestamp;
+		ring[base + AMOUNT] = amountCents;
+		ring[base + BALANCE] = balanceCents;
+		ring[base + RECORD] = record;
+		ring[base + TYPE] = ((long) type << 32) | (counterparty & 0xFFFFFFFFL);
+		ENTRY.setRelease(ring, base + STAMP, seq);
+	}
+
+	private synchronized long[] allocate() {
+		long[] ring = entries;
+		if(ring == null) {
+			ring = new long[CAPACITY * STRIDE];
+			for(int slot = 0; slot < CAPACITY; slot++) {
+				// stamped as if the entries before sequence 0 were complete
+				ring[slot * STRIDE + STAMP] = slot - CAPACITY;
+			}
+			entries = ring;
+		}
+		return ring;
+	}
+
+
+	// read methods
+
+	/**
+	 * Visits the entries in the ring, newest first, until the visitor returns false.
+	 * Entries still being written are skipped, and the walk ends at the first entry that
+	 * has already been replaced.
+	 *
+	 * @param visitor the visitor to call for each entry.
+	 * @return true if every transaction of the account was visited, so the journal holds
+	 * 		   nothing older for it.
+	 */
+	boolean forEachNewestFirst(EntryVisitor visitor) {
+		long last = appended - 1;
+		long[] ring = entries;
+		if(ring == null) {
+			return startsEmpty && last < CAPACITY;
+		}
+		for(long seq = last; seq >= 0 && seq > last - CAPACITY; seq--) {
+			int base = (int) (seq & (CAPACITY - 1)) * STRIDE;
+			long stamp = (long) ENTRY.getAcquire(ring, base + STAMP);
+			if(stamp < seq) {
+				// claimed but still being written, so not part of the history yet
+				continue;
+			}
+			long timestamp = ring[base + TIMESTAMP];
+			long amountCents = ring[base + AMOUNT];
+			long balanceCents = ring[base + BALANCE];
+			long record = ring[base + RECORD];
+			long typed = ring[base + TYPE];
+			VarHandle.loadLoadFence();
+			if(stamp != seq || (long) ENTRY.getVolatile(ring, base + STAMP) != seq) {
+				// replaced by a newer transaction, as is everything older
+				return false;
+			}
+			if(!visitor.visit(timestamp, (int) (typed >>> 32), amountCents, balanceCents, (int) typed, record)) {
+				return false;
+			}
+		}
+		return startsEmpty && last < CAPACITY;
+	}
+}
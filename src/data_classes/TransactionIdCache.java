@@ -0,0 +1,509 @@
+/**
+ * The TransactionIdCache class remembers the outcome of every transaction made with a
+ * client-supplied transaction id (see BankAccount.depositOnce, withdrawOnce and
+ * transferOnce) for a window of time, so a client that retries a transaction after a
+ * timeout gets the original result back instead of having it applied a second time.
+ *
+ * Ids are held in primitive open-addressing hash tables, a long key, a long balance, a
+ * long fingerprint and a byte outcome per id, about 34 bytes per id at the tables'
+ * highest load, instead of the hundred or so a map of boxed entries would need. The cache is split into stripes by
+ * id, each with its own lock, so transactions with different ids rarely wait for each
+ * other. Each stripe keeps GENERATIONS tables, one per period of a third of the window:
+ * new ids go into the newest, lookups search them all, and when a period ends the oldest
+ * table is dropped whole. An id is therefore remembered for at least the window and at
+ * most a third longer, and expiry never walks individual entries. A stripe only expires
+ * tables when it is next used, but it expires every period that has passed by then.
+ *
+ * The cache is bounded: once the newest table of a stripe reaches its share of
+ * maxEntries, the stripe starts a new period early and ids fall out of the window
+ * sooner. Such early evictions are counted.
+ *
+ * A transaction in progress holds its id as pending. A retry that arrives meanwhile
+ * waits for it to finish and then gets its result, so two concurrent attempts with one
+ * id never both apply. Once the transaction has changed a balance its id is completed,
+ * even if journaling or reporting it fails afterwards; only a transaction that failed
+ * before changing anything gives its id up.
+ *
+ * Each id also keeps a fingerprint of its transaction: the account, the kind of
+ * transaction, the amount and the other account, if any. An id sent again with a
+ * different transaction is rejected rather than answered with another transaction's
+ * result.
+ *
+ * Outcomes are recorded in the journal as TRANSACTION_ID records, so after a restart the
+ * cache can be rebuilt with restore.
+ *
+ * Usage Example:
+ * long result = cache.claim(txId, TransactionIdCache.fingerprint(accNumber, TransactionType.DEPOSIT, amountCents, 0));
+ * if (result == TransactionIdCache.CLAIMED) {
+ *     result = apply();
+ *     cache.complete(txId, result);
+ * }
+ *
+ * Responsibilities:
+ * - Claim ids for new transactions and hand back the result of those already made.
+ * - Reject an id reused for a different transaction.
+ * - Expire ids, a period at a time, once they fall out of the window.
+ * - Bound the memory used, whatever the rate of new ids.
+ * - Rebuild the ids of the window from the journal.
+ */
+
+package data_classes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class TransactionIdCache {
+
+	public static final long DEFAULT_WINDOW_MILLIS = 60L * 60L * 1000L;
+	public static final int DEFAULT_MAX_ENTRIES = 8 << 20;
+
+	// returned by claim when the caller is to apply the transaction
+	public static final long CLAIMED = Long.MIN_VALUE;
+
+	private static final int STRIPES = 64;				// a power of two
+	private static final int GENERATIONS = 4;			// tables per stripe, one per period
+	private static final int INITIAL_SLOTS = 16;		// a power of two
+
+	// outcomes, 0 marks an empty slot
+	private static final byte PENDING = 1;
+	private static final byte APPLIED = 2;
+	private static final byte DECLINED = 3;
+	private static final byte ABANDONED = 4;			// failed without an outcome, free to claim again
+
+	// how far out of timestamp order concurrent transactions can reach the journal
+	private static final long CLOCK_SLACK_MILLIS = 1000L;
+
+	private final long windowMillis;
+	private final long periodMillis;
+	private final int maxSlots;							// largest table, in slots
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final LongAdder earlyEvictions = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Creates a cache that remembers ids for the given window, holding at most about the
+	 * given number of them.
+	 *
+	 * @param windowMillis how long ids are remembered, in milliseconds.
+	 * @param maxEntries the most ids to hold at once.
+	 * @throws IllegalArgumentException if the window is shorter than the number of
+	 * 		   periods or maxEntries is not positive.
+	 */
+	public TransactionIdCache(long windowMillis, int maxEntries) {
+		if(windowMillis < GENERATIONS - 1 || maxEntries <= 0) {
+			throw new IllegalArgumentException("Invalid window or size: " + windowMillis + " ms, " + maxEntries
+					+ " entries. The window must be at least " + (GENERATIONS - 1) + " ms and the size greater than 0.");
+		}
+		this.windowMillis = windowMillis;
+		this.periodMillis = windowMillis / (GENERATIONS - 1);
+		// a full table is three quarters occupied
+		long perTable = Math.max(1L, (long) maxEntries / (STRIPES * GENERATIONS)) * 4L / 3L + 1L;
+		this.maxSlots = (int) Math.max(INITIAL_SLOTS, Math.min(1 << 30, Long.highestOneBit(perTable - 1) << 1));
+		long now = System.currentTimeMillis();
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe(now + periodMillis);
+		}
+	}
+
+	public TransactionIdCache() {
+		this(DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_ENTRIES);
+	}
+
+
+	// id methods
+
+	/**
+	 * Works out the fingerprint of a transaction: the account it is made on in the high
+	 * half, and a digest of its kind, amount and other account in the low half, which is
+	 * what a TRANSACTION_ID record keeps in its counterparty field.
+	 *
+	 * @param accNumber the account the transaction is made on.
+	 * @param type the TransactionType code of the transaction.
+	 * @param amountCents the amount of the transaction, in cents.
+	 * @param counterparty the other account of a transfer, or 0.
+	 * @return the fingerprint.
+	 */
+	public static long fingerprint(int accNumber, int type, long amountCents, int counterparty) {
+		long h = (amountCents * 31L + type) * 0x9E3779B97F4A7C15L + counterparty;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		return ((long) accNumber << 32) | ((h ^ (h >>> 32)) & 0xFFFFFFFFL);
+	}
+
+	// the digest half of a fingerprint, as journaled
+	static int digestOf(long fingerprint) {
+		return (int) fingerprint;
+	}
+
+	/**
+	 * Claims a transaction id. If the id is new, it is held as pending and CLAIMED is
+	 * returned: the caller applies the transaction and then calls complete as soon as a
+	 * balance has changed, or abandon if it fails before that. If the id is known, its
+	 * result is returned. If it is pending, this waits until the transaction holding it
+	 * finishes.
+	 *
+	 * @param txId the client-supplied transaction id, not 0.
+	 * @param fingerprint the transaction's fingerprint, from fingerprint.
+	 * @return CLAIMED, or the result passed to complete: the balance the transaction left
+	 * 		   the account with, or -(balance + 1) if it was declined.
+	 * @throws IllegalArgumentException if the id is 0, or was used for a transaction with
+	 * 		   a different fingerprint.
+	 * @throws IllegalStateException if the thread is interrupted while waiting.
+	 */
+	public long claim(long txId, long fingerprint) {
+		if(txId == 0L) {
+			throw new IllegalArgumentException("Invalid transaction id: 0.");
+		}
+		long hash = hash(txId);
+		Stripe stripe = stripeOf(hash);
+		synchronized(stripe) {
+			while(true) {
+				stripe.expire(System.currentTimeMillis());
+				boolean pending = false;
+				for(Table table : stripe.generations) {
+					int slot = table == null ? -1 : table.find(txId, hash);
+					if(slot < 0) {
+						continue;
+					}
+					byte outcome = table.outcomes[slot];
+					if(outcome == ABANDONED) {
+						// nothing was applied under the id, so any transaction may take it
+						table.outcomes[slot] = PENDING;
+						table.fingerprints[slot] = fingerprint;
+						return CLAIMED;
+					}
+					if(table.fingerprints[slot] != fingerprint) {
+						throw new IllegalArgumentException("Transaction id " + txId + " was already used for a different transaction.");
+					}
+					if(outcome == APPLIED) {
+						return table.balances[slot];
+					}
+					if(outcome == DECLINED) {
+						return -table.balances[slot] - 1L;
+					}
+					pending = true;
+					break;
+				}
+				if(!pending) {
+					stripe.insert(txId, hash, PENDING, 0L, fingerprint);
+					return CLAIMED;
+				}
+				try {
+					stripe.wait();
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for transaction " + txId + " to finish.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the result of a transaction whose id was claimed, and wakes any retry
+	 * waiting for it. Called as soon as the transaction's balances are written, before
+	 * it is journaled or reported.
+	 *
+	 * @param txId the transaction id.
+	 * @param result the balance the transaction left the account with, or -(balance + 1)
+	 * 		  if it was declined.
+	 */
+	public void complete(long txId, long result) {
+		long hash = hash(txId);
+		Stripe stripe = stripeOf(hash);
+		synchronized(stripe) {
+			stripe.expire(System.currentTimeMillis());
+			byte outcome = result >= 0L ? APPLIED : DECLINED;
+			long balance = result >= 0L ? result : -result - 1L;
+			if(stripe.update(txId, hash, outcome, balance) < 0) {
+				// pending ids are carried over when tables expire, so this is only reached
+				// if the caller never claimed the id
+				stripe.insert(txId, hash, outcome, balance, 0L);
+			}
+			stripe.notifyAll();
+		}
+	}
+
+	/**
+	 * Releases a claimed id whose transaction failed before changing any balance, so it
+	 * can be claimed again. An id already completed is left as it is, and its result is
+	 * returned.
+	 *
+	 * @param txId the transaction id.
+	 * @return CLAIMED if the id was released, or the result it was completed with: the
+	 * 		   balance the transaction left the account with, or -(balance + 1) if it was
+	 * 		   declined.
+	 */
+	public long abandon(long txId) {
+		long hash = hash(txId);
+		Stripe stripe = stripeOf(hash);
+		synchronized(stripe) {
+			stripe.expire(System.currentTimeMillis());
+			long result = CLAIMED;
+			for(Table table : stripe.generations) {
+				int slot = table == null ? -1 : table.find(txId, hash);
+				if(slot < 0) {
+					continue;
+				}
+				byte outcome = table.outcomes[slot];
+				if(outcome == PENDING) {
+					table.outcomes[slot] = ABANDONED;
+					table.balances[slot] = 0L;
+				}
+				else if(outcome == APPLIED) {
+					result = table.balances[slot];
+				}
+				else if(outcome == DECLINED) {
+					result = -table.balances[slot] - 1L;
+				}
+				break;
+			}
+			stripe.notifyAll();
+			return result;
+		}
+	}
+
+
+	// restore methods
+
+	/**
+	 * Adds the ids recorded in the journal within the window, as they were when recorded.
+	 * Ids the cache already holds are left as they are. Meant to be called once at
+	 * startup, before transactions are taken.
+	 *
+	 * @param journal the journal to read.
+	 * @return the number of ids added.
+	 * @throws UncheckedIOException if the journal cannot be read.
+	 */
+	public long restore(TransactionJournal journal) {
+		journal.flush();
+		long now = System.currentTimeMillis();
+		long oldest = now - windowMillis;
+		long[] added = new long[1];
+		try(JournalReader reader = new JournalReader(journal.getPath())) {
+			reader.scanBackward(Long.MAX_VALUE, 0L, (record, timestamp, accNumber, type, amountCents, balanceCents, counterparty) -> {
+				if(TransactionType.isTransactionId(type) && timestamp >= oldest
+						&& restore(amountCents, type, balanceCents, ((long) accNumber << 32) | (counterparty & 0xFFFFFFFFL), timestamp, now)) {
+					added[0]++;
+				}
+				return timestamp >= oldest - CLOCK_SLACK_MILLIS;
+			});
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException("Failed to restore transaction ids from " + journal.getPath(), e);
+		}
+		return added[0];
+	}
+
+	// files the id in the table of the period it was recorded in, so it expires on time
+	private boolean restore(long txId, int type, long balance, long fingerprint, long timestamp, long now) {
+		if(txId == 0L) {
+			return false;
+		}
+		long hash = hash(txId);
+		Stripe stripe = stripeOf(hash);
+		synchronized(stripe) {
+			stripe.expire(now);
+			long periodStart = stripe.rotateAt - periodMillis;
+			int generation = timestamp >= periodStart ? 0 : (int) Math.min(GENERATIONS, 1L + (periodStart - 1L - timestamp) / periodMillis);
+			if(generation >= GENERATIONS || stripe.contains(txId, hash)) {
+				return false;
+			}
+			byte outcome = type == TransactionType.TRANSACTION_ID ? APPLIED : DECLINED;
+			return stripe.insertInto(generation, txId, hash, outcome, balance, fingerprint);
+		}
+	}
+
+
+	// getter methods
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	/**
+	 * Gets the number of ids held, including expired ones whose table has not been
+	 * dropped yet.
+	 *
+	 * @return the id count.
+	 */
+	public long size() {
+		long size = 0L;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				for(Table table : stripe.generations) {
+					size += table == null ? 0 : table.size;
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the number of ids dropped before the end of the window because the cache was full.
+	 *
+	 * @return the early eviction count.
+	 */
+	public long getEarlyEvictions() {
+		return earlyEvictions.sum();
+	}
+
+
+	// hashing
+
+	// spreads sequential ids; the high bits pick the stripe and the low bits the slot
+	private static long hash(long txId) {
+		long h = txId * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	private Stripe stripeOf(long hash) {
+		return stripes[(int) (hash >>> 58) & (STRIPES - 1)];
+	}
+
+
+	// the tables of one stripe, newest first; guarded by the stripe's lock
+	private final class Stripe {
+		final Table[] generations = new Table[GENERATIONS];		// allocated on first use
+		long rotateAt;											// end of the newest table's period
+
+		Stripe(long rotateAt) {
+			this.rotateAt = rotateAt;
+		}
+
+		// drops the tables whose period has fallen out of the window
+		void expire(long now) {
+			if(now < rotateAt) {
+				return;
+			}
+			long periods = (now - rotateAt) / periodMillis + 1L;
+			for(long i = 0; i < Math.min(periods, GENERATIONS); i++) {
+				rotate();
+			}
+			rotateAt += periods * periodMillis;
+		}
+
+		// starts a new period, carrying pending ids over from the table being dropped
+		void rotate() {
+			Table dropped = generations[GENERATIONS - 1];
+			System.arraycopy(generations, 0, generations, 1, GENERATIONS - 1);
+			generations[0] = null;
+			if(dropped != null) {
+				for(int slot = 0; slot < dropped.keys.length; slot++) {
+					if(dropped.outcomes[slot] == PENDING) {
+						long txId = dropped.keys[slot];
+						insertInto(0, txId, hash(txId), PENDING, 0L, dropped.fingerprints[slot]);
+					}
+				}
+			}
+		}
+
+		boolean contains(long txId, long hash) {
+			for(Table table : generations) {
+				if(table != null && table.find(txId, hash) >= 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// finishes a pending id; returns the outcome the id had, or -1 if it is not held
+		int update(long txId, long hash, byte outcome, long balance) {
+			for(Table table : generations) {
+				int slot = table == null ? -1 : table.find(txId, hash);
+				if(slot >= 0) {
+					byte previous = table.outcomes[slot];
+					if(previous == PENDING) {
+						table.outcomes[slot] = outcome;
+						table.balances[slot] = balance;
+					}
+					return previous;
+				}
+			}
+			return -1;
+		}
+
+		// adds an id to the newest table, starting a new period early if it is full
+		void insert(long txId, long hash, byte outcome, long balance, long fingerprint) {
+			if(!insertInto(0, txId, hash, outcome, balance, fingerprint)) {
+				Table oldest = generations[GENERATIONS - 1];
+				if(oldest != null) {
+					earlyEvictions.add(oldest.size);
+				}
+				rotate();
+				insertInto(0, txId, hash, outcome, balance, fingerprint);
+			}
+		}
+
+		// false if the table is full
+		boolean insertInto(int generation, long txId, long hash, byte outcome, long balance, long fingerprint) {
+			Table table = generations[generation];
+			if(table == null) {
+				table = new Table(INITIAL_SLOTS);
+				generations[generation] = table;
+			}
+			if((table.size + 1) * 4L > table.keys.length * 3L) {
+				if(table.keys.length >= maxSlots) {
+					return false;
+				}
+				table = table.grow();
+				generations[generation] = table;
+			}
+			table.put(txId, hash, outcome, balance, fingerprint);
+			return true;
+		}
+	}
+
+
+	// an open-addressing hash table with linear probing; ids are never removed from it
+	private static final class Table {
+		final long[] keys;				// 0 marks an empty slot
+		final long[] balances;
+		final long[] fingerprints;
+		final byte[] outcomes;
+		final int mask;
+		int size;
+
+		Table(int slots) {
+			keys = new long[slots];
+			balances = new long[slots];
+			fingerprints = new long[slots];
+			outcomes = new byte[slots];
+			mask = slots - 1;
+		}
+
+		int find(long txId, long hash) {
+			for(int slot = (int) hash & mask; keys[slot] != 0L; slot = (slot + 1) & mask) {
+				if(keys[slot] == txId) {
+					return slot;
+				}
+			}
+			return -1;
+		}
+
+		// the id must not be in the table yet
+		void put(long txId, long hash, byte outcome, long balance, long fingerprint) {
+			int slot = (int) hash & mask;
+			while(keys[slot] != 0L) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = txId;
+			outcomes[slot] = outcome;
+			balances[slot] = balance;
+			fingerprints[slot] = fingerprint;
+			size++;
+		}
+
+		Table grow() {
+			Table grown = new Table(keys.length * 2);
+			for(int slot = 0; slot < keys.length; slot++) {
+				if(keys[slot] != 0L) {
+					grown.put(keys[slot], hash(keys[slot]), outcomes[slot], balances[slot], fingerprints[slot]);
+				}
+			}
+			return grown;
+		}
+	}
+}
@@ -0,0 +1,518 @@
+/**
+ * The TransactionJournal class is the single append-only journal that every account in
+ * the system records its transactions to. It replaces the one-FileHandler-per-account
+ * approach, which opened a file for every account and formatted and flushed every entry
+ * on the thread performing the transaction.
+ *
+ * Transactions are handed off through a fixed-size ring buffer made of primitive arrays.
+ * A producer claims a slot with a single atomic increment, copies its fields into the
+ * slot and publishes it, so recording a transaction takes constant time and allocates
+ * nothing. A single background writer thread drains every published slot, encodes the
+ * entries as fixed-width binary records (see TransactionRecord) into one large buffer,
+ * writes it to the journal's FileChannel with one sequential write and then forces the
+ * file once for the whole batch (group commit). Journals are read back with JournalReader.
+ *
+ * If the writer falls behind far enough for the ring to fill up, producers wait for it to
+ * free a slot rather than dropping records.
+ *
+ * If a write or force fails, the writer logs the error and writes nothing more, since the
+ * file would no longer match the record numbers already handed out. The records it was
+ * writing and any appended after them are lost. Appends are made after a transaction has
+ * changed its balances, so they never throw for this; instead flush throws an
+ * UncheckedIOException carrying the original error, and so does checkHealthy, which
+ * accounts call before changing any balance so that a transaction the journal can no
+ * longer record is declined rather than applied.
+ *
+ * Every append returns the number its record will have in the journal file, counting
+ * the records already in the file when the journal was opened, so the record can be found
+ * again with JournalReader without searching for it.
+ *
+ * Usage Example:
+ * TransactionJournal journal = TransactionJournal.getInstance();
+ * journal.append(1234, TransactionType.DEPOSIT, 5000L, 15000L, 0);
+ *
+ * Responsibilities:
+ * - Accept transaction records from any thread without locking or allocating.
+ * - Batch records into large sequential writes on a single writer thread.
+ * - Make each batch durable with a single fsync.
+ * - Flush and close the journal file on shutdown.
+ */
+
+package data_classes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class TransactionJournal implements AutoCloseable {
+
+	// default journal location and sizing
+	public static final Path DEFAULT_PATH = Paths.get("logs", "journal.dat");
+	private static final int DEFAULT_CAPACITY = 1 << 16;
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+	private static final long IDLE_PARK_NANOS = 100_000L;
+	private static final int IDLE_SPINS = 200;
+
+	private static final Logger LOG = Logger.getLogger(TransactionJournal.class.getName());
+
+	// shared instance used by every account
+	private static volatile TransactionJournal instance;
+
+	// ring buffer slots
+	private final int mask;
+	private final AtomicLongArray published;
+	private final int[] accounts;
+	private final int[] types;
+	private final long[] amounts;
+	private final long[] balances;
+	private final int[] counterparties;
+	private final long[] timestamps;
+
+	// sequence of the next slot to be claimed by a producer
+	private final AtomicLong claimed = new AtomicLong();
+
+	// sequence of the next slot the writer will consume, every slot below it is durable
+	private volatile long consumed;
+
+	// number of the record of sequence 0: the records already in the file when it was opened
+	private long firstRecord;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final ByteBuffer writeBuffer;
+	private final Thread writer;
+	private volatile boolean running = true;
+	private volatile boolean enabled = true;
+	private volatile IOException failure;		// the write that failed, after which nothing more is written
+
+
+	// constructors
+
+	/**
+	 * Opens a journal appending to the given file with the given ring capacity.
+	 *
+	 * @param path the journal file; created along with its directory if missing. An existing
+	 * 		  journal is validated and appended to.
+	 * @param capacity the number of ring buffer slots, rounded up to a power of two.
+	 * @throws UncheckedIOException if the journal file cannot be opened.
+	 */
+	public TransactionJournal(Path path, int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.mask 			= size - 1;
+		this.published 		= new AtomicLongArray(size);
+		this.accounts 		= new int[size];
+		this.types 			= new int[size];
+		this.amounts 		= new long[size];
+		this.balances 		= new long[size];
+		this.counterparties = new int[size];
+		this.timestamps 	= new long[size];
+		for(int i = 0; i < size; i++) {
+			published.set(i, -1L);
+		}
+
+		this.path = path;
+		try {
+			Path dir = path.toAbsolutePath().getParent();
+			if(dir != null) {
+				Files.createDirectories(dir);
+			}
+			this.writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			openForAppend();
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException("Failed to open transaction journal: " + path, e);
+		}
+
+		this.writer = new Thread(this::writeLoop, "transaction-journal-writer " + path);
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Opens a journal appending to the given file with the default ring capacity.
+	 *
+	 * @param path the journal file.
+	 */
+	public TransactionJournal(Path path) {
+		this(path, DEFAULT_CAPACITY);
+	}
+
+
+	/**
+	 * Gets the shared journal, opening it on first use. The shared journal is flushed
+	 * and closed automatically when the JVM shuts down.
+	 *
+	 * @return the journal shared by every account.
+	 */
+	public static TransactionJournal getInstance() {
+		TransactionJournal journal = instance;
+		if(journal == null) {
+			synchronized(TransactionJournal.class) {
+				journal = instance;
+				if(journal == null) {
+					journal = new TransactionJournal(DEFAULT_PATH);
+					final TransactionJournal shutdownJournal = journal;
+					Runtime.getRuntime().addShutdownHook(new Thread(shutdownJournal::close, "transaction-journal-shutdown"));
+					instance = journal;
+				}
+			}
+		}
+		return journal;
+	}
+
+	/**
+	 * Makes another journal the shared one, for tests and tools that record to a file of
+	 * their own. Accounts opened afterwards record to it; accounts already open keep the
+	 * journal they were opened with. The caller closes the journal it puts in place.
+	 *
+	 * @param journal the journal to share from now on.
+	 * @return the journal shared until now, or null if none had been opened.
+	 */
+	public static synchronized TransactionJournal setInstance(TransactionJournal journal) {
+		if(journal == null) {
+			throw new IllegalArgumentException("Journal cannot be null.");
+		}
+		TransactionJournal previous = instance;
+		instance = journal;
+		return previous;
+	}
+
+
+	// producer methods
+
+	/**
+	 * Appends a transaction record to the journal, timestamped now. The record is copied
+	 * into a ring buffer slot and written to disk asynchronously by the writer thread.
+	 *
+	 * @param accNumber the account the transaction applies to.
+	 * @param type the transaction type code, see {@link TransactionType}.
+	 * @param amountCents the amount involved in the transaction, in cents.
+	 * @param balanceCents the balance of the account after the transaction, in cents.
+	 * @param counterparty the other account involved in a transfer, or 0 if none.
+	 * @return the number of the record in the journal file, or -1 if recording is off or
+	 * 		   the journal has failed to write.
+	 * @throws IllegalStateException if the journal is closed.
+	 */
+	public long append(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		return append(System.currentTimeMillis(), accNumber, type, amountCents, balanceCents, counterparty);
+	}
+
+	/**
+	 * Appends a transaction record with the given timestamp to the journal.
+	 *
+	 * @param timestamp the time of the transaction in epoch milliseconds.
+	 * @param accNumber the account the transaction applies to.
+	 * @param type the transaction type code, see {@link TransactionType}.
+	 * @param amountCents the amount involved in the transaction, in cents.
+	 * @param balanceCents the balance of the account after the transaction, in cents.
+	 * @param counterparty the other account involved in a transfer, or 0 if none.
+	 * @return the number of the record in the journal file, or -1 if recording is off or
+	 * 		   the journal has failed to write.
+	 * @throws IllegalStateException if the journal is closed.
+	 */
+	public long append(long timestamp, int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		if(!enabled || failure != null) {
+			return -1L;
+		}
+		if(!running) {
+			throw new IllegalStateException("Transaction journal is closed.");
+		}
+		long seq = claimed.getAndIncrement();
+		long wrapPoint = seq - mask - 1;
+		while(consumed <= wrapPoint) {
+			// a failed writer still consumes the slots, so this wait ends either way
+			if(!running) {
+				throw new IllegalStateException("Transaction journal is closed.");
+			}
+			LockSupport.parkNanos(1_000L);
+		}
+		int slot = (int) seq & mask;
+		accounts[slot] 		 = accNumber;
+		types[slot] 		 = type;
+		amounts[slot] 		 = amountCents;
+		balances[slot] 		 = balanceCents;
+		counterparties[slot] = counterparty;
+		timestamps[slot] 	 = timestamp;
+		published.lazySet(slot, seq);
+		return firstRecord + seq;
+	}
+
+	/**
+	 * Appends records of one type and timestamp for many accounts at once, such as the
+	 * interest posted to every savings account. Slots are claimed with one atomic add per
+	 * run of at most a quarter of the ring, rather than one per record, and the records of
+	 * a run take consecutive numbers. Claiming a whole large batch at once would put
+	 * records appended meanwhile by other threads behind all of it, so they would wait
+	 * for the writer to drain the batch; with bounded runs they wait at most for one.
+	 *
+	 * @param timestamp the time of the transactions in epoch milliseconds.
+	 * @param type the transaction type code, see {@link TransactionType}.
+	 * @param accNumbers the account of each record.
+	 * @param amountsCents the amount of each record, in cents.
+	 * @param balancesCents the balance of each account after its transaction, in cents.
+	 * @param from the index of the first record in the arrays.
+	 * @param to the index after the last record in the arrays.
+	 * @param recordNumbers receives, at the same index, the number each record has in the
+	 * 		  journal file, or -1 if recording is off or the journal has failed to write;
+	 * 		  may be null.
+	 * @throws IllegalStateException if the journal is closed.
+	 */
+	public void appendBatch(long timestamp, int type, int[] accNumbers, long[] amountsCents, long[] balancesCents, int from, int to, long[] recordNumbers) {
+		if(!enabled || failure != null) {
+			if(recordNumbers != null) {
+				Arrays.fill(recordNumbers, from, to, -1L);
+			}
+			return;
+		}
+		if(!running) {
+			throw new IllegalStateException("Transaction journal is closed.");
+		}
+		int maxRun = Math.max(1, (mask + 1) >>> 2);
+		for(int start = from; start < to; ) {
+			int end = Math.min(to, start + maxRun);
+			long first = claimed.getAndAdd(end - start);
+			for(int i = start; i < end; i++) {
+				long seq = first + i - start;
+				long wrapPoint = seq - mask - 1;
+				while(consumed <= wrapPoint) {
+					if(!running) {
+						throw new IllegalStateException("Transaction journal is closed.");
+					}
+					LockSupport.parkNanos(1_000L);
+				}
+				int slot = (int) seq & mask;
+				accounts[slot] 		 = accNumbers[i];
+				types[slot] 		 = type;
+				amounts[slot] 		 = amountsCents[i];
+				balances[slot] 		 = balancesCents[i];
+				counterparties[slot] = 0;
+				timestamps[slot] 	 = timestamp;
+				published.lazySet(slot, seq);
+				if(recordNumbers != null) {
+					recordNumbers[i] = firstRecord + seq;
+				}
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Checks that the journal can still record transactions. Accounts call this before
+	 * changing any balance, so that a transaction is declined while the journal cannot
+	 * record it, rather than applied and then left out of the journal. Does nothing
+	 * while recording is off.
+	 *
+	 * @throws UncheckedIOException if the journal has failed to write.
+	 */
+	public void checkHealthy() {
+		IOException failed = failure;
+		if(failed != null && enabled) {
+			throw failedWrite(failed);
+		}
+	}
+
+	/**
+	 * Blocks until every record appended before this call has been written and forced
+	 * to disk.
+	 *
+	 * @throws UncheckedIOException if the journal has failed to write, in which case
+	 * 		   records appended since the failure have been lost.
+	 */
+	public void flush() {
+		drain();
+		IOException failed = failure;
+		if(failed != null) {
+			throw failedWrite(failed);
+		}
+	}
+
+	private UncheckedIOException failedWrite(IOException cause) {
+		return new UncheckedIOException("Transaction journal " + path + " failed to write; records appended since have been lost.", cause);
+	}
+
+	// waits for the writer to consume every record appended before this call
+	private void drain() {
+		long target = claimed.get();
+		while(consumed < target && writer.isAlive()) {
+			LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Turns recording on or off. While disabled, appended records are discarded, and the
+	 * DataLoggers using this journal keep no in-memory history either; this is intended
+	 * for benchmarks that measure the transaction path without journaling. Since the
+	 * discarded records are lost to the audit trail, switching the journal off is logged
+	 * as a warning.
+	 *
+	 * @param enabled true to record transactions, false to discard them.
+	 */
+	public void setEnabled(boolean enabled) {
+		boolean was = this.enabled;
+		this.enabled = enabled;
+		if(was && !enabled) {
+			LOG.warning("Transaction journal " + path + " disabled: transactions are not recorded until it is enabled again.");
+		}
+		else if(!was && enabled) {
+			LOG.info("Transaction journal " + path + " enabled.");
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the number of records that have been written and forced to disk.
+	 *
+	 * @return the count of durable records.
+	 */
+	public long getDurableCount() {
+		return consumed;
+	}
+
+	/**
+	 * Gets the number the next record appended will have in the journal file.
+	 *
+	 * @return the next record number.
+	 */
+	public long getNextRecordNumber() {
+		return firstRecord + claimed.get();
+	}
+
+	/**
+	 * Gets the number of records in the journal file that are complete and forced to
+	 * disk, including those that were in the file when it was opened.
+	 *
+	 * @return the number of durable records in the file.
+	 */
+	public long getDurableRecordCount() {
+		return firstRecord + consumed;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+
+	// writer methods
+
+	// writes the header to a new journal, or validates an existing one and positions
+	// the channel after its last complete record
+	private void openForAppend() throws IOException {
+		long size = channel.size();
+		if(size < TransactionRecord.HEADER_SIZE) {
+			channel.truncate(0);
+			TransactionRecord.writeHeader(writeBuffer);
+			writeOut();
+			channel.force(true);
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(TransactionRecord.HEADER_SIZE);
+		while(header.hasRemaining() && channel.read(header, header.position()) > 0) {
+			// keep reading until the header is complete
+		}
+		header.flip();
+		TransactionRecord.validateHeader(header);
+		long records = (size - TransactionRecord.HEADER_SIZE) / TransactionRecord.RECORD_SIZE;
+		long end = TransactionRecord.HEADER_SIZE + records * TransactionRecord.RECORD_SIZE;
+		firstRecord = records;
+		if(end != size) {
+			// drop a record torn by a crash part way through a write
+			channel.truncate(end);
+		}
+		channel.position(end);
+	}
+
+	private void writeLoop() {
+		int idle = 0;
+		while(running || consumed < claimed.get()) {
+			long next = consumed;
+			int drained = 0;
+			try {
+				boolean writing = failure == null;
+				while(drained <= mask && published.get((int) next & mask) == next) {
+					if(writing) {
+						encode((int) next & mask);
+					}
+					next++;
+					drained++;
+				}
+				if(drained > 0) {
+					if(writing) {
+						writeOut();
+						channel.force(false);
+					}
+					consumed = next;
+					idle = 0;
+				}
+				else if(++idle < IDLE_SPINS) {
+					Thread.onSpinWait();
+				}
+				else {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+			}
+			catch(IOException e) {
+				// the file no longer matches the record numbers handed out, so stop writing to it;
+				// records already claimed are discarded, and flush and checkHealthy report it
+				LOG.log(Level.SEVERE, "Failed to write transaction journal " + path + ", no further records will be written.", e);
+				failure = e;
+				writeBuffer.clear();
+				consumed = next;
+			}
+		}
+	}
+
+	// copies one slot into the write buffer as a binary record
+	private void encode(int slot) throws IOException {
+		if(writeBuffer.remaining() < TransactionRecord.RECORD_SIZE) {
+			writeOut();
+		}
+		TransactionRecord.write(writeBuffer, timestamps[slot], accounts[slot], types[slot],
+				amounts[slot], balances[slot], counterparties[slot]);
+	}
+
+	private void writeOut() throws IOException {
+		writeBuffer.flip();
+		while(writeBuffer.hasRemaining()) {
+			channel.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+
+
+	// close method
+
+	/**
+	 * Stops accepting records, waits for the writer to drain everything already
+	 * appended and closes the journal file.
+	 */
+	@Override
+	public void close() {
+		drain();
+		running = false;
+		try {
+			writer.join();
+			channel.close();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(IOException e) {
+			LOG.log(Level.WARNING, "Failed to close transaction journal.", e);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * The TransactionListener interface is the notification sink for completed transactions.
+ * Listeners are registered on a Bank and are told about every deposit, withdrawal and
+ * transfer applied to that bank's accounts, after the balance has been updated and the
+ * account's lock has been released.
+ *
+ * Events are delivered as primitive arguments rather than as an event object, so a bank
+ * with no listeners, or with listeners that ignore an event, pays nothing for it. Any
+ * formatting is left to the listener, which should do it only if it actually uses the
+ * event. Listeners are called on the thread that performed the transaction and must not
+ * block.
+ *
+ * Listeners that also track which accounts exist, such as a persistent store, can
+ * override onAccountAdded and onAccountRemoved; both do nothing by default.
+ *
+ * Implementations:
+ * - TransactionListener.NONE: ignores every event (the default).
+ * - ConsoleTransactionListener: prints each event from a background thread.
+ * - MetricsTransactionListener: counts transactions and sums amounts by type.
+ * - AccountStore: logs balance changes and account openings and closings to disk.
+ *
+ * Usage Example:
+ * bank.addTransactionListener(new ConsoleTransactionListener());
+ */
+
+package data_classes;
+
+@FunctionalInterface
+public interface TransactionListener {
+
+	// listener that ignores every event
+	TransactionListener NONE = (accNumber, type, amountCents, balanceCents, counterparty) -> { };
+
+	/**
+	 * Called after a transaction has been applied to an account.
+	 *
+	 * @param accNumber the account the transaction applied to.
+	 * @param type the transaction type code, see TransactionType.
+	 * @param amountCents the amount of the transaction, in cents.
+	 * @param balanceCents the balance of the account after the transaction, in cents.
+	 * @param counterparty the other account involved in a transfer, or 0 if none.
+	 */
+	void onTransaction(int accNumber, int type, long amountCents, long balanceCents, int counterparty);
+
+	/**
+	 * Called after an account has been added to the bank.
+	 *
+	 * @param account the account added.
+	 */
+	default void onAccountAdded(BankAccount account) {
+	}
+
+	/**
+	 * Called after an account has been removed from the bank.
+	 *
+	 * @param account the account removed.
+	 */
+	default void onAccountRemoved(BankAccount account) {
+	}
+}
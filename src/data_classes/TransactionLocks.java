@@ -0,0 +1,215 @@
+/**
+ * The TransactionLocks class provides the striped locks that guard account balances
+ * while a transaction is being applied. Rather than one global lock (which would make
+ * every thread in the system queue behind every other thread) or one lock object per
+ * account (which costs memory for every account ever opened), account numbers are
+ * hashed onto a fixed table of locks sized to the number of available cores.
+ *
+ * Transactions that touch more than one account (e.g. transfers) always acquire their
+ * stripes in ascending stripe order, so two transfers running in opposite directions
+ * between the same accounts can never deadlock.
+ *
+ * Responsibilities:
+ * - Map an account number onto its lock stripe.
+ * - Lock and unlock a single account's stripe.
+ * - Lock and unlock the stripes of two accounts in a fixed global order.
+ * - Lock and unlock the stripes of any set of accounts in the same order.
+ * - Wait for the transactions holding stripes to finish.
+ * - Count the acquisitions that found a stripe already held.
+ */
+
+package data_classes;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+final class TransactionLocks {
+
+	// lock table shared by every account in the system
+	static final TransactionLocks SHARED = new TransactionLocks(defaultStripeCount());
+
+	// stripes per available core, keeps the chance of two busy accounts colliding low
+	private static final int STRIPES_PER_CORE = 16;
+
+	private final ReentrantLock[] locks;
+	private final int mask;
+	private final LongAdder contended = new LongAdder();	// acquisitions that had to wait
+
+
+	// constructor
+
+	/**
+	 * Creates a lock table with the given number of stripes, rounded up to a power of two.
+	 *
+	 * @param stripes the minimum number of stripes in the table.
+	 */
+	TransactionLocks(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.locks = new ReentrantLock[size];
+		for(int i = 0; i < size; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	private static int defaultStripeCount() {
+		return Runtime.getRuntime().availableProcessors() * STRIPES_PER_CORE;
+	}
+
+
+	// stripe methods
+
+	/**
+	 * Gets the index of the stripe guarding the given account number.
+	 * The account number is mixed first so that consecutive account numbers
+	 * are spread across the table instead of landing on neighbouring stripes.
+	 *
+	 * @param accNumber the account number.
+	 * @return the stripe index for the account.
+	 */
+	int stripeOf(int accNumber) {
+		int h = accNumber * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	int stripeCount() {
+		return locks.length;
+	}
+
+	/**
+	 * Gets the number of times a stripe was found held by another thread, so the caller
+	 * had to wait for it. Waits in awaitHolders are not counted.
+	 *
+	 * @return the contended acquisition count.
+	 */
+	long getContended() {
+		return contended.sum();
+	}
+
+
+	// locking methods
+
+	/**
+	 * Locks the stripe guarding a single account.
+	 *
+	 * @param accNumber the account number to lock.
+	 */
+	void lock(int accNumber) {
+		acquire(locks[stripeOf(accNumber)]);
+	}
+
+	/**
+	 * Unlocks the stripe guarding a single account.
+	 *
+	 * @param accNumber the account number to unlock.
+	 */
+	void unlock(int accNumber) {
+		locks[stripeOf(accNumber)].unlock();
+	}
+
+	/**
+	 * Locks the stripes guarding two accounts, always taking the lower stripe first.
+	 * If both accounts share a stripe it is only locked once.
+	 *
+	 * @param first the first account number.
+	 * @param second the second account number.
+	 */
+	void lockPair(int first, int second) {
+		int a = stripeOf(first);
+		int b = stripeOf(second);
+		if(a == b) {
+			acquire(locks[a]);
+		}
+		else {
+			acquire(locks[Math.min(a, b)]);
+			acquire(locks[Math.max(a, b)]);
+		}
+	}
+
+	/**
+	 * Unlocks the stripes taken by {@link #lockPair(int, int)}, in reverse order.
+	 *
+	 * @param first the first account number.
+	 * @param second the second account number.
+	 */
+	void unlockPair(int first, int second) {
+		int a = stripeOf(first);
+		int b = stripeOf(second);
+		if(a == b) {
+			locks[a].unlock();
+		}
+		else {
+			locks[Math.max(a, b)].unlock();
+			locks[Math.min(a, b)].unlock();
+		}
+	}
+
+	/**
+	 * Gets the distinct stripes guarding a set of accounts, in ascending order, for use with
+	 * {@link #lockStripes(int[])}.
+	 *
+	 * @param accNumbers the account numbers; only the first count are used.
+	 * @param count the number of account numbers.
+	 * @return the sorted stripe indexes, each listed once.
+	 */
+	int[] stripesOf(int[] accNumbers, int count) {
+		boolean[] used = new boolean[locks.length];
+		int distinct = 0;
+		for(int i = 0; i < count; i++) {
+			int stripe = stripeOf(accNumbers[i]);
+			if(!used[stripe]) {
+				used[stripe] = true;
+				distinct++;
+			}
+		}
+		int[] stripes = new int[distinct];
+		for(int stripe = 0, next = 0; next < distinct; stripe++) {
+			if(used[stripe]) {
+				stripes[next++] = stripe;
+			}
+		}
+		return stripes;
+	}
+
+	/**
+	 * Locks the given stripes in ascending order.
+	 *
+	 * @param stripes stripe indexes from {@link #stripesOf(int[], int)}.
+	 */
+	void lockStripes(int[] stripes) {
+		for(int stripe : stripes) {
+			acquire(locks[stripe]);
+		}
+	}
+
+	/**
+	 * Unlocks the stripes taken by {@link #lockStripes(int[])}, in reverse order.
+	 *
+	 * @param stripes stripe indexes from {@link #stripesOf(int[], int)}.
+	 */
+	void unlockStripes(int[] stripes) {
+		for(int i = stripes.length - 1; i >= 0; i--) {
+			locks[stripes[i]].unlock();
+		}
+	}
+
+	// takes the lock, counting the acquisition as contended if it has to wait; the lock is
+	// not fair, so trying first takes it exactly as lock would when it is free
+	private void acquire(ReentrantLock lock) {
+		if(!lock.tryLock()) {
+			contended.increment();
+			lock.lock();
+		}
+	}
+
+	/**
+	 * Waits until every transaction that holds a stripe now has released it, by taking
+	 * and releasing each stripe in turn. Never holds more than one stripe at a time.
+	 */
+	void awaitHolders() {
+		for(ReentrantLock lock : locks) {
+			lock.lock();
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,528 @@
+/**
+ * The TransactionMetrics class instruments the transaction hot path: how many deposits,
+ * withdrawals, transfers and DataLogger.logTransaction calls there have been, how many
+ * withdrawals and transfers were declined for insufficient funds, how long each operation
+ * took, and how often a transaction had to wait for a lock stripe held by another thread.
+ *
+ * Metrics are off by default and cost a single field read per operation while off. Once
+ * enabled, each thread records into its own Recorder, so recording takes no lock, no
+ * atomic instruction and, once a thread has timed each operation once, no allocation. A
+ * reader sums the recorders of every thread. Recorders of threads that have ended are
+ * folded into a running total and dropped, so short-lived threads, such as the server's
+ * per-request virtual threads, do not pile up.
+ *
+ * Every operation is counted, but only one in getSampleInterval() operations of each kind
+ * is timed, since reading the clock twice costs about as much as a whole deposit. Timings
+ * go into a log-linear histogram, in the manner of HdrHistogram: 16 buckets for every
+ * power of two, so each recorded latency is within about 6% of the value reported for it.
+ * Latencies of more than about a minute are recorded as a minute.
+ *
+ * The metrics are read through the getters below, through JMX once registerMBeans has
+ * been called (one TransactionMetricsMXBean, and one OperationMetricsMXBean for each
+ * operation), or as a text report, printed periodically by startDump.
+ *
+ * Usage Example:
+ * TransactionMetrics metrics = TransactionMetrics.getInstance();
+ * metrics.setEnabled(true);
+ * metrics.registerMBeans();
+ * metrics.startDump(System.out, 60_000L);
+ *
+ * Responsibilities:
+ * - Count operations and declined operations, per thread, without contention.
+ * - Time a sample of operations into latency histograms.
+ * - Sum the recorders of all threads and report counts, latency percentiles and lock contention.
+ * - Expose the metrics through JMX and a periodic text dump.
+ */
+
+package data_classes;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class TransactionMetrics implements TransactionMetricsMXBean {
+
+	// operation codes
+	public static final int DEPOSIT 	= 0;
+	public static final int WITHDRAW 	= 1;
+	public static final int TRANSFER 	= 2;
+	public static final int LOG 		= 3;
+	public static final int OPERATIONS 	= 4;
+
+	private static final String[] NAMES = { "Deposit", "Withdraw", "Transfer", "DataLogger.logTransaction" };
+
+	// counters kept per operation
+	private static final int COUNT 		= 0;
+	private static final int DECLINED 	= 1;
+	private static final int TIMED_NANOS = 2;	// total of the timed latencies
+	private static final int COUNTERS 	= 3;
+
+	// histogram buckets: SUB_BUCKETS per power of two up to 2^MAX_EXPONENT nanoseconds
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 36;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	// how many recorders are registered between sweeps for those of ended threads
+	private static final int SWEEP_INTERVAL = 256;
+	private static final int DEFAULT_SAMPLE_INTERVAL = 64;
+	private static final long NOT_TIMED = Long.MIN_VALUE;
+	private static final String DOMAIN = "data_classes";
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final TransactionMetrics INSTANCE = new TransactionMetrics();
+
+	private volatile boolean enabled;
+	private volatile int sampleMask = DEFAULT_SAMPLE_INTERVAL - 1;
+	private final ThreadLocal<Recorder> recorders = ThreadLocal.withInitial(this::register);
+
+	// guarded by this
+	private final List<Recorder> live = new ArrayList<>();
+	private final Totals retired = new Totals();		// recorders of ended threads
+	private Totals baseline = new Totals();				// totals at the last reset
+	private int registered;
+	private Thread dumper;
+
+
+	// constructor
+	private TransactionMetrics() {
+	}
+
+	/**
+	 * Gets the metrics shared by every account.
+	 *
+	 * @return the shared metrics.
+	 */
+	public static TransactionMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the calling thread's recorder, or null while metrics are disabled. Called once
+	 * per operation on the hot path.
+	 */
+	static Recorder recorder() {
+		return INSTANCE.enabled ? INSTANCE.recorders.get() : null;
+	}
+
+	private synchronized Recorder register() {
+		if(++registered % SWEEP_INTERVAL == 0) {
+			sweep();
+		}
+		Recorder recorder = new Recorder(Thread.currentThread());
+		live.add(recorder);
+		return recorder;
+	}
+
+	// folds the recorders of ended threads into the retired totals; nothing writes to them any more
+	private void sweep() {
+		live.removeIf(recorder -> {
+			if(recorder.owner.isAlive()) {
+				return false;
+			}
+			retired.add(recorder, 1L);
+			return true;
+		});
+	}
+
+
+	// settings
+
+	/**
+	 * Turns metrics on or off. Counts already recorded are kept while metrics are off.
+	 *
+	 * @param enabled true to record metrics.
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets how often operations are timed: one in every interval operations of each kind,
+	 * on each thread. An interval of 1 times every operation.
+	 *
+	 * @param interval a power of two from 1 up.
+	 * @throws IllegalArgumentException if the interval is not a positive power of two.
+	 */
+	@Override
+	public void setSampleInterval(int interval) {
+		if(interval <= 0 || Integer.bitCount(interval) != 1) {
+			throw new IllegalArgumentException("Invalid sample interval: " + interval + ". The interval must be a positive power of two.");
+		}
+		this.sampleMask = interval - 1;
+	}
+
+	@Override
+	public int getSampleInterval() {
+		return sampleMask + 1;
+	}
+
+
+	// getter methods
+
+	/**
+	 * Gets the number of operations of the given kind recorded since the last reset,
+	 * including those declined.
+	 *
+	 * @param operation one of the operation codes, e.g. DEPOSIT.
+	 * @return the operation count.
+	 */
+	public long getCount(int operation) {
+		return snapshot().counter(operation, COUNT);
+	}
+
+	/**
+	 * Gets the number of operations of the given kind declined for insufficient funds
+	 * since the last reset.
+	 *
+	 * @param operation one of the operation codes, e.g. WITHDRAW.
+	 * @return the declined operation count.
+	 */
+	public long getDeclined(int operation) {
+		return snapshot().counter(operation, DECLINED);
+	}
+
+	/**
+	 * Gets the given percentile of the timed latencies of an operation since the last reset.
+	 *
+	 * @param operation one of the operation codes, e.g. TRANSFER.
+	 * @param percentile the percentile, from 0 to 100.
+	 * @return the latency in nanoseconds, or 0 if no operation has been timed.
+	 * @throws IllegalArgumentException if the percentile is out of range.
+	 */
+	public long getPercentileNanos(int operation, double percentile) {
+		if(!(percentile >= 0.0 && percentile <= 100.0)) {
+			throw new IllegalArgumentException("Invalid percentile: " + percentile + ". Percentiles range from 0 to 100.");
+		}
+		return snapshot().percentile(operation, percentile);
+	}
+
+	/**
+	 * Gets the number of times a transaction found a lock stripe held by another thread
+	 * and had to wait for it. Not affected by reset or by setEnabled.
+	 *
+	 * @return the contended lock acquisition count.
+	 */
+	@Override
+	public long getContendedLocks() {
+		return TransactionLocks.SHARED.getContended();
+	}
+
+	/**
+	 * Starts counting again from zero.
+	 */
+	@Override
+	public synchronized void reset() {
+		baseline = total();
+	}
+
+	// every recorder's counts, less those at the last reset
+	private synchronized Totals snapshot() {
+		Totals totals = total();
+		totals.add(baseline, -1L);
+		return totals;
+	}
+
+	private Totals total() {
+		sweep();
+		Totals totals = new Totals();
+		totals.add(retired, 1L);
+		for(Recorder recorder : live) {
+			totals.add(recorder, 1L);
+		}
+		return totals;
+	}
+
+
+	// reporting methods
+
+	/**
+	 * Registers the metrics with the platform MBean server, under data_classes:type=TransactionMetrics
+	 * and data_classes:type=TransactionMetrics,operation=<name> for each operation. Does
+	 * nothing for MBeans already registered.
+	 *
+	 * @throws IllegalStateException if the MBeans cannot be registered.
+	 */
+	public synchronized void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=TransactionMetrics");
+			if(!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+			for(int operation = 0; operation < OPERATIONS; operation++) {
+				ObjectName operationName = new ObjectName(DOMAIN + ":type=TransactionMetrics,operation=" + NAMES[operation]);
+				if(!server.isRegistered(operationName)) {
+					server.registerMBean(new OperationView(operation), operationName);
+				}
+			}
+		}
+		catch(JMException e) {
+			throw new IllegalStateException("Failed to register the transaction metrics MBeans", e);
+		}
+	}
+
+	/**
+	 * Prints the report to the given stream every periodMillis from a background daemon
+	 * thread, replacing any dump already running.
+	 *
+	 * @param out the stream to print to.
+	 * @param periodMillis the time between reports, in milliseconds.
+	 * @throws IllegalArgumentException if the period is not positive.
+	 */
+	public synchronized void startDump(PrintStream out, long periodMillis) {
+		if(periodMillis <= 0L) {
+			throw new IllegalArgumentException("Invalid dump period: " + periodMillis + ". The period must be greater than 0.");
+		}
+		stopDump();
+		dumper = new Thread(() -> {
+			try {
+				while(true) {
+					Thread.sleep(periodMillis);
+					out.println(this);
+				}
+			}
+			catch(InterruptedException e) {
+				// stopped
+			}
+		}, "transaction-metrics-dump");
+		dumper.setDaemon(true);
+		dumper.start();
+	}
+
+	/**
+	 * Stops the dump started by startDump, if any.
+	 */
+	public synchronized void stopDump() {
+		if(dumper != null) {
+			dumper.interrupt();
+			dumper = null;
+		}
+	}
+
+	@Override
+	public String getReport() {
+		return toString();
+	}
+
+	@Override
+	public String toString() {
+		Totals totals = snapshot();
+		StringBuilder sb = new StringBuilder(String.format("Transaction Metrics (nanoseconds, 1 in %d operations timed)%n", getSampleInterval()));
+		sb.append(String.format("%-26s %14s %12s %10s %10s %10s %10s %10s%n", "Operation", "count", "declined", "p50", "p90", "p99", "p99.9", "max"));
+		for(int operation = 0; operation < OPERATIONS; operation++) {
+			sb.append(String.format("%-26s %,14d %,12d %,10d %,10d %,10d %,10d %,10d%n", NAMES[operation],
+					totals.counter(operation, COUNT), totals.counter(operation, DECLINED),
+					totals.percentile(operation, 50.0), totals.percentile(operation, 90.0), totals.percentile(operation, 99.0),
+					totals.percentile(operation, 99.9), totals.percentile(operation, 100.0)));
+		}
+		sb.append(String.format("Contended lock acquisitions: %,d", getContendedLocks()));
+		return sb.toString();
+	}
+
+
+	// histogram buckets
+
+	static int bucketOf(long nanos) {
+		if(nanos < SUB_BUCKETS) {
+			return (int) Math.max(nanos, 0L);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if(exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+	}
+
+	// the highest latency recorded in the given bucket
+	static long highestIn(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return ((SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1)) + 1L) << (exponent - SUB_BUCKET_BITS)) - 1L;
+	}
+
+
+	/**
+	 * The counters and histograms of one thread. Only the owning thread writes to them,
+	 * with plain increments published through opaque stores, so readers on other threads
+	 * always see whole values, if not always the very latest ones.
+	 */
+	static final class Recorder {
+
+		private final Thread owner;
+		private final long[] counters = new long[OPERATIONS * COUNTERS];
+		private final long[][] histograms = new long[OPERATIONS][];	// allocated on the first timing
+		// each thread starts timing at a random point, so threads that run only a few operations are timed too
+		private final long offset = ThreadLocalRandom.current().nextLong();
+
+		private Recorder(Thread owner) {
+			this.owner = owner;
+		}
+
+		/**
+		 * Marks the start of an operation. The operation's count, which record increments,
+		 * picks the operations to time.
+		 *
+		 * @return the start time to pass to record, if this operation is one to time.
+		 */
+		long start(int operation) {
+			long count = counters[operation * COUNTERS + COUNT];
+			return ((count + offset) & INSTANCE.sampleMask) == 0L ? System.nanoTime() : NOT_TIMED;
+		}
+
+		void record(int operation, long started) {
+			increment(counters, operation * COUNTERS + COUNT, 1L);
+			if(started != NOT_TIMED) {
+				long nanos = System.nanoTime() - started;
+				increment(counters, operation * COUNTERS + TIMED_NANOS, nanos);
+				long[] histogram = histograms[operation];
+				if(histogram == null) {
+					histogram = new long[BUCKETS];
+					histograms[operation] = histogram;
+				}
+				increment(histogram, bucketOf(nanos), 1L);
+			}
+		}
+
+		void recordDeclined(int operation, long started) {
+			increment(counters, operation * COUNTERS + DECLINED, 1L);
+			record(operation, started);
+		}
+
+		private static void increment(long[] values, int i, long delta) {
+			SLOT.setOpaque(values, i, values[i] + delta);
+		}
+	}
+
+
+	// sums of recorders, kept while reading the metrics
+	private static final class Totals {
+		private final long[] counters = new long[OPERATIONS * COUNTERS];
+		private final long[][] histograms = new long[OPERATIONS][BUCKETS];
+
+		void add(Recorder recorder, long sign) {
+			add(recorder.counters, recorder.histograms, sign);
+		}
+
+		void add(Totals totals, long sign) {
+			add(totals.counters, totals.histograms, sign);
+		}
+
+		private void add(long[] fromCounters, long[][] fromHistograms, long sign) {
+			for(int i = 0; i < counters.length; i++) {
+				counters[i] += sign * (long) SLOT.getOpaque(fromCounters, i);
+			}
+			for(int operation = 0; operation < OPERATIONS; operation++) {
+				long[] histogram = fromHistograms[operation];
+				if(histogram != null) {
+					for(int bucket = 0; bucket < BUCKETS; bucket++) {
+						histograms[operation][bucket] += sign * (long) SLOT.getOpaque(histogram, bucket);
+					}
+				}
+			}
+		}
+
+		long counter(int operation, int counter) {
+			return counters[operation * COUNTERS + counter];
+		}
+
+		long timed(int operation) {
+			long timed = 0L;
+			for(long n : histograms[operation]) {
+				timed += n;
+			}
+			return timed;
+		}
+
+		// the highest latency of the bucket holding the given percentile, 0 if nothing was timed
+		long percentile(int operation, double percentile) {
+			long timed = timed(operation);
+			if(timed == 0L) {
+				return 0L;
+			}
+			long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * timed));
+			long seen = 0L;
+			long[] histogram = histograms[operation];
+			for(int bucket = 0; bucket < BUCKETS; bucket++) {
+				seen += histogram[bucket];
+				if(seen >= rank) {
+					return highestIn(bucket);
+				}
+			}
+			return highestIn(BUCKETS - 1);
+		}
+	}
+
+
+	// JMX view of one operation
+	private static final class OperationView implements OperationMetricsMXBean {
+		private final int operation;
+
+		OperationView(int operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public long getCount() {
+			return INSTANCE.snapshot().counter(operation, COUNT);
+		}
+
+		@Override
+		public long getDeclined() {
+			return INSTANCE.snapshot().counter(operation, DECLINED);
+		}
+
+		@Override
+		public long getTimed() {
+			return INSTANCE.snapshot().timed(operation);
+		}
+
+		@Override
+		public long getMeanNanos() {
+			Totals totals = INSTANCE.snapshot();
+			long timed = totals.timed(operation);
+			return timed == 0L ? 0L : totals.counter(operation, TIMED_NANOS) / timed;
+		}
+
+		@Override
+		public long getP50Nanos() {
+			return INSTANCE.getPercentileNanos(operation, 50.0);
+		}
+
+		@Override
+		public long getP90Nanos() {
+			return INSTANCE.getPercentileNanos(operation, 90.0);
+		}
+
+		@Override
+		public long getP99Nanos() {
+			return INSTANCE.getPercentileNanos(operation, 99.0);
+		}
+
+		@Override
+		public long getP999Nanos() {
+			return INSTANCE.getPercentileNanos(operation, 99.9);
+		}
+
+		@Override
+		public long getMaxNanos() {
+			return INSTANCE.getPercentileNanos(operation, 100.0);
+		}
+	}
+}
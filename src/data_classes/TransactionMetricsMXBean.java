@@ -0,0 +1,27 @@
+/**
+ * The TransactionMetricsMXBean interface is the JMX management interface of
+ * TransactionMetrics, registered as data_classes:type=TransactionMetrics by
+ * TransactionMetrics.registerMBeans. The figures of each operation are published
+ * separately, see OperationMetricsMXBean.
+ */
+
+package data_classes;
+
+public interface TransactionMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	// one in this many operations of each kind is timed
+	int getSampleInterval();
+
+	void setSampleInterval(int interval);
+
+	long getContendedLocks();
+
+	// the text report, as printed by TransactionMetrics.startDump
+	String getReport();
+
+	void reset();
+}
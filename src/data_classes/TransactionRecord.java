@@ -0,0 +1,141 @@
+/**
+ * The TransactionRecord class defines the binary layout of the transaction journal.
+ * A journal file starts with a short header followed by fixed-width records, so record N
+ * always lives at HEADER_SIZE + N * RECORD_SIZE and can be read without parsing anything
+ * that came before it. All values are stored big-endian, and money is stored as a whole
+ * number of cents so replaying a journal reproduces balances exactly.
+ *
+ * Header layout (16 bytes):
+ * - int    magic         "BBJ1"
+ * - short  version       format version
+ * - short  recordSize    size of every record in bytes
+ * - long   reserved
+ *
+ * Record layout (40 bytes):
+ * - long   timestamp     milliseconds since the epoch
+ * - long   amount        amount of the transaction, in cents
+ * - long   balance       balance of the account after the transaction, in cents
+ * - int    accNumber     account the transaction applies to
+ * - int    counterparty  other account in a transfer, 0 if none
+ * - int    type          one of the TransactionType codes
+ * - int    reserved
+ *
+ * Responsibilities:
+ * - Define the header and record layout of journal files.
+ * - Write and validate journal headers.
+ * - Encode records into, and decode fields out of, byte buffers.
+ */
+
+package data_classes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public final class TransactionRecord {
+
+	// header layout
+	public static final int MAGIC 		= 0x42424A31;
+	public static final short VERSION 	= 1;
+	public static final int HEADER_SIZE = 16;
+
+	// record layout
+	public static final int RECORD_SIZE 		= 40;
+	public static final int TIMESTAMP_OFFSET 	= 0;
+	public static final int AMOUNT_OFFSET 		= 8;
+	public static final int BALANCE_OFFSET 		= 16;
+	public static final int ACCOUNT_OFFSET 		= 24;
+	public static final int COUNTERPARTY_OFFSET = 28;
+	public static final int TYPE_OFFSET 		= 32;
+
+
+	// constructor
+	private TransactionRecord() {
+		super();
+	}
+
+
+	// header methods
+
+	/**
+	 * Writes a journal header at the buffer's current position.
+	 *
+	 * @param buffer the buffer to write to.
+	 */
+	public static void writeHeader(ByteBuffer buffer) {
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) RECORD_SIZE);
+		buffer.putLong(0L);
+	}
+
+	/**
+	 * Validates a journal header read from the start of a file.
+	 *
+	 * @param buffer the buffer positioned at the start of the header.
+	 * @throws IOException if the header does not describe a journal this class can read.
+	 */
+	public static void validateHeader(ByteBuffer buffer) throws IOException {
+		if(buffer.remaining() < HEADER_SIZE) {
+			throw new IOException("Truncated journal header.");
+		}
+		int magic = buffer.getInt();
+		short version = buffer.getShort();
+		short recordSize = buffer.getShort();
+		buffer.getLong();
+		if(magic != MAGIC) {
+			throw new IOException("Not a transaction journal, bad magic: " + Integer.toHexString(magic));
+		}
+		if(version != VERSION || recordSize != RECORD_SIZE) {
+			throw new IOException("Unsupported journal format: version " + version + ", record size " + recordSize);
+		}
+	}
+
+
+	// record methods
+
+	/**
+	 * Encodes one record at the buffer's current position.
+	 *
+	 * @param buffer the buffer to write to; must have RECORD_SIZE bytes remaining.
+	 * @param timestamp the time of the transaction in epoch milliseconds.
+	 * @param accNumber the account the transaction applies to.
+	 * @param type the transaction type code.
+	 * @param amountCents the amount of the transaction in cents.
+	 * @param balanceCents the resulting balance in cents.
+	 * @param counterparty the other account in a transfer, or 0.
+	 */
+	public static void write(ByteBuffer buffer, long timestamp, int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		buffer.putLong(timestamp);
+		buffer.putLong(amountCents);
+		buffer.putLong(balanceCents);
+		buffer.putInt(accNumber);
+		buffer.putInt(counterparty);
+		buffer.putInt(type);
+		buffer.putInt(0);
+	}
+
+	// absolute getters used by readers, offset is the start of the record
+	public static long timestamp(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset + TIMESTAMP_OFFSET);
+	}
+
+	public static long amountCents(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset + AMOUNT_OFFSET);
+	}
+
+	public static long balanceCents(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset + BALANCE_OFFSET);
+	}
+
+	public static int accNumber(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + ACCOUNT_OFFSET);
+	}
+
+	public static int counterparty(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + COUNTERPARTY_OFFSET);
+	}
+
+	public static int type(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + TYPE_OFFSET);
+	}
+}
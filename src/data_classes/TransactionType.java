@@ -0,0 +1,80 @@
+/**
+ * The TransactionType class defines the numeric codes used to identify the kind of
+ * transaction carried by a journal record. Codes are plain ints rather than an enum so
+ * that the transaction hot path can hand them to the journal without any lookup or
+ * allocation.
+ *
+ * Responsibilities:
+ * - Define a stable code for every kind of transaction recorded by the system.
+ * - Translate a code back into a human readable label for reports and log output.
+ */
+
+package data_classes;
+
+public final class TransactionType {
+
+	// transaction type codes
+	public static final int DEPOSIT           = 1;
+	public static final int WITHDRAW          = 2;
+	public static final int TRANSFER_OUT      = 3;
+	public static final int TRANSFER_IN       = 4;
+	public static final int TRANSFER_DECLINED = 5;
+	public static final int BATCH_CREDIT      = 6;	// net amount received from a transfer batch
+	public static final int BATCH_DEBIT       = 7;	// net amount paid out by a transfer batch
+	public static final int TRANSACTION_ID          = 8;	// client id of a transaction, in the amount field; balance after it
+	public static final int TRANSACTION_ID_DECLINED = 9;	// client id of a declined transaction; balance when declined
+	public static final int INTEREST          = 10;	// interest posted by InterestAccrual
+
+	// the highest code above, for tables indexed by code; raise it with every new code
+	public static final int MAX_CODE = INTEREST;
+
+
+	// constructor
+	private TransactionType() {
+		super();
+	}
+
+
+	/**
+	 * Gets the human readable label for a transaction type code.
+	 *
+	 * @param type the transaction type code.
+	 * @return the label for the code, or "Unknown" if the code is not recognised.
+	 */
+	public static String label(int type) {
+		switch(type) {
+			case DEPOSIT:			return "Deposit";
+			case WITHDRAW:			return "Withdraw";
+			case TRANSFER_OUT:		return "Transfer to";
+			case TRANSFER_IN:		return "Transfer from";
+			case TRANSFER_DECLINED:	return "Declined transfer to";
+			case BATCH_CREDIT:		return "Batch credit";
+			case BATCH_DEBIT:		return "Batch debit";
+			case TRANSACTION_ID:	return "Transaction id";
+			case TRANSACTION_ID_DECLINED:	return "Declined transaction id";
+			case INTEREST:			return "Interest";
+			default:				return "Unknown";
+		}
+	}
+
+	/**
+	 * Checks whether a transaction type names a counterparty account.
+	 *
+	 * @param type the transaction type code.
+	 * @return true if records of this type carry a counterparty account number.
+	 */
+	public static boolean hasCounterparty(int type) {
+		return type == TRANSFER_OUT || type == TRANSFER_IN || type == TRANSFER_DECLINED;
+	}
+
+	/**
+	 * Checks whether a record only notes the client id of a transaction recorded just before
+	 * it, for TransactionIdCache, rather than being a transaction itself.
+	 *
+	 * @param type the transaction type code.
+	 * @return true for TRANSACTION_ID and TRANSACTION_ID_DECLINED.
+	 */
+	public static boolean isTransactionId(int type) {
+		return type == TRANSACTION_ID || type == TRANSACTION_ID_DECLINED;
+	}
+}
@@ -0,0 +1,370 @@
+/**
+ * The TransferBatch class collects many transfers between accounts of one bank so they can
+ * be applied together with Bank.applyTransfers, instead of one BankAccount.transferCents
+ * call at a time.
+ *
+ * Transfers are netted before they are applied: every account's incoming and outgoing
+ * amounts are summed, and each account's balance is changed once, by its net amount. Each
+ * account that changes gets a single BATCH_CREDIT or BATCH_DEBIT journal record and a
+ * single listener event, however many transfers it took part in. Accounts whose transfers
+ * cancel out are left untouched.
+ *
+ * Transfers are grouped, and each group is all-or-nothing: it is applied only if every
+ * account in it exists and none of them would end below zero once the group's net amounts
+ * are applied. Groups are checked in the order they were added, each one against the
+ * balances left by the groups before it. A batch that never calls newGroup is one group
+ * and so all-or-nothing as a whole; calling newGroup after every transfer makes each
+ * transfer succeed or fail on its own.
+ *
+ * While the batch is applied, the lock stripes of every account in it are held, taken in
+ * ascending stripe order like any other transaction, so no other transaction sees a
+ * partly applied batch. A very large batch therefore holds most stripes for the time it
+ * takes to apply it. On a bank in optimistic mode the batch instead claims the version
+ * stamp of every account in it, in ascending account number order, so optimistic
+ * transactions on those accounts retry until the batch is done. The whole batch is one
+ * write of the bank's current epoch, so a balance snapshot sees all of it or none of it.
+ *
+ * Usage Example:
+ * TransferBatch payroll = new TransferBatch();
+ * for(int employee : employees) {
+ *     payroll.add(employer, employee, salaryCents).newGroup();
+ * }
+ * TransferBatch.Result result = bank.applyTransfers(payroll);
+ *
+ * Responsibilities:
+ * - Collect transfers into all-or-nothing groups.
+ * - Net the transfers of each account and check the resulting balances.
+ * - Apply each account's net change once and journal it once.
+ */
+
+package data_classes;
+
+import java.util.Arrays;
+
+public final class TransferBatch {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] from = new int[INITIAL_CAPACITY];
+	private int[] to = new int[INITIAL_CAPACITY];
+	private long[] amounts = new long[INITIAL_CAPACITY];
+	private int[] groupStarts = new int[INITIAL_CAPACITY];	// index of the first transfer of each group
+	private int size;
+	private int groups;
+	private boolean groupOpen;
+
+
+	// building
+
+	/**
+	 * Adds a transfer to the current group.
+	 *
+	 * @param fromAccount the account the money is taken from.
+	 * @param toAccount the account the money is paid into.
+	 * @param amountCents the amount to transfer, in cents.
+	 * @return this batch.
+	 * @throws IllegalArgumentException if the amount is not positive or both accounts are the same.
+	 */
+	public TransferBatch add(int fromAccount, int toAccount, long amountCents) {
+		if(amountCents <= 0L) {
+			throw new IllegalArgumentException("Invalid amount: " + Money.format(amountCents) + ". Amount must be more than 0");
+		}
+		if(fromAccount == toAccount) {
+			throw new IllegalArgumentException("Cannot transfer from account " + fromAccount + " to itself.");
+		}
+		if(size == from.length) {
+			int capacity = size * 2;
+			from = Arrays.copyOf(from, capacity);
+			to = Arrays.copyOf(to, capacity);
+			amounts = Arrays.copyOf(amounts, capacity);
+		}
+		if(!groupOpen) {
+			if(groups == groupStarts.length) {
+				groupStarts = Arrays.copyOf(groupStarts, groups * 2);
+			}
+			groupStarts[groups++] = size;
+			groupOpen = true;
+		}
+		from[size] = fromAccount;
+		to[size] = toAccount;
+		amounts[size] = amountCents;
+		size++;
+		return this;
+	}
+
+	/**
+	 * Ends the current group; transfers added after this go into a new group.
+	 *
+	 * @return this batch.
+	 */
+	public TransferBatch newGroup() {
+		// the next add opens the group, so empty groups are never created
+		groupOpen = false;
+		return this;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getGroupCount() {
+		return groups;
+	}
+
+
+	/**
+	 * The outcome of applying a batch.
+	 */
+	public static final class Result {
+
+		private final String[] failures;	// null for each group that was applied
+		private final int appliedTransfers;
+		private final int accountsChanged;
+
+		Result(String[] failures, int appliedTransfers, int accountsChanged) {
+			this.failures = failures;
+			this.appliedTransfers = appliedTransfers;
+			this.accountsChanged = accountsChanged;
+		}
+
+		public int getGroupCount() {
+			return failures.length;
+		}
+
+		public boolean isApplied(int group) {
+			return failures[group] == null;
+		}
+
+		/**
+		 * Gets the reason a group was not applied.
+		 *
+		 * @param group the group index, in the order the groups were added.
+		 * @return the reason, or null if the group was applied.
+		 */
+		public String getFailure(int group) {
+			return failures[group];
+		}
+
+		public int getAppliedGroups() {
+			int applied = 0;
+			for(String failure : failures) {
+				if(failure == null) {
+					applied++;
+				}
+			}
+			return applied;
+		}
+
+		public int getDeclinedGroups() {
+			return failures.length - getAppliedGroups();
+		}
+
+		public boolean isFullyApplied() {
+			return getDeclinedGroups() == 0;
+		}
+
+		public int getAppliedTransfers() {
+			return appliedTransfers;
+		}
+
+		public int getAccountsChanged() {
+			return accountsChanged;
+		}
+	}
+
+
+	// applying
+
+	/**
+	 * Applies the batch to the accounts of a bank. Called by Bank.applyTransfers.
+	 *
+	 * @param bank the bank holding the accounts.
+	 * @return the outcome for each group.
+	 * @throws java.io.UncheckedIOException if the journal has failed to write, in which
+	 * 		   case nothing is applied.
+	 */
+	Result apply(Bank bank) {
+		int groupCount = groups;
+		String[] failures = new String[groupCount];
+
+		// give every distinct account a slot, and resolve it once
+		Slots slots = new Slots(size);
+		int[] fromSlot = new int[size];
+		int[] toSlot = new int[size];
+		for(int i = 0; i < size; i++) {
+			fromSlot[i] = slots.slotOf(from[i]);
+			toSlot[i] = slots.slotOf(to[i]);
+		}
+		BankAccount[] accounts = new BankAccount[slots.count];
+		int[] present = new int[slots.count];
+		int presentCount = 0;
+		for(int s = 0; s < slots.count; s++) {
+			accounts[s] = bank.getAccount(slots.accNumbers[s]);
+			if(accounts[s] != null) {
+				// declined before anything changes if the journal cannot record the batch
+				accounts[s].checkJournal();
+				present[presentCount++] = slots.accNumbers[s];
+			}
+		}
+
+		long[] balances = new long[slots.count];
+		long[] net = new long[slots.count];
+		long[] delta = new long[slots.count];
+		int[] touched = new int[slots.count];
+		int[] touchedBy = new int[slots.count];	// 1 + the last group that touched each slot
+		int appliedTransfers = 0;
+		int changed = 0;
+
+		boolean optimistic = bank.isOptimistic();
+		int[] stripes = null;
+		BankAccount[] claimed = null;
+		long[] versions = null;
+		if(optimistic) {
+			Arrays.sort(present, 0, presentCount);
+			claimed = new BankAccount[presentCount];
+			versions = new long[presentCount];
+			// claim in account number order, like locking in stripe order, so two batches cannot deadlock
+			for(int p = 0; p < presentCount; p++) {
+				claimed[p] = accounts[slots.slotOf(present[p])];
+				versions[p] = claimed[p].claim();
+			}
+		}
+		else {
+			stripes = TransactionLocks.SHARED.stripesOf(present, presentCount);
+			TransactionLocks.SHARED.lockStripes(stripes);
+		}
+		// read while every account is held, so no later write to them can precede this one
+		long epoch = optimistic ? bank.enterWrite() : bank.currentEpoch();
+		try {
+			for(int s = 0; s < slots.count; s++) {
+				if(accounts[s] != null) {
+					balances[s] = accounts[s].getBalanceCents();
+				}
+			}
+			for(int g = 0; g < groupCount; g++) {
+				int start = groupStarts[g];
+				int end = g + 1 < groupCount ? groupStarts[g + 1] : size;
+				failures[g] = applyGroup(g, start, end, fromSlot, toSlot, accounts, balances, net, delta, touched, touchedBy, slots.accNumbers);
+				if(failures[g] == null) {
+					appliedTransfers += end - start;
+				}
+			}
+			for(int s = 0; s < slots.count; s++) {
+				if(net[s] != 0L) {
+					accounts[s].writeBalance(epoch, balances[s]);
+					changed++;
+				}
+			}
+		}
+		finally {
+			if(optimistic) {
+				bank.exitWrite(epoch);
+				for(int p = presentCount - 1; p >= 0; p--) {
+					claimed[p].release(versions[p]);
+				}
+			}
+			else {
+				TransactionLocks.SHARED.unlockStripes(stripes);
+			}
+		}
+
+		for(int s = 0; s < slots.count; s++) {
+			if(net[s] != 0L) {
+				accounts[s].recordBatch(net[s], balances[s]);
+			}
+		}
+		return new Result(failures, appliedTransfers, changed);
+	}
+
+	// nets one group and applies it to the running balances, or returns why it cannot be
+	private String applyGroup(int group, int start, int end, int[] fromSlot, int[] toSlot, BankAccount[] accounts,
+			long[] balances, long[] net, long[] delta, int[] touched, int[] touchedBy, int[] accNumbers) {
+		int touchedCount = 0;
+		String failure = null;
+		for(int i = start; i < end; i++) {
+			int f = fromSlot[i];
+			int t = toSlot[i];
+			if(accounts[f] == null || accounts[t] == null) {
+				failure = "Unknown account: " + accNumbers[accounts[f] == null ? f : t];
+				break;
+			}
+			if(touchedBy[f] != group + 1) {
+				touchedBy[f] = group + 1;
+				touched[touchedCount++] = f;
+			}
+			if(touchedBy[t] != group + 1) {
+				touchedBy[t] = group + 1;
+				touched[touchedCount++] = t;
+			}
+			// a net change past the range of a long could never be held or paid, so the group fails
+			if(delta[f] < Long.MIN_VALUE + amounts[i]) {
+				failure = insufficientFunds(accNumbers[f], balances[f]);
+				break;
+			}
+			if(delta[t] > Long.MAX_VALUE - amounts[i]) {
+				failure = cannotHold(accNumbers[t], balances[t]);
+				break;
+			}
+			delta[f] -= amounts[i];
+			delta[t] += amounts[i];
+		}
+		for(int k = 0; k < touchedCount && failure == null; k++) {
+			int s = touched[k];
+			if(delta[s] < -balances[s]) {
+				failure = insufficientFunds(accNumbers[s], balances[s]);
+			}
+			else if(delta[s] > Long.MAX_VALUE - balances[s]) {
+				failure = cannotHold(accNumbers[s], balances[s]);
+			}
+		}
+		for(int k = 0; k < touchedCount; k++) {
+			int s = touched[k];
+			if(failure == null) {
+				balances[s] += delta[s];
+				net[s] += delta[s];
+			}
+			delta[s] = 0L;
+		}
+		return failure;
+	}
+
+	private static String insufficientFunds(int accNumber, long balanceCents) {
+		return "Insufficient funds in account " + accNumber + ". Current balance: $" + Money.format(balanceCents);
+	}
+
+	private static String cannotHold(int accNumber, long balanceCents) {
+		return "Account " + accNumber + " cannot hold the transfers into it. Current balance: $" + Money.format(balanceCents);
+	}
+
+	// open-addressing map from account number to a dense slot index, local to one apply
+	private static final class Slots {
+		final int[] accNumbers;
+		final int[] keys;
+		final int[] values;
+		final int mask;
+		int count;
+
+		Slots(int transfers) {
+			int capacity = Integer.highestOneBit(Math.max(4, transfers * 4 - 1)) << 1;
+			keys = new int[capacity];
+			values = new int[capacity];
+			accNumbers = new int[Math.min(capacity, transfers * 2)];
+			mask = capacity - 1;
+		}
+
+		int slotOf(int accNumber) {
+			int h = accNumber * 0x9E3779B9;
+			int i = (h ^ (h >>> 16)) & mask;
+			while(values[i] != 0) {
+				if(keys[i] == accNumber) {
+					return values[i] - 1;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = accNumber;
+			values[i] = count + 1;	// 0 marks an empty slot
+			accNumbers[count] = accNumber;
+			return count++;
+		}
+	}
+}
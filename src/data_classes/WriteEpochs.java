@@ -0,0 +1,133 @@
+/**
+ * The WriteEpochs class numbers the balance writes of one Bank so that a consistent
+ * snapshot of every balance can be taken without stopping them.
+ *
+ * Every transaction tags each balance it changes with the current epoch, read while it
+ * holds the accounts it changes. Taking a snapshot starts a new epoch and waits for the
+ * transactions still writing in the old one to finish. From then on no balance changes
+ * in the old epoch, and every account can report the balance it had when the old epoch
+ * ended: the current one if it has not been written since, or the one it kept when it
+ * was first written in the new epoch. A snapshot only waits for the transactions already
+ * running, and transactions wait for a snapshot at most while it takes a stripe they need.
+ *
+ * A transaction that holds lock stripes just reads the epoch: the snapshot waits for it
+ * by taking each stripe once after starting the new epoch. Transactions that change
+ * balances without stripes (optimistic commits, single-writer shards) enter the epoch and
+ * leave it again, and are counted in flight per epoch parity on padded counters, picked
+ * by thread, so that counting does not make them all contend on the same cache line. A
+ * transaction normally leaves on the thread it entered on; one handed from thread to
+ * thread, like a transfer between the shards of a ShardedTransactionProcessor, may leave
+ * on another, since the counters are only ever read summed.
+ *
+ * Responsibilities:
+ * - Hand out the current epoch to transactions, counting those without stripes in flight.
+ * - Start a new epoch and wait for the previous one to drain.
+ */
+
+package data_classes;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class WriteEpochs {
+
+	// counters per available core, keeps two busy threads from sharing one
+	private static final int SLOTS_PER_CORE = 2;
+
+	// longs between two counters, so each sits on its own pair of cache lines
+	private static final int PAD = 16;
+
+	private final AtomicLongArray inFlight;
+	private final int mask;
+	private volatile long epoch;
+
+
+	// constructor
+
+	WriteEpochs() {
+		int slots = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * SLOTS_PER_CORE - 1)) << 1;
+		this.inFlight = new AtomicLongArray(slots * 2 * PAD);
+		this.mask = slots - 1;
+	}
+
+
+	// transaction methods
+
+	/**
+	 * Gets the current epoch, for a transaction that holds the lock stripes of every
+	 * account it changes.
+	 *
+	 * @return the epoch the transaction's writes belong to.
+	 */
+	long current() {
+		return epoch;
+	}
+
+	/**
+	 * Enters the current epoch, for a transaction that does not hold lock stripes. Every
+	 * call must be matched by a call to exit with the returned epoch, best made on the
+	 * same thread.
+	 *
+	 * @return the epoch the transaction's writes belong to.
+	 */
+	long enter() {
+		int slot = slotOf(Thread.currentThread());
+		while(true) {
+			long current = epoch;
+			int index = indexOf(slot, current);
+			inFlight.getAndIncrement(index);
+			// a snapshot that moved on before the count was seen must not wait for it
+			if(epoch == current) {
+				return current;
+			}
+			inFlight.getAndDecrement(index);
+		}
+	}
+
+	void exit(long entered) {
+		inFlight.getAndDecrement(indexOf(slotOf(Thread.currentThread()), entered));
+	}
+
+
+	// snapshot methods
+
+	/**
+	 * Starts a new epoch and waits until no transaction is left in the previous one.
+	 * Callers must not advance concurrently, and must finish reading balances as of the
+	 * returned epoch before advancing again.
+	 *
+	 * @return the epoch that was closed.
+	 */
+	long advance() {
+		long closed = epoch;
+		epoch = closed + 1;
+		int spins = 0;
+		while(inFlight(closed) != 0L) {
+			if((++spins & 15) == 0) {
+				Thread.yield();
+			}
+			else {
+				Thread.onSpinWait();
+			}
+		}
+		// a stripe holder read the epoch before it changed only if it still holds the stripe
+		TransactionLocks.SHARED.awaitHolders();
+		return closed;
+	}
+
+	private long inFlight(long of) {
+		long total = 0L;
+		for(int slot = 0; slot <= mask; slot++) {
+			total += inFlight.get(indexOf(slot, of));
+		}
+		return total;
+	}
+
+	private int slotOf(Thread thread) {
+		long h = thread.getId() * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+
+	private static int indexOf(int slot, long of) {
+		return ((slot << 1) | (int) (of & 1L)) * PAD;
+	}
+}
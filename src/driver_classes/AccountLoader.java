@@ -0,0 +1,241 @@
+/**
+ * The AccountLoader class reads banks and their accounts from the database and builds the
+ * Bank and BankAccount objects one row at a time.
+ *
+ * Queries are prepared statements with an explicit column list, run on forward-only,
+ * read-only cursors with the configured fetch size, so the driver only holds one fetch's
+ * worth of rows at a time. Each object is handed to a consumer as soon as its row has been
+ * read instead of being collected into a list, so loading millions of accounts at startup
+ * needs no more memory than the banks themselves. Each bank's accounts are a separate
+ * partition and can be loaded in parallel, each on its own pooled connection.
+ *
+ * Expected tables:
+ * BANK    (bankID INT, name VARCHAR)
+ * ACCOUNT (accNumber INT, bankID INT, accType VARCHAR, firstName VARCHAR, lastName VARCHAR,
+ *          age INT, address VARCHAR, balance DECIMAL(15,2))
+ *
+ * Note that MySQL Connector/J only streams result sets when "useCursorFetch=true" is set
+ * on the JDBC URL; without it the fetch size is ignored and each query is read in full.
+ *
+ * Usage Example:
+ * AccountLoader loader = new AccountLoader(pool, config.getFetchSize());
+ * List<Bank> banks = loader.loadAll(4, account -> { });
+ *
+ * Responsibilities:
+ * - Stream bank and account rows through prepared, forward-only queries.
+ * - Build banks and accounts incrementally and pass them to a consumer.
+ * - Load the accounts of several banks in parallel.
+ */
+
+package driver_classes;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.Money;
+
+public class AccountLoader {
+
+	static final String BANK_QUERY = "SELECT bankID, name FROM BANK ORDER BY bankID";
+	static final String ACCOUNT_QUERY = "SELECT accNumber, accType, firstName, lastName, age, address, balance "
+			+ "FROM ACCOUNT WHERE bankID = ?";
+
+	private final ConnectionPool pool;
+	private final int fetchSize;
+
+
+	// constructor
+
+	/**
+	 * Creates a loader that borrows its connections from the given pool.
+	 *
+	 * @param pool the connection pool.
+	 * @param fetchSize the number of rows the driver fetches per round trip.
+	 */
+	public AccountLoader(ConnectionPool pool, int fetchSize) {
+		if(fetchSize <= 0) {
+			throw new IllegalArgumentException("Invalid fetch size: " + fetchSize + ". Fetch size must be greater than 0.");
+		}
+		this.pool = pool;
+		this.fetchSize = fetchSize;
+	}
+
+
+	// streaming reads on a caller-supplied connection
+
+	/**
+	 * Reads every bank and passes each one to the consumer as soon as it has been built.
+	 *
+	 * @param con the connection to read with.
+	 * @param fetchSize the number of rows the driver fetches per round trip.
+	 * @param consumer receives each bank.
+	 * @return the number of banks read.
+	 * @throws SQLException if the query fails.
+	 */
+	public static int readBanks(Connection con, int fetchSize, Consumer<? super Bank> consumer) throws SQLException {
+		int count = 0;
+		try(PreparedStatement stmt = prepare(con, BANK_QUERY, fetchSize);
+			ResultSet rs = stmt.executeQuery()) {
+			while(rs.next()) {
+				Bank bank = new Bank();
+				bank.setBankID(rs.getInt(1));
+				bank.setName(rs.getString(2));
+				consumer.accept(bank);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Reads every account of the given bank, adds it to the bank and passes it to the
+	 * consumer as soon as it has been built.
+	 *
+	 * @param con the connection to read with.
+	 * @param bank the bank whose accounts are read.
+	 * @param fetchSize the number of rows the driver fetches per round trip.
+	 * @param consumer receives each account after it has been added to the bank.
+	 * @return the number of accounts read.
+	 * @throws SQLException if the query fails or a row holds invalid account data.
+	 */
+	public static long readAccounts(Connection con, Bank bank, int fetchSize, Consumer<? super BankAccount> consumer) throws SQLException {
+		long count = 0;
+		try(PreparedStatement stmt = prepare(con, ACCOUNT_QUERY, fetchSize)) {
+			stmt.setInt(1, bank.getID());
+			try(ResultSet rs = stmt.executeQuery()) {
+				while(rs.next()) {
+					consumer.accept(readAccount(rs, bank));
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static PreparedStatement prepare(Connection con, String sql, int fetchSize) throws SQLException {
+		PreparedStatement stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(fetchSize);
+		return stmt;
+	}
+
+	// builds the account on the current row, columns in ACCOUNT_QUERY order
+	private static BankAccount readAccount(ResultSet rs, Bank bank) throws SQLException {
+		int accNumber = rs.getInt(1);
+		String accType = required(rs, 2, "accType", accNumber, bank);
+		String firstName = required(rs, 3, "firstName", accNumber, bank);
+		String lastName = required(rs, 4, "lastName", accNumber, bank);
+		int age = rs.getInt(5);
+		String address = required(rs, 6, "address", accNumber, bank);
+		BigDecimal balance = rs.getBigDecimal(7);
+		try {
+			return BankAccount.restore(accNumber, accType, firstName, lastName, age, address,
+					balance == null ? 0L : Money.toCents(balance), bank);
+		}
+		catch(IllegalArgumentException e) {
+			throw invalid(accNumber, bank, e.getMessage(), e);
+		}
+	}
+
+	// reads a column no account can be built without
+	private static String required(ResultSet rs, int column, String name, int accNumber, Bank bank) throws SQLException {
+		String value = rs.getString(column);
+		if(value == null) {
+			throw invalid(accNumber, bank, name + " is missing.", null);
+		}
+		return value;
+	}
+
+	private static SQLException invalid(int accNumber, Bank bank, String reason, Throwable cause) {
+		return new SQLException("Invalid data for account " + accNumber + " in bank " + bank.getID() + ": " + reason, cause);
+	}
+
+
+	// pooled loading
+
+	/**
+	 * Reads every bank, then loads the accounts of the banks in parallel, each bank on its
+	 * own pooled connection.
+	 *
+	 * @param parallelism the most banks loaded at the same time.
+	 * @param consumer receives each account after it has been added to its bank; it is
+	 *        called from several threads at once when parallelism is above 1.
+	 * @return the loaded banks, in bank ID order.
+	 * @throws SQLException if any query fails; loading stops at the first failure.
+	 */
+	public List<Bank> loadAll(int parallelism, Consumer<? super BankAccount> consumer) throws SQLException {
+		List<Bank> banks = new ArrayList<>();
+		try(Connection con = pool.getConnection()) {
+			readBanks(con, fetchSize, banks::add);
+		}
+		if(banks.isEmpty()) {
+			return banks;
+		}
+
+		int threads = Math.max(1, Math.min(parallelism, Math.min(banks.size(), pool.getMaxPoolSize())));
+		if(threads == 1) {
+			for(Bank bank : banks) {
+				loadAccounts(bank, consumer);
+			}
+			return banks;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "account-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<Long>> results = new ArrayList<>(banks.size());
+			for(Bank bank : banks) {
+				results.add(executor.submit(() -> loadAccounts(bank, consumer)));
+			}
+			for(Future<Long> result : results) {
+				result.get();
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while loading accounts.", e);
+		}
+		catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new SQLException("Failed to load accounts.", cause);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return banks;
+	}
+
+	/**
+	 * Loads the accounts of one bank on a pooled connection.
+	 *
+	 * @param bank the bank whose accounts are loaded.
+	 * @param consumer receives each account after it has been added to the bank.
+	 * @return the number of accounts loaded.
+	 * @throws SQLException if the query fails.
+	 */
+	public long loadAccounts(Bank bank, Consumer<? super BankAccount> consumer) throws SQLException {
+		try(Connection con = pool.getConnection()) {
+			return readAccounts(con, bank, fetchSize, consumer);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/**
+ * The BalanceWriter class writes account balance changes back to the database behind the
+ * transactions that make them (write-behind), so deposits, withdrawals and transfers never
+ * wait for a database round trip.
+ *
+ * The writer is registered as a TransactionListener on a Bank. A transaction only marks
+ * its account dirty; the account's current balance is read when the account is written.
+ * Any number of changes to one account between two flushes therefore become a single
+ * UPDATE carrying the latest balance. Dirty account numbers are kept in a
+ * DirtyAccountSet, so marking an account is a short, allocation-free operation and threads
+ * working on different accounts rarely share a lock.
+ *
+ * A background thread flushes dirty accounts with JDBC batches (addBatch/executeBatch) in
+ * one transaction per batch, whenever batchSize accounts are waiting or flushIntervalMillis
+ * has passed. If a flush fails, its accounts are marked dirty again and retried on the
+ * next flush. The number of accounts waiting is bounded: once maxPending accounts are
+ * waiting, transactions on accounts not yet waiting block until the writer catches up.
+ * This is the only case in which this listener blocks the transaction thread.
+ *
+ * Usage Example:
+ * BalanceWriter writer = new BalanceWriter(pool, bank, config);
+ * ...
+ * writer.close();   // writes everything still waiting
+ *
+ * Responsibilities:
+ * - Track which accounts have changed since they were last written.
+ * - Write the latest balances in JDBC batches on a size or time trigger.
+ * - Bound the number of waiting accounts by blocking writers when it is reached.
+ * - Retry failed writes and report write counts and failures.
+ */
+
+package driver_classes;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.DirtyAccountSet;
+import data_classes.TransactionListener;
+
+public class BalanceWriter implements TransactionListener, AutoCloseable {
+
+	static final String UPDATE_BALANCE = "UPDATE ACCOUNT SET balance = ? WHERE accNumber = ? AND bankID = ?";
+
+	private static final long BACK_PRESSURE_WAIT_MILLIS = 10L;
+
+	private static final Logger LOG = Logger.getLogger(BalanceWriter.class.getName());
+
+	private final ConnectionPool pool;
+	private final Bank bank;
+	private final int batchSize;
+	private final long flushIntervalNanos;
+	private final int maxPending;
+
+	private final DirtyAccountSet dirty = new DirtyAccountSet();
+	// held while flushing, so flushes from the writer thread and from flush() never overlap
+	private final ReentrantLock flushLock = new ReentrantLock();
+	// released by the writer after every batch, for transactions waiting on back-pressure
+	private final Object drained = new Object();
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	// metrics
+	private final LongAdder written = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder blocked = new LongAdder();
+
+
+	// constructors
+
+	/**
+	 * Creates a writer for the accounts of the given bank and registers it as a listener on
+	 * the bank.
+	 *
+	 * @param pool the pool to borrow connections from.
+	 * @param bank the bank whose balance changes are written.
+	 * @param batchSize the most updates sent in one batch, and the number of waiting
+	 *        accounts that triggers a flush.
+	 * @param flushIntervalMillis the longest time a change waits before it is written.
+	 * @param maxPending the number of waiting accounts at which transactions block.
+	 */
+	public BalanceWriter(ConnectionPool pool, Bank bank, int batchSize, long flushIntervalMillis, int maxPending) {
+		if(batchSize <= 0 || flushIntervalMillis <= 0 || maxPending <= 0) {
+			throw new IllegalArgumentException("Batch size, flush interval and max pending must be greater than 0.");
+		}
+		this.pool = pool;
+		this.bank = bank;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		this.maxPending = Math.max(maxPending, batchSize);
+		this.writer = new Thread(this::writeLoop, "balance-writer-" + bank.getID());
+		this.writer.setDaemon(true);
+		this.writer.start();
+		bank.addTransactionListener(this);
+	}
+
+	/**
+	 * Creates a writer configured by the write-behind settings of the given configuration.
+	 *
+	 * @param pool the pool to borrow connections from.
+	 * @param bank the bank whose balance changes are written.
+	 * @param config the database configuration.
+	 */
+	public BalanceWriter(ConnectionPool pool, Bank bank, DatabaseConfig config) {
+		this(pool, bank, config.getWriteBatchSize(), config.getWriteFlushIntervalMillis(), config.getWriteMaxPending());
+	}
+
+
+	// marking accounts dirty
+
+	@Override
+	public void onTransaction(int accNumber, int type, long amountCents, long balanceCents, int counterparty) {
+		markDirty(accNumber);
+	}
+
+	/**
+	 * Marks an account as changed so its balance is written on the next flush. Blocks while
+	 * maxPending accounts are already waiting, unless the account is one of them.
+	 *
+	 * @param accNumber the account number.
+	 */
+	public void markDirty(int accNumber) {
+		if(accNumber <= 0) {
+			return;
+		}
+		if(dirty.contains(accNumber)) {
+			coalesced.increment();
+			return;
+		}
+		if(dirty.size() >= maxPending) {
+			awaitCapacity();
+		}
+		if(dirty.add(accNumber)) {
+			if(dirty.size() == batchSize) {
+				LockSupport.unpark(writer);
+			}
+		}
+		else {
+			coalesced.increment();
+		}
+	}
+
+	private void awaitCapacity() {
+		blocked.increment();
+		LockSupport.unpark(writer);
+		synchronized(drained) {
+			while(running && dirty.size() >= maxPending) {
+				try {
+					drained.wait(BACK_PRESSURE_WAIT_MILLIS);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+
+	// flushing
+
+	private void writeLoop() {
+		while(running) {
+			if(dirty.size() < batchSize) {
+				LockSupport.parkNanos(this, flushIntervalNanos);
+			}
+			if(running) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes the balance of every account marked dirty so far. Accounts whose write fails
+	 * are marked dirty again and retried on the next flush.
+	 *
+	 * @return the number of account balances written.
+	 */
+	public int flush() {
+		flushLock.lock();
+		try {
+			int[] accNumbers = dirty.drain();
+			int total = 0;
+			for(int from = 0; from < accNumbers.length; from += batchSize) {
+				int to = Math.min(accNumbers.length, from + batchSize);
+				try {
+					total += writeBatch(accNumbers, from, to);
+				}
+				catch(SQLException e) {
+					failures.increment();
+					LOG.log(Level.WARNING, "Failed to write " + (to - from) + " account balances, will retry.", e);
+					for(int i = from; i < accNumbers.length; i++) {
+						dirty.add(accNumbers[i]);
+					}
+					break;
+				}
+				finally {
+					signalDrained();
+				}
+			}
+			return total;
+		}
+		finally {
+			flushLock.unlock();
+		}
+	}
+
+	private int writeBatch(int[] accNumbers, int from, int to) throws SQLException {
+		int rows = 0;
+		try(Connection con = pool.getConnection()) {
+			con.setAutoCommit(false);
+			try(PreparedStatement stmt = con.prepareStatement(UPDATE_BALANCE)) {
+				for(int i = from; i < to; i++) {
+					BankAccount account = bank.getAccount(accNumbers[i]);
+					if(account == null) {
+						continue;	// closed since it was marked, nothing left to write
+					}
+					stmt.setBigDecimal(1, BigDecimal.valueOf(account.getBalanceCents(), 2));
+					stmt.setInt(2, accNumbers[i]);
+					stmt.setInt(3, bank.getID());
+					stmt.addBatch();
+					rows++;
+				}
+				if(rows > 0) {
+					stmt.executeBatch();
+				}
+				con.commit();
+			}
+			catch(SQLException e) {
+				con.rollback();
+				throw e;
+			}
+		}
+		written.add(rows);
+		batches.increment();
+		return rows;
+	}
+
+	private void signalDrained() {
+		synchronized(drained) {
+			drained.notifyAll();
+		}
+	}
+
+
+	// metrics
+
+	/**
+	 * Gets the number of accounts marked dirty that have not been written yet.
+	 *
+	 * @return the pending account count.
+	 */
+	public int getPendingCount() {
+		return dirty.size();
+	}
+
+	public long getWrittenCount() {
+		return written.sum();
+	}
+
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * Gets the number of changes that did not need a write of their own because the
+	 * account was already waiting to be written.
+	 *
+	 * @return the coalesced change count.
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	public long getFailureCount() {
+		return failures.sum();
+	}
+
+	/**
+	 * Gets the number of times a transaction had to wait because maxPending accounts were
+	 * already waiting to be written.
+	 *
+	 * @return the blocked transaction count.
+	 */
+	public long getBlockedCount() {
+		return blocked.sum();
+	}
+
+
+	// close method
+
+	/**
+	 * Unregisters the writer from its bank, stops the background thread and writes every
+	 * account still waiting.
+	 */
+	@Override
+	public void close() {
+		bank.removeTransactionListener(this);
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		signalDrained();
+	}
+
+	@Override
+	public String toString() {
+		return "BalanceWriter [bank=" + bank.getID() + ", pending=" + getPendingCount() + ", written=" + getWrittenCount()
+				+ ", batches=" + getBatchCount() + ", coalesced=" + getCoalescedCount() + ", failures=" + getFailureCount()
+				+ ", blocked=" + getBlockedCount() + "]";
+	}
+}
@@ -0,0 +1,402 @@
+/**
+ * The BankServer class is a small HTTP front end for a Bank, built on the JDK's
+ * com.sun.net.httpserver, so accounts can be opened and used from other processes rather
+ * than only through the Keyboard prompts.
+ *
+ * Every request runs on its own virtual thread when the JVM provides them (Java 21 and
+ * later), so thousands of clients can be connected at once and a request blocked on a
+ * slow client costs almost nothing. On older JVMs the server falls back to a cached pool
+ * of platform threads. The choice is made at runtime, so the same build runs on both.
+ *
+ * Parameters are read from the query string and from an
+ * application/x-www-form-urlencoded request body. Amounts are in dollars, e.g. 12.50.
+ * Responses are small JSON objects.
+ *
+ * Endpoints:
+ * POST /accounts                   accNumber, accType, firstName, lastName, age, address, balance
+ * GET  /accounts/{n}               the account's balance
+ * POST /accounts/{n}/deposit       amount, optional txId
+ * POST /accounts/{n}/withdraw      amount, optional txId
+ * POST /transfers                  from, to, amount, optional txId
+ *
+ * Deposits, withdrawals and transfers take an optional txId, a client-chosen non-zero
+ * integer. A request repeated with the same txId, for instance after a timeout, is not
+ * applied again: it gets the same response as the first, with the balance that request
+ * left the account with.
+ *
+ * Status codes: 200 or 201 on success, 400 for invalid parameters, 404 for an unknown
+ * account or path, 405 for the wrong method and 409 when funds are insufficient.
+ *
+ * Usage Example:
+ * try(BankServer server = BankServer.start(bank, new InetSocketAddress("localhost", 8080))) {
+ *     ...
+ * }
+ *
+ * Responsibilities:
+ * - Serve account, deposit, withdraw, transfer and balance requests over HTTP.
+ * - Run each request on a virtual thread where available.
+ * - Map validation and funds errors onto HTTP status codes.
+ */
+
+package driver_classes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.Money;
+
+public class BankServer implements AutoCloseable {
+
+	private static final Logger LOG = Logger.getLogger(BankServer.class.getName());
+
+	private static final int BACKLOG = 1024;
+	private static final int MAX_BODY_SIZE = 16 * 1024;
+	private static final int STOP_DELAY_SECONDS = 1;
+
+	private final Bank bank;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final boolean virtualThreads;
+
+
+	// constructor
+	private BankServer(Bank bank, HttpServer server, ExecutorService executor, boolean virtualThreads) {
+		this.bank = bank;
+		this.server = server;
+		this.executor = executor;
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Starts a server for the bank on the given address.
+	 *
+	 * @param bank the bank to serve.
+	 * @param address the address to listen on; port 0 picks a free port.
+	 * @return the running server.
+	 * @throws IOException if the address cannot be bound.
+	 */
+	public static BankServer start(Bank bank, InetSocketAddress address) throws IOException {
+		HttpServer server = HttpServer.create(address, BACKLOG);
+		ExecutorService executor = newVirtualThreadExecutor();
+		boolean virtualThreads = executor != null;
+		if(executor == null) {
+			executor = Executors.newCachedThreadPool(r -> {
+				Thread thread = new Thread(r, "bank-server");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		BankServer bankServer = new BankServer(bank, server, executor, virtualThreads);
+		server.createContext("/accounts", bankServer::handleAccounts);
+		server.createContext("/transfers", bankServer::handleTransfers);
+		server.setExecutor(executor);
+		server.start();
+		LOG.info("Bank server listening on " + server.getAddress() + (virtualThreads ? " with virtual threads" : " with a thread pool"));
+		return bankServer;
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor() on Java 21 and later, otherwise null
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+
+	// getter methods
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	public boolean isUsingVirtualThreads() {
+		return virtualThreads;
+	}
+
+
+	// request handlers
+
+	// /accounts, /accounts/{n}, /accounts/{n}/deposit and /accounts/{n}/withdraw
+	private void handleAccounts(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = exchange.getRequestURI().getPath().split("/");
+			String method = exchange.getRequestMethod();
+			if(path.length == 2) {
+				requireMethod(method, "POST");
+				openAccount(exchange, readParameters(exchange));
+				return;
+			}
+			BankAccount account = findAccount(path[2]);
+			if(path.length == 3) {
+				requireMethod(method, "GET");
+				sendBalance(exchange, 200, account);
+			}
+			else if(path.length == 4 && path[3].equals("deposit")) {
+				requireMethod(method, "POST");
+				Map<String, String> params = readParameters(exchange);
+				long txId = transactionId(params);
+				if(txId == 0L) {
+					account.depositCents(amount(params));
+					sendBalance(exchange, 200, account);
+				}
+				else {
+					sendBalance(exchange, 200, account.getAccNumber(), account.depositOnce(txId, amount(params)));
+				}
+			}
+			else if(path.length == 4 && path[3].equals("withdraw")) {
+				requireMethod(method, "POST");
+				Map<String, String> params = readParameters(exchange);
+				long txId = transactionId(params);
+				if(txId == 0L) {
+					sendResult(exchange, account.getAccNumber(), account.tryWithdraw(amount(params)));
+				}
+				else {
+					sendBalance(exchange, 200, account.getAccNumber(), account.withdrawOnce(txId, amount(params)));
+				}
+			}
+			else {
+				throw new RequestException(404, "Unknown path: " + exchange.getRequestURI().getPath());
+			}
+		}
+		catch(RuntimeException | RequestException e) {
+			sendError(exchange, e);
+		}
+	}
+
+	// /transfers
+	private void handleTransfers(HttpExchange exchange) throws IOException {
+		try {
+			requireMethod(exchange.getRequestMethod(), "POST");
+			Map<String, String> params = readParameters(exchange);
+			BankAccount from = findAccount(required(params, "from"));
+			BankAccount to = findAccount(required(params, "to"));
+			long txId = transactionId(params);
+			if(txId == 0L) {
+				sendResult(exchange, from.getAccNumber(), from.tryTransfer(amount(params), to));
+			}
+			else {
+				sendBalance(exchange, 200, from.getAccNumber(), from.transferOnce(txId, amount(params), to));
+			}
+		}
+		catch(RuntimeException | RequestException e) {
+			sendError(exchange, e);
+		}
+	}
+
+	private void openAccount(HttpExchange exchange, Map<String, String> params) throws IOException, RequestException {
+		BankAccount account = BankAccount.ofCents(integer(params, "accNumber"), required(params, "accType"),
+				required(params, "firstName"), required(params, "lastName"), integer(params, "age"),
+				required(params, "address"), Money.parse(required(params, "balance")), bank);
+		sendBalance(exchange, 201, account);
+	}
+
+	private BankAccount findAccount(String accNumber) throws RequestException {
+		BankAccount account;
+		try {
+			account = bank.getAccount(Integer.parseInt(accNumber));
+		}
+		catch(NumberFormatException e) {
+			throw new RequestException(400, "Invalid account number: " + accNumber);
+		}
+		if(account == null) {
+			throw new RequestException(404, "Account number: " + accNumber + " does not exsist in the system.");
+		}
+		return account;
+	}
+
+
+	// parameter parsing
+
+	private static Map<String, String> readParameters(HttpExchange exchange) throws IOException, RequestException {
+		Map<String, String> params = new HashMap<>();
+		parseForm(exchange.getRequestURI().getRawQuery(), params);
+		try(InputStream body = exchange.getRequestBody()) {
+			byte[] bytes = body.readNBytes(MAX_BODY_SIZE + 1);
+			if(bytes.length > MAX_BODY_SIZE) {
+				throw new RequestException(400, "Request body is larger than " + MAX_BODY_SIZE + " bytes.");
+			}
+			parseForm(new String(bytes, StandardCharsets.UTF_8), params);
+		}
+		return params;
+	}
+
+	private static void parseForm(String form, Map<String, String> params) {
+		if(form == null || form.isEmpty()) {
+			return;
+		}
+		for(String pair : form.split("&")) {
+			int eq = pair.indexOf('=');
+			if(eq > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private static String required(Map<String, String> params, String name) throws RequestException {
+		String value = params.get(name);
+		if(value == null) {
+			throw new RequestException(400, "Missing parameter: " + name);
+		}
+		return value;
+	}
+
+	private static int integer(Map<String, String> params, String name) throws RequestException {
+		String value = required(params, name);
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch(NumberFormatException e) {
+			throw new RequestException(400, "Invalid " + name + ": " + value);
+		}
+	}
+
+	private static long amount(Map<String, String> params) throws RequestException {
+		String value = required(params, "amount");
+		try {
+			return Money.parse(value);
+		}
+		catch(NumberFormatException e) {
+			throw new RequestException(400, "Invalid amount: " + value);
+		}
+	}
+
+	// the optional txId, or 0 if there is none
+	private static long transactionId(Map<String, String> params) throws RequestException {
+		String value = params.get("txId");
+		if(value == null) {
+			return 0L;
+		}
+		try {
+			long txId = Long.parseLong(value.trim());
+			if(txId != 0L) {
+				return txId;
+			}
+		}
+		catch(NumberFormatException e) {
+			// reported below
+		}
+		throw new RequestException(400, "Invalid txId: " + value);
+	}
+
+	private static void requireMethod(String method, String expected) throws RequestException {
+		if(!method.equals(expected)) {
+			throw new RequestException(405, "Method " + method + " is not allowed here, use " + expected + ".");
+		}
+	}
+
+
+	// responses
+
+	private static void sendBalance(HttpExchange exchange, int status, BankAccount account) throws IOException {
+		sendBalance(exchange, status, account.getAccNumber(), account.getBalanceCents());
+	}
+
+	private static void sendBalance(HttpExchange exchange, int status, int accNumber, long balanceCents) throws IOException {
+		send(exchange, status, "{\"accNumber\":" + accNumber + ",\"balance\":\"" + Money.format(balanceCents) + "\"}");
+	}
+
+	// a result of tryWithdraw or tryTransfer, so a decline is answered without an exception
+	private static void sendResult(HttpExchange exchange, int accNumber, long result) throws IOException {
+		if(BankAccount.isDeclined(result)) {
+			send(exchange, 409, "{\"error\":\"Insufficient funds. Current balance: $" + Money.format(BankAccount.balanceOf(result)) + "\"}");
+		}
+		else {
+			sendBalance(exchange, 200, accNumber, result);
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, Exception e) throws IOException {
+		int status;
+		if(e instanceof RequestException) {
+			status = ((RequestException) e).status;
+		}
+		else if(e instanceof IllegalWithdrawException) {
+			status = 409;
+		}
+		else if(e instanceof IllegalArgumentException) {
+			status = 400;
+		}
+		else {
+			status = 500;
+			LOG.log(Level.WARNING, "Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed.", e);
+		}
+		send(exchange, status, "{\"error\":\"" + escape(String.valueOf(e.getMessage())) + "\"}");
+	}
+
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static String escape(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}
+			else if(c < 0x20) {
+				sb.append(' ');
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.toString().trim();
+	}
+
+	// a request that fails with a specific HTTP status
+	private static final class RequestException extends Exception {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+
+	// close method
+
+	/**
+	 * Stops accepting connections, gives requests in progress a moment to finish and stops
+	 * the request threads.
+	 */
+	@Override
+	public void close() {
+		server.stop(STOP_DELAY_SECONDS);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
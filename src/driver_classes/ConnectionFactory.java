@@ -0,0 +1,42 @@
+/**
+ * The ConnectionFactory interface opens new physical database connections for the
+ * ConnectionPool. The pool decides when a connection is needed; the factory only knows
+ * how to open one.
+ *
+ * Usage Example:
+ * ConnectionFactory factory = ConnectionFactory.fromConfig(DatabaseConfig.load());
+ * ConnectionPool pool = new ConnectionPool(config, factory);
+ */
+
+package driver_classes;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ConnectionFactory {
+
+	/**
+	 * Opens a new connection to the database.
+	 *
+	 * @return the new connection.
+	 * @throws SQLException if the connection cannot be opened.
+	 */
+	Connection create() throws SQLException;
+
+	/**
+	 * Creates a factory that opens connections through DriverManager with the URL and
+	 * credentials of the given configuration. Any JDBC driver on the classpath can be used,
+	 * including an embedded in-memory database.
+	 *
+	 * @param config the database configuration.
+	 * @return the factory.
+	 */
+	static ConnectionFactory fromConfig(DatabaseConfig config) {
+		String url = config.getUrl();
+		String user = config.getUser();
+		String password = config.getPassword();
+		return () -> DriverManager.getConnection(url, user, password);
+	}
+}
@@ -0,0 +1,410 @@
+/**
+ * The ConnectionPool class keeps a bounded set of open database connections and lends
+ * them out, so callers do not pay for opening a new physical connection on every request.
+ *
+ * At most maxPoolSize connections are lent out at once; a caller asking for a connection
+ * while all of them are in use waits up to the borrow timeout and then gets an
+ * SQLTimeoutException. Idle connections are checked with Connection.isValid before being
+ * lent out and broken ones are replaced. A connection is retired once it reaches its
+ * maximum lifetime, and a background thread closes connections that have sat idle longer
+ * than the idle timeout.
+ *
+ * The connection handed to the caller is a thin wrapper around the pooled connection:
+ * closing it returns the connection to the pool instead of closing it, and any further use
+ * of the wrapper fails. Uncommitted work is rolled back when a connection is returned.
+ *
+ * Usage Example:
+ * try(ConnectionPool pool = new ConnectionPool(DatabaseConfig.load());
+ *     Connection con = pool.getConnection()) {
+ *     ...
+ * }
+ *
+ * Responsibilities:
+ * - Lend out, validate and take back database connections.
+ * - Bound the number of open connections and time out waiting callers.
+ * - Retire connections past their maximum lifetime or idle timeout.
+ * - Track wait times and the number of active, idle, created and discarded connections.
+ */
+
+package driver_classes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPool implements AutoCloseable {
+
+	// longest pause between two idle eviction runs
+	private static final long MAX_EVICTION_INTERVAL_MILLIS = 30_000L;
+
+	// a physical connection owned by the pool
+	private static final class PooledConnection {
+		final Connection raw;
+		final long createdAt;
+		volatile long lastUsed;
+
+		PooledConnection(Connection raw, long now) {
+			this.raw = raw;
+			this.createdAt = now;
+			this.lastUsed = now;
+		}
+	}
+
+	private final ConnectionFactory factory;
+	private final int maxPoolSize;
+	private final long borrowTimeoutNanos;
+	private final long idleTimeoutNanos;
+	private final long maxLifetimeNanos;
+	private final int validationTimeoutSeconds;
+
+	// one permit per connection that may be lent out
+	private final Semaphore permits;
+	// most recently returned connection first, so a few connections stay warm
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed;
+
+	// metrics
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder borrowed = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder discarded = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+
+	// constructors
+
+	/**
+	 * Creates a pool sized by the given configuration that opens connections with the given
+	 * factory.
+	 *
+	 * @param config the pool settings.
+	 * @param factory opens new physical connections.
+	 */
+	public ConnectionPool(DatabaseConfig config, ConnectionFactory factory) {
+		if(factory == null) {
+			throw new IllegalArgumentException("Connection factory cannot be null.");
+		}
+		this.factory = factory;
+		this.maxPoolSize = config.getMaxPoolSize();
+		this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getBorrowTimeoutMillis());
+		this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+		this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxLifetimeMillis());
+		this.validationTimeoutSeconds = config.getValidationTimeoutSeconds();
+		this.permits = new Semaphore(maxPoolSize, true);
+
+		long interval = Math.max(1L, Math.min(MAX_EVICTION_INTERVAL_MILLIS,
+				Math.min(config.getIdleTimeoutMillis(), config.getMaxLifetimeMillis()) / 2));
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "connection-pool-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a pool that connects with the URL and credentials of the given configuration.
+	 *
+	 * @param config the database and pool settings.
+	 */
+	public ConnectionPool(DatabaseConfig config) {
+		this(config, ConnectionFactory.fromConfig(config));
+	}
+
+
+	// borrowing and returning
+
+	/**
+	 * Borrows a connection from the pool, opening a new one if no valid idle connection is
+	 * available. Close the returned connection to give it back.
+	 *
+	 * @return a connection lent out by the pool.
+	 * @throws SQLTimeoutException if no connection becomes free within the borrow timeout.
+	 * @throws SQLException if the pool is closed or a new connection cannot be opened.
+	 */
+	public Connection getConnection() throws SQLException {
+		if(closed) {
+			throw new SQLException("Connection pool is closed.");
+		}
+		long start = System.nanoTime();
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection.", e);
+		}
+		recordWait(System.nanoTime() - start);
+		if(!acquired) {
+			timeouts.increment();
+			throw new SQLTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos)
+					+ " ms waiting for a database connection, all " + maxPoolSize + " are in use.");
+		}
+
+		try {
+			PooledConnection pooled = takeIdle();
+			if(pooled == null) {
+				pooled = new PooledConnection(factory.create(), System.nanoTime());
+				created.increment();
+			}
+			active.incrementAndGet();
+			borrowed.increment();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Lease(pooled));
+		}
+		catch(SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	// returns the most recently used idle connection that is still usable, or null
+	private PooledConnection takeIdle() {
+		PooledConnection pooled;
+		while((pooled = idle.pollFirst()) != null) {
+			if(!isExpired(pooled, System.nanoTime()) && isValid(pooled)) {
+				return pooled;
+			}
+			discard(pooled);
+		}
+		return null;
+	}
+
+	// takes back a connection whose lease has been closed
+	private void release(PooledConnection pooled) {
+		active.decrementAndGet();
+		try {
+			if(closed || isExpired(pooled, System.nanoTime()) || !reset(pooled)) {
+				discard(pooled);
+			}
+			else {
+				pooled.lastUsed = System.nanoTime();
+				idle.offerFirst(pooled);
+				if(closed) {
+					drainIdle();
+				}
+			}
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	// rolls back uncommitted work so the next borrower starts clean
+	private static boolean reset(PooledConnection pooled) {
+		try {
+			if(pooled.raw.isClosed()) {
+				return false;
+			}
+			if(!pooled.raw.getAutoCommit()) {
+				pooled.raw.rollback();
+				pooled.raw.setAutoCommit(true);
+			}
+			return true;
+		}
+		catch(SQLException e) {
+			return false;
+		}
+	}
+
+
+	// validation and eviction
+
+	private boolean isExpired(PooledConnection pooled, long now) {
+		return now - pooled.createdAt >= maxLifetimeNanos;
+	}
+
+	private boolean isValid(PooledConnection pooled) {
+		try {
+			return pooled.raw.isValid(validationTimeoutSeconds);
+		}
+		catch(SQLException e) {
+			return false;
+		}
+	}
+
+	private void discard(PooledConnection pooled) {
+		discarded.increment();
+		try {
+			pooled.raw.close();
+		}
+		catch(SQLException e) {
+			// the connection is being thrown away regardless
+		}
+	}
+
+	/**
+	 * Closes idle connections that have passed the idle timeout or their maximum lifetime.
+	 * Runs periodically on a background thread; connections that are lent out are never
+	 * touched.
+	 *
+	 * @return the number of connections closed.
+	 */
+	public int evictIdle() {
+		int evicted = 0;
+		long now = System.nanoTime();
+		for(PooledConnection pooled : idle) {
+			if((now - pooled.lastUsed >= idleTimeoutNanos || isExpired(pooled, now)) && idle.remove(pooled)) {
+				discard(pooled);
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	private void drainIdle() {
+		PooledConnection pooled;
+		while((pooled = idle.pollFirst()) != null) {
+			discard(pooled);
+		}
+	}
+
+
+	// metrics
+
+	private void recordWait(long nanos) {
+		totalWaitNanos.add(nanos);
+		maxWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	/**
+	 * Gets the number of connections currently lent out.
+	 *
+	 * @return the active connection count.
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * Gets the number of open connections waiting in the pool to be borrowed.
+	 *
+	 * @return the idle connection count.
+	 */
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public long getBorrowCount() {
+		return borrowed.sum();
+	}
+
+	public long getTimeoutCount() {
+		return timeouts.sum();
+	}
+
+	public long getCreatedCount() {
+		return created.sum();
+	}
+
+	public long getDiscardedCount() {
+		return discarded.sum();
+	}
+
+	/**
+	 * Gets the average time callers waited for a free connection, including those that
+	 * timed out.
+	 *
+	 * @return the average wait, in milliseconds.
+	 */
+	public double getAverageWaitMillis() {
+		long attempts = borrowed.sum() + timeouts.sum();
+		return attempts == 0 ? 0.0 : totalWaitNanos.sum() / 1e6 / attempts;
+	}
+
+	/**
+	 * Gets the longest time any caller waited for a free connection.
+	 *
+	 * @return the longest wait, in milliseconds.
+	 */
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1e6;
+	}
+
+
+	// close method
+
+	/**
+	 * Closes every idle connection and stops the eviction thread. Connections still lent out
+	 * are closed as they are returned.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		evictor.shutdownNow();
+		drainIdle();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ConnectionPool [active=%d, idle=%d, max=%d, borrowed=%d, timeouts=%d, created=%d, "
+				+ "discarded=%d, avgWait=%.3f ms, maxWait=%.3f ms]", getActiveCount(), getIdleCount(), maxPoolSize,
+				getBorrowCount(), getTimeoutCount(), getCreatedCount(), getDiscardedCount(),
+				getAverageWaitMillis(), getMaxWaitMillis());
+	}
+
+
+	// the connection handed to a borrower, valid until it is closed
+	private final class Lease implements InvocationHandler {
+		private final PooledConnection pooled;
+		private final AtomicBoolean returned = new AtomicBoolean();
+
+		Lease(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+				case "close":
+					if(returned.compareAndSet(false, true)) {
+						release(pooled);
+					}
+					return null;
+				case "isClosed":
+					if(returned.get()) {
+						return true;
+					}
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "PooledConnection[" + pooled.raw + "]";
+				default:
+					break;
+			}
+			if(returned.get()) {
+				throw new SQLException("Connection has already been returned to the pool.");
+			}
+			try {
+				return method.invoke(pooled.raw, args);
+			}
+			catch(InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * The DatabaseConfig class holds the settings used to connect to the database and to size
+ * the connection pool.
+ *
+ * Settings are read from a properties file and can be overridden individually by system
+ * properties of the same name, so credentials never need to live in the source code. The
+ * properties file defaults to "config/database.properties" and can be moved with the
+ * "bank.db.config" system property. Any setting that is not given anywhere falls back to
+ * the defaults below.
+ *
+ * Recognised settings:
+ * - bank.db.url                    JDBC URL (default jdbc:mysql://localhost:3306/bobby's_bank)
+ * - bank.db.user                   user name (default root)
+ * - bank.db.password               password (default empty)
+ * - bank.db.pool.maxSize           most connections open at once (default 10)
+ * - bank.db.pool.borrowTimeoutMs   longest wait for a free connection (default 5000)
+ * - bank.db.pool.idleTimeoutMs     idle time after which a connection is closed (default 600000)
+ * - bank.db.pool.maxLifetimeMs     age after which a connection is retired (default 1800000)
+ * - bank.db.pool.validationTimeoutSec  timeout for the validation check on borrow (default 2)
+ * - bank.db.fetchSize              rows fetched per round trip by bulk reads (default 1000)
+ * - bank.db.writeBehind.batchSize  balance updates sent per batch (default 500)
+ * - bank.db.writeBehind.flushIntervalMs  longest delay before a balance change is written (default 1000)
+ * - bank.db.writeBehind.maxPending accounts waiting to be written before writers block (default 100000)
+ *
+ * Usage Example:
+ * DatabaseConfig config = DatabaseConfig.load();
+ * ConnectionPool pool = new ConnectionPool(config);
+ *
+ * Responsibilities:
+ * - Load database settings from a file and system properties.
+ * - Validate the settings and provide them to the connection pool.
+ */
+
+package driver_classes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+public class DatabaseConfig {
+
+	// setting names
+	public static final String CONFIG_FILE_PROPERTY 	= "bank.db.config";
+	public static final String URL 						= "bank.db.url";
+	public static final String USER 					= "bank.db.user";
+	public static final String PASSWORD 				= "bank.db.password";
+	public static final String POOL_MAX_SIZE 			= "bank.db.pool.maxSize";
+	public static final String POOL_BORROW_TIMEOUT 		= "bank.db.pool.borrowTimeoutMs";
+	public static final String POOL_IDLE_TIMEOUT 		= "bank.db.pool.idleTimeoutMs";
+	public static final String POOL_MAX_LIFETIME 		= "bank.db.pool.maxLifetimeMs";
+	public static final String POOL_VALIDATION_TIMEOUT 	= "bank.db.pool.validationTimeoutSec";
+	public static final String FETCH_SIZE 				= "bank.db.fetchSize";
+	public static final String WRITE_BATCH_SIZE 		= "bank.db.writeBehind.batchSize";
+	public static final String WRITE_FLUSH_INTERVAL 	= "bank.db.writeBehind.flushIntervalMs";
+	public static final String WRITE_MAX_PENDING 		= "bank.db.writeBehind.maxPending";
+
+	private static final Path DEFAULT_CONFIG_FILE = Paths.get("config", "database.properties");
+
+	private final Properties properties;
+
+
+	// constructors
+
+	/**
+	 * Creates a configuration from the given settings, falling back to the defaults for
+	 * anything not set.
+	 *
+	 * @param properties the settings.
+	 * @throws IllegalArgumentException if a numeric setting is not a valid positive number.
+	 */
+	public DatabaseConfig(Properties properties) {
+		this.properties = new Properties();
+		this.properties.putAll(properties);
+		validatePositive(getMaxPoolSize(), POOL_MAX_SIZE);
+		validatePositive(getBorrowTimeoutMillis(), POOL_BORROW_TIMEOUT);
+		validatePositive(getIdleTimeoutMillis(), POOL_IDLE_TIMEOUT);
+		validatePositive(getMaxLifetimeMillis(), POOL_MAX_LIFETIME);
+		validatePositive(getValidationTimeoutSeconds(), POOL_VALIDATION_TIMEOUT);
+		validatePositive(getFetchSize(), FETCH_SIZE);
+		validatePositive(getWriteBatchSize(), WRITE_BATCH_SIZE);
+		validatePositive(getWriteFlushIntervalMillis(), WRITE_FLUSH_INTERVAL);
+		validatePositive(getWriteMaxPending(), WRITE_MAX_PENDING);
+	}
+
+	/**
+	 * Loads the configuration from the properties file (if present) and system properties.
+	 *
+	 * @return the loaded configuration.
+	 * @throws UncheckedIOException if the properties file exists but cannot be read.
+	 */
+	public static DatabaseConfig load() {
+		Properties properties = new Properties();
+		Path file = Paths.get(System.getProperty(CONFIG_FILE_PROPERTY, DEFAULT_CONFIG_FILE.toString()));
+		if(Files.isReadable(file)) {
+			try(InputStream in = Files.newInputStream(file)) {
+				properties.load(in);
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException("Failed to read database configuration: " + file, e);
+			}
+		}
+		for(String name : System.getProperties().stringPropertyNames()) {
+			if(name.startsWith("bank.db.")) {
+				properties.setProperty(name, System.getProperty(name));
+			}
+		}
+		return new DatabaseConfig(properties);
+	}
+
+
+	// validation methods
+	private static void validatePositive(long value, String name) {
+		if(value <= 0) {
+			throw new IllegalArgumentException("Invalid database setting " + name + ": " + value + ". Value must be greater than 0.");
+		}
+	}
+
+
+	// getter methods
+	public String getUrl() {
+		return properties.getProperty(URL, "jdbc:mysql://localhost:3306/bobby's_bank");
+	}
+
+	public String getUser() {
+		return properties.getProperty(USER, "root");
+	}
+
+	public String getPassword() {
+		return properties.getProperty(PASSWORD, "");
+	}
+
+	public int getMaxPoolSize() {
+		return (int) getLong(POOL_MAX_SIZE, 10);
+	}
+
+	public long getBorrowTimeoutMillis() {
+		return getLong(POOL_BORROW_TIMEOUT, 5_000);
+	}
+
+	public long getIdleTimeoutMillis() {
+		return getLong(POOL_IDLE_TIMEOUT, 600_000);
+	}
+
+	public long getMaxLifetimeMillis() {
+		return getLong(POOL_MAX_LIFETIME, 1_800_000);
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return (int) getLong(POOL_VALIDATION_TIMEOUT, 2);
+	}
+
+	public int getFetchSize() {
+		return (int) getLong(FETCH_SIZE, 1_000);
+	}
+
+	public int getWriteBatchSize() {
+		return (int) getLong(WRITE_BATCH_SIZE, 500);
+	}
+
+	public long getWriteFlushIntervalMillis() {
+		return getLong(WRITE_FLUSH_INTERVAL, 1_000);
+	}
+
+	public int getWriteMaxPending() {
+		return (int) getLong(WRITE_MAX_PENDING, 100_000);
+	}
+
+	private long getLong(String name, long defaultValue) {
+		String value = properties.getProperty(name);
+		if(value == null || value.isBlank()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid database setting " + name + ": " + value, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		// the password is deliberately left out
+		return "DatabaseConfig [url=" + getUrl() + ", user=" + getUser() + ", maxPoolSize=" + getMaxPoolSize() + "]";
+	}
+}
@@ -1,14 +1,12 @@
 package driver_classes;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 
 import data_classes.Bank;
@@ -19,10 +17,13 @@ public class DatabaseManager {
 	
 	// DatabaseManager fields
 	private static List<Bank> banks;
-	private static Map<Integer, BankAccount> bankAccounts;
 	
 	private static Keyboard kb;
-	Connection connection;
+	
+	// database settings and shared connection pool, created on first use, and the balance writers using the pool
+	private static DatabaseConfig config;
+	private static ConnectionPool pool;
+	private static final List<BalanceWriter> writers = new ArrayList<>();
 	
 	
 	// singleton instance variable
@@ -52,75 +53,79 @@ public class DatabaseManager {
 		return banks;
 	}
 	
+	// builds a map of every loaded account keyed by account number
 	public Map<Integer, BankAccount> getAccounts(){
-		return bankAccounts;
+		Map<Integer, BankAccount> accounts = new HashMap<>();
+		for(Bank bank : banks) {
+			bank.forEachAccount(account -> accounts.put(account.getAccNumber(), account));
+		}
+		return accounts;
 	}
 	
 	
 	
-	// method to create database connection
-	Connection connectDB() {
-		Connection con = null;
-		try {
-			Class.forName("com.mysql.cj.jdbc.Driver");
-			con = DriverManager.getConnection("jdbc:mysql://localhost:3306/bobby's_bank", "root", "Ronaldo");
+	// method to get the database settings, loaded on first use
+	public static synchronized DatabaseConfig getConfig() {
+		if(config == null) {
+			config = DatabaseConfig.load();
 		}
-		catch(ClassNotFoundException | SQLException e){
-			e.getMessage();
+		return config;
+	}
+	
+	
+	// method to get the connection pool, configured from DatabaseConfig on first use
+	public static synchronized ConnectionPool getPool() {
+		if(pool == null) {
+			pool = new ConnectionPool(getConfig());
 		}
-		return con;
+		return pool;
 	}
 	
 	
-	// TODO method to read all data from database
-	void readAllDataFromDatabase() {
-		
-		connection = connectDB();
-		
-		
-		
+	// method to borrow a database connection from the pool, close it to give it back
+	Connection connectDB() throws SQLException {
+		return getPool().getConnection();
 	}
 	
-	// TODO Smethod to retrieve account data
-	public static void readAccountData(Connection con) throws SQLException {
-		
-		List<BankAccount> accounts = new ArrayList<>();
-		Statement stmt = con.createStatement();
-		ResultSet rs = stmt.executeQuery("SELECT * FROM ACCOUNT");
-		
-		while(rs.next()) {
-			
-			BankAccount account = new BankAccount();
-		}
-		
+	
+	// method to write a bank's balance changes back to the database behind its transactions
+	public static synchronized BalanceWriter persistBalances(Bank bank) {
+		BalanceWriter writer = new BalanceWriter(getPool(), bank, getConfig());
+		writers.add(writer);
+		return writer;
 	}
 	
 	
+	// method to write any pending balances and close the connection pool
+	public static synchronized void shutdown() {
+		for(BalanceWriter writer : writers) {
+			writer.close();
+		}
+		writers.clear();
+		if(pool != null) {
+			pool.close();
+			pool = null;
+		}
+	}
 	
 	
-	// TODO method to retieve bank data
-	public static List<Bank> readBankData(Connection con, List<BankAccount> accounts) throws SQLException {
+	// method to read every bank and its accounts from the database, banks are loaded in parallel
+	void readAllDataFromDatabase() throws SQLException {
 		
-		List<Bank> banks = new ArrayList<>();
-		Statement stmt 	 = con.createStatement();
-		ResultSet rs     = stmt.executeQuery("SELECT * FROM BANK");
+		AccountLoader loader = new AccountLoader(getPool(), getConfig().getFetchSize());
+		banks = loader.loadAll(Runtime.getRuntime().availableProcessors(), account -> { });
 		
-		while(rs.next()) {
-			
-			Bank bank = new Bank();
-			bank.setBankID(rs.getInt("bankID"));
-			bank.setName( rs.getString("name"));
-			
-			
-			banks.add(bank);
-		}
-		rs.close();
-		stmt.close();
-		
-		return banks;
 	}
 	
+	// method to stream the accounts of one bank, each account is added to the bank and passed to the consumer
+	public static long readAccountData(Connection con, Bank bank, Consumer<? super BankAccount> consumer) throws SQLException {
+		return AccountLoader.readAccounts(con, bank, getConfig().getFetchSize(), consumer);
+	}
 	
 	
+	// method to stream bank data, each bank is passed to the consumer as soon as it is read
+	public static int readBankData(Connection con, Consumer<? super Bank> consumer) throws SQLException {
+		return AccountLoader.readBanks(con, getConfig().getFetchSize(), consumer);
+	}
 	
 }
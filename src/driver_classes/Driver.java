@@ -1,10 +1,49 @@
 package driver_classes;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import data_classes.Bank;
+import data_classes.TransactionJournal;
+import data_classes.TransactionMetrics;
+
 public class Driver {
 
-	public static void main(String[] args) {
-		// TODO Auto-generated method stub
+	private static final int DEFAULT_PORT = 8080;
+	private static final long MILLIS_PER_SECOND = 1000L;
+
+	// set to true to record transaction metrics; they cost every transaction a little
+	public static final String METRICS_PROPERTY = "bank.metrics";
 
+	/**
+	 * Starts the HTTP front end for a new, empty bank on localhost and serves requests
+	 * until the process is stopped. The ids of transactions made within the last hour are
+	 * restored from the journal first, so a client retrying one of them across a restart
+	 * does not have it applied twice. Transaction metrics are off unless the bank.metrics
+	 * system property is true or a report interval is given; when on, they are recorded
+	 * and published over JMX, and can also be printed periodically.
+	 *
+	 * @param args optionally the port to listen on, 8080 by default, and the number of
+	 * 		  seconds between printed metrics reports, none by default. A report interval
+	 * 		  turns metrics on.
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		long dumpSeconds = args.length > 1 ? Long.parseLong(args[1]) : 0L;
+		if(Boolean.getBoolean(METRICS_PROPERTY) || dumpSeconds > 0L) {
+			TransactionMetrics metrics = TransactionMetrics.getInstance();
+			metrics.setEnabled(true);
+			metrics.registerMBeans();
+			if(dumpSeconds > 0L) {
+				metrics.startDump(System.out, dumpSeconds * MILLIS_PER_SECOND);
+			}
+		}
+		Bank bank = new Bank();
+		bank.getTransactionIdCache().restore(TransactionJournal.getInstance());
+		BankServer server = BankServer.start(bank, new InetSocketAddress("localhost", port));
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close, "bank-server-shutdown"));
+		System.out.println("Bank server running on http://localhost:" + server.getAddress().getPort() + "/ (Ctrl+C to stop)");
 	}
 
 }
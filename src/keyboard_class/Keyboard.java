@@ -23,6 +23,7 @@ import java.util.Scanner;
 
 import data_classes.Bank;
 import data_classes.BankAccount;
+import data_classes.Money;
 
 public class Keyboard {
 	
@@ -286,16 +287,22 @@ public class Keyboard {
 	}
 
 	
-	public double readBalance(String promptMsg) {
+	/**
+	 * Prompts the user for an opening balance in dollars, validates it, and returns it in cents.
+	 * 
+	 * @param promptMsg The message displayed to prompt the user.
+	 * @return the validated balance, in cents.
+	 */
+	public long readBalance(String promptMsg) {
 		String strInput = null;
-		Double num = 0.0;
+		long num 		= 0L;
 		boolean valid 	= false;
 		
 		while(!valid) {
 			System.out.println(promptMsg);
 			strInput = input.nextLine();
 			try {
-				num = Double.parseDouble(strInput);
+				num = Money.parse(strInput);
 				BankAccount.validateBalance(num);
 				valid = true;
 			}
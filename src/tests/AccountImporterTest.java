@@ -0,0 +1,122 @@
+/**
+ * The AccountImporterTest class contains unit tests for the AccountImporter that opens
+ * accounts in bulk from CSV and binary account files.
+ *
+ * Responsibilities:
+ * - Verify that valid CSV rows are imported and invalid rows are reported by line.
+ * - Verify that a bank exported to a binary file imports into another bank unchanged.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.AccountImporter;
+import data_classes.Bank;
+import data_classes.BankAccount;
+
+/**
+ * Unit tests for AccountImporter.
+ */
+class AccountImporterTest {
+
+    private Path dir;
+
+    /**
+     * Creates a scratch directory for the files of each test.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createTempDirectory("import-test");
+    }
+
+    /**
+     * Deletes the scratch directory and everything in it.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests a CSV file with a header, valid rows and one row failing each kind of check,
+     * imported in small batches on two threads.
+     */
+    @Test
+    void testImportCsv() throws Exception {
+        Path csv = dir.resolve("accounts.csv");
+        Files.write(csv, List.of(
+                "accNumber,accType,firstName,lastName,age,address,balance",
+                "10001,Checking,Ann,Lee,30,\"4 Bay Road, Leeds\",150.00",
+                "10002,Savings,Bo,Ng,15,1 Elm Street,200.00",
+                "",
+                "10003,Savings,Cy,Orr,40,2 Elm Street,99.99",
+                "10004,Checking,Di,Poe,50,3 Elm Street,1250.50",
+                "10001,Checking,Ed,Quy,60,5 Elm Street,300.00",
+                "10005,Checking,Fa,Roe,old,6 Elm Street,300.00",
+                "10006,Checking,Gu,Sun,22,7 Elm Street"));
+        Path errors = dir.resolve("errors.csv");
+        Bank bank = new Bank();
+
+        AccountImporter.Result result = new AccountImporter(bank, 2, 2).importCsv(csv, errors);
+
+        assertEquals(7, result.getRows());
+        assertEquals(2, result.getImported());
+        assertEquals(5, result.getRejected());
+        assertEquals(2, bank.getAccountCount());
+        assertEquals("4 Bay Road, Leeds", bank.getAccount(10001).getAddress());
+        assertEquals("Ann", bank.getAccount(10001).getFirstName());
+        assertEquals(125_050L, bank.getAccount(10004).getBalanceCents());
+        assertNull(bank.getAccount(10002));
+
+        List<String> report = Files.readAllLines(errors);
+        assertEquals(5, report.size());
+        assertTrue(report.get(0).startsWith("3,\"Invalid age: 15"));
+        assertTrue(report.get(1).startsWith("5,\"Invalid amount: 99.99"));
+        assertTrue(report.get(2).startsWith("7,\"Account number: 10001 already"));
+        assertTrue(report.get(3).startsWith("8,\"Invalid number"));
+        assertTrue(report.get(4).startsWith("9,\"Expected 7 fields"));
+    }
+
+    /**
+     * Tests that accounts exported to a binary file import into a new bank with the same
+     * fields and balances.
+     */
+    @Test
+    void testBinaryRoundTrip() throws Exception {
+        Bank source = new Bank();
+        for (int i = 0; i < 1000; i++) {
+            BankAccount.restore(20000 + i, i % 2 == 0 ? "Checking" : "Savings", "Ann", "Lee", 18 + i % 60,
+                    i + " Mill Road", 10_000L + i, source);
+        }
+        Path file = dir.resolve("accounts.dat");
+        assertEquals(1000, AccountImporter.exportBinary(file, source));
+
+        Bank target = new Bank();
+        AccountImporter.Result result = new AccountImporter(target, 3, 64).importBinary(file, null);
+
+        assertEquals(1000, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertEquals(1000, target.getAccountCount());
+        BankAccount account = target.getAccount(20777);
+        assertEquals("Savings", account.getAccType());
+        assertEquals("777 Mill Road", account.getAddress());
+        assertEquals(18 + 777 % 60, account.getAge());
+        assertEquals(10_777L, account.getBalanceCents());
+    }
+}
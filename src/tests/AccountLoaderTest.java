@@ -0,0 +1,206 @@
+/**
+ * The AccountLoaderTest class contains unit tests for the AccountLoader used by
+ * DatabaseManager to stream banks and accounts out of the database.
+ *
+ * The queries run against stub JDBC objects that serve fixed rows and check the fetch
+ * size and cursor type they are given.
+ *
+ * Responsibilities:
+ * - Verify that banks and accounts are built from their rows and passed to the consumer.
+ * - Verify that queries use forward-only, read-only cursors with the configured fetch size.
+ * - Verify that every bank's accounts are loaded when loading in parallel.
+ * - Verify that invalid rows are reported as SQLExceptions.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.Bank;
+import driver_classes.AccountLoader;
+import driver_classes.ConnectionPool;
+import driver_classes.DatabaseConfig;
+
+/**
+ * Unit tests for AccountLoader.
+ */
+class AccountLoaderTest {
+
+    private static final int FETCH_SIZE = 250;
+
+    // account rows per bank ID, columns in the order AccountLoader selects them
+    private final Map<Integer, List<Object[]>> accountRows = new ConcurrentHashMap<>();
+    private final List<Object[]> bankRows = new ArrayList<>();
+    private final AtomicInteger badFetchSizes = new AtomicInteger();
+    private final AtomicInteger badCursors = new AtomicInteger();
+    private ConnectionPool pool;
+
+    private void addBank(int id, String name, int accounts) {
+        bankRows.add(new Object[] { id, name });
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            rows.add(new Object[] { id * 10_000 + i, "Checking", "John", "Doe", 30, "1 Main Street",
+                    new BigDecimal("12.34") });
+        }
+        accountRows.put(id, rows);
+    }
+
+    private ConnectionPool newPool() {
+        Properties properties = new Properties();
+        properties.setProperty(DatabaseConfig.POOL_MAX_SIZE, "4");
+        pool = new ConnectionPool(new DatabaseConfig(properties), this::openStub);
+        return pool;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Tests that every bank and account row is loaded into Bank and BankAccount objects.
+     */
+    @Test
+    void testLoadAll() throws SQLException {
+        addBank(101, "First", 3);
+        addBank(102, "Second", 0);
+        addBank(103, "Third", 5);
+        AtomicInteger seen = new AtomicInteger();
+
+        List<Bank> banks = new AccountLoader(newPool(), FETCH_SIZE).loadAll(1, account -> seen.incrementAndGet());
+
+        assertEquals(3, banks.size());
+        assertEquals(102, banks.get(1).getID());
+        assertEquals("Third", banks.get(2).getName());
+        assertEquals(8, seen.get());
+        assertEquals(5, banks.get(2).getAccountCount());
+        assertNotNull(banks.get(0).getAccount(1_010_002));
+        assertEquals(1234L, banks.get(0).getAccount(1_010_002).getBalanceCents());
+        assertEquals(0, badFetchSizes.get());
+        assertEquals(0, badCursors.get());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    /**
+     * Tests that loading in parallel loads every account of every bank.
+     */
+    @Test
+    void testParallelLoad() throws SQLException {
+        for (int id = 101; id <= 108; id++) {
+            addBank(id, "Bank " + id, 500);
+        }
+        AtomicInteger seen = new AtomicInteger();
+
+        List<Bank> banks = new AccountLoader(newPool(), FETCH_SIZE).loadAll(4, account -> seen.incrementAndGet());
+
+        assertEquals(8, banks.size());
+        assertEquals(4000, seen.get());
+        for (Bank bank : banks) {
+            assertEquals(500, bank.getAccountCount());
+        }
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    /**
+     * Tests that a row with invalid account data fails the load with an SQLException.
+     */
+    @Test
+    void testInvalidRow() {
+        addBank(101, "First", 1);
+        accountRows.get(101).get(0)[4] = 12;
+        AccountLoader loader = new AccountLoader(newPool(), FETCH_SIZE);
+        SQLException e = assertThrows(SQLException.class, () -> loader.loadAll(1, account -> { }));
+        assertTrue(e.getMessage().contains("1010000"));
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    /**
+     * Tests that a row missing a required column fails the load with an SQLException
+     * naming the column.
+     */
+    @Test
+    void testMissingColumn() {
+        addBank(101, "First", 2);
+        accountRows.get(101).get(1)[3] = null;
+        AccountLoader loader = new AccountLoader(newPool(), FETCH_SIZE);
+        SQLException e = assertThrows(SQLException.class, () -> loader.loadAll(1, account -> { }));
+        assertTrue(e.getMessage().contains("1010001"));
+        assertTrue(e.getMessage().contains("lastName"));
+        assertEquals(0, pool.getActiveCount());
+    }
+
+
+    // stub JDBC objects
+
+    private Connection openStub() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            if (args.length != 3 || (int) args[1] != ResultSet.TYPE_FORWARD_ONLY
+                                    || (int) args[2] != ResultSet.CONCUR_READ_ONLY) {
+                                badCursors.incrementAndGet();
+                            }
+                            return statement((String) args[0]);
+                        case "isValid": return true;
+                        case "isClosed": return false;
+                        case "getAutoCommit": return true;
+                        default: return null;
+                    }
+                });
+    }
+
+    private PreparedStatement statement(String sql) {
+        int[] bankId = new int[1];
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setFetchSize":
+                            if ((int) args[0] != FETCH_SIZE) {
+                                badFetchSizes.incrementAndGet();
+                            }
+                            return null;
+                        case "setInt": bankId[0] = (int) args[1]; return null;
+                        case "executeQuery":
+                            return resultSet(sql.contains("FROM BANK") ? bankRows : accountRows.get(bankId[0]));
+                        default: return null;
+                    }
+                });
+    }
+
+    private ResultSet resultSet(List<Object[]> rows) {
+        int[] cursor = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next": return ++cursor[0] < rows.size();
+                        case "getInt":
+                        case "getString":
+                        case "getBigDecimal":
+                            return rows.get(cursor[0])[(int) args[0] - 1];
+                        default: return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * The AccountQueryTest class contains unit tests for finding a Bank's accounts by last
+ * name prefix, age range and account type with Bank.findAccounts.
+ *
+ * Each test compares the accounts a query returns with the same accounts found by
+ * walking every account.
+ *
+ * Responsibilities:
+ * - Verify each filter on its own, combined, with a limit and counted.
+ * - Verify that the indexes follow setters, new accounts and removed accounts.
+ * - Verify queries on a bank loaded from a mapped snapshot.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.AccountQuery;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.MappedAccountSnapshot;
+
+/**
+ * Unit tests for AccountQuery.
+ */
+class AccountQueryTest {
+
+    private static final String[] LAST_NAMES = { "Smith", "Smyth", "Smithers", "Jones", "Johnson", "Lee" };
+
+    private Bank bank;
+
+    /**
+     * Opens accounts 4000 to 4119, cycling through the last names, ages 20 to 59, and
+     * Checking and Savings.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        for (int i = 0; i < 120; i++) {
+            BankAccount.ofCents(4000 + i, i % 3 == 0 ? "Savings" : "Checking", "Ann", LAST_NAMES[i % LAST_NAMES.length], 20 + i % 40, "1 Elm Street", 100_00L, bank);
+        }
+    }
+
+    /**
+     * Checks each filter on its own, together, with a limit and counted.
+     */
+    @Test
+    void testFilters() {
+        assertMatches(bank.findAccounts().lastNameStartsWith("smi"), a -> a.getLastName().startsWith("Smi"));
+        assertMatches(bank.findAccounts().ageBetween(30, 35), a -> a.getAge() >= 30 && a.getAge() <= 35);
+        assertMatches(bank.findAccounts().accType("SAVINGS"), a -> a.getAccType().equals("Savings"));
+        assertMatches(bank.findAccounts().lastNameStartsWith("Jo").ageBetween(20, 40).accType("checking"),
+                a -> a.getLastName().startsWith("Jo") && a.getAge() <= 40 && a.getAccType().equals("Checking"));
+        assertMatches(bank.findAccounts().ageBetween(50, 59).accType("Savings"),
+                a -> a.getAge() >= 50 && a.getAccType().equals("Savings"));
+        assertMatches(bank.findAccounts(), a -> true);
+
+        List<BankAccount> limited = bank.findAccounts().lastNameStartsWith("Sm").limit(5).list();
+        assertEquals(5, limited.size());
+        assertEquals(0, bank.findAccounts().limit(0).list().size());
+        assertEquals(40, bank.findAccounts().accType("Savings").count());
+        assertEquals(40, bank.findAccounts().lastNameStartsWith("smith").limit(1).count());
+        assertThrows(IllegalArgumentException.class, () -> bank.findAccounts().ageBetween(40, 30));
+        assertThrows(IllegalArgumentException.class, () -> bank.findAccounts().accType("Gold"));
+    }
+
+    /**
+     * Changes names, ages and types, and opens and closes accounts after the indexes are
+     * built, and checks that queries see every change.
+     */
+    @Test
+    void testIndexesFollowChanges() {
+        assertEquals(20, bank.findAccounts().lastNameStartsWith("Lee").count());
+        BankAccount renamed = bank.getAccount(4005);
+        renamed.setLastName("Smith");
+        renamed.setAge(99);
+        renamed.setAccType("Savings");
+        bank.removeAccount(bank.getAccount(4000));
+        BankAccount.ofCents(5000, "Savings", "Bob", "Leeds", 99, "2 Elm Street", 100_00L, bank);
+
+        assertMatches(bank.findAccounts().lastNameStartsWith("lee"), a -> a.getLastName().startsWith("Lee"));
+        assertMatches(bank.findAccounts().lastNameStartsWith("smith"), a -> a.getLastName().startsWith("Smith"));
+        assertMatches(bank.findAccounts().ageBetween(99, 99), a -> a.getAge() == 99);
+        assertMatches(bank.findAccounts().accType("savings"), a -> a.getAccType().equals("Savings"));
+        assertEquals(20 + 1 - 1, bank.findAccounts().lastNameStartsWith("Lee").count());
+        assertEquals(40 - 1 + 2, bank.findAccounts().accType("Savings").count());
+        assertTrue(bank.findAccounts().ageBetween(99, 99).list().contains(renamed));
+    }
+
+    /**
+     * Queries a bank loaded from a mapped snapshot before any of its accounts are built.
+     */
+    @Test
+    void testQueryOfMappedSnapshot() throws Exception {
+        Path file = Files.createTempFile("query-test", ".dat");
+        try {
+            MappedAccountSnapshot.write(file, bank);
+            bank = new Bank();
+            bank.loadSnapshot(MappedAccountSnapshot.open(file));
+            assertEquals(40, bank.findAccounts().lastNameStartsWith("Smi").count());
+            assertMatches(bank.findAccounts().ageBetween(20, 29).accType("Checking"),
+                    a -> a.getAge() <= 29 && a.getAccType().equals("Checking"));
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void assertMatches(AccountQuery query, Predicate<BankAccount> expected) {
+        Set<Integer> scanned = new HashSet<>();
+        bank.forEachAccount(account -> {
+            if (expected.test(account)) {
+                scanned.add(account.getAccNumber());
+            }
+        });
+        List<Integer> found = new ArrayList<>();
+        for (BankAccount account : query.list()) {
+            found.add(account.getAccNumber());
+        }
+        assertEquals(scanned.size(), found.size());
+        assertEquals(scanned, new HashSet<>(found));
+        assertEquals(scanned.size(), query.count());
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * The AccountRegistryTest class contains unit tests for the AccountRegistry used by Bank
+ * to store accounts by account number.
+ *
+ * Responsibilities:
+ * - Verify that accounts can be added, found and removed by number.
+ * - Verify that duplicate account numbers are rejected.
+ * - Verify that Bank adds and removes accounts through the registry.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.AccountRegistry;
+import data_classes.Bank;
+import data_classes.BankAccount;
+
+/**
+ * Unit tests for AccountRegistry and the Bank methods built on it.
+ */
+class AccountRegistryTest {
+
+    private Bank bank;
+    private BankAccount first;
+    private BankAccount second;
+
+    /**
+     * Opens two accounts in a fresh bank before each test.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        bank = new Bank();
+        first = new BankAccount(1000, "Checking", "John", "Doe", 36, "123 Street", 500.0, bank);
+        second = new BankAccount(9999, "Savings", "Jane", "Doe", 23, "123 Street", 500.0, bank);
+    }
+
+    /**
+     * Tests that registered accounts are found by number and unknown numbers are not.
+     */
+    @Test
+    void testLookup() {
+        AccountRegistry registry = new AccountRegistry();
+        assertTrue(registry.add(first));
+        assertTrue(registry.add(second));
+        assertSame(first, registry.get(1000));
+        assertSame(second, registry.get(9999));
+        assertNull(registry.get(5000));
+        assertNull(registry.get(-1));
+        assertNull(registry.get(123456));
+        assertEquals(2, registry.size());
+    }
+
+    /**
+     * Tests that a second account with the same number is rejected.
+     */
+    @Test
+    void testDuplicateRejected() {
+        AccountRegistry registry = new AccountRegistry();
+        assertTrue(registry.add(first));
+        assertFalse(registry.add(first));
+        assertEquals(1, registry.size());
+    }
+
+    /**
+     * Tests that removing an account frees its number for reuse.
+     */
+    @Test
+    void testRemove() {
+        AccountRegistry registry = new AccountRegistry();
+        registry.add(first);
+        assertSame(first, registry.remove(1000));
+        assertNull(registry.remove(1000));
+        assertFalse(registry.contains(1000));
+        assertTrue(registry.add(first));
+    }
+
+    /**
+     * Tests that Bank rejects duplicate accounts and removes existing ones.
+     */
+    @Test
+    void testBankAddAndRemove() {
+        assertEquals(2, bank.getAccountCount());
+        assertTrue(first.isActiveAccount(9999));
+        assertThrows(IllegalArgumentException.class, () -> bank.addAccount(first));
+        bank.removeAccount(second);
+        assertFalse(bank.containsAccount(9999));
+        assertThrows(IllegalArgumentException.class, () -> bank.removeAccount(second));
+        assertEquals(1, bank.getAccounts().size());
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * The AccountStatementTest class contains unit tests for account statements: the latest
+ * transactions of an account, and its transactions within a period, served from the
+ * account's in-memory history and, for older transactions, from the journal.
+ *
+ * Responsibilities:
+ * - Verify statements that fit in the in-memory history.
+ * - Verify statements that reach back past it into the journal.
+ * - Verify statements of a period.
+ * - Verify that a loaded account's statements start when it was loaded.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.AccountStatement;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionJournal;
+import data_classes.TransactionType;
+
+/**
+ * Unit tests for BankAccount.getStatement.
+ */
+class AccountStatementTest {
+
+    private Bank bank;
+    private BankAccount account;
+    private BankAccount other;
+
+    /**
+     * Opens accounts 6000 and 6001 with $100.00 each, with the shared journal recording.
+     */
+    @BeforeEach
+    void setUp() {
+        TransactionJournal.getInstance().setEnabled(true);
+        bank = new Bank();
+        account = BankAccount.ofCents(6000, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+        other = BankAccount.ofCents(6001, "Savings", "Bob", "Ray", 40, "2 Elm Street", 100_00L, bank);
+    }
+
+    /**
+     * Lists a few transactions, all of them still in memory.
+     */
+    @Test
+    void testRecentTransactions() throws Exception {
+        account.depositCents(5_00L);
+        account.withdrawCents(2_00L);
+        account.transferCents(10_00L, other);
+        other.transferCents(1_00L, account);
+
+        AccountStatement statement = account.getStatement(10);
+        assertEquals(4, statement.size());
+        assertEquals(TransactionType.DEPOSIT, statement.getType(0));
+        assertEquals(105_00L, statement.getBalanceCents(0));
+        assertEquals(TransactionType.TRANSFER_OUT, statement.getType(2));
+        assertEquals(6001, statement.getCounterparty(2));
+        assertEquals(TransactionType.TRANSFER_IN, statement.getType(3));
+        assertEquals(94_00L, statement.getBalanceCents(3));
+
+        AccountStatement latest = account.getStatement(2);
+        assertEquals(2, latest.size());
+        assertEquals(TransactionType.TRANSFER_OUT, latest.getType(0));
+        assertEquals(0, account.getStatement(0).size());
+        assertThrows(IllegalArgumentException.class, () -> account.getStatement(-1));
+    }
+
+    /**
+     * Lists more transactions than are kept in memory, so the oldest are read from the journal.
+     */
+    @Test
+    void testStatementReachesIntoJournal() {
+        for (int i = 1; i <= 100; i++) {
+            account.depositCents(i);
+            other.depositCents(1L);
+        }
+        AccountStatement statement = account.getStatement(1000);
+        assertEquals(100, statement.size());
+        long balance = 100_00L;
+        for (int i = 0; i < 100; i++) {
+            balance += i + 1;
+            assertEquals(i + 1, statement.getAmountCents(i));
+            assertEquals(balance, statement.getBalanceCents(i));
+        }
+
+        AccountStatement latest = account.getStatement(30);
+        assertEquals(30, latest.size());
+        assertEquals(71, latest.getAmountCents(0));
+        assertEquals(balance, latest.getBalanceCents(29));
+    }
+
+    /**
+     * Loads an account whose number already has records in the journal, and checks its
+     * statements list only what it recorded after it was loaded.
+     */
+    @Test
+    void testLoadedAccountStartsAtLoad() {
+        for (int i = 0; i < 40; i++) {
+            account.depositCents(1L);
+        }
+        BankAccount loaded = BankAccount.restore(6000, "Checking", "Ann", "Lee", 30, "1 Elm Street", 140_00L, new Bank());
+        assertEquals(0, loaded.getStatement(10).size());
+        assertEquals(0, loaded.getStatement(0L, Long.MAX_VALUE).size());
+
+        for (int i = 1; i <= 20; i++) {
+            loaded.depositCents(i);
+        }
+        AccountStatement statement = loaded.getStatement(100);
+        assertEquals(20, statement.size());
+        assertEquals(1, statement.getAmountCents(0));
+        assertEquals(140_01L, statement.getBalanceCents(0));
+        assertEquals(20, loaded.getStatement(0L, Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Lists the transactions of a period, both in memory and in the journal.
+     */
+    @Test
+    void testStatementOfPeriod() {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            account.depositCents(1L);
+        }
+        long end = System.currentTimeMillis() + 1;
+
+        assertEquals(50, account.getStatement(start, end).size());
+        assertEquals(0, account.getStatement(end, end + 60_000L).size());
+        assertEquals(0, account.getStatement(start - 60_000L, start).size());
+        assertThrows(IllegalArgumentException.class, () -> account.getStatement(end, start));
+    }
+}
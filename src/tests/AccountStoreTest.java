@@ -0,0 +1,167 @@
+/**
+ * The AccountStoreTest class contains unit tests for the AccountStore that keeps a bank's
+ * accounts in local snapshot and write-ahead log files.
+ *
+ * Each test changes a bank through its accounts, closes the store, and opens it again on a
+ * fresh bank to check that recovery rebuilds the same accounts and balances.
+ *
+ * Responsibilities:
+ * - Verify recovery from the write-ahead log alone.
+ * - Verify recovery from a snapshot plus the log written after it, and that the files the
+ *   snapshot replaces are deleted.
+ * - Verify that a torn frame at the end of the log is ignored, including one whose length
+ *   runs past the end of the file.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.AccountStore;
+import data_classes.Bank;
+import data_classes.BankAccount;
+
+/**
+ * Unit tests for AccountStore.
+ */
+class AccountStoreTest {
+
+    private Path dir;
+
+    /**
+     * Creates a scratch directory for the store files of each test.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createTempDirectory("store-test");
+    }
+
+    /**
+     * Deletes the scratch directory and everything in it.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static BankAccount open(Bank bank, int accNumber) {
+        return BankAccount.ofCents(accNumber, "Savings", "Jane", "Doe", 40, "9 High Street", 500L * 100, bank);
+    }
+
+    /**
+     * Tests that accounts opened, changed and closed since the store was created are
+     * rebuilt from the log.
+     */
+    @Test
+    void testRecoverFromLog() throws Exception {
+        Bank bank = new Bank();
+        try (AccountStore store = AccountStore.open(dir, bank)) {
+            BankAccount first = open(bank, 1000);
+            BankAccount second = open(bank, 1001);
+            BankAccount third = open(bank, 1002);
+            for (int i = 0; i < 100; i++) {
+                first.transferCents(10L, second);
+            }
+            store.flush();
+            second.withdrawCents(5L);
+            bank.removeAccount(third);
+        }
+
+        Bank recovered = new Bank();
+        try (AccountStore store = AccountStore.open(dir, recovered)) {
+            assertEquals(2, recovered.getAccountCount());
+            assertEquals(50_000L - 1000L, recovered.getAccount(1000).getBalanceCents());
+            assertEquals(50_000L + 1000L - 5L, recovered.getAccount(1001).getBalanceCents());
+            assertEquals("Jane", recovered.getAccount(1001).getFirstName());
+            assertEquals("9 High Street", recovered.getAccount(1001).getAddress());
+            assertNull(recovered.getAccount(1002));
+            assertTrue(store.getReplayedRecords() > 0);
+        }
+    }
+
+    /**
+     * Tests recovery from a snapshot and the log written after it, and that the snapshot
+     * replaces the older files.
+     */
+    @Test
+    void testRecoverFromSnapshotAndLog() throws Exception {
+        Bank bank = new Bank();
+        try (AccountStore store = AccountStore.open(dir, bank)) {
+            for (int i = 0; i < 50; i++) {
+                open(bank, 2000 + i).depositCents(i);
+            }
+            store.snapshot();
+            bank.getAccount(2000).depositCents(123L);
+            bank.removeAccount(bank.getAccount(2049));
+            open(bank, 2050);
+        }
+        assertFalse(Files.exists(dir.resolve("wal-1.dat")));
+        assertTrue(Files.exists(dir.resolve("snapshot-2.dat")));
+
+        Bank recovered = new Bank();
+        try (AccountStore store = AccountStore.open(dir, recovered)) {
+            assertEquals(50, store.getRecoveredAccounts());
+            assertEquals(50, recovered.getAccountCount());
+            assertEquals(50_000L + 123L, recovered.getAccount(2000).getBalanceCents());
+            assertEquals(50_000L + 48L, recovered.getAccount(2048).getBalanceCents());
+            assertNull(recovered.getAccount(2049));
+            assertEquals(50_000L, recovered.getAccount(2050).getBalanceCents());
+        }
+    }
+
+    /**
+     * Tests that a frame torn part way through at the end of the log is ignored and the
+     * complete frames before it are replayed.
+     */
+    @Test
+    void testTornTail() throws Exception {
+        Bank bank = new Bank();
+        try (AccountStore store = AccountStore.open(dir, bank)) {
+            assertEquals(1L, store.getGeneration());
+            open(bank, 3000).depositCents(700L);
+        }
+        Files.write(dir.resolve("wal-1.dat"), new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 'B', 0 }, StandardOpenOption.APPEND);
+
+        Bank recovered = new Bank();
+        try (AccountStore store = AccountStore.open(dir, recovered)) {
+            assertEquals(50_700L, recovered.getAccount(3000).getBalanceCents());
+            assertEquals(2L, store.getReplayedRecords());
+        }
+    }
+
+    /**
+     * Tests that a frame whose length field is larger than the rest of the file is taken
+     * as torn without being read.
+     */
+    @Test
+    void testOversizedFrameLength() throws Exception {
+        Bank bank = new Bank();
+        try (AccountStore store = AccountStore.open(dir, bank)) {
+            assertEquals(1L, store.getGeneration());
+            open(bank, 3100).depositCents(300L);
+        }
+        Files.write(dir.resolve("wal-1.dat"), new byte[] { 0x7F, -1, -1, -1, 1, 2, 3, 4, 'B' }, StandardOpenOption.APPEND);
+
+        Bank recovered = new Bank();
+        try (AccountStore store = AccountStore.open(dir, recovered)) {
+            assertEquals(50_300L, recovered.getAccount(3100).getBalanceCents());
+            assertEquals(2L, store.getReplayedRecords());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * The BalanceSnapshotTest class contains unit tests for point-in-time balance snapshots
+ * taken with Bank.snapshotBalances.
+ *
+ * Responsibilities:
+ * - Verify the totals, per-type totals and top-N reports of a snapshot.
+ * - Verify that a snapshot is unaffected by transactions applied after it was taken.
+ * - Verify that snapshots taken during concurrent transfers and batches never catch one
+ *   halfway, including transfers between the shards of a ShardedTransactionProcessor.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.BalanceSnapshot;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.ShardedTransactionProcessor;
+import data_classes.TransferBatch;
+
+/**
+ * Unit tests for BalanceSnapshot.
+ */
+class BalanceSnapshotTest {
+
+    private Bank bank;
+    private List<BankAccount> accounts;
+
+    /**
+     * Opens accounts 2000 to 2009; even numbers are Checking and odd numbers Savings, and
+     * account 2000 + i opens with $100.00 + i dollars.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String type = i % 2 == 0 ? "Checking" : "Savings";
+            accounts.add(BankAccount.ofCents(2000 + i, type, "Ann", "Lee", 30, "1 Elm Street", 100_00L + i * 100L, bank));
+        }
+    }
+
+    /**
+     * Checks the reports of a snapshot, and that later transactions do not change it.
+     */
+    @Test
+    void testReports() throws Exception {
+        BalanceSnapshot snapshot = bank.snapshotBalances();
+        accounts.get(0).depositCents(50_00L);
+        accounts.get(9).transferCents(10_00L, accounts.get(1));
+
+        assertEquals(10, snapshot.getAccountCount());
+        assertEquals(1000_00L + 45_00L, snapshot.getTotalCents());
+        assertEquals(100_00L, snapshot.getBalanceCents(2000));
+        assertEquals(109_00L, snapshot.getBalanceCents(2009));
+        assertFalse(snapshot.containsAccount(1999));
+
+        Map<String, Long> byType = snapshot.getTotalsByType();
+        assertEquals(Long.valueOf(500_00L + 20_00L), byType.get("Checking"));
+        assertEquals(Long.valueOf(500_00L + 25_00L), byType.get("Savings"));
+        // the snapshot keeps the types the accounts had when it was taken
+        accounts.get(0).setAccType("Savings");
+        assertEquals(byType, snapshot.getTotalsByType());
+
+        List<BankAccount> top = snapshot.getTopAccounts(3);
+        assertEquals(3, top.size());
+        assertEquals(2009, top.get(0).getAccNumber());
+        assertEquals(2008, top.get(1).getAccNumber());
+        assertEquals(2007, top.get(2).getAccNumber());
+        assertEquals(10, snapshot.getTopAccounts(20).size());
+
+        BalanceSnapshot later = bank.snapshotBalances();
+        assertTrue(later.getEpoch() > snapshot.getEpoch());
+        assertEquals(1045_00L + 50_00L, later.getTotalCents());
+        assertEquals(2000, later.getTopAccounts(1).get(0).getAccNumber());
+    }
+
+    /**
+     * Takes snapshots while other threads run transfers and batches, which only move
+     * money, and checks that every snapshot holds exactly the opening total, with the
+     * bank locking and then optimistic.
+     */
+    @Test
+    void testSnapshotsDuringTransfersConserveTotal() throws Exception {
+        snapshotDuringTransfers();
+        bank.setOptimistic(true);
+        snapshotDuringTransfers();
+    }
+
+    /**
+     * Takes snapshots while a ShardedTransactionProcessor runs transfers across its
+     * shards, whose two halves are applied on different threads, and checks that every
+     * snapshot holds exactly the opening total, with the bank locking and then optimistic.
+     */
+    @Test
+    void testSnapshotsDuringShardedTransfers() throws Exception {
+        for (boolean optimistic : new boolean[] { false, true }) {
+            bank.setOptimistic(optimistic);
+            long total = bank.snapshotBalances().getTotalCents();
+            try (ShardedTransactionProcessor processor = new ShardedTransactionProcessor(bank, 3)) {
+                AtomicBoolean running = new AtomicBoolean(true);
+                Thread submitter = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        int from = random.nextInt(10);
+                        int to = (from + 1 + random.nextInt(9)) % 10;
+                        processor.transfer(2000 + from, 2000 + to, random.nextInt(1, 20_00));
+                    }
+                });
+                submitter.start();
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        assertEquals(total, bank.snapshotBalances().getTotalCents());
+                    }
+                }
+                finally {
+                    running.set(false);
+                    submitter.join();
+                }
+                assertTrue(processor.getCrossShardTransfers() > 0);
+            }
+            assertEquals(total, bank.snapshotBalances().getTotalCents());
+        }
+    }
+
+    private void snapshotDuringTransfers() throws Exception {
+        long total = bank.snapshotBalances().getTotalCents();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            boolean batches = t % 2 == 1;
+            workers.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int from = random.nextInt(10);
+                    int to = (from + 1 + random.nextInt(9)) % 10;
+                    if (batches) {
+                        bank.applyTransfers(new TransferBatch().add(2000 + from, 2000 + to, 1_00L).add(2000 + to, 2000 + from, 3_00L));
+                    }
+                    else {
+                        try {
+                            accounts.get(from).transferCents(random.nextInt(1, 20_00), accounts.get(to));
+                        }
+                        catch (IllegalWithdrawException e) {
+                            // declined transfers are expected once an account runs low
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(total, bank.snapshotBalances().getTotalCents());
+            }
+        }
+        finally {
+            running.set(false);
+            pool.shutdown();
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        assertEquals(total, bank.snapshotBalances().getTotalCents());
+    }
+}
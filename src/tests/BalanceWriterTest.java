@@ -0,0 +1,171 @@
+/**
+ * The BalanceWriterTest class contains unit tests for the BalanceWriter that writes
+ * account balances back to the database behind transactions.
+ *
+ * Batches are sent to stub JDBC objects that record the balance of every executed update
+ * per account and can be told to fail.
+ *
+ * Responsibilities:
+ * - Verify that repeated changes to one account become a single update of the latest balance.
+ * - Verify that a full batch is written without waiting for the flush interval.
+ * - Verify that failed writes are retried.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import driver_classes.BalanceWriter;
+import driver_classes.ConnectionPool;
+import driver_classes.DatabaseConfig;
+
+/**
+ * Unit tests for BalanceWriter.
+ */
+class BalanceWriterTest {
+
+    // latest balance written per account, and the number of updates executed
+    private final Map<Integer, BigDecimal> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger updates = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private ConnectionPool pool;
+    private Bank bank;
+    private BalanceWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ConnectionPool(new DatabaseConfig(new Properties()), this::openStub);
+        bank = new Bank();
+        bank.setBankID(101);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+        pool.close();
+    }
+
+    private BankAccount open(int accNumber) {
+        return BankAccount.ofCents(accNumber, "Checking", "John", "Doe", 30, "1 Main Street", 10_000L * 100, bank);
+    }
+
+    /**
+     * Tests that many changes to one account are written once, with the latest balance.
+     */
+    @Test
+    void testCoalescing() {
+        writer = new BalanceWriter(pool, bank, 100, 60_000, 1000);
+        BankAccount account = open(1000);
+        for (int i = 0; i < 250; i++) {
+            account.depositCents(1L);
+        }
+        assertEquals(1, writer.getPendingCount());
+        assertEquals(1, writer.flush());
+        assertEquals(1, updates.get());
+        assertEquals(new BigDecimal("10002.50"), stored.get(1000));
+        assertEquals(249, writer.getCoalescedCount());
+    }
+
+    /**
+     * Tests that reaching the batch size triggers a flush before the flush interval.
+     */
+    @Test
+    void testSizeTrigger() throws InterruptedException {
+        writer = new BalanceWriter(pool, bank, 10, 60_000, 1000);
+        List<BankAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            accounts.add(open(1000 + i));
+        }
+        for (BankAccount account : accounts) {
+            account.depositCents(5L);
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (updates.get() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(10, stored.size());
+        assertEquals(new BigDecimal("10000.05"), stored.get(1009));
+    }
+
+    /**
+     * Tests that accounts whose write failed are written on the next flush.
+     */
+    @Test
+    void testRetryAfterFailure() {
+        writer = new BalanceWriter(pool, bank, 100, 60_000, 1000);
+        open(1000).depositCents(1L);
+        open(1001).depositCents(1L);
+        failing.set(true);
+        assertEquals(0, writer.flush());
+        assertEquals(1, writer.getFailureCount());
+        assertEquals(2, writer.getPendingCount());
+
+        failing.set(false);
+        assertEquals(2, writer.flush());
+        assertEquals(0, writer.getPendingCount());
+        assertTrue(stored.containsKey(1001));
+    }
+
+
+    // stub JDBC objects
+
+    private Connection openStub() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement": return statement();
+                        case "isValid": return true;
+                        case "isClosed": return false;
+                        case "getAutoCommit": return true;
+                        default: return null;
+                    }
+                });
+    }
+
+    private PreparedStatement statement() {
+        Object[] row = new Object[3];
+        List<Object[]> batch = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setBigDecimal":
+                        case "setInt":
+                            row[(int) args[0] - 1] = args[1];
+                            return null;
+                        case "addBatch": batch.add(row.clone()); return null;
+                        case "executeBatch":
+                            if (failing.get()) {
+                                throw new SQLException("database unavailable");
+                            }
+                            for (Object[] update : batch) {
+                                stored.put((Integer) update[1], (BigDecimal) update[0]);
+                                updates.incrementAndGet();
+                            }
+                            return new int[batch.size()];
+                        default: return null;
+                    }
+                });
+    }
+}
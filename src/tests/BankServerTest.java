@@ -0,0 +1,108 @@
+/**
+ * The BankServerTest class contains unit tests for the BankServer HTTP front end.
+ *
+ * Each test starts a server for a fresh bank on a free localhost port and talks to it with
+ * the JDK's HttpClient.
+ *
+ * Responsibilities:
+ * - Verify opening an account, deposits, withdrawals, transfers and balance queries.
+ * - Verify the status codes returned for invalid requests.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.Bank;
+import driver_classes.BankServer;
+
+/**
+ * Unit tests for BankServer.
+ */
+class BankServerTest {
+
+    private Bank bank;
+    private BankServer server;
+    private HttpClient client;
+
+    /**
+     * Starts a server for an empty bank.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        bank = new Bank();
+        server = BankServer.start(bank, new InetSocketAddress("localhost", 0));
+        client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String form) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + path));
+        if (method.equals("POST")) {
+            request.header("Content-Type", "application/x-www-form-urlencoded").POST(HttpRequest.BodyPublishers.ofString(form));
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void open(int accNumber, String balance) throws Exception {
+        HttpResponse<String> response = send("POST", "/accounts", "accNumber=" + accNumber
+                + "&accType=Checking&firstName=Ann&lastName=Lee&age=30&address=1+Elm+Street&balance=" + balance);
+        assertEquals(201, response.statusCode());
+    }
+
+    /**
+     * Tests a full round of account operations over HTTP.
+     */
+    @Test
+    void testAccountOperations() throws Exception {
+        open(1234, "500.00");
+        open(5678, "100.00");
+        assertEquals("1 Elm Street", bank.getAccount(1234).getAddress());
+
+        assertEquals("{\"accNumber\":1234,\"balance\":\"550.25\"}", send("POST", "/accounts/1234/deposit", "amount=50.25").body());
+        assertEquals("{\"accNumber\":1234,\"balance\":\"500.25\"}", send("POST", "/accounts/1234/withdraw", "amount=50").body());
+        assertEquals("{\"accNumber\":1234,\"balance\":\"400.25\"}", send("POST", "/transfers", "from=1234&to=5678&amount=100").body());
+
+        HttpResponse<String> balance = send("GET", "/accounts/5678", null);
+        assertEquals(200, balance.statusCode());
+        assertEquals("{\"accNumber\":5678,\"balance\":\"200.00\"}", balance.body());
+    }
+
+    /**
+     * Tests that invalid requests are answered with the matching status code and leave
+     * balances unchanged.
+     */
+    @Test
+    void testErrors() throws Exception {
+        open(1234, "500.00");
+        assertEquals(404, send("GET", "/accounts/9999", null).statusCode());
+        assertEquals(400, send("GET", "/accounts/abc", null).statusCode());
+        assertEquals(405, send("GET", "/accounts/1234/deposit", null).statusCode());
+        assertEquals(400, send("POST", "/accounts/1234/deposit", "amount=-1").statusCode());
+        assertEquals(400, send("POST", "/accounts/1234/deposit", "").statusCode());
+        assertEquals(400, send("POST", "/accounts", "accNumber=1235&accType=Checking&firstName=Ann&lastName=Lee"
+                + "&age=12&address=1+Elm+Street&balance=500").statusCode());
+        HttpResponse<String> overdraw = send("POST", "/accounts/1234/withdraw", "amount=500.01");
+        assertEquals(409, overdraw.statusCode());
+        assertTrue(overdraw.body().contains("Insufficient funds"));
+        assertEquals(50_000L, bank.getAccount(1234).getBalanceCents());
+    }
+}
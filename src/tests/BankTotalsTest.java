@@ -0,0 +1,166 @@
+/**
+ * The BankTotalsTest class contains unit tests for the bank-wide totals a Bank keeps up to
+ * date as its accounts change: the total balance, and the balance and account count of
+ * each account type.
+ *
+ * Each test compares the totals the bank reports with the same figures computed by
+ * walking every account.
+ *
+ * Responsibilities:
+ * - Verify the totals after deposits, withdrawals, transfers, type changes and removals.
+ * - Verify the totals after concurrent transactions in locking and optimistic mode.
+ * - Verify the totals of a bank loaded from a mapped snapshot, before and after accounts are built.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.MappedAccountSnapshot;
+import data_classes.TransferBatch;
+
+/**
+ * Unit tests for the totals kept by Bank.
+ */
+class BankTotalsTest {
+
+    private Bank bank;
+    private List<BankAccount> accounts;
+
+    /**
+     * Opens accounts 3000 to 3019 with $200.00 each; even numbers are Checking and odd
+     * numbers Savings.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        accounts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            accounts.add(BankAccount.ofCents(3000 + i, i % 2 == 0 ? "Checking" : "Savings", "Ann", "Lee", 30, "1 Elm Street", 200_00L, bank));
+        }
+    }
+
+    /**
+     * Checks the totals after each kind of change to the accounts.
+     */
+    @Test
+    void testTotalsFollowChanges() throws Exception {
+        assertEquals(20 * 200_00L, bank.getTotalBalanceCents());
+        assertEquals(10, bank.getAccountCount("checking"));
+
+        accounts.get(0).depositCents(50_00L);
+        accounts.get(1).withdrawCents(20_00L);
+        accounts.get(2).transferCents(30_00L, accounts.get(3));
+        accounts.get(4).transferCents(30_00L, accounts.get(6));
+        bank.applyTransfers(new TransferBatch().add(3005, 3008, 15_00L));
+        accounts.get(10).setAccType("Savings");
+        bank.removeAccount(accounts.get(11));
+        BankAccount.ofCents(3100, "Checking", "Bob", "Ray", 40, "2 Elm Street", 500_00L, bank);
+        assertMatchesScan();
+
+        assertEquals(20 * 200_00L + 50_00L - 20_00L - 200_00L + 500_00L, bank.getTotalBalanceCents());
+        assertEquals(10, bank.getAccountCount("Checking"));
+        assertEquals(10, bank.getAccountCount("SAVINGS"));
+    }
+
+    /**
+     * Runs deposits, withdrawals, transfers and batches from several threads, in locking
+     * and then optimistic mode, and checks that the totals match a scan afterwards.
+     */
+    @Test
+    void testTotalsUnderConcurrency() throws Exception {
+        runConcurrently();
+        assertMatchesScan();
+        bank.setOptimistic(true);
+        runConcurrently();
+        assertMatchesScan();
+    }
+
+    /**
+     * Loads a bank from a mapped snapshot and checks its totals before any account is
+     * built, after some are built and changed, and after one is removed.
+     */
+    @Test
+    void testTotalsOfMappedSnapshot() throws Exception {
+        Path file = Files.createTempFile("totals-test", ".dat");
+        try {
+            accounts.get(0).depositCents(1_00L);
+            MappedAccountSnapshot.write(file, bank);
+            Bank restored = new Bank();
+            restored.loadSnapshot(MappedAccountSnapshot.open(file));
+            restored.getAccount(3002).depositCents(5_00L);
+            assertEquals(20 * 200_00L + 1_00L + 5_00L, restored.getTotalBalanceCents());
+            assertEquals(10 * 200_00L + 1_00L + 5_00L, restored.getTotalBalanceCents("checking"));
+            restored.getAccount(3003).withdrawCents(3_00L);
+            restored.removeAccount(restored.getAccount(3000));
+            assertEquals(20 * 200_00L + 5_00L - 3_00L - 200_00L, restored.getTotalBalanceCents());
+            assertEquals(9, restored.getAccountCount("checking"));
+            assertEquals(10, restored.getAccountCount("savings"));
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void assertMatchesScan() {
+        long[] scanned = new long[4];
+        bank.forEachAccount(account -> {
+            int type = account.getAccType().equalsIgnoreCase("savings") ? 1 : 0;
+            scanned[type] += account.getBalanceCents();
+            scanned[2 + type]++;
+        });
+        assertEquals(scanned[0] + scanned[1], bank.getTotalBalanceCents());
+        assertEquals(scanned[0], bank.getTotalBalanceCents("Checking"));
+        assertEquals(scanned[1], bank.getTotalBalanceCents("Savings"));
+        assertEquals(scanned[2], bank.getAccountCount("Checking"));
+        assertEquals(scanned[3], bank.getAccountCount("Savings"));
+    }
+
+    private void runConcurrently() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            workers.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    BankAccount from = accounts.get(random.nextInt(accounts.size()));
+                    BankAccount to = accounts.get(random.nextInt(accounts.size()));
+                    try {
+                        switch (random.nextInt(4)) {
+                            case 0: from.depositCents(random.nextInt(1, 10_00)); break;
+                            case 1: from.withdrawCents(random.nextInt(1, 10_00)); break;
+                            case 2: from.transferCents(random.nextInt(1, 10_00), to); break;
+                            default:
+                                if (from != to) {
+                                    bank.applyTransfers(new TransferBatch().add(from.getAccNumber(), to.getAccNumber(), random.nextInt(1, 10_00)));
+                                }
+                        }
+                    }
+                    catch (IllegalWithdrawException e) {
+                        // declined withdrawals and transfers are expected once an account runs low
+                    }
+                }
+                return null;
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+    }
+}
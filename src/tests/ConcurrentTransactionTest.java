@@ -0,0 +1,170 @@
+/**
+ * The ConcurrentTransactionTest class contains multi-threaded stress tests for the
+ * BankAccount transaction methods.
+ *
+ * Several threads hammer a small set of accounts with deposits, withdrawals and
+ * transfers in random directions at the same time. Because transfers only move money
+ * between accounts, the total held by the bank must be exactly the opening total plus
+ * everything deposited minus everything withdrawn once all threads have finished. Lost
+ * updates or torn transfers show up as money appearing or disappearing, and a lock
+ * ordering mistake shows up as the test never finishing.
+ *
+ * Responsibilities:
+ * - Verify that concurrent transfers conserve the total amount of money.
+ * - Verify that concurrent deposits and withdrawals on one account are never lost.
+ * - Verify that opposing transfers between the same accounts cannot deadlock.
+ */
+
+package tests;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+
+/**
+ * Stress tests for concurrent deposit, withdraw and transfer operations.
+ */
+class ConcurrentTransactionTest {
+
+    private static final int ACCOUNT_COUNT = 20;
+    private static final int THREAD_COUNT = 8;
+    private static final int OPERATIONS_PER_THREAD = 2000;
+    private static final double OPENING_BALANCE = 1000.0;
+
+    private Bank bank;
+    private List<BankAccount> accounts;
+
+    /**
+     * Opens a fresh set of accounts before each test.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        bank = new Bank();
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accounts.add(new BankAccount(5000 + i, "Checking", "Stress", "Tester", 30, "1 Load Street", OPENING_BALANCE, bank));
+        }
+    }
+
+    /**
+     * Closes every account opened for the test.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        for (BankAccount account : accounts) {
+            account.close();
+        }
+    }
+
+    /**
+     * Runs random transfers between all accounts from several threads and verifies that
+     * the total balance across the bank is unchanged afterwards.
+     */
+    @Test
+    void testTransfersConserveTotal() throws Exception {
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                BankAccount from = accounts.get(random.nextInt(ACCOUNT_COUNT));
+                BankAccount to = accounts.get(random.nextInt(ACCOUNT_COUNT));
+                try {
+                    from.transferAmount(random.nextInt(1, 200), to);
+                }
+                catch (IllegalWithdrawException e) {
+                    // declined transfers are expected once an account runs low
+                }
+            }
+        });
+        assertEquals(ACCOUNT_COUNT * OPENING_BALANCE, totalBalance(), 0.001);
+        for (BankAccount account : accounts) {
+            assertTrue("negative balance on " + account.getAccNumber(), account.getBalance() >= 0.0);
+        }
+    }
+
+    /**
+     * Runs matching deposits and withdrawals against a single account from several
+     * threads and verifies that none of the updates are lost.
+     */
+    @Test
+    void testDepositsAndWithdrawalsAreNotLost() throws Exception {
+        BankAccount account = accounts.get(0);
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                account.depositAmount(10.0);
+                account.withdrawAmount(5.0);
+            }
+        });
+        assertEquals(OPENING_BALANCE + THREAD_COUNT * OPERATIONS_PER_THREAD * 5.0, account.getBalance(), 0.001);
+    }
+
+    /**
+     * Runs transfers in opposite directions between the same two accounts and verifies
+     * that every thread finishes and the pair still holds the same total.
+     */
+    @Test
+    void testOpposingTransfersDoNotDeadlock() throws Exception {
+        BankAccount first = accounts.get(0);
+        BankAccount second = accounts.get(1);
+        runConcurrently(() -> {
+            boolean forward = ThreadLocalRandom.current().nextBoolean();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    if (forward) {
+                        first.transferAmount(1.0, second);
+                    }
+                    else {
+                        second.transferAmount(1.0, first);
+                    }
+                }
+                catch (IllegalWithdrawException e) {
+                    // one side may be drained temporarily
+                }
+            }
+        });
+        assertEquals(2 * OPENING_BALANCE, first.getBalance() + second.getBalance(), 0.001);
+    }
+
+    private double totalBalance() {
+        double total = 0.0;
+        for (BankAccount account : accounts) {
+            total += account.getBalance();
+        }
+        return total;
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue("transactions did not finish, possible deadlock", pool.awaitTermination(60, TimeUnit.SECONDS));
+        for (Future<?> result : results) {
+            result.get();
+        }
+    }
+}
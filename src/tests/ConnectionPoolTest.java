@@ -0,0 +1,161 @@
+/**
+ * The ConnectionPoolTest class contains unit tests for the ConnectionPool used by
+ * DatabaseManager to lend out database connections.
+ *
+ * The pool is driven by a factory producing stub connections, so the tests do not need a
+ * database server. The same pool runs unchanged against an embedded in-memory database by
+ * pointing bank.db.url at it.
+ *
+ * Responsibilities:
+ * - Verify that returned connections are reused and closing a lease does not close them.
+ * - Verify that the pool is bounded and times out waiting callers.
+ * - Verify validation on borrow, maximum lifetime and idle eviction.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import driver_classes.ConnectionPool;
+import driver_classes.DatabaseConfig;
+
+/**
+ * Unit tests for ConnectionPool.
+ */
+class ConnectionPoolTest {
+
+    // state of one stub connection
+    private static final class Stub {
+        boolean closed;
+        boolean valid = true;
+    }
+
+    private final List<Stub> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private Connection openStub() {
+        Stub stub = new Stub();
+        opened.add(stub);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close": stub.closed = true; return null;
+                        case "isClosed": return stub.closed;
+                        case "isValid": return stub.valid && !stub.closed;
+                        case "getAutoCommit": return true;
+                        default: return null;
+                    }
+                });
+    }
+
+    private ConnectionPool newPool(int maxSize, long timeoutMs, long idleMs, long lifetimeMs) {
+        Properties properties = new Properties();
+        properties.setProperty(DatabaseConfig.POOL_MAX_SIZE, Integer.toString(maxSize));
+        properties.setProperty(DatabaseConfig.POOL_BORROW_TIMEOUT, Long.toString(timeoutMs));
+        properties.setProperty(DatabaseConfig.POOL_IDLE_TIMEOUT, Long.toString(idleMs));
+        properties.setProperty(DatabaseConfig.POOL_MAX_LIFETIME, Long.toString(lifetimeMs));
+        pool = new ConnectionPool(new DatabaseConfig(properties), this::openStub);
+        return pool;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Tests that a returned connection is reused and that closing a lease keeps it open.
+     */
+    @Test
+    void testReuse() throws SQLException {
+        newPool(2, 1000, 60_000, 60_000);
+        Connection lease = pool.getConnection();
+        assertEquals(1, pool.getActiveCount());
+        lease.close();
+        assertTrue(lease.isClosed());
+        assertThrows(SQLException.class, () -> lease.createStatement());
+        assertFalse(opened.get(0).closed);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        pool.getConnection().close();
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(2, pool.getBorrowCount());
+    }
+
+    /**
+     * Tests that no more than the maximum number of connections are lent out and that a
+     * caller waiting for one times out.
+     */
+    @Test
+    void testBoundAndTimeout() throws SQLException {
+        newPool(2, 50, 60_000, 60_000);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+        assertEquals(1, pool.getTimeoutCount());
+        assertTrue(pool.getMaxWaitMillis() >= 40.0);
+
+        first.close();
+        assertNotNull(pool.getConnection());
+        second.close();
+        assertEquals(2, opened.size());
+    }
+
+    /**
+     * Tests that a connection failing validation is replaced when borrowed.
+     */
+    @Test
+    void testValidationOnBorrow() throws SQLException {
+        newPool(2, 1000, 60_000, 60_000);
+        pool.getConnection().close();
+        opened.get(0).valid = false;
+        pool.getConnection().close();
+        assertEquals(2, opened.size());
+        assertTrue(opened.get(0).closed);
+        assertEquals(1, pool.getDiscardedCount());
+    }
+
+    /**
+     * Tests that connections past the idle timeout or their maximum lifetime are closed.
+     */
+    @Test
+    void testIdleEvictionAndMaxLifetime() throws Exception {
+        newPool(2, 1000, 60_000, 60_000);
+        pool.getConnection().close();
+        assertEquals(0, pool.evictIdle());
+        pool.close();
+
+        newPool(2, 1000, 20, 60_000);
+        pool.getConnection().close();
+        Thread.sleep(40);
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(opened.get(1).closed);
+        pool.close();
+
+        newPool(2, 1000, 60_000, 20);
+        Connection lease = pool.getConnection();
+        Thread.sleep(40);
+        lease.close();
+        assertTrue(opened.get(2).closed);
+        assertEquals(0, pool.getIdleCount());
+    }
+}
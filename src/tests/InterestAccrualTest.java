@@ -0,0 +1,203 @@
+/**
+ * The InterestAccrualTest class contains unit tests for InterestAccrual: the interest
+ * each account is credited with, how a run is recorded and reported, runs made while
+ * deposits are in progress, and the schedule.
+ *
+ * Responsibilities:
+ * - Verify that savings accounts earn one period's interest, rounded down to the cent,
+ *   and checking accounts earn nothing.
+ * - Verify that interest reaches the bank's totals, the accounts' statements and the
+ *   bank's listeners, a chunk at a time as it is posted.
+ * - Verify that deposits made during a run are neither lost nor blocked out.
+ * - Verify that a started schedule runs until it is stopped.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.AccountStatement;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.InterestAccrual;
+import data_classes.MetricsTransactionListener;
+import data_classes.TransactionJournal;
+import data_classes.TransactionType;
+
+/**
+ * Unit tests for InterestAccrual.
+ */
+class InterestAccrualTest {
+
+    private Bank bank;
+    private BankAccount savings;
+    private BankAccount checking;
+    private BankAccount small;
+
+    /**
+     * Opens savings account 7300 with $100,000.00, checking account 7301 with $1,000.00
+     * and savings account 7302 with $101.00.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        savings = BankAccount.ofCents(7300, "Savings", "Ann", "Lee", 30, "1 Elm Street", 100_000_00L, bank);
+        checking = BankAccount.ofCents(7301, "Checking", "Bob", "Ray", 40, "2 Elm Street", 1_000_00L, bank);
+        small = BankAccount.ofCents(7302, "savings", "Cy", "Day", 50, "3 Elm Street", 101_00L, bank);
+    }
+
+    /**
+     * Posts a month of 12% a year and checks each account, the totals, the statement and
+     * the listener.
+     */
+    @Test
+    void testAccrue() {
+        TransactionJournal.getInstance().setEnabled(true);
+        AtomicInteger events = new AtomicInteger();
+        bank.addTransactionListener((accNumber, type, amountCents, balanceCents, counterparty) -> {
+            if (type == TransactionType.INTEREST) {
+                events.incrementAndGet();
+            }
+        });
+        MetricsTransactionListener metrics = new MetricsTransactionListener();
+        bank.addTransactionListener(metrics);
+        long savingsTotal = bank.getTotalBalanceCents("savings");
+
+        InterestAccrual interest = new InterestAccrual(bank, 1200, 12);
+        InterestAccrual.Result result = interest.accrue();
+        assertEquals(101_000_00L, savings.getBalanceCents());
+        assertEquals(1_000_00L, checking.getBalanceCents());
+        // 1% of $101.00 is $1.01, 101 cents exactly
+        assertEquals(102_01L, small.getBalanceCents());
+        assertEquals(2, result.getAccountsCredited());
+        assertEquals(1_000_00L + 1_01L, result.getInterestCents());
+        assertEquals(savingsTotal + result.getInterestCents(), bank.getTotalBalanceCents("savings"));
+        assertEquals(2, events.get());
+        assertEquals(2, metrics.getCount(TransactionType.INTEREST));
+        assertEquals(result.getInterestCents(), metrics.getTotalCents(TransactionType.INTEREST));
+
+        AccountStatement statement = savings.getStatement(1);
+        assertEquals(1, statement.size());
+        assertEquals(TransactionType.INTEREST, statement.getType(0));
+        assertEquals(1_000_00L, statement.getAmountCents(0));
+        assertEquals(101_000_00L, statement.getBalanceCents(0));
+
+        // a fraction of a cent is not paid
+        interest.setAnnualRateBasisPoints(1);
+        interest.accrue();
+        assertEquals(102_01L, small.getBalanceCents());
+        assertEquals(101_000_84L, savings.getBalanceCents());
+
+        assertThrows(IllegalArgumentException.class, () -> interest.setAnnualRateBasisPoints(-1));
+        assertThrows(IllegalArgumentException.class, () -> new InterestAccrual(bank, 100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new InterestAccrual(null, 100, 12));
+    }
+
+    /**
+     * Runs an accrual over several chunks of accounts on one thread, and checks the first
+     * interest is journaled and reported before the later chunks have been credited.
+     */
+    @Test
+    void testRecordedPerChunk() {
+        TransactionJournal.getInstance().setEnabled(true);
+        BankAccount[] accounts = new BankAccount[30_000];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = BankAccount.restore(7_400_000 + i, "Savings", "Chunk", "Tester", 30, "1 Load Street", 10_000_00L, bank);
+        }
+        AtomicInteger creditedAtFirstReport = new AtomicInteger(-1);
+        bank.addTransactionListener((accNumber, type, amountCents, balanceCents, counterparty) -> {
+            if (type == TransactionType.INTEREST && creditedAtFirstReport.get() < 0) {
+                int credited = 0;
+                for (BankAccount account : accounts) {
+                    if (account.getBalanceCents() > 10_000_00L) {
+                        credited++;
+                    }
+                }
+                creditedAtFirstReport.set(credited);
+                assertEquals(TransactionType.INTEREST, bank.getAccount(accNumber).getStatement(1).getType(0));
+            }
+        });
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            InterestAccrual.Result result = new InterestAccrual(bank, 1200, 12, single).accrue();
+            assertEquals(accounts.length + 2, result.getAccountsCredited());
+        }
+        finally {
+            single.shutdown();
+        }
+        assertTrue(creditedAtFirstReport.get() > 0);
+        assertTrue(creditedAtFirstReport.get() < accounts.length);
+    }
+
+    /**
+     * Runs accruals while several threads deposit into savings accounts, and checks every
+     * deposit and every cent of interest reported is in the balances and totals afterwards.
+     */
+    @Test
+    void testDepositsDuringAccrual() throws Exception {
+        TransactionJournal.getInstance().setEnabled(false);
+        BankAccount[] accounts = new BankAccount[500];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = BankAccount.restore(7_300_000 + i, "Savings", "Stress", "Tester", 30, "1 Load Street", 10_000_00L, bank);
+        }
+        long opening = bank.getTotalBalanceCents("savings");
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong deposited = new AtomicLong();
+        Thread[] depositors = new Thread[4];
+        for (int t = 0; t < depositors.length; t++) {
+            int first = t;
+            depositors[t] = new Thread(() -> {
+                for (int i = first; running.get(); i = (i + depositors.length) % accounts.length) {
+                    accounts[i].depositCents(1_00L);
+                    deposited.addAndGet(1_00L);
+                }
+            });
+            depositors[t].start();
+        }
+        InterestAccrual interest = new InterestAccrual(bank, 500, 365);
+        long paid = 0L;
+        for (int run = 0; run < 20; run++) {
+            paid += interest.accrue().getInterestCents();
+        }
+        running.set(false);
+        for (Thread depositor : depositors) {
+            depositor.join();
+        }
+
+        long total = savings.getBalanceCents() + small.getBalanceCents();
+        for (BankAccount account : accounts) {
+            total += account.getBalanceCents();
+        }
+        assertTrue(deposited.get() > 0L);
+        assertEquals(opening + deposited.get() + paid, total);
+        assertEquals(total, bank.getTotalBalanceCents("savings"));
+    }
+
+    /**
+     * Starts a schedule and waits for it to run.
+     */
+    @Test
+    void testSchedule() throws Exception {
+        TransactionJournal.getInstance().setEnabled(false);
+        InterestAccrual interest = new InterestAccrual(bank, 1200, 12);
+        interest.start(20L);
+        for (int wait = 0; wait < 500 && savings.getBalanceCents() < 102_000_00L; wait++) {
+            Thread.sleep(10L);
+        }
+        interest.stop();
+        assertNotNull(interest.getLastResult());
+        assertTrue(savings.getBalanceCents() >= 102_010_00L);
+        assertThrows(IllegalArgumentException.class, () -> interest.start(0L));
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * The MappedAccountSnapshotTest class contains unit tests for the MappedAccountSnapshot
+ * that lets a bank come online from a memory-mapped file and build its accounts lazily.
+ *
+ * Each test writes a bank to a snapshot file, loads the snapshot into a fresh bank and
+ * checks what the bank reports before and after accounts are looked up.
+ *
+ * Responsibilities:
+ * - Verify that accounts are found and built with the fields and balances written.
+ * - Verify that the account count is right before any account is built.
+ * - Verify that removed accounts stay removed and that duplicate numbers are rejected.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.MappedAccountSnapshot;
+
+/**
+ * Unit tests for MappedAccountSnapshot.
+ */
+class MappedAccountSnapshotTest {
+
+    private Path file;
+    private Bank restored;
+
+    /**
+     * Writes a bank of 100 accounts, numbered 5000 to 5198 in steps of two, and loads the
+     * snapshot into a fresh bank.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.createTempFile("snapshot-test", ".dat");
+        Bank bank = new Bank();
+        for (int i = 99; i >= 0; i--) {
+            BankAccount.restore(5000 + 2 * i, "Checking", "Ann", "Lee" + i, 20 + i, i + " Mill Road", 1000L * i, bank);
+        }
+        assertEquals(100, MappedAccountSnapshot.write(file, bank));
+        restored = new Bank();
+        restored.loadSnapshot(MappedAccountSnapshot.open(file));
+    }
+
+    /**
+     * Deletes the snapshot file.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Tests that an account is built on first lookup with the fields and balance written,
+     * and that later lookups return the same object.
+     */
+    @Test
+    void testLazyLookup() {
+        assertEquals(100, restored.getAccountCount());
+        BankAccount account = restored.getAccount(5084);
+        assertEquals("Lee42", account.getLastName());
+        assertEquals("42 Mill Road", account.getAddress());
+        assertEquals(62, account.getAge());
+        assertEquals(42_000L, account.getBalanceCents());
+        assertSame(account, restored.getAccount(5084));
+        assertNull(restored.getAccount(5085));
+        assertFalse(restored.containsAccount(5200));
+        assertTrue(restored.containsAccount(5198));
+        assertEquals(100, restored.getAccountCount());
+    }
+
+    /**
+     * Tests that a removed account is not built again from the file, and that numbers
+     * still in the snapshot cannot be used for new accounts.
+     */
+    @Test
+    void testRemoveAndAdd() {
+        BankAccount account = restored.getAccount(5010);
+        account.depositCents(1L);
+        restored.removeAccount(account);
+        assertNull(restored.getAccount(5010));
+        assertEquals(99, restored.getAccountCount());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BankAccount.ofCents(5012, "Savings", "Bo", "Ng", 30, "1 Elm Street", 100_00L, restored));
+        BankAccount replacement = BankAccount.ofCents(5010, "Savings", "Bo", "Ng", 30, "1 Elm Street", 100_00L, restored);
+        assertSame(replacement, restored.getAccount(5010));
+        assertEquals(100, restored.getAccountCount());
+    }
+
+    /**
+     * Tests that iterating the bank visits every account, built or not.
+     */
+    @Test
+    void testForEachAccount() {
+        restored.getAccount(5000).depositCents(7L);
+        long[] total = new long[1];
+        int[] visited = new int[1];
+        restored.forEachAccount(account -> {
+            total[0] += account.getBalanceCents();
+            visited[0]++;
+        });
+        assertEquals(100, visited[0]);
+        assertEquals(1000L * 99 * 100 / 2 + 7L, total[0]);
+        assertEquals(100, restored.getAccountCount());
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * The OptimisticTransactionTest class contains multi-threaded stress tests for a Bank in
+ * optimistic mode, where transactions commit by compare-and-set on each account's version
+ * stamp instead of taking locks.
+ *
+ * As in ConcurrentTransactionTest, money must be neither created nor lost however the
+ * threads interleave, and no balance may go below zero. The tests also mix optimistic
+ * transfers with TransferBatch applies, which claim every account in the batch, and check
+ * the conflict and retry counters the bank keeps.
+ *
+ * Responsibilities:
+ * - Verify that concurrent optimistic transfers conserve the total amount of money.
+ * - Verify that concurrent optimistic deposits and withdrawals on one account are never lost.
+ * - Verify that batches and optimistic transfers running together conserve the total.
+ */
+
+package tests;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransferBatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+
+/**
+ * Stress tests for optimistic deposit, withdraw, transfer and batch operations.
+ */
+class OptimisticTransactionTest {
+
+    private static final int ACCOUNT_COUNT = 20;
+    private static final int THREAD_COUNT = 8;
+    private static final int OPERATIONS_PER_THREAD = 2000;
+    private static final long OPENING_BALANCE = 1000_00L;
+
+    private Bank bank;
+    private List<BankAccount> accounts;
+
+    /**
+     * Opens a fresh set of accounts in an optimistic bank before each test.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        bank = new Bank();
+        bank.setOptimistic(true);
+        accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            accounts.add(BankAccount.ofCents(7000 + i, "Checking", "Optimistic", "Tester", 30, "1 Retry Road", OPENING_BALANCE, bank));
+        }
+    }
+
+    /**
+     * Closes every account opened for the test.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        for (BankAccount account : accounts) {
+            account.close();
+        }
+    }
+
+    /**
+     * Runs random transfers between all accounts from several threads and verifies that
+     * the total balance is unchanged and no account went negative.
+     */
+    @Test
+    void testTransfersConserveTotal() throws Exception {
+        assertTrue(bank.isOptimistic());
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                BankAccount from = accounts.get(random.nextInt(ACCOUNT_COUNT));
+                BankAccount to = accounts.get(random.nextInt(ACCOUNT_COUNT));
+                try {
+                    from.transferCents(random.nextInt(1, 200_00), to);
+                }
+                catch (IllegalWithdrawException e) {
+                    // declined transfers are expected once an account runs low
+                }
+            }
+        });
+        assertEquals(ACCOUNT_COUNT * OPENING_BALANCE, totalBalanceCents());
+        for (BankAccount account : accounts) {
+            assertTrue("negative balance on " + account.getAccNumber(), account.getBalanceCents() >= 0L);
+        }
+        assertTrue(bank.getOptimisticRetries() >= bank.getOptimisticConflicts());
+    }
+
+    /**
+     * Runs matching deposits and withdrawals against a single account from several
+     * threads and verifies that none of the updates are lost.
+     */
+    @Test
+    void testDepositsAndWithdrawalsAreNotLost() throws Exception {
+        BankAccount account = accounts.get(0);
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                account.depositCents(10_00L);
+                account.withdrawCents(5_00L);
+            }
+        });
+        assertEquals(OPENING_BALANCE + THREAD_COUNT * OPERATIONS_PER_THREAD * 5_00L, account.getBalanceCents());
+    }
+
+    /**
+     * Applies batches on some threads while others transfer optimistically, and verifies
+     * that the total balance is unchanged.
+     */
+    @Test
+    void testBatchesAndTransfersConserveTotal() throws Exception {
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            boolean batches = random.nextBoolean();
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                if (batches) {
+                    TransferBatch batch = new TransferBatch();
+                    for (int k = 0; k < 10; k++) {
+                        int from = random.nextInt(ACCOUNT_COUNT);
+                        int to = (from + 1 + random.nextInt(ACCOUNT_COUNT - 1)) % ACCOUNT_COUNT;
+                        batch.add(7000 + from, 7000 + to, random.nextInt(1, 50_00)).newGroup();
+                    }
+                    bank.applyTransfers(batch);
+                }
+                else {
+                    for (int k = 0; k < 10; k++) {
+                        try {
+                            accounts.get(random.nextInt(ACCOUNT_COUNT)).transferCents(random.nextInt(1, 50_00), accounts.get(random.nextInt(ACCOUNT_COUNT)));
+                        }
+                        catch (IllegalWithdrawException e) {
+                            // declined transfers are expected once an account runs low
+                        }
+                    }
+                }
+            }
+        });
+        assertEquals(ACCOUNT_COUNT * OPENING_BALANCE, totalBalanceCents());
+        bank.setOptimistic(false);
+        assertFalse(bank.isOptimistic());
+    }
+
+    private long totalBalanceCents() {
+        long total = 0L;
+        for (BankAccount account : accounts) {
+            total += account.getBalanceCents();
+        }
+        return total;
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue("transactions did not finish, possible livelock", pool.awaitTermination(60, TimeUnit.SECONDS));
+        for (Future<?> result : results) {
+            result.get();
+        }
+    }
+}
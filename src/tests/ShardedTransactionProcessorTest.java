@@ -0,0 +1,269 @@
+/**
+ * The ShardedTransactionProcessorTest class contains unit tests for the
+ * ShardedTransactionProcessor that runs a bank's transactions on single-writer shards.
+ *
+ * Responsibilities:
+ * - Verify that concurrent deposits and withdrawals routed to the shards are never lost.
+ * - Verify that transfers within and across shards conserve the total amount of money.
+ * - Verify that declined and unknown-account transactions complete exceptionally.
+ * - Verify that credits a balance cannot hold are rejected, and a transfer's payer repaid.
+ * - Verify that the bank's totals by account type stay right while accounts change type
+ *   under the shards.
+ * - Verify that shards with full queues keep passing transfers to each other, and that
+ *   every future completes when the processor is closed mid-flight.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.ShardedTransactionProcessor;
+
+/**
+ * Unit tests for ShardedTransactionProcessor.
+ */
+class ShardedTransactionProcessorTest {
+
+    private static final int ACCOUNTS = 40;
+
+    private Bank bank;
+    private ShardedTransactionProcessor processor;
+
+    /**
+     * Opens accounts 1000 to 1039 with $100.00 each and starts a processor with four shards.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BankAccount.ofCents(1000 + i, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+        }
+        processor = new ShardedTransactionProcessor(bank, 4);
+    }
+
+    /**
+     * Stops the processor.
+     */
+    @AfterEach
+    void tearDown() {
+        processor.close();
+    }
+
+    /**
+     * Tests that deposits and withdrawals submitted from several threads all apply.
+     */
+    @Test
+    void testDepositsAndWithdrawals() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            submitters.add(executor.submit(() -> {
+                List<CompletableFuture<Long>> results = new ArrayList<>();
+                for (int i = 0; i < 2000; i++) {
+                    int account = 1000 + i % ACCOUNTS;
+                    results.add(processor.deposit(account, 3L));
+                    results.add(processor.withdraw(account, 1L));
+                }
+                results.forEach(CompletableFuture::join);
+                return null;
+            }));
+        }
+        for (Future<?> submitter : submitters) {
+            submitter.get();
+        }
+        executor.shutdown();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertEquals(100_00L + 4 * 50 * 2L, bank.getAccount(1000 + i).getBalanceCents());
+        }
+    }
+
+    /**
+     * Tests that a deposit, and transfers from the same shard and from another one, into
+     * an account too full to hold them are rejected, and the payers keep their money.
+     */
+    @Test
+    void testBalanceOverflow() {
+        long nearlyFull = Long.MAX_VALUE - 5_00L;
+        BankAccount full = BankAccount.ofCents(1040, "Savings", "Cy", "Day", 50, "3 Elm Street", nearlyFull, bank);
+        int sameShard = 0;
+        int otherShard = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            if (processor.shardOf(1000 + i) == processor.shardOf(1040)) {
+                sameShard = 1000 + i;
+            }
+            else {
+                otherShard = 1000 + i;
+            }
+        }
+        assertTrue(sameShard != 0 && otherShard != 0);
+
+        CompletionException e = assertThrows(CompletionException.class, () -> processor.deposit(1040, 6_00L).join());
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        for (int payer : new int[] { sameShard, otherShard }) {
+            e = assertThrows(CompletionException.class, () -> processor.transfer(payer, 1040, 6_00L).join());
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertEquals(100_00L, bank.getAccount(payer).getBalanceCents());
+        }
+        assertEquals(nearlyFull, full.getBalanceCents());
+        assertEquals(Long.MAX_VALUE, (long) processor.deposit(1040, 5_00L).join());
+    }
+
+    /**
+     * Tests that random transfers, many of them across shards and some declined, neither
+     * create nor destroy money.
+     */
+    @Test
+    void testTransfersConserveMoney() {
+        List<CompletableFuture<Long>> results = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 5000; i++) {
+            int from = 1000 + random.nextInt(ACCOUNTS);
+            int to = 1000 + (from - 1000 + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            results.add(processor.transfer(from, to, 1 + random.nextInt(80_00)));
+        }
+        int declined = 0;
+        for (CompletableFuture<Long> result : results) {
+            try {
+                result.join();
+            }
+            catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalWithdrawException);
+                declined++;
+            }
+        }
+        long total = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            long balance = bank.getAccount(1000 + i).getBalanceCents();
+            assertTrue(balance >= 0L);
+            total += balance;
+        }
+        assertEquals(ACCOUNTS * 100_00L, total);
+        assertTrue(declined > 0);
+        assertTrue(processor.getCrossShardTransfers() > 0);
+    }
+
+    /**
+     * Tests that overdrawing and unknown accounts fail the returned future.
+     */
+    @Test
+    void testFailures() {
+        CompletionException overdraw = assertThrows(CompletionException.class,
+                () -> processor.withdraw(1000, 100_01L).join());
+        assertTrue(overdraw.getCause() instanceof IllegalWithdrawException);
+        CompletionException unknown = assertThrows(CompletionException.class,
+                () -> processor.transfer(1000, 9999, 1L).join());
+        assertTrue(unknown.getCause() instanceof IllegalArgumentException);
+        assertEquals(100_00L, processor.deposit(1000, 0L).join().longValue());
+    }
+
+    /**
+     * Tests that deposits, withdrawals and transfers running on the shards while other
+     * threads switch accounts between checking and savings leave the bank's totals by
+     * type equal to the balances of each type.
+     */
+    @Test
+    void testTotalsWhileTypesChange() throws Exception {
+        Thread switcher = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                bank.getAccount(1000 + i % ACCOUNTS).setAccType(i / ACCOUNTS % 2 == 0 ? "Savings" : "Checking");
+            }
+        });
+        switcher.start();
+        List<CompletableFuture<Long>> results = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+            int account = 1000 + random.nextInt(ACCOUNTS);
+            switch (i % 3) {
+                case 0:
+                    results.add(processor.deposit(account, 1 + random.nextInt(5_00)));
+                    break;
+                case 1:
+                    results.add(processor.withdraw(account, 1 + random.nextInt(5_00)));
+                    break;
+                default:
+                    results.add(processor.transfer(account, 1000 + (account - 1000 + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS, 1 + random.nextInt(5_00)));
+                    break;
+            }
+        }
+        switcher.join();
+        for (CompletableFuture<Long> result : results) {
+            result.handle((balance, error) -> null).join();
+        }
+        long checking = 0L;
+        long savings = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BankAccount account = bank.getAccount(1000 + i);
+            if (account.getAccType().equalsIgnoreCase("Savings")) {
+                savings += account.getBalanceCents();
+            }
+            else {
+                checking += account.getBalanceCents();
+            }
+        }
+        assertEquals(checking, bank.getTotalBalanceCents("checking"));
+        assertEquals(savings, bank.getTotalBalanceCents("savings"));
+    }
+
+    /**
+     * Tests that cross-shard transfers through queues of one slot neither deadlock nor
+     * lose money, and that closing while submitters are still running completes every
+     * future that was handed out.
+     */
+    @Test
+    void testFullQueuesAndClose() throws Exception {
+        ShardedTransactionProcessor small = new ShardedTransactionProcessor(bank, 2, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<CompletableFuture<Long>>>> submitters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            submitters.add(executor.submit(() -> {
+                List<CompletableFuture<Long>> results = new ArrayList<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < 20_000; i++) {
+                        // even accounts and odd accounts sit on different shards
+                        int from = 1000 + random.nextInt(ACCOUNTS);
+                        results.add(small.transfer(from, from % 2 == 0 ? from + 1 : from - 1, 1 + random.nextInt(5_00)));
+                    }
+                }
+                catch (IllegalStateException e) {
+                    // closed underneath the submitter
+                }
+                return results;
+            }));
+        }
+        Thread.sleep(50L);
+        small.close();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        for (Future<List<CompletableFuture<Long>>> submitter : submitters) {
+            for (CompletableFuture<Long> result : submitter.get()) {
+                assertTrue(result.isDone());
+            }
+        }
+        long total = 0L;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            total += bank.getAccount(1000 + i).getBalanceCents();
+        }
+        assertEquals(ACCOUNTS * 100_00L, total);
+        assertThrows(IllegalStateException.class, () -> small.deposit(1000, 1L));
+    }
+}
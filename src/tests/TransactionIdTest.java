@@ -0,0 +1,208 @@
+/**
+ * The TransactionIdTest class contains unit tests for transactions made with a
+ * client-supplied id: depositOnce, withdrawOnce and transferOnce, and the
+ * TransactionIdCache that remembers their results.
+ *
+ * Ids are drawn at random, since the journal the cache is restored from is shared by
+ * every test run.
+ *
+ * Responsibilities:
+ * - Verify that a retried transaction returns the original result without being applied again.
+ * - Verify that concurrent attempts with one id apply it once.
+ * - Verify that an id stays applied, and is journaled, when reporting its transaction
+ *   fails, and that an id reused for a different transaction is rejected.
+ * - Verify that ids are restored from the journal, expire after the window and are bounded.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionIdCache;
+import data_classes.TransactionJournal;
+
+/**
+ * Unit tests for idempotent transactions.
+ */
+class TransactionIdTest {
+
+    private Bank bank;
+    private BankAccount account;
+    private BankAccount other;
+
+    /**
+     * Opens accounts 7100 and 7101 with $100.00 each.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        account = BankAccount.ofCents(7100, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+        other = BankAccount.ofCents(7101, "Savings", "Bob", "Ray", 40, "2 Elm Street", 100_00L, bank);
+    }
+
+    private static long newId() {
+        return ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Repeats each kind of transaction with its id and checks it is applied once.
+     */
+    @Test
+    void testRetries() throws Exception {
+        long deposit = newId();
+        assertEquals(105_00L, account.depositOnce(deposit, 5_00L));
+        assertEquals(105_00L, account.depositOnce(deposit, 5_00L));
+        assertEquals(105_00L, account.getBalanceCents());
+
+        long withdrawal = newId();
+        assertEquals(95_00L, account.withdrawOnce(withdrawal, 10_00L));
+        account.depositCents(50_00L);
+        assertEquals(95_00L, account.withdrawOnce(withdrawal, 10_00L));
+        assertEquals(145_00L, account.getBalanceCents());
+
+        long transfer = newId();
+        assertEquals(125_00L, account.transferOnce(transfer, 20_00L, other));
+        assertEquals(125_00L, account.transferOnce(transfer, 20_00L, other));
+        assertEquals(125_00L, account.getBalanceCents());
+        assertEquals(120_00L, other.getBalanceCents());
+
+        // a declined transaction stays declined, even once the funds are there
+        long declined = newId();
+        assertThrows(IllegalWithdrawException.class, () -> other.withdrawOnce(declined, 500_00L));
+        other.depositCents(500_00L);
+        assertThrows(IllegalWithdrawException.class, () -> other.withdrawOnce(declined, 500_00L));
+        assertEquals(620_00L, other.getBalanceCents());
+
+        assertThrows(IllegalArgumentException.class, () -> account.depositOnce(0L, 1_00L));
+    }
+
+    /**
+     * Sends one transfer from several threads at once and checks it is applied once.
+     */
+    @Test
+    void testConcurrentAttempts() throws Exception {
+        int threads = 8;
+        long txId = newId();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return account.transferOnce(txId, 30_00L, other);
+            }));
+        }
+        start.countDown();
+        for (Future<Long> result : results) {
+            assertEquals(70_00L, (long) result.get());
+        }
+        pool.shutdown();
+        assertEquals(70_00L, account.getBalanceCents());
+        assertEquals(130_00L, other.getBalanceCents());
+    }
+
+    /**
+     * Makes transactions with the journal recording, then checks a new cache restored
+     * from the journal still knows them.
+     */
+    @Test
+    void testRestoreFromJournal() throws Exception {
+        TransactionJournal journal = TransactionJournal.getInstance();
+        journal.setEnabled(true);
+        long deposit = newId();
+        long declined = newId();
+        account.depositOnce(deposit, 5_00L);
+        assertThrows(IllegalWithdrawException.class, () -> account.transferOnce(declined, 1_000_00L, other));
+
+        TransactionIdCache restored = new TransactionIdCache();
+        assertTrue(restored.restore(journal) >= 2L);
+        bank.setTransactionIdCache(restored);
+        assertEquals(105_00L, account.depositOnce(deposit, 5_00L));
+        account.depositCents(1_000_00L);
+        assertThrows(IllegalWithdrawException.class, () -> account.transferOnce(declined, 1_000_00L, other));
+        assertEquals(1_105_00L, account.getBalanceCents());
+        assertEquals(100_00L, other.getBalanceCents());
+    }
+
+    /**
+     * Makes a listener fail after a deposit's balance is written and checks the retry
+     * gets the deposit's result instead of applying it again, also from a cache restored
+     * from the journal.
+     */
+    @Test
+    void testFailureAfterWrite() {
+        TransactionJournal journal = TransactionJournal.getInstance();
+        journal.setEnabled(true);
+        bank.addTransactionListener((accNumber, type, amountCents, balanceCents, counterparty) -> {
+            if (accNumber == 7100 && amountCents == 7_00L) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        long txId = newId();
+        assertThrows(IllegalStateException.class, () -> account.depositOnce(txId, 7_00L));
+        assertEquals(107_00L, account.getBalanceCents());
+        assertEquals(107_00L, account.depositOnce(txId, 7_00L));
+        assertEquals(107_00L, account.getBalanceCents());
+
+        TransactionIdCache restored = new TransactionIdCache();
+        restored.restore(journal);
+        bank.setTransactionIdCache(restored);
+        assertEquals(107_00L, account.depositOnce(txId, 7_00L));
+        assertEquals(107_00L, account.getBalanceCents());
+    }
+
+    /**
+     * Checks that an id can only be sent again with the transaction it was first used for.
+     */
+    @Test
+    void testReusedIdRejected() throws Exception {
+        long txId = newId();
+        assertEquals(105_00L, account.depositOnce(txId, 5_00L));
+        assertThrows(IllegalArgumentException.class, () -> other.depositOnce(txId, 5_00L));
+        assertThrows(IllegalArgumentException.class, () -> account.depositOnce(txId, 6_00L));
+        assertThrows(IllegalArgumentException.class, () -> account.withdrawOnce(txId, 5_00L));
+        assertThrows(IllegalArgumentException.class, () -> account.transferOnce(txId, 5_00L, other));
+        assertEquals(105_00L, account.getBalanceCents());
+        assertEquals(100_00L, other.getBalanceCents());
+    }
+
+    /**
+     * Checks ids are forgotten once the window has passed, and that a full cache drops
+     * its oldest ids.
+     */
+    @Test
+    void testExpiryAndBound() throws Exception {
+        TransactionIdCache cache = new TransactionIdCache(300L, 1_000_000);
+        long txId = newId();
+        assertEquals(TransactionIdCache.CLAIMED, cache.claim(txId, 1L));
+        cache.complete(txId, 42L);
+        assertEquals(42L, cache.claim(txId, 1L));
+        Thread.sleep(500L);
+        assertEquals(TransactionIdCache.CLAIMED, cache.claim(txId, 1L));
+
+        TransactionIdCache small = new TransactionIdCache(TransactionIdCache.DEFAULT_WINDOW_MILLIS, 1000);
+        for (long id = 1; id <= 100_000; id++) {
+            small.claim(id, 1L);
+            small.complete(id, id);
+        }
+        assertTrue(small.getEarlyEvictions() > 0L);
+        assertTrue(small.size() < 10_000L);
+        assertEquals(100_000L, small.claim(100_000L, 1L));
+    }
+}
@@ -0,0 +1,323 @@
+/**
+ * The TransactionJournalTest class contains unit tests for the binary transaction journal.
+ *
+ * Records are appended through TransactionJournal, read back with the memory-mapped
+ * JournalReader and compared field by field. The legacy text log converter is checked
+ * against entries in the exact format written by the old per-account DataLogger.
+ *
+ * Responsibilities:
+ * - Verify that appended records are written durably and read back unchanged.
+ * - Verify that replay can start part way through a journal.
+ * - Verify that batches larger than the ring interleave with single appends and report
+ *   where each of their records went.
+ * - Verify that switching the journal off is warned about and records nothing.
+ * - Verify that a failed write is reported by later flushes and health checks, and that
+ *   transactions are declined before they change a balance once it has been.
+ * - Verify that legacy text logs convert into equivalent binary records.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.JournalReader;
+import data_classes.TextLogConverter;
+import data_classes.TransactionJournal;
+import data_classes.TransactionType;
+
+/**
+ * Unit tests for TransactionJournal, JournalReader and TextLogConverter.
+ */
+class TransactionJournalTest {
+
+    private Path dir;
+
+    /**
+     * Creates a scratch directory for the journal files of each test.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createTempDirectory("journal-test");
+    }
+
+    /**
+     * Deletes the scratch directory and everything in it.
+     */
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that records appended to the journal are read back in order with every
+     * field intact, including reopening and appending to an existing journal.
+     */
+    @Test
+    void testAppendAndReplay() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        try (TransactionJournal journal = new TransactionJournal(file, 8)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(1000 + i, TransactionType.DEPOSIT, 125L, 10000L + i * 100, 0);
+            }
+        }
+        try (TransactionJournal journal = new TransactionJournal(file, 8)) {
+            journal.append(2000, TransactionType.TRANSFER_OUT, 5000L, 2550L, 3000);
+        }
+
+        List<long[]> records = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(file)) {
+            assertEquals(101, reader.getRecordCount());
+            reader.replay((timestamp, accNumber, type, amount, balance, counterparty) ->
+                    records.add(new long[] { accNumber, type, amount, balance, counterparty }));
+        }
+        assertEquals(101, records.size());
+        for (int i = 0; i < 100; i++) {
+            long[] r = records.get(i);
+            assertEquals(1000 + i, r[0]);
+            assertEquals(TransactionType.DEPOSIT, r[1]);
+            assertEquals(125, r[2]);
+            assertEquals(10000 + i * 100, r[3]);
+        }
+        long[] last = records.get(100);
+        assertEquals(2000, last[0]);
+        assertEquals(TransactionType.TRANSFER_OUT, last[1]);
+        assertEquals(5000, last[2]);
+        assertEquals(2550, last[3]);
+        assertEquals(3000, last[4]);
+    }
+
+    /**
+     * Tests that a batch many times the size of the ring is written while another thread
+     * appends single records, and that the record numbers the batch reports find its
+     * records in the file.
+     */
+    @Test
+    void testAppendBatch() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        int count = 200;
+        int[] accNumbers = new int[count];
+        long[] amounts = new long[count];
+        long[] balances = new long[count];
+        for (int i = 0; i < count; i++) {
+            accNumbers[i] = 5000 + i;
+            amounts[i] = i;
+            balances[i] = 1000L + i;
+        }
+        long[] recordNumbers = new long[count];
+        try (TransactionJournal journal = new TransactionJournal(file, 8)) {
+            Thread single = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    journal.append(9000 + i, TransactionType.DEPOSIT, 1L, 1L, 0);
+                }
+            });
+            single.start();
+            journal.appendBatch(1234L, TransactionType.INTEREST, accNumbers, amounts, balances, 0, count, recordNumbers);
+            single.join();
+        }
+
+        List<long[]> records = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(file)) {
+            assertEquals(2 * count, reader.getRecordCount());
+            reader.replay((timestamp, accNumber, type, amount, balance, counterparty) ->
+                    records.add(new long[] { accNumber, type, amount, balance, timestamp }));
+        }
+        for (int i = 0; i < count; i++) {
+            long[] r = records.get((int) recordNumbers[i]);
+            assertEquals(5000 + i, r[0]);
+            assertEquals(TransactionType.INTEREST, r[1]);
+            assertEquals(i, r[2]);
+            assertEquals(1000 + i, r[3]);
+            assertEquals(1234, r[4]);
+        }
+    }
+
+    /**
+     * Tests that a replay started part way through a journal only visits the later records.
+     */
+    @Test
+    void testReplayFromRecord() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        try (TransactionJournal journal = new TransactionJournal(file)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(1000 + i, TransactionType.WITHDRAW, 100L, 1000L, 0);
+            }
+        }
+        List<Integer> accounts = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(file)) {
+            assertEquals(3, reader.replay(7, (timestamp, accNumber, type, amount, balance, counterparty) ->
+                    accounts.add(accNumber)));
+        }
+        assertEquals(List.of(1007, 1008, 1009), accounts);
+    }
+
+    /**
+     * Tests that switching the journal off is logged as a warning, once per switch, and
+     * that nothing appended while it is off is written.
+     */
+    @Test
+    void testDisableWarns() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        List<LogRecord> logged = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger log = Logger.getLogger(TransactionJournal.class.getName());
+        log.addHandler(handler);
+        try (TransactionJournal journal = new TransactionJournal(file)) {
+            journal.append(1000, TransactionType.DEPOSIT, 100L, 100L, 0);
+            journal.setEnabled(false);
+            journal.setEnabled(false);
+            journal.append(1001, TransactionType.DEPOSIT, 100L, 100L, 0);
+            journal.setEnabled(true);
+            journal.append(1002, TransactionType.DEPOSIT, 100L, 100L, 0);
+        }
+        finally {
+            log.removeHandler(handler);
+        }
+        assertEquals(1, logged.stream().filter(record -> record.getLevel() == Level.WARNING).count());
+        try (JournalReader reader = new JournalReader(file)) {
+            assertEquals(2, reader.getRecordCount());
+        }
+    }
+
+    /**
+     * Tests that once the writer fails to write, the failure is reported by the next flush
+     * and by checkHealthy, while appends made after it, which follow balance changes that
+     * have already happened, are discarded without throwing; and that the records written
+     * before it are intact.
+     */
+    @Test
+    void testWriteFailureSurfaces() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        try (TransactionJournal journal = new TransactionJournal(file)) {
+            journal.append(1000, TransactionType.DEPOSIT, 100L, 100L, 0);
+            journal.flush();
+            journal.checkHealthy();
+            failWriter(file);
+            journal.append(1001, TransactionType.DEPOSIT, 100L, 200L, 0);
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, journal::flush);
+            assertTrue(e.getMessage().contains(file.toString()));
+            assertThrows(UncheckedIOException.class, journal::checkHealthy);
+            assertEquals(-1L, journal.append(1002, TransactionType.DEPOSIT, 100L, 300L, 0));
+            assertThrows(UncheckedIOException.class, journal::flush);
+        }
+        try (JournalReader reader = new JournalReader(file)) {
+            assertEquals(1, reader.getRecordCount());
+        }
+    }
+
+    /**
+     * Tests that deposits made after the journal has failed agree with their outcome: the
+     * deposit whose record met the failure had already moved its money and completes, and
+     * every later one throws without changing the balance or the bank's totals.
+     */
+    @Test
+    void testDepositAfterWriteFailure() throws Exception {
+        Path file = dir.resolve("journal.dat");
+        TransactionJournal shared = TransactionJournal.getInstance();
+        try (TransactionJournal journal = new TransactionJournal(file)) {
+            TransactionJournal.setInstance(journal);
+            try {
+                Bank bank = new Bank();
+                List<Long> reported = new ArrayList<>();
+                bank.addTransactionListener((accNumber, type, amountCents, balanceCents, counterparty) -> reported.add(balanceCents));
+                BankAccount account = BankAccount.ofCents(7500, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+                account.depositCents(1_00L);
+                journal.flush();
+
+                failWriter(file);
+                account.depositCents(2_00L);
+                assertEquals(103_00L, account.getBalanceCents());
+                assertThrows(UncheckedIOException.class, journal::flush);
+
+                assertThrows(UncheckedIOException.class, () -> account.depositCents(4_00L));
+                assertThrows(UncheckedIOException.class, () -> account.depositOnce(42L, 4_00L));
+                assertEquals(103_00L, account.getBalanceCents());
+                assertEquals(103_00L, bank.getTotalBalanceCents());
+                assertEquals(List.of(101_00L, 103_00L), reported);
+            }
+            finally {
+                TransactionJournal.setInstance(shared);
+            }
+        }
+    }
+
+    // an interrupted FileChannel is closed, so the writer's next write to the file fails
+    private static void failWriter(Path file) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("transaction-journal-writer " + file)) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Tests that legacy SimpleFormatter log entries are converted to binary records with
+     * the right type, amounts and counterparty, and that unrecognised lines are skipped.
+     */
+    @Test
+    void testConvertTextLog() throws Exception {
+        Path log = dir.resolve("Account_1234.log");
+        Files.write(log, List.of(
+                "Aug. 18, 2024 12:01:47 A.M. data_classes.DataLogger logTransaction",
+                "INFO: Account No: 1234 - Withdrawal: $100.00, New Balance: $900.00",
+                "Aug. 18, 2024 12:01:47 A.M. data_classes.DataLogger logTransaction",
+                "INFO: Account No: 1234 - Insufficient funds for transfer to recipient: 1111 Current balance: $900.00. Transfer amount: $5000.00, New Balance: $900.00",
+                "Aug. 18, 2024 12:01:48 A.M. data_classes.DataLogger logTransaction",
+                "INFO: Account No: 1234 - Transfer to 1111: $500.00, New Balance: $400.00",
+                "INFO: something unexpected"));
+        Path output = dir.resolve("converted.dat");
+        TextLogConverter converter = new TextLogConverter();
+        converter.convert(List.of(log), output);
+        assertEquals(3, converter.getConverted());
+        assertEquals(1, converter.getSkipped());
+
+        List<long[]> records = new ArrayList<>();
+        try (JournalReader reader = new JournalReader(output)) {
+            reader.replay((timestamp, accNumber, type, amount, balance, counterparty) ->
+                    records.add(new long[] { accNumber, type, amount, balance, counterparty, timestamp }));
+        }
+        assertEquals(TransactionType.WITHDRAW, records.get(0)[1]);
+        assertEquals(10000, records.get(0)[2]);
+        assertEquals(TransactionType.TRANSFER_DECLINED, records.get(1)[1]);
+        assertEquals(500000, records.get(1)[2]);
+        assertEquals(1111, records.get(1)[4]);
+        assertEquals(TransactionType.TRANSFER_OUT, records.get(2)[1]);
+        assertEquals(40000, records.get(2)[3]);
+        assertEquals(1000, records.get(2)[5] - records.get(1)[5]);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * The TransactionMetricsTest class contains unit tests for the transaction metrics: the
+ * operation and decline counts, the latency percentiles, the settings and the JMX view.
+ *
+ * The metrics are shared by the whole JVM, so each test resets them first and switches
+ * them off again when it is done.
+ *
+ * Responsibilities:
+ * - Verify that operations and declined operations are counted.
+ * - Verify that timed operations give ordered latency percentiles.
+ * - Verify that the metrics can be read through JMX.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionMetrics;
+
+/**
+ * Unit tests for TransactionMetrics.
+ */
+class TransactionMetricsTest {
+
+    private final TransactionMetrics metrics = TransactionMetrics.getInstance();
+    private int sampleInterval;
+    private BankAccount account;
+    private BankAccount other;
+
+    /**
+     * Opens accounts 7000 and 7001 with $100.00 each and starts the metrics from zero.
+     */
+    @BeforeEach
+    void setUp() {
+        Bank bank = new Bank();
+        account = BankAccount.ofCents(7000, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+        other = BankAccount.ofCents(7001, "Savings", "Bob", "Ray", 40, "2 Elm Street", 100_00L, bank);
+        sampleInterval = metrics.getSampleInterval();
+        metrics.reset();
+        metrics.setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        metrics.setEnabled(false);
+        metrics.setSampleInterval(sampleInterval);
+    }
+
+    /**
+     * Counts each kind of transaction, and the declined ones.
+     */
+    @Test
+    void testCounts() throws Exception {
+        account.depositCents(1_00L);
+        account.depositCents(1_00L);
+        account.withdrawCents(1_00L);
+        assertThrows(IllegalWithdrawException.class, () -> account.withdrawCents(1_000_00L));
+        account.transferCents(1_00L, other);
+        assertThrows(IllegalWithdrawException.class, () -> account.transferCents(1_000_00L, other));
+
+        assertEquals(2L, metrics.getCount(TransactionMetrics.DEPOSIT));
+        assertEquals(0L, metrics.getDeclined(TransactionMetrics.DEPOSIT));
+        assertEquals(2L, metrics.getCount(TransactionMetrics.WITHDRAW));
+        assertEquals(1L, metrics.getDeclined(TransactionMetrics.WITHDRAW));
+        assertEquals(2L, metrics.getCount(TransactionMetrics.TRANSFER));
+        assertEquals(1L, metrics.getDeclined(TransactionMetrics.TRANSFER));
+
+        metrics.setEnabled(false);
+        account.depositCents(1_00L);
+        assertEquals(2L, metrics.getCount(TransactionMetrics.DEPOSIT));
+        metrics.reset();
+        assertEquals(0L, metrics.getCount(TransactionMetrics.DEPOSIT));
+    }
+
+    /**
+     * Times every operation and checks the percentiles come out in order.
+     */
+    @Test
+    void testLatencies() {
+        metrics.setSampleInterval(1);
+        for (int i = 0; i < 1000; i++) {
+            account.depositCents(1L);
+        }
+        long p50 = metrics.getPercentileNanos(TransactionMetrics.DEPOSIT, 50.0);
+        long p99 = metrics.getPercentileNanos(TransactionMetrics.DEPOSIT, 99.0);
+        long max = metrics.getPercentileNanos(TransactionMetrics.DEPOSIT, 100.0);
+        assertTrue(p50 > 0L);
+        assertTrue(p50 <= p99 && p99 <= max);
+        assertEquals(0L, metrics.getPercentileNanos(TransactionMetrics.TRANSFER, 50.0));
+
+        assertThrows(IllegalArgumentException.class, () -> metrics.getPercentileNanos(TransactionMetrics.DEPOSIT, 101.0));
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSampleInterval(3));
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSampleInterval(0));
+    }
+
+    /**
+     * Reads the counts through the platform MBean server.
+     */
+    @Test
+    void testMBeans() throws Exception {
+        metrics.registerMBeans();
+        metrics.registerMBeans();
+        account.depositCents(1_00L);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName deposits = new ObjectName("data_classes:type=TransactionMetrics,operation=Deposit");
+        assertEquals(1L, server.getAttribute(deposits, "Count"));
+        assertEquals(Boolean.TRUE, server.getAttribute(new ObjectName("data_classes:type=TransactionMetrics"), "Enabled"));
+        assertTrue(metrics.toString().contains("Deposit"));
+    }
+}
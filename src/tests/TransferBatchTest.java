@@ -0,0 +1,214 @@
+/**
+ * The TransferBatchTest class contains unit tests for batches of transfers applied through
+ * Bank.applyTransfers.
+ *
+ * Responsibilities:
+ * - Verify that opposing transfers are netted into one balance change and one event per account.
+ * - Verify that a group is applied in full or not at all, independently of other groups.
+ * - Verify that a group whose net credits a balance cannot hold fails without changing anything.
+ * - Verify that concurrent batches and single transfers conserve the total amount of money.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+import data_classes.TransactionListener;
+import data_classes.TransactionType;
+import data_classes.TransferBatch;
+
+/**
+ * Unit tests for TransferBatch.
+ */
+class TransferBatchTest {
+
+    private Bank bank;
+    private List<int[]> events;
+    private TransactionListener listener;
+
+    /**
+     * Opens accounts 1000 to 1009 with $100.00 each and records every transaction event.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        for (int i = 0; i < 10; i++) {
+            BankAccount.ofCents(1000 + i, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+        }
+        events = new ArrayList<>();
+        listener = (accNumber, type, amountCents, balanceCents, counterparty) -> {
+            synchronized (events) {
+                events.add(new int[] { accNumber, type, (int) amountCents });
+            }
+        };
+        bank.addTransactionListener(listener);
+    }
+
+    /**
+     * Tests that opposing transfers are netted: each account changes once by its net
+     * amount, and accounts whose transfers cancel out do not change at all.
+     */
+    @Test
+    void testNetting() {
+        TransferBatch batch = new TransferBatch()
+                .add(1000, 1001, 30_00L)
+                .add(1001, 1000, 10_00L)
+                .add(1001, 1002, 50_00L)
+                .add(1002, 1001, 50_00L)
+                .add(1003, 1000, 5_00L);
+
+        TransferBatch.Result result = bank.applyTransfers(batch);
+
+        assertTrue(result.isFullyApplied());
+        assertEquals(5, result.getAppliedTransfers());
+        assertEquals(3, result.getAccountsChanged());
+        assertEquals(100_00L - 20_00L + 5_00L, bank.getAccount(1000).getBalanceCents());
+        assertEquals(100_00L + 20_00L, bank.getAccount(1001).getBalanceCents());
+        assertEquals(100_00L, bank.getAccount(1002).getBalanceCents());
+        assertEquals(100_00L - 5_00L, bank.getAccount(1003).getBalanceCents());
+        assertEquals(3, events.size());
+        for (int[] event : events) {
+            if (event[0] == 1000) {
+                assertEquals(TransactionType.BATCH_DEBIT, event[1]);
+                assertEquals(15_00, event[2]);
+            }
+        }
+    }
+
+    /**
+     * Tests that netting lets a group pass through an account that could not pay its
+     * outgoing transfer on its own, and that a failing group leaves every account in it
+     * untouched while the other groups still apply.
+     */
+    @Test
+    void testGroupsAreAllOrNothing() {
+        TransferBatch batch = new TransferBatch()
+                .add(1000, 1001, 150_00L)
+                .add(1002, 1000, 60_00L)
+                .newGroup()
+                .add(1003, 1004, 40_00L)
+                .add(1004, 1005, 250_00L)
+                .newGroup()
+                .add(1006, 1007, 1_00L)
+                .add(1006, 9999, 1_00L)
+                .newGroup()
+                .add(1008, 1009, 100_00L);
+
+        TransferBatch.Result result = bank.applyTransfers(batch);
+
+        assertEquals(4, result.getGroupCount());
+        assertTrue(result.isApplied(0));
+        assertFalse(result.isApplied(1));
+        assertTrue(result.getFailure(1).startsWith("Insufficient funds in account 1004"));
+        assertEquals("Unknown account: 9999", result.getFailure(2));
+        assertNull(result.getFailure(3));
+        assertEquals(2, result.getAppliedGroups());
+        assertEquals(3, result.getAppliedTransfers());
+
+        assertEquals(10_00L, bank.getAccount(1000).getBalanceCents());
+        assertEquals(250_00L, bank.getAccount(1001).getBalanceCents());
+        assertEquals(40_00L, bank.getAccount(1002).getBalanceCents());
+        assertEquals(100_00L, bank.getAccount(1003).getBalanceCents());
+        assertEquals(100_00L, bank.getAccount(1004).getBalanceCents());
+        assertEquals(100_00L, bank.getAccount(1006).getBalanceCents());
+        assertEquals(0L, bank.getAccount(1008).getBalanceCents());
+        assertEquals(200_00L, bank.getAccount(1009).getBalanceCents());
+    }
+
+    /**
+     * Tests that a group crediting more than an account can hold, or adding up transfers
+     * past the range of a long, fails instead of wrapping balances, while other groups apply.
+     */
+    @Test
+    void testOverflowingGroupFails() {
+        long nearlyFull = Long.MAX_VALUE - 5_00L;
+        BankAccount.ofCents(1010, "Savings", "Cy", "Day", 50, "3 Elm Street", nearlyFull, bank);
+        TransferBatch batch = new TransferBatch()
+                .add(1000, 1010, 6_00L)
+                .newGroup()
+                .add(1001, 1002, Long.MAX_VALUE)
+                .add(1003, 1002, Long.MAX_VALUE)
+                .add(1002, 1004, Long.MAX_VALUE)
+                .newGroup()
+                .add(1005, 1010, 5_00L);
+
+        TransferBatch.Result result = bank.applyTransfers(batch);
+
+        assertTrue(result.getFailure(0).startsWith("Account 1010 cannot hold"));
+        assertTrue(result.getFailure(1).startsWith("Account 1002 cannot hold"));
+        assertTrue(result.isApplied(2));
+        assertEquals(100_00L, bank.getAccount(1000).getBalanceCents());
+        for (int i = 1; i < 5; i++) {
+            assertEquals(100_00L, bank.getAccount(1000 + i).getBalanceCents());
+        }
+        assertEquals(95_00L, bank.getAccount(1005).getBalanceCents());
+        assertEquals(Long.MAX_VALUE, bank.getAccount(1010).getBalanceCents());
+    }
+
+    /**
+     * Tests that batches and single transfers running at the same time on the same
+     * accounts never create or destroy money.
+     */
+    @Test
+    void testConcurrentBatchesConserveMoney() throws Exception {
+        bank.removeTransactionListener(listener);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            boolean batches = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 500; i++) {
+                    if (batches) {
+                        TransferBatch batch = new TransferBatch();
+                        for (int k = 0; k < 8; k++) {
+                            int from = 1000 + random.nextInt(10);
+                            int to = 1000 + (from - 1000 + 1 + random.nextInt(9)) % 10;
+                            batch.add(from, to, 1 + random.nextInt(5_00)).newGroup();
+                        }
+                        bank.applyTransfers(batch);
+                    }
+                    else {
+                        int from = 1000 + random.nextInt(10);
+                        int to = 1000 + (from - 1000 + 1 + random.nextInt(9)) % 10;
+                        try {
+                            bank.getAccount(from).transferCents(1 + random.nextInt(5_00), bank.getAccount(to));
+                        }
+                        catch (IllegalWithdrawException e) {
+                            // declined transfers leave both balances alone
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        long total = 0L;
+        for (int i = 0; i < 10; i++) {
+            long balance = bank.getAccount(1000 + i).getBalanceCents();
+            assertTrue(balance >= 0L);
+            total += balance;
+        }
+        assertEquals(10 * 100_00L, total);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * The TryTransactionTest class contains unit tests for tryWithdraw and tryTransfer, the
+ * BankAccount methods that report insufficient funds in their result instead of
+ * throwing IllegalWithdrawException.
+ *
+ * Each test runs with the Bank's default locking and again in optimistic mode, since
+ * the two modes detect a decline on different paths.
+ *
+ * Responsibilities:
+ * - Verify that successful results carry the new balance.
+ * - Verify that declines leave the balances alone and carry the unchanged balance.
+ * - Verify that the throwing methods still throw for the same declines.
+ * - Verify that credits a balance cannot hold are rejected without changing anything.
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import Exception_classes.IllegalWithdrawException;
+import data_classes.Bank;
+import data_classes.BankAccount;
+
+/**
+ * Unit tests for the result-code transaction methods.
+ */
+class TryTransactionTest {
+
+    private Bank bank;
+    private BankAccount account;
+    private BankAccount other;
+
+    /**
+     * Opens accounts 7200 and 7201 with $100.00 each.
+     */
+    @BeforeEach
+    void setUp() {
+        bank = new Bank();
+        account = BankAccount.ofCents(7200, "Checking", "Ann", "Lee", 30, "1 Elm Street", 100_00L, bank);
+        other = BankAccount.ofCents(7201, "Savings", "Bob", "Ray", 40, "2 Elm Street", 100_00L, bank);
+    }
+
+    /**
+     * Withdraws within and beyond the balance, with both kinds of locking.
+     */
+    @Test
+    void testTryWithdraw() {
+        for (boolean optimistic : new boolean[] { false, true }) {
+            bank.setOptimistic(optimistic);
+            long before = account.getBalanceCents();
+
+            long result = account.tryWithdraw(10_00L);
+            assertFalse(BankAccount.isDeclined(result));
+            assertEquals(before - 10_00L, result);
+            assertEquals(result, BankAccount.balanceOf(result));
+
+            result = account.tryWithdraw(1_000_00L);
+            assertTrue(BankAccount.isDeclined(result));
+            assertEquals(before - 10_00L, BankAccount.balanceOf(result));
+            assertEquals(before - 10_00L, account.getBalanceCents());
+
+            assertThrows(IllegalWithdrawException.class, () -> account.withdrawCents(1_000_00L));
+            assertThrows(IllegalArgumentException.class, () -> account.tryWithdraw(-1L));
+        }
+        // the whole balance can be withdrawn, leaving a zero result that is not a decline
+        long result = account.tryWithdraw(account.getBalanceCents());
+        assertFalse(BankAccount.isDeclined(result));
+        assertEquals(0L, BankAccount.balanceOf(result));
+    }
+
+    /**
+     * Transfers within and beyond the balance, with both kinds of locking.
+     */
+    @Test
+    void testTryTransfer() {
+        for (boolean optimistic : new boolean[] { false, true }) {
+            bank.setOptimistic(optimistic);
+            long before = account.getBalanceCents();
+            long otherBefore = other.getBalanceCents();
+
+            long result = account.tryTransfer(20_00L, other);
+            assertFalse(BankAccount.isDeclined(result));
+            assertEquals(before - 20_00L, result);
+            assertEquals(otherBefore + 20_00L, other.getBalanceCents());
+
+            result = account.tryTransfer(1_000_00L, other);
+            assertTrue(BankAccount.isDeclined(result));
+            assertEquals(before - 20_00L, BankAccount.balanceOf(result));
+            assertEquals(before - 20_00L, account.getBalanceCents());
+            assertEquals(otherBefore + 20_00L, other.getBalanceCents());
+
+            assertThrows(IllegalWithdrawException.class, () -> account.transferCents(1_000_00L, other));
+        }
+    }
+
+    /**
+     * Deposits and transfers into an account too full to hold them, with both kinds of
+     * locking, and checks they are rejected rather than wrapping the balance negative.
+     */
+    @Test
+    void testBalanceOverflow() {
+        for (boolean optimistic : new boolean[] { false, true }) {
+            bank.setOptimistic(optimistic);
+            long nearlyFull = Long.MAX_VALUE - 5_00L;
+            BankAccount full = BankAccount.ofCents(optimistic ? 7211 : 7210, "Savings", "Cy", "Day", 50, "3 Elm Street", nearlyFull, bank);
+
+            assertThrows(IllegalArgumentException.class, () -> full.depositCents(6_00L));
+            assertThrows(IllegalArgumentException.class, () -> full.depositCents(Long.MAX_VALUE));
+            assertEquals(nearlyFull, full.getBalanceCents());
+
+            long before = account.getBalanceCents();
+            assertThrows(IllegalArgumentException.class, () -> account.tryTransfer(6_00L, full));
+            assertEquals(before, account.getBalanceCents());
+            assertEquals(nearlyFull, full.getBalanceCents());
+
+            full.depositCents(5_00L);
+            assertEquals(Long.MAX_VALUE, full.getBalanceCents());
+        }
+    }
+}